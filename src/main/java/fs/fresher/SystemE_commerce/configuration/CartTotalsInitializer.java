@@ -0,0 +1,37 @@
+package fs.fresher.SystemE_commerce.configuration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfills the stored cart totals for carts written before those columns existed.
+ * Only carts that still show zero quantity while holding items are touched, so later startups update nothing.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CartTotalsInitializer implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            int updated = jdbcTemplate.update("UPDATE carts c JOIN (" +
+                    "SELECT ci.cart_id, COUNT(*) AS item_count, SUM(ci.quantity) AS total_quantity, " +
+                    "SUM(ci.quantity * pv.price) AS total_amount " +
+                    "FROM cart_items ci JOIN product_variants pv ON pv.id = ci.sku_id GROUP BY ci.cart_id) t " +
+                    "ON t.cart_id = c.id " +
+                    "SET c.item_count = t.item_count, c.total_quantity = t.total_quantity, c.total_amount = t.total_amount " +
+                    "WHERE c.total_quantity = 0");
+            if (updated > 0) {
+                log.info("CART TOTALS: Backfilled totals for {} carts", updated);
+            }
+        } catch (Exception e) {
+            log.error("CART TOTALS: Failed to backfill cart totals", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fs.fresher.SystemE_commerce.configuration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Seeds the id_generators rows used by the pooled table generators.
+ * Those tables were filled by AUTO_INCREMENT before, so each row must start above the current MAX(id).
+ * Runs once all singletons (and the schema update) are ready, before the web server accepts requests;
+ * a failure aborts startup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdGeneratorInitializer implements SmartInitializingSingleton {
+
+    // Tables whose entities use @TableGenerator with pkColumnValue = table name
+    static final List<String> POOLED_TABLES = List.of(
+            "orders", "order_items", "order_status_history", "stock_reservations", "cart_items", "checkout_sessions",
+            "inventory_journal");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String table : POOLED_TABLES) {
+            try {
+                jdbcTemplate.update("INSERT INTO id_generators (sequence_name, next_val) SELECT ?, 1 FROM DUAL " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM id_generators WHERE sequence_name = ?)", table, table);
+                // Table names come from the constant above, never from input
+                jdbcTemplate.update("UPDATE id_generators SET next_val = GREATEST(next_val, " +
+                        "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + table + ")) WHERE sequence_name = ?", table);
+            } catch (DataAccessException e) {
+                // An unseeded generator hands out ids that already exist; refuse to start instead
+                throw new IllegalStateException("Failed to seed pooled id generator for " + table, e);
+            }
+        }
+        log.info("ID GENERATORS: Seeded pooled id generators for {} tables", POOLED_TABLES.size());
+    }
+}
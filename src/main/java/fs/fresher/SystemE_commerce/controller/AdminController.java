@@ -3,12 +3,23 @@ package fs.fresher.SystemE_commerce.controller;
 import fs.fresher.SystemE_commerce.dto.request.UpdateOrderStatusRequest;
 import fs.fresher.SystemE_commerce.dto.response.AdminOrderDetailResponse;
 import fs.fresher.SystemE_commerce.dto.response.AdminOrderListResponse;
+import fs.fresher.SystemE_commerce.dto.response.CatalogImportJobResponse;
 import fs.fresher.SystemE_commerce.dto.response.PagedResponse;
 import fs.fresher.SystemE_commerce.enums.OrderStatus;
 import fs.fresher.SystemE_commerce.service.AdminOrderService;
+import fs.fresher.SystemE_commerce.service.CatalogExportService;
+import fs.fresher.SystemE_commerce.service.CatalogImportService;
+import fs.fresher.SystemE_commerce.service.StockBucketService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -16,15 +27,23 @@ import org.springframework.web.bind.annotation.*;
 public class AdminController {
     
     private final AdminOrderService adminOrderService;
+    private final CatalogExportService catalogExportService;
+    private final CatalogImportService catalogImportService;
+    private final StockBucketService stockBucketService;
     
     @GetMapping("/orders")
     public ResponseEntity<PagedResponse<AdminOrderListResponse>> getOrders(
             @RequestHeader(value = "X-API-Key", required = false) String apiKey,
             @RequestParam(required = false) OrderStatus status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         
-        PagedResponse<AdminOrderListResponse> response = adminOrderService.getOrders(apiKey, status, page, size);
+        // An empty cursor starts keyset paging, offset paging stays the default
+        PagedResponse<AdminOrderListResponse> response = cursor != null
+                ? adminOrderService.getOrdersByCursor(apiKey, status, cursor, size, includeTotal)
+                : adminOrderService.getOrders(apiKey, status, page, size);
         return ResponseEntity.ok(response);
     }
     
@@ -46,4 +65,62 @@ public class AdminController {
         AdminOrderDetailResponse response = adminOrderService.updateOrderStatus(apiKey, orderId, request);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+    
+    @GetMapping(value = "/catalog/export", produces = CatalogExportService.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportCatalog(
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey) {
+        
+        StreamingResponseBody body = catalogExportService.streamCatalog(apiKey);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(CatalogExportService.NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalog.ndjson\"")
+                .body(body);
+    }
+    
+    @PostMapping(value = "/catalog/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<CatalogImportJobResponse> importCatalog(
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format) {
+        
+        CatalogImportJobResponse response = catalogImportService.startImport(apiKey, file, format);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @GetMapping("/catalog/import/{jobId}")
+    public ResponseEntity<CatalogImportJobResponse> getImportJob(
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @PathVariable Long jobId) {
+        
+        CatalogImportJobResponse response = catalogImportService.getJob(apiKey, jobId);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/catalog/import/{jobId}/resume")
+    public ResponseEntity<CatalogImportJobResponse> resumeImportJob(
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @PathVariable Long jobId) {
+        
+        CatalogImportJobResponse response = catalogImportService.resumeJob(apiKey, jobId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @PostMapping("/inventory/variants/{variantId}/buckets")
+    public ResponseEntity<Map<String, Object>> splitVariantStock(
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @PathVariable Long variantId,
+            @RequestParam(required = false) Integer buckets) {
+        
+        Map<String, Object> response = stockBucketService.splitVariant(apiKey, variantId, buckets);
+        return ResponseEntity.ok(response);
+    }
+    
+    @DeleteMapping("/inventory/variants/{variantId}/buckets")
+    public ResponseEntity<Map<String, Object>> mergeVariantStock(
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @PathVariable Long variantId) {
+        
+        Map<String, Object> response = stockBucketService.mergeVariant(apiKey, variantId);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -1,8 +1,10 @@
 package fs.fresher.SystemE_commerce.controller;
 
 import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.request.CartBatchRequest;
 import fs.fresher.SystemE_commerce.dto.request.UpdateCartItemRequest;
 import fs.fresher.SystemE_commerce.dto.response.CartResponse;
+import fs.fresher.SystemE_commerce.dto.response.CartSummaryResponse;
 import fs.fresher.SystemE_commerce.service.CartRequestService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -31,6 +33,15 @@ public class CartController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/summary")
+    public ResponseEntity<CartSummaryResponse> getCartSummary(
+            @RequestParam(required = false) String cartId,
+            @CookieValue(value = "cartId", required = false) String cookieCartId) {
+        
+        CartSummaryResponse response = cartRequestService.handleGetCartSummary(cartId, cookieCartId);
+        return ResponseEntity.ok(response);
+    }
+    
     @PostMapping("/items")
     public ResponseEntity<CartResponse> addItemToCart(
             @RequestParam(required = false) String cartId,
@@ -45,6 +56,20 @@ public class CartController {
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/items/batch")
+    public ResponseEntity<CartResponse> applyBatch(
+            @RequestParam(required = false) String cartId,
+            @CookieValue(value = "cartId", required = false) String cookieCartId,
+            @RequestBody CartBatchRequest request,
+            HttpServletRequest httpRequest) {
+        
+        HttpSession session = httpRequest.getSession(true); // Create session if not exists
+        String sessionToken = session.getId();
+        
+        CartResponse response = cartRequestService.handleBatchUpdate(cartId, cookieCartId, request, sessionToken);
+        return ResponseEntity.ok(response);
+    }
+    
     @PatchMapping("/items/{variantId}")
     public ResponseEntity<CartResponse> updateCartItem(
             @RequestParam(required = false) String cartId,
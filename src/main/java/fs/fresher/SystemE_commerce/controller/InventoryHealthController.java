@@ -1,5 +1,6 @@
 package fs.fresher.SystemE_commerce.controller;
 
+import fs.fresher.SystemE_commerce.service.CartCleanupService;
 import fs.fresher.SystemE_commerce.service.InventoryHealthService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -13,6 +14,7 @@ import java.util.Map;
 public class InventoryHealthController {
     
     private final InventoryHealthService inventoryHealthService;
+    private final CartCleanupService cartCleanupService;
     
     @GetMapping
     public ResponseEntity<Map<String, Object>> getInventoryHealth() {
@@ -26,6 +28,11 @@ public class InventoryHealthController {
         return ResponseEntity.ok(stats);
     }
     
+    @GetMapping("/carts")
+    public ResponseEntity<Map<String, Object>> getCartStatistics() {
+        return ResponseEntity.ok(cartCleanupService.getCartStatistics());
+    }
+    
     @PostMapping("/cleanup")
     public ResponseEntity<Map<String, Object>> performManualCleanup() {
         Map<String, Object> result = inventoryHealthService.performManualCleanup();
@@ -4,6 +4,7 @@ import fs.fresher.SystemE_commerce.dto.response.PagedResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductDetailResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductListResponse;
+import fs.fresher.SystemE_commerce.exception.ValidationException;
 import fs.fresher.SystemE_commerce.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -36,10 +38,32 @@ public class ProductController {
             @Parameter(description = "Maximum price") @RequestParam(required = false) BigDecimal maxPrice,
             @Parameter(description = "Colors to filter") @RequestParam(required = false) List<String> colors,
             @Parameter(description = "Sizes to filter") @RequestParam(required = false) List<String> sizes,
-            @Parameter(description = "Search by product name") @RequestParam(required = false) String search) {
+            @Parameter(description = "Search by product name") @RequestParam(required = false) String search,
+            @Parameter(description = "Only products with available stock") 
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @Parameter(description = "Keyset cursor from a previous response; pass an empty value to start cursor paging") 
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Compute the total count in cursor mode") 
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @Parameter(description = "Return color, size and category counts for the current filters; not with cursor") 
+            @RequestParam(defaultValue = "false") boolean includeFacets) {
         
-        PagedResponse<ProductListResponse> response = productService.getProducts(
-                page, size, categoryIds, minPrice, maxPrice, colors, sizes, search);
+        // Facets are computed for offset pages only; a cursor page would have to recount them on every page
+        if (cursor != null && includeFacets) {
+            throw new ValidationException("includeFacets is not supported with cursor paging");
+        }
+        
+        PagedResponse<ProductListResponse> response;
+        if (cursor != null) {
+            response = productService.getProductsByCursor(
+                    cursor, size, categoryIds, minPrice, maxPrice, colors, sizes, search, inStock, includeTotal);
+        } else if (includeFacets) {
+            response = productService.getProductsWithFacets(
+                    page, size, categoryIds, minPrice, maxPrice, colors, sizes, search, inStock);
+        } else {
+            response = productService.getProducts(
+                    page, size, categoryIds, minPrice, maxPrice, colors, sizes, search, inStock);
+        }
         
         return ResponseEntity.ok(response);
     }
@@ -56,6 +80,15 @@ public class ProductController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/filter-options/cache-stats")
+    @Operation(
+        summary = "Get filter options cache statistics",
+        description = "Get hit/miss counters of the precomputed filter options, overall and per category selection"
+    )
+    public ResponseEntity<Map<String, Object>> getFilterOptionsCacheStatistics() {
+        return ResponseEntity.ok(productService.getFilterOptionsCacheStatistics());
+    }
+    
     @GetMapping("/{productId}")
     @Operation(
         summary = "Get product detail",
@@ -0,0 +1,27 @@
+package fs.fresher.SystemE_commerce.dto.request;
+
+import fs.fresher.SystemE_commerce.enums.CartOperationType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several cart changes applied in order, all or nothing
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequest {
+    private List<Operation> operations;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operation {
+        private CartOperationType type;
+        private Long skuId;
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,35 @@
+package fs.fresher.SystemE_commerce.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One product of a bulk import: a NDJSON line, or consecutive CSV rows sharing category and product name
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogImportRecord {
+    private String category;
+    private String name;
+    private String description;
+    private BigDecimal basePrice;
+    private String imageUrl;
+    private List<Variant> variants = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Variant {
+        private String sku;
+        private String size;
+        private String color;
+        private BigDecimal price;
+        private Integer stockQuantity;
+    }
+}
@@ -0,0 +1,22 @@
+package fs.fresher.SystemE_commerce.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Cart badge / mini-cart view built from the cart totals, without the items
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummaryResponse {
+    private String cartId;
+    private Integer itemCount;
+    private Integer totalQuantity;
+    private BigDecimal totalAmount;
+    private LocalDateTime updatedAt;
+}
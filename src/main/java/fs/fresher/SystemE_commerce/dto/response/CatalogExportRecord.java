@@ -0,0 +1,38 @@
+package fs.fresher.SystemE_commerce.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One NDJSON line of the catalog export: a product with its active variants
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogExportRecord {
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal basePrice;
+    private String imageUrl;
+    private Long categoryId;
+    private String categoryName;
+    private List<Variant> variants = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Variant {
+        private Long id;
+        private String sku;
+        private String size;
+        private String color;
+        private BigDecimal price;
+        private Integer availableStock;
+    }
+}
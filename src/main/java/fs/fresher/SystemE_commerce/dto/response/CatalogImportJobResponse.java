@@ -0,0 +1,27 @@
+package fs.fresher.SystemE_commerce.dto.response;
+
+import fs.fresher.SystemE_commerce.enums.ImportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogImportJobResponse {
+    private Long jobId;
+    private String fileName;
+    private String format;
+    private ImportJobStatus status;
+    private Long processedLines;
+    private Long importedProducts;
+    private Long importedVariants;
+    private Long skippedVariants;
+    private Long errorCount;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+}
@@ -1,5 +1,6 @@
 package fs.fresher.SystemE_commerce.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,10 +14,30 @@ public class PagedResponse<T> {
     private List<T> content;
     private int page;
     private int size;
+    // -1 when the total count was skipped (keyset paging without includeTotal)
     private long totalElements;
     private int totalPages;
     private boolean first;
     private boolean last;
     private boolean hasNext;
     private boolean hasPrevious;
-}
\ No newline at end of file
+    // Opaque keyset cursor for the next page, only set in cursor mode
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    public PagedResponse(List<T> content, int page, int size, long totalElements, int totalPages,
+                         boolean first, boolean last, boolean hasNext, boolean hasPrevious) {
+        this(content, page, size, totalElements, totalPages, first, last, hasNext, hasPrevious, null);
+    }
+
+    /**
+     * Keyset page: page is always 0, totals are -1 unless a count was requested
+     */
+    public static <T> PagedResponse<T> keyset(List<T> content, int size, Long totalElements,
+                                              boolean first, String nextCursor) {
+        long total = totalElements != null ? totalElements : -1;
+        int totalPages = totalElements != null ? (int) Math.ceil((double) totalElements / size) : -1;
+        boolean hasNext = nextCursor != null;
+        return new PagedResponse<>(content, 0, size, total, totalPages, first, !hasNext, hasNext, !first, nextCursor);
+    }
+}
@@ -1,5 +1,6 @@
 package fs.fresher.SystemE_commerce.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,18 @@ public class ProductFilterOptionsResponse {
     private List<String> availableSizes;
     private BigDecimal minPrice;
     private BigDecimal maxPrice;
+    // Facet counts for the current filter context, only set when returned with a product listing
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<FacetCount> colorCounts;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<FacetCount> sizeCounts;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<CategoryCount> categoryCounts;
+    
+    public ProductFilterOptionsResponse(List<CategoryOption> categories, List<String> availableColors,
+                                        List<String> availableSizes, BigDecimal minPrice, BigDecimal maxPrice) {
+        this(categories, availableColors, availableSizes, minPrice, maxPrice, null, null, null);
+    }
     
     @Data
     @NoArgsConstructor
@@ -24,4 +37,21 @@ public class ProductFilterOptionsResponse {
         private Long id;
         private String name;
     }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetCount {
+        private String value;
+        private long count;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryCount {
+        private Long id;
+        private String name;
+        private long count;
+    }
 }
@@ -0,0 +1,23 @@
+package fs.fresher.SystemE_commerce.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Product listing page with optional facet counts for the same filter context
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class ProductPageResponse extends PagedResponse<ProductListResponse> {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ProductFilterOptionsResponse facets;
+
+    public ProductPageResponse(PagedResponse<ProductListResponse> page, ProductFilterOptionsResponse facets) {
+        super(page.getContent(), page.getPage(), page.getSize(), page.getTotalElements(), page.getTotalPages(),
+                page.isFirst(), page.isLast(), page.isHasNext(), page.isHasPrevious(), page.getNextCursor());
+        this.facets = facets;
+    }
+}
@@ -5,11 +5,17 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = {
+        @Index(name = "idx_carts_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_carts_last_accessed_at", columnList = "last_accessed_at"),
+        @Index(name = "idx_carts_item_count", columnList = "item_count, last_accessed_at")
+})
+@EntityListeners(ExpiryTimerListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,6 +42,16 @@ public class Cart {
     @Column(name = "expires_at")
     private LocalDateTime expiresAt;
     
+    // Totals kept in step with cart_items on every mutation, so badge and mini-cart reads need only this row
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount = 0;
+    
+    @Column(name = "total_quantity", nullable = false)
+    private Integer totalQuantity = 0;
+    
+    @Column(name = "total_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+    
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<CartItem> items;
     
@@ -76,6 +92,29 @@ public class Cart {
         this.expiresAt = LocalDateTime.now().plusDays(days);
     }
     
+    /**
+     * Recompute the stored totals from the loaded items; called after each change to the items
+     */
+    public void recalculateTotals() {
+        int count = 0;
+        int quantity = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        if (items != null) {
+            for (CartItem item : items) {
+                count++;
+                quantity += item.getQuantity();
+                amount = amount.add(item.getProductVariant().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+        }
+        setTotals(count, quantity, amount);
+    }
+    
+    public void setTotals(int itemCount, int totalQuantity, BigDecimal totalAmount) {
+        this.itemCount = itemCount;
+        this.totalQuantity = totalQuantity;
+        this.totalAmount = totalAmount;
+    }
+    
     /**
      * Check if cart is empty
      */
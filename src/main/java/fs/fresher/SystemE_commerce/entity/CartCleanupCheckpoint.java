@@ -0,0 +1,57 @@
+package fs.fresher.SystemE_commerce.entity;
+
+import fs.fresher.SystemE_commerce.enums.CartCleanupTask;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked cart cleanup run, one row per task.
+ * lastCartId is committed together with each chunk, so a run interrupted by a crash resumes after the last chunk
+ * with the cutoff it started with.
+ */
+@Entity
+@Table(name = "cart_cleanup_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartCleanupCheckpoint {
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30)
+    private CartCleanupTask task;
+    
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+    
+    @Column(name = "last_cart_id", nullable = false)
+    private Long lastCartId = 0L;
+    
+    @Column(nullable = false)
+    private Boolean completed = false;
+    
+    @Column(name = "deleted_carts", nullable = false)
+    private Long deletedCarts = 0L;
+    
+    @Column(name = "deleted_items", nullable = false)
+    private Long deletedItems = 0L;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,75 @@
+package fs.fresher.SystemE_commerce.entity;
+
+import fs.fresher.SystemE_commerce.enums.ImportJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress and checkpoint of a bulk catalog import.
+ * processedLines is committed together with each chunk, so a resumed job continues exactly after the last chunk.
+ */
+@Entity
+@Table(name = "catalog_import_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogImportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+    
+    @Column(name = "stored_path", nullable = false, length = 1000)
+    private String storedPath;
+    
+    @Column(nullable = false, length = 10)
+    private String format;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ImportJobStatus status = ImportJobStatus.PENDING;
+    
+    @Column(name = "processed_lines", nullable = false)
+    private Long processedLines = 0L;
+    
+    @Column(name = "imported_products", nullable = false)
+    private Long importedProducts = 0L;
+    
+    @Column(name = "imported_variants", nullable = false)
+    private Long importedVariants = 0L;
+    
+    @Column(name = "skipped_variants", nullable = false)
+    private Long skippedVariants = 0L;
+    
+    @Column(name = "error_count", nullable = false)
+    private Long errorCount = 0L;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -10,12 +10,15 @@ import java.util.List;
 
 @Entity
 @Table(name = "checkout_sessions")
+@EntityListeners(ExpiryTimerListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class CheckoutSession {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "checkout_sessions_id")
+    @TableGenerator(name = "checkout_sessions_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "checkout_sessions", allocationSize = 50)
     private Long id;
     
     @Column(name = "checkout_token", nullable = false, unique = true)
@@ -33,6 +36,10 @@ public class CheckoutSession {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
+    // Set once when the reservation is turned into a sale; a retried confirm sees it and does nothing
+    @Column(name = "confirmed_at")
+    private LocalDateTime confirmedAt;
+    
     @OneToMany(mappedBy = "checkoutSession", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<StockReservation> reservations;
     
@@ -0,0 +1,41 @@
+package fs.fresher.SystemE_commerce.entity;
+
+import fs.fresher.SystemE_commerce.service.ExpiryTimers;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the expiry timers in step with carts and checkout sessions as they are written.
+ * Runs at flush time, before commit: a timer left behind by a rolled-back write fires early and is
+ * ignored, because firing re-checks the row. Created by Spring through Hibernate's bean container.
+ */
+@RequiredArgsConstructor
+public class ExpiryTimerListener {
+
+    private final ExpiryTimers expiryTimers;
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Object entity) {
+        if (entity instanceof Cart cart) {
+            expiryTimers.scheduleCart(cart.getCartId(), cart.getExpiresAt());
+        } else if (entity instanceof CheckoutSession session) {
+            if (Boolean.TRUE.equals(session.getIsUsed())) {
+                expiryTimers.cancelSession(session.getCheckoutToken());
+            } else {
+                expiryTimers.scheduleSession(session.getCheckoutToken(), session.getExpiresAt());
+            }
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Cart cart) {
+            expiryTimers.cancelCart(cart.getCartId());
+        } else if (entity instanceof CheckoutSession session) {
+            expiryTimers.cancelSession(session.getCheckoutToken());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package fs.fresher.SystemE_commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stock movement recorded by the inventory ledger, written in the transaction that made it.
+ * Rows are applied to product_variants by the reconciler and then deleted; whatever is left after a crash is replayed.
+ */
+@Entity
+@Table(name = "inventory_journal", indexes = {
+        @Index(name = "idx_inventory_journal_variant_id", columnList = "variant_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "inventory_journal_id")
+    @TableGenerator(name = "inventory_journal_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "inventory_journal", allocationSize = 50)
+    private Long id;
+    
+    // Plain column rather than a relation: journal inserts must not touch the variant row
+    @Column(name = "variant_id", nullable = false)
+    private Long variantId;
+    
+    @Column(name = "reserved_delta", nullable = false)
+    private Integer reservedDelta;
+    
+    @Column(name = "stock_delta", nullable = false)
+    private Integer stockDelta;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    public InventoryJournalEntry(Long variantId, Integer reservedDelta, Integer stockDelta) {
+        this.variantId = variantId;
+        this.reservedDelta = reservedDelta;
+        this.stockDelta = stockDelta;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -15,7 +15,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class OrderStatusHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_status_history_id")
+    @TableGenerator(name = "order_status_history_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_status_history", allocationSize = 50)
     private Long id;
     
     @Enumerated(EnumType.STRING)
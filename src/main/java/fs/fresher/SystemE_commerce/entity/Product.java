@@ -10,7 +10,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_products_min_variant_price", columnList = "min_variant_price"),
+        @Index(name = "idx_products_max_variant_price", columnList = "max_variant_price"),
+        @Index(name = "idx_products_total_available_stock", columnList = "total_available_stock")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +45,19 @@ public class Product {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Aggregates over active variants, maintained by ProductAggregateRefresher shortly after each stock movement
+    @Column(name = "min_variant_price", precision = 10, scale = 2)
+    private BigDecimal minVariantPrice;
+    
+    @Column(name = "max_variant_price", precision = 10, scale = 2)
+    private BigDecimal maxVariantPrice;
+    
+    @Column(name = "active_variant_count")
+    private Integer activeVariantCount;
+    
+    @Column(name = "total_available_stock")
+    private Integer totalAvailableStock;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
@@ -10,6 +10,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "product_variants")
+@EntityListeners(StockBucketListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,6 +35,11 @@ public class ProductVariant {
     @Column(name = "reserved_quantity", nullable = false)
     private Integer reservedQuantity = 0;
     
+    // Units parked in variant_stock_buckets: counted in reservedQuantity, yet still free to sell.
+    // Filled in on load by StockBucketListener for split variants only
+    @Transient
+    private Integer bucketedStock = 0;
+    
     @Version
     private Long version; // For optimistic locking
     
@@ -51,7 +57,7 @@ public class ProductVariant {
     private Product product;
     
     public Integer getAvailableStock() {
-        return stockQuantity - reservedQuantity;
+        return stockQuantity - reservedQuantity + (bucketedStock != null ? bucketedStock : 0);
     }
     
     @PrePersist
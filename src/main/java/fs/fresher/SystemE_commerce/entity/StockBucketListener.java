@@ -0,0 +1,25 @@
+package fs.fresher.SystemE_commerce.entity;
+
+import fs.fresher.SystemE_commerce.service.StockBucketService;
+import jakarta.persistence.PostLoad;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Fills in the units parked in stock buckets when a split variant is loaded, so the bucket sum is only queried for
+ * the few hot variants that have buckets. Created by Spring through Hibernate's bean container; the service is
+ * looked up lazily because it depends on the repositories this listener is registered with.
+ */
+@RequiredArgsConstructor
+public class StockBucketListener {
+
+    private final ObjectProvider<StockBucketService> stockBucketService;
+
+    @PostLoad
+    public void onLoad(ProductVariant variant) {
+        StockBucketService buckets = stockBucketService.getIfAvailable();
+        if (buckets != null && buckets.isBucketed(variant.getId())) {
+            variant.setBucketedStock(buckets.getParkedUnits(variant.getId()));
+        }
+    }
+}
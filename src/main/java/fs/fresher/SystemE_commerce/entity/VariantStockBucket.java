@@ -0,0 +1,37 @@
+package fs.fresher.SystemE_commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One slice of a hot variant's available stock. Units in a bucket are carved out of the variant's free stock and
+ * counted in its reserved_quantity, so buyers of that SKU lock one of N bucket rows instead of the variant row.
+ * Written with set-based SQL by {@link fs.fresher.SystemE_commerce.service.StockBucketWriter}.
+ */
+@Entity
+@Table(name = "variant_stock_buckets", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_variant_stock_buckets_variant_bucket", columnNames = {"variant_id", "bucket_no"})
+})
+@Data
+@NoArgsConstructor
+public class VariantStockBucket {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Plain column rather than a relation: bucket updates must not touch the variant row
+    @Column(name = "variant_id", nullable = false)
+    private Long variantId;
+
+    @Column(name = "bucket_no", nullable = false)
+    private Integer bucketNo;
+
+    @Column(name = "available_quantity", nullable = false)
+    private Integer availableQuantity = 0;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,6 @@
+package fs.fresher.SystemE_commerce.enums;
+
+public enum CartCleanupTask {
+    EXPIRED,
+    EMPTY_INACTIVE
+}
@@ -0,0 +1,7 @@
+package fs.fresher.SystemE_commerce.enums;
+
+public enum CartOperationType {
+    ADD,
+    UPDATE,
+    REMOVE
+}
@@ -0,0 +1,8 @@
+package fs.fresher.SystemE_commerce.enums;
+
+public enum ImportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
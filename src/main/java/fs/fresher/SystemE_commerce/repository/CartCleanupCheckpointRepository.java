@@ -0,0 +1,10 @@
+package fs.fresher.SystemE_commerce.repository;
+
+import fs.fresher.SystemE_commerce.entity.CartCleanupCheckpoint;
+import fs.fresher.SystemE_commerce.enums.CartCleanupTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CartCleanupCheckpointRepository extends JpaRepository<CartCleanupCheckpoint, CartCleanupTask> {
+}
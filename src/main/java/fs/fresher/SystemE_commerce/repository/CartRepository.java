@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,12 +21,29 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.productVariant pv LEFT JOIN FETCH pv.product WHERE c.cartId = :cartId")
     Optional<Cart> findByCartIdWithItems(@Param("cartId") String cartId);
     
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.cartId IN :cartIds")
+    List<Cart> findAllByCartIdInWithItems(@Param("cartIds") Collection<String> cartIds);
+    
     @Query("SELECT c FROM Cart c WHERE c.expiresAt < :now")
     List<Cart> findExpiredCarts(@Param("now") LocalDateTime now);
     
     @Query("SELECT c FROM Cart c WHERE c.lastAccessedAt < :cutoffTime")
     List<Cart> findInactiveCarts(@Param("cutoffTime") LocalDateTime cutoffTime);
     
+    // [cartId, expiresAt] of carts expiring before the given time, for loading the expiry timers
+    @Query("SELECT c.cartId, c.expiresAt FROM Cart c WHERE c.expiresAt < :until")
+    List<Object[]> findExpirationsBefore(@Param("until") LocalDateTime until);
+    
+    @Query("SELECT COUNT(c) FROM Cart c WHERE c.expiresAt < :now")
+    long countExpiredCarts(@Param("now") LocalDateTime now);
+    
+    @Query("SELECT COUNT(c) FROM Cart c WHERE c.lastAccessedAt < :cutoffTime")
+    long countInactiveCarts(@Param("cutoffTime") LocalDateTime cutoffTime);
+    
+    // Uses the stored item count, so no join to cart_items
+    @Query("SELECT COUNT(c) FROM Cart c WHERE c.itemCount = 0")
+    long countEmptyCarts();
+    
     @Query("SELECT c FROM Cart c WHERE c.items IS EMPTY OR SIZE(c.items) = 0")
     List<Cart> findEmptyCarts();
     
@@ -0,0 +1,13 @@
+package fs.fresher.SystemE_commerce.repository;
+
+import fs.fresher.SystemE_commerce.entity.CatalogImportJob;
+import fs.fresher.SystemE_commerce.enums.ImportJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CatalogImportJobRepository extends JpaRepository<CatalogImportJob, Long> {
+    List<CatalogImportJob> findByStatus(ImportJobStatus status);
+}
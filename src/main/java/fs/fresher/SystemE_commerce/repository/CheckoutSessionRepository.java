@@ -2,7 +2,9 @@ package fs.fresher.SystemE_commerce.repository;
 
 import fs.fresher.SystemE_commerce.entity.CheckoutSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -16,6 +18,33 @@ public interface CheckoutSessionRepository extends JpaRepository<CheckoutSession
     @Query("SELECT cs FROM CheckoutSession cs WHERE cs.expiresAt < :now AND cs.isUsed = false")
     List<CheckoutSession> findExpiredSessions(LocalDateTime now);
     
+    // [checkoutToken, expiresAt] of every open session, for rebuilding the expiry timers
+    @Query("SELECT cs.checkoutToken, cs.expiresAt FROM CheckoutSession cs WHERE cs.isUsed = false")
+    List<Object[]> findOpenSessionExpirations();
+    
     @Query("SELECT cs FROM CheckoutSession cs WHERE cs.expiresAt > :now AND cs.isUsed = false")
     List<CheckoutSession> findActiveSessions(LocalDateTime now);
+    
+    /**
+     * Claim the session for confirmation: 1 for the first confirm of an open session, 0 when it was already
+     * confirmed or released
+     */
+    @Modifying
+    @Query("UPDATE CheckoutSession cs SET cs.confirmedAt = :now " +
+           "WHERE cs.id = :id AND cs.confirmedAt IS NULL AND cs.isUsed = false")
+    int markConfirmed(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /**
+     * Claim the session for release: 1 for the first release of an open session, 0 when it was already
+     * released or confirmed
+     */
+    @Modifying
+    @Query("UPDATE CheckoutSession cs SET cs.isUsed = true " +
+           "WHERE cs.id = :id AND cs.isUsed = false AND cs.confirmedAt IS NULL")
+    int markReleased(@Param("id") Long id);
+    
+    // Locking read, so it sees a confirmation committed after this transaction's snapshot was taken
+    @Query(value = "SELECT COUNT(*) FROM checkout_sessions WHERE id = :id AND confirmed_at IS NOT NULL FOR UPDATE",
+           nativeQuery = true)
+    long countConfirmedForUpdate(@Param("id") Long id);
 }
\ No newline at end of file
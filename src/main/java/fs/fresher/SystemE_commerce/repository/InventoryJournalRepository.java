@@ -0,0 +1,9 @@
+package fs.fresher.SystemE_commerce.repository;
+
+import fs.fresher.SystemE_commerce.entity.InventoryJournalEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryJournalRepository extends JpaRepository<InventoryJournalEntry, Long> {
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +24,21 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT o FROM Order o WHERE (:status IS NULL OR o.status = :status) ORDER BY o.createdAt DESC")
     Page<Order> findOrdersWithStatus(@Param("status") OrderStatus status, Pageable pageable);
     
+    /**
+     * Keyset variant of findOrdersWithStatus: seeks past (cursorCreatedAt, cursorId) without a COUNT query
+     */
+    @Query("SELECT o FROM Order o WHERE (:status IS NULL OR o.status = :status) " +
+           "AND (:cursorCreatedAt IS NULL OR o.createdAt < :cursorCreatedAt " +
+           "     OR (o.createdAt = :cursorCreatedAt AND o.id < :cursorId)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findOrdersWithStatusAfter(@Param("status") OrderStatus status,
+                                          @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable pageable);
+    
+    @Query("SELECT COUNT(o) FROM Order o WHERE (:status IS NULL OR o.status = :status)")
+    long countOrdersWithStatus(@Param("status") OrderStatus status);
+    
     @Query("SELECT o FROM Order o WHERE o.status IN :statuses ORDER BY o.createdAt DESC")
     Page<Order> findOrdersWithStatuses(@Param("statuses") List<OrderStatus> statuses, Pageable pageable);
 }
\ No newline at end of file
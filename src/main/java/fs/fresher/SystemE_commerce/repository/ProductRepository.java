@@ -9,11 +9,22 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     
+    /**
+     * Id, category id and name of the products with one of these names in one of these categories, oldest first.
+     * Names compare with the column collation, case-insensitively.
+     */
+    @Query("SELECT p.id, p.category.id, p.name FROM Product p " +
+           "WHERE p.category.id IN :categoryIds AND p.name IN :names ORDER BY p.id")
+    List<Object[]> findByCategoryAndName(@Param("categoryIds") Collection<Long> categoryIds,
+                                         @Param("names") Collection<String> names);
+    
     @Query("SELECT DISTINCT p FROM Product p " +
            "LEFT JOIN FETCH p.category " +
            "LEFT JOIN p.variants v " +
@@ -23,7 +34,8 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
            "AND (:maxPrice IS NULL OR p.basePrice <= :maxPrice OR v.price <= :maxPrice) " +
            "AND (:colors IS NULL OR v.color IN :colors) " +
            "AND (:sizes IS NULL OR v.size IN :sizes) " +
-           "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')))")
+           "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "AND (:inStock IS NULL OR p.totalAvailableStock > 0)")
     Page<Product> findProductsWithFilters(
             @Param("categoryIds") List<Long> categoryIds,
             @Param("minPrice") BigDecimal minPrice,
@@ -31,9 +43,90 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("colors") List<String> colors,
             @Param("sizes") List<String> sizes,
             @Param("search") String search,
+            @Param("inStock") Boolean inStock,
+            Pageable pageable
+    );
+    
+    /**
+     * Listing without color/size filters: price range and stock are checked against the denormalized
+     * product columns, so no variant join is needed. A product matches when its base price or its
+     * variant price range overlaps the requested range, same result as the row-level join.
+     */
+    @Query(value = "SELECT p FROM Product p " +
+           "LEFT JOIN FETCH p.category " +
+           "WHERE p.isActive = true " +
+           "AND (:categoryIds IS NULL OR p.category.id IN :categoryIds) " +
+           "AND (:minPrice IS NULL OR p.basePrice >= :minPrice OR p.maxVariantPrice >= :minPrice) " +
+           "AND (:maxPrice IS NULL OR p.basePrice <= :maxPrice OR p.minVariantPrice <= :maxPrice) " +
+           "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "AND (:inStock IS NULL OR p.totalAvailableStock > 0)",
+           countQuery = "SELECT COUNT(p) FROM Product p " +
+           "WHERE p.isActive = true " +
+           "AND (:categoryIds IS NULL OR p.category.id IN :categoryIds) " +
+           "AND (:minPrice IS NULL OR p.basePrice >= :minPrice OR p.maxVariantPrice >= :minPrice) " +
+           "AND (:maxPrice IS NULL OR p.basePrice <= :maxPrice OR p.minVariantPrice <= :maxPrice) " +
+           "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "AND (:inStock IS NULL OR p.totalAvailableStock > 0)")
+    Page<Product> findProductsWithProductLevelFilters(
+            @Param("categoryIds") List<Long> categoryIds,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("search") String search,
+            @Param("inStock") Boolean inStock,
             Pageable pageable
     );
     
+    /**
+     * Keyset variant of findProductsWithFilters: seeks past (cursorCreatedAt, cursorId) and runs no COUNT query.
+     * Pass null cursor values for the first page.
+     */
+    @Query("SELECT DISTINCT p FROM Product p " +
+           "LEFT JOIN FETCH p.category " +
+           "LEFT JOIN p.variants v " +
+           "WHERE p.isActive = true " +
+           "AND (:categoryIds IS NULL OR p.category.id IN :categoryIds) " +
+           "AND (:minPrice IS NULL OR p.basePrice >= :minPrice OR v.price >= :minPrice) " +
+           "AND (:maxPrice IS NULL OR p.basePrice <= :maxPrice OR v.price <= :maxPrice) " +
+           "AND (:colors IS NULL OR v.color IN :colors) " +
+           "AND (:sizes IS NULL OR v.size IN :sizes) " +
+           "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "AND (:inStock IS NULL OR p.totalAvailableStock > 0) " +
+           "AND (:cursorCreatedAt IS NULL OR p.createdAt < :cursorCreatedAt " +
+           "     OR (p.createdAt = :cursorCreatedAt AND p.id < :cursorId)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Product> findProductsWithFiltersAfter(
+            @Param("categoryIds") List<Long> categoryIds,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("colors") List<String> colors,
+            @Param("sizes") List<String> sizes,
+            @Param("search") String search,
+            @Param("inStock") Boolean inStock,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+    
+    @Query("SELECT COUNT(DISTINCT p) FROM Product p " +
+           "LEFT JOIN p.variants v " +
+           "WHERE p.isActive = true " +
+           "AND (:categoryIds IS NULL OR p.category.id IN :categoryIds) " +
+           "AND (:minPrice IS NULL OR p.basePrice >= :minPrice OR v.price >= :minPrice) " +
+           "AND (:maxPrice IS NULL OR p.basePrice <= :maxPrice OR v.price <= :maxPrice) " +
+           "AND (:colors IS NULL OR v.color IN :colors) " +
+           "AND (:sizes IS NULL OR v.size IN :sizes) " +
+           "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "AND (:inStock IS NULL OR p.totalAvailableStock > 0)")
+    long countProductsWithFilters(
+            @Param("categoryIds") List<Long> categoryIds,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("colors") List<String> colors,
+            @Param("sizes") List<String> sizes,
+            @Param("search") String search,
+            @Param("inStock") Boolean inStock
+    );
+    
     @Query("SELECT DISTINCT v.color FROM Product p " +
            "JOIN p.variants v " +
            "WHERE p.isActive = true AND v.isActive = true AND v.color IS NOT NULL " +
@@ -62,4 +155,13 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id = :id")
     java.util.Optional<Product> findByIdWithCategory(@Param("id") Long id);
+    
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.isActive = true")
+    List<Product> findAllActiveWithCategory();
+    
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllByIdWithCategory(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id FROM Product p WHERE p.updatedAt > :since")
+    List<Long> findIdsUpdatedSince(@Param("since") LocalDateTime since);
 }
\ No newline at end of file
@@ -3,11 +3,17 @@ package fs.fresher.SystemE_commerce.repository;
 import fs.fresher.SystemE_commerce.entity.ProductVariant;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,10 +21,113 @@ import java.util.Optional;
 public interface ProductVariantRepository extends JpaRepository<ProductVariant, Long> {
     List<ProductVariant> findByProductIdAndIsActiveTrue(Long productId);
     
+    /**
+     * Aggregate active variant count and price range for a whole page of products in one query
+     */
+    @Query("SELECT v.product.id AS productId, COUNT(v) AS variantCount, " +
+           "MIN(v.price) AS minPrice, MAX(v.price) AS maxPrice " +
+           "FROM ProductVariant v " +
+           "WHERE v.product.id IN :productIds AND v.isActive = true " +
+           "GROUP BY v.product.id")
+    List<VariantSummary> summarizeActiveVariantsByProductIds(@Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT pv FROM ProductVariant pv WHERE pv.isActive = true")
+    List<ProductVariant> findAllActive();
+    
+    @Query("SELECT pv FROM ProductVariant pv WHERE pv.product.id IN :productIds AND pv.isActive = true")
+    List<ProductVariant> findActiveByProductIds(@Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT DISTINCT pv.product.id FROM ProductVariant pv WHERE pv.updatedAt > :since")
+    List<Long> findProductIdsWithVariantsUpdatedSince(@Param("since") LocalDateTime since);
+    
+    @Query("SELECT pv FROM ProductVariant pv JOIN FETCH pv.product WHERE pv.id = :id")
+    Optional<ProductVariant> findByIdWithProduct(@Param("id") Long id);
+    
+    @Query("SELECT pv FROM ProductVariant pv JOIN FETCH pv.product WHERE pv.id IN :ids")
+    List<ProductVariant> findAllByIdWithProduct(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT pv.sku FROM ProductVariant pv WHERE pv.sku IN :skus")
+    List<String> findExistingSkus(@Param("skus") Collection<String> skus);
+    
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT pv FROM ProductVariant pv WHERE pv.id = :id")
     Optional<ProductVariant> findByIdWithLock(@Param("id") Long id);
-    
-    @Query("SELECT pv FROM ProductVariant pv WHERE pv.stockQuantity - pv.reservedQuantity >= :minStock AND pv.isActive = true")
+
+    /**
+     * Lock every given variant row in one statement, in ascending id order so overlapping carts queue instead of
+     * deadlocking. Returns [id, available] rows as scalars, so entities already loaded in the session are not reused stale.
+     */
+    @Query(value = "SELECT id, stock_quantity - reserved_quantity FROM product_variants " +
+           "WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockAvailableStock(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Reserve in one guarded statement: 1 when the units were available and are now reserved, 0 otherwise.
+     * The row lock is held only from this statement to commit, and the version bump makes stale entity saves fail.
+     */
+    @Modifying
+    @Query("UPDATE ProductVariant pv SET pv.reservedQuantity = pv.reservedQuantity + :quantity, " +
+           "pv.version = pv.version + 1, pv.updatedAt = :now " +
+           "WHERE pv.id = :id AND pv.stockQuantity - pv.reservedQuantity >= :quantity")
+    int reserveIfAvailable(@Param("id") Long id, @Param("quantity") Integer quantity, @Param("now") LocalDateTime now);
+
+    /**
+     * Give reserved units back in one statement, never going below zero; 0 when the variant does not exist
+     */
+    @Modifying
+    @Query("UPDATE ProductVariant pv SET pv.reservedQuantity = " +
+           "CASE WHEN pv.reservedQuantity > :quantity THEN pv.reservedQuantity - :quantity ELSE 0 END, " +
+           "pv.version = pv.version + 1, pv.updatedAt = :now " +
+           "WHERE pv.id = :id")
+    int releaseReserved(@Param("id") Long id, @Param("quantity") Integer quantity, @Param("now") LocalDateTime now);
+
+    @Query("SELECT pv FROM ProductVariant pv " +
+           "WHERE pv.stockQuantity - pv.reservedQuantity + COALESCE((SELECT SUM(b.availableQuantity) " +
+           "FROM VariantStockBucket b WHERE b.variantId = pv.id), 0) >= :minStock AND pv.isActive = true")
     List<ProductVariant> findAvailableVariants(@Param("minStock") Integer minStock);
+    
+    /**
+     * Recompute the denormalized variant aggregates on the products owning the given variants.
+     * Called by {@link fs.fresher.SystemE_commerce.service.ProductAggregateRefresher} in a short transaction of its
+     * own: at READ COMMITTED the variant subqueries are plain consistent reads, so only the product rows are locked.
+     * Units parked in stock buckets count as available.
+     */
+    @Modifying(flushAutomatically = true)
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Query(value = "UPDATE products p SET " +
+           "p.min_variant_price = (SELECT MIN(v.price) FROM product_variants v " +
+           "    WHERE v.product_id = p.id AND v.is_active = true), " +
+           "p.max_variant_price = (SELECT MAX(v.price) FROM product_variants v " +
+           "    WHERE v.product_id = p.id AND v.is_active = true), " +
+           "p.active_variant_count = (SELECT COUNT(*) FROM product_variants v " +
+           "    WHERE v.product_id = p.id AND v.is_active = true), " +
+           "p.total_available_stock = (SELECT COALESCE(SUM(GREATEST(v.stock_quantity - v.reserved_quantity " +
+           "    + COALESCE((SELECT SUM(b.available_quantity) FROM variant_stock_buckets b WHERE b.variant_id = v.id), 0), 0)), 0) " +
+           "    FROM product_variants v WHERE v.product_id = p.id AND v.is_active = true) " +
+           "WHERE p.id IN (SELECT pv.product_id FROM product_variants pv WHERE pv.id IN (:variantIds))",
+           nativeQuery = true)
+    int refreshProductAggregates(@Param("variantIds") Collection<Long> variantIds);
+    
+    /**
+     * Backfill of the denormalized variant aggregates for every product
+     */
+    @Modifying
+    @Query(value = "UPDATE products p SET " +
+           "p.min_variant_price = (SELECT MIN(v.price) FROM product_variants v " +
+           "    WHERE v.product_id = p.id AND v.is_active = true), " +
+           "p.max_variant_price = (SELECT MAX(v.price) FROM product_variants v " +
+           "    WHERE v.product_id = p.id AND v.is_active = true), " +
+           "p.active_variant_count = (SELECT COUNT(*) FROM product_variants v " +
+           "    WHERE v.product_id = p.id AND v.is_active = true), " +
+           "p.total_available_stock = (SELECT COALESCE(SUM(GREATEST(v.stock_quantity - v.reserved_quantity " +
+           "    + COALESCE((SELECT SUM(b.available_quantity) FROM variant_stock_buckets b WHERE b.variant_id = v.id), 0), 0)), 0) " +
+           "    FROM product_variants v WHERE v.product_id = p.id AND v.is_active = true) ", nativeQuery = true)
+    int refreshAllProductAggregates();
+    
+    interface VariantSummary {
+        Long getProductId();
+        Long getVariantCount();
+        BigDecimal getMinPrice();
+        BigDecimal getMaxPrice();
+    }
 }
\ No newline at end of file
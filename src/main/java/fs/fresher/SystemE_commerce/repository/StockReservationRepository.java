@@ -2,6 +2,8 @@ package fs.fresher.SystemE_commerce.repository;
 
 import fs.fresher.SystemE_commerce.entity.StockReservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,4 +11,9 @@ import java.util.List;
 @Repository
 public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
     List<StockReservation> findByCheckoutSessionId(Long checkoutSessionId);
+    
+    // [variantId, quantity] of a session, summed per variant
+    @Query("SELECT r.productVariant.id, SUM(r.quantity) FROM StockReservation r " +
+           "WHERE r.checkoutSession.id = :sessionId GROUP BY r.productVariant.id")
+    List<Object[]> sumQuantitiesBySession(@Param("sessionId") Long sessionId);
 }
\ No newline at end of file
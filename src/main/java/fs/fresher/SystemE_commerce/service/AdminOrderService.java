@@ -59,6 +59,42 @@ public class AdminOrderService {
         );
     }
     
+    /**
+     * Keyset (cursor) listing ordered by createdAt DESC, id DESC; counts only when includeTotal is set
+     */
+    public PagedResponse<AdminOrderListResponse> getOrdersByCursor(String apiKey, OrderStatus status,
+                                                                   String cursor, int size, boolean includeTotal) {
+        // Authentication
+        AdminUser admin = adminAuthService.authenticateByApiKey(apiKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.UNAUTHORIZED, "Invalid API key"));
+        
+        if (size < 1) {
+            throw new ValidationException("Page size must be at least 1");
+        }
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        List<Order> orders = orderRepository.findOrdersWithStatusAfter(
+                status,
+                pageCursor != null ? pageCursor.getCreatedAt() : null,
+                pageCursor != null ? pageCursor.getId() : null,
+                PageRequest.of(0, size + 1));
+        
+        boolean hasNext = orders.size() > size;
+        List<Order> pageOrders = hasNext ? orders.subList(0, size) : orders;
+        Order last = hasNext ? pageOrders.get(size - 1) : null;
+        
+        List<AdminOrderListResponse> content = pageOrders.stream()
+                .map(this::mapToAdminOrderListResponse)
+                .collect(Collectors.toList());
+        
+        return PagedResponse.keyset(
+                content,
+                size,
+                includeTotal ? orderRepository.countOrdersWithStatus(status) : null,
+                pageCursor == null,
+                last != null ? PageCursor.after(last.getCreatedAt(), last.getId()).encode() : null
+        );
+    }
+    
     public AdminOrderDetailResponse getOrderDetail(String apiKey, Long orderId) {
         // Authentication
         AdminUser admin = adminAuthService.authenticateByApiKey(apiKey)
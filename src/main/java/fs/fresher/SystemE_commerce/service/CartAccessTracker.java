@@ -0,0 +1,101 @@
+package fs.fresher.SystemE_commerce.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects cart accesses in memory and writes them as one batched UPDATE per interval, so viewing a cart costs no write.
+ * Repeated views of a cart within an interval collapse into one touch of last_accessed_at plus the latest session token.
+ * The Cart entity is never saved for an access, so updated_at stays the time of the last real change.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartAccessTracker {
+
+    // A null token keeps the stored one; GREATEST keeps a later touch from another instance
+    private static final String TOUCH_SQL = "UPDATE carts SET session_token = COALESCE(?, session_token), " +
+            "last_accessed_at = GREATEST(COALESCE(last_accessed_at, ?), ?) WHERE cart_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<String, Access> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Record an access; a null session token only touches the access time
+     */
+    public void recordAccess(String cartId, String sessionToken) {
+        if (cartId == null) {
+            return;
+        }
+        pending.merge(cartId, new Access(sessionToken, LocalDateTime.now()), Access::merge);
+    }
+
+    @Scheduled(fixedDelayString = "${cart.access-flush-interval-ms:30000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Access> drained = new LinkedHashMap<>();
+        for (String cartId : pending.keySet()) {
+            Access access = pending.remove(cartId);
+            if (access != null) {
+                drained.put(cartId, access);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(drained.size());
+        drained.forEach((cartId, access) -> {
+            Timestamp accessedAt = Timestamp.valueOf(access.accessedAt);
+            batch.add(new Object[]{access.sessionToken, accessedAt, accessedAt, cartId});
+        });
+        try {
+            jdbcTemplate.batchUpdate(TOUCH_SQL, batch);
+            log.debug("CART ACCESS: Flushed {} cart accesses", batch.size());
+        } catch (Exception e) {
+            // Merged back with any newer accesses and retried on the next cycle
+            drained.forEach((cartId, access) -> pending.merge(cartId, access, Access::merge));
+            log.error("CART ACCESS: Failed to flush {} cart accesses", batch.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    @AllArgsConstructor
+    private static class Access {
+        private final String sessionToken;
+        private final LocalDateTime accessedAt;
+
+        /**
+         * Keep the latest access time and the latest known session token
+         */
+        Access merge(Access other) {
+            Access later = other.accessedAt.isBefore(accessedAt) ? this : other;
+            Access earlier = later == this ? other : this;
+            return new Access(later.sessionToken != null ? later.sessionToken : earlier.sessionToken, later.accessedAt);
+        }
+    }
+}
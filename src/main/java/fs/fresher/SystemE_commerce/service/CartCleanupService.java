@@ -1,6 +1,7 @@
 package fs.fresher.SystemE_commerce.service;
 
-import fs.fresher.SystemE_commerce.entity.Cart;
+import fs.fresher.SystemE_commerce.entity.CartCleanupCheckpoint;
+import fs.fresher.SystemE_commerce.enums.CartCleanupTask;
 import fs.fresher.SystemE_commerce.repository.CartRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,7 +10,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -19,6 +20,7 @@ import java.util.HashMap;
 public class CartCleanupService {
     
     private final CartRepository cartRepository;
+    private final CartCleanupWriter cartCleanupWriter;
     
     @Value("${cart.ttl-days:7}")
     private int cartTtlDays;
@@ -26,114 +28,112 @@ public class CartCleanupService {
     @Value("${cart.inactive-threshold-days:3}")
     private int inactiveThresholdDays;
     
+    @Value("${cart.cleanup.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${cart.statistics.max-age-seconds:60}")
+    private long statisticsMaxAgeSeconds;
+    
+    private volatile Map<String, Object> cachedStatistics;
+    private volatile long cachedStatisticsAt;
+    
     /**
-     * Clean up expired carts
+     * Clean up expired carts, chunk by chunk
      */
-    @Transactional
     public Map<String, Object> cleanupExpiredCarts() {
-        log.info("CART CLEANUP: Starting expired carts cleanup");
-        
-        LocalDateTime now = LocalDateTime.now();
-        List<Cart> expiredCarts = cartRepository.findExpiredCarts(now);
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("expiredCartsFound", expiredCarts.size());
-        
-        if (expiredCarts.isEmpty()) {
-            log.debug("CART CLEANUP: No expired carts found");
-            result.put("deletedCarts", 0);
-            return result;
-        }
-        
-        int deletedCount = 0;
-        int errorCount = 0;
-        
-        for (Cart cart : expiredCarts) {
-            try {
-                log.debug("CART CLEANUP: Deleting expired cart: {} (expired at: {})", 
-                         cart.getCartId(), cart.getExpiresAt());
-                cartRepository.delete(cart);
-                deletedCount++;
-            } catch (Exception e) {
-                errorCount++;
-                log.error("CART CLEANUP: Failed to delete expired cart {}: {}", 
-                         cart.getCartId(), e.getMessage());
-            }
-        }
-        
-        result.put("deletedCarts", deletedCount);
-        result.put("errors", errorCount);
-        
-        log.info("CART CLEANUP: Expired carts cleanup completed - {} deleted, {} errors", 
-                deletedCount, errorCount);
-        
-        return result;
+        return runCleanup(CartCleanupTask.EXPIRED, LocalDateTime.now());
     }
     
     /**
-     * Clean up empty inactive carts
+     * Clean up empty inactive carts, chunk by chunk
      */
-    @Transactional
     public Map<String, Object> cleanupEmptyInactiveCarts() {
-        log.info("CART CLEANUP: Starting empty inactive carts cleanup");
-        
-        LocalDateTime cutoffTime = LocalDateTime.now().minusDays(inactiveThresholdDays);
-        List<Cart> emptyInactiveCarts = cartRepository.findEmptyInactiveCarts(cutoffTime);
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("emptyInactiveCartsFound", emptyInactiveCarts.size());
-        
-        if (emptyInactiveCarts.isEmpty()) {
-            log.debug("CART CLEANUP: No empty inactive carts found");
-            result.put("deletedCarts", 0);
-            return result;
+        return runCleanup(CartCleanupTask.EMPTY_INACTIVE, LocalDateTime.now().minusDays(inactiveThresholdDays));
+    }
+    
+    /**
+     * Delete matching carts in id order, one small transaction per chunk, so memory and lock time stay bounded.
+     * A failed or interrupted run leaves its checkpoint behind and the next run continues from there.
+     */
+    private Map<String, Object> runCleanup(CartCleanupTask task, LocalDateTime cutoff) {
+        CartCleanupCheckpoint checkpoint = cartCleanupWriter.startOrResume(task, cutoff);
+        long afterId = checkpoint.getLastCartId();
+        if (afterId > 0) {
+            log.info("CART CLEANUP: Resuming {} cleanup after cart id {} (cutoff {})", task, afterId, checkpoint.getCutoff());
+        } else {
+            log.info("CART CLEANUP: Starting {} cleanup (cutoff {})", task, checkpoint.getCutoff());
         }
         
-        int deletedCount = 0;
+        long started = System.currentTimeMillis();
+        int chunks = 0;
+        long deletedCarts = 0;
+        long deletedItems = 0;
         int errorCount = 0;
         
-        for (Cart cart : emptyInactiveCarts) {
+        while (true) {
+            long chunkStarted = System.currentTimeMillis();
+            CartCleanupWriter.ChunkResult chunk;
             try {
-                log.debug("CART CLEANUP: Deleting empty inactive cart: {} (last accessed: {})", 
-                         cart.getCartId(), cart.getLastAccessedAt());
-                cartRepository.delete(cart);
-                deletedCount++;
+                chunk = cartCleanupWriter.deleteChunk(task, checkpoint.getCutoff(), afterId, chunkSize);
             } catch (Exception e) {
                 errorCount++;
-                log.error("CART CLEANUP: Failed to delete empty inactive cart {}: {}", 
-                         cart.getCartId(), e.getMessage());
+                log.error("CART CLEANUP: {} cleanup failed after cart id {}, will resume there on the next run", 
+                        task, afterId, e);
+                break;
             }
+            if (chunk.isCompleted()) {
+                break;
+            }
+            chunks++;
+            deletedCarts += chunk.getDeletedCarts();
+            deletedItems += chunk.getDeletedItems();
+            afterId = chunk.getLastCartId();
+            log.debug("CART CLEANUP: {} chunk {} - {} carts, {} items deleted up to cart id {} in {} ms", 
+                    task, chunks, chunk.getDeletedCarts(), chunk.getDeletedItems(), afterId, 
+                    System.currentTimeMillis() - chunkStarted);
         }
         
-        result.put("deletedCarts", deletedCount);
+        Map<String, Object> result = new HashMap<>();
+        result.put("task", task.name());
+        result.put("chunks", chunks);
+        result.put("deletedCarts", deletedCarts);
+        result.put("deletedItems", deletedItems);
         result.put("errors", errorCount);
+        result.put("lastCartId", afterId);
+        result.put("durationMs", System.currentTimeMillis() - started);
         
-        log.info("CART CLEANUP: Empty inactive carts cleanup completed - {} deleted, {} errors", 
-                deletedCount, errorCount);
+        // Counts changed, the next statistics call reads them again
+        cachedStatistics = null;
+        
+        log.info("CART CLEANUP: {} cleanup finished - {} carts and {} items deleted in {} chunks, {} errors", 
+                task, deletedCarts, deletedItems, chunks, errorCount);
         
         return result;
     }
     
     /**
-     * Get cart statistics for monitoring
+     * Get cart statistics for monitoring. Each figure is one COUNT on an indexed column, and the result is reused
+     * for statisticsMaxAgeSeconds so frequent health checks do not hit the database every time.
      */
     public Map<String, Object> getCartStatistics() {
+        Map<String, Object> cached = cachedStatistics;
+        if (cached != null && System.currentTimeMillis() - cachedStatisticsAt < statisticsMaxAgeSeconds * 1000) {
+            return cached;
+        }
+        
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime inactiveCutoff = now.minusDays(inactiveThresholdDays);
         
-        List<Cart> expiredCarts = cartRepository.findExpiredCarts(now);
-        List<Cart> inactiveCarts = cartRepository.findInactiveCarts(inactiveCutoff);
-        List<Cart> emptyCarts = cartRepository.findEmptyCarts();
-        long totalCarts = cartRepository.count();
-        
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalCarts", totalCarts);
-        stats.put("expiredCarts", expiredCarts.size());
-        stats.put("inactiveCarts", inactiveCarts.size());
-        stats.put("emptyCarts", emptyCarts.size());
+        stats.put("totalCarts", cartRepository.count());
+        stats.put("expiredCarts", cartRepository.countExpiredCarts(now));
+        stats.put("inactiveCarts", cartRepository.countInactiveCarts(inactiveCutoff));
+        stats.put("emptyCarts", cartRepository.countEmptyCarts());
         stats.put("timestamp", now);
         
-        return stats;
+        cachedStatistics = Collections.unmodifiableMap(stats);
+        cachedStatisticsAt = System.currentTimeMillis();
+        return cachedStatistics;
     }
     
     /**
@@ -0,0 +1,106 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.CartCleanupCheckpoint;
+import fs.fresher.SystemE_commerce.enums.CartCleanupTask;
+import fs.fresher.SystemE_commerce.repository.CartCleanupCheckpointRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deletes one chunk of carts per transaction with set-based statements instead of loading entities.
+ * A chunk is the next chunkSize matching cart ids above the checkpoint, locked FOR UPDATE so a cart that is
+ * changed concurrently is either deleted with its items or left alone. The checkpoint advances in the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class CartCleanupWriter {
+
+    static final String SELECT_EXPIRED_SQL =
+            "SELECT id FROM carts WHERE id > ? AND expires_at < ? ORDER BY id LIMIT ? FOR UPDATE";
+
+    static final String SELECT_EMPTY_INACTIVE_SQL =
+            "SELECT c.id FROM carts c WHERE c.id > ? AND c.last_accessed_at < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id) ORDER BY c.id LIMIT ? FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CartCleanupCheckpointRepository checkpointRepository;
+
+    /**
+     * Continue an unfinished run of the task, or start a new one with the given cutoff
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public CartCleanupCheckpoint startOrResume(CartCleanupTask task, LocalDateTime cutoff) {
+        CartCleanupCheckpoint checkpoint = checkpointRepository.findById(task).orElse(null);
+        if (checkpoint != null && !checkpoint.getCompleted()) {
+            return checkpoint;
+        }
+        if (checkpoint == null) {
+            checkpoint = new CartCleanupCheckpoint();
+            checkpoint.setTask(task);
+        }
+        checkpoint.setCutoff(cutoff);
+        checkpoint.setLastCartId(0L);
+        checkpoint.setCompleted(false);
+        checkpoint.setDeletedCarts(0L);
+        checkpoint.setDeletedItems(0L);
+        checkpoint.setStartedAt(LocalDateTime.now());
+        return checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Delete the next chunk after afterId and record it in the checkpoint; an empty chunk completes the run
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public ChunkResult deleteChunk(CartCleanupTask task, LocalDateTime cutoff, long afterId, int chunkSize) {
+        List<Long> cartIds = jdbcTemplate.queryForList(
+                task == CartCleanupTask.EXPIRED ? SELECT_EXPIRED_SQL : SELECT_EMPTY_INACTIVE_SQL,
+                Long.class, afterId, Timestamp.valueOf(cutoff), chunkSize);
+
+        CartCleanupCheckpoint checkpoint = checkpointRepository.findById(task)
+                .orElseThrow(() -> new IllegalStateException("No cleanup checkpoint for " + task));
+        if (cartIds.isEmpty()) {
+            checkpoint.setCompleted(true);
+            checkpointRepository.save(checkpoint);
+            return new ChunkResult(afterId, 0, 0, true);
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(cartIds.size(), "?"));
+        Object[] ids = cartIds.toArray();
+        int items = 0;
+        int carts;
+        if (task == CartCleanupTask.EXPIRED) {
+            items = jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id IN (" + placeholders + ")", ids);
+            carts = jdbcTemplate.update("DELETE FROM carts WHERE id IN (" + placeholders + ")", ids);
+        } else {
+            // The NOT EXISTS above was a snapshot read; re-checked here so an item added just before the lock keeps its cart
+            carts = jdbcTemplate.update("DELETE FROM carts WHERE id IN (" + placeholders + ") " +
+                    "AND NOT EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = carts.id)", ids);
+        }
+
+        long lastCartId = cartIds.get(cartIds.size() - 1);
+        checkpoint.setLastCartId(lastCartId);
+        checkpoint.setDeletedCarts(checkpoint.getDeletedCarts() + carts);
+        checkpoint.setDeletedItems(checkpoint.getDeletedItems() + items);
+        checkpointRepository.save(checkpoint);
+        return new ChunkResult(lastCartId, carts, items, false);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ChunkResult {
+        private final long lastCartId;
+        private final int deletedCarts;
+        private final int deletedItems;
+        private final boolean completed;
+    }
+}
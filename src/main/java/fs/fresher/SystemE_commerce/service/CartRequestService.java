@@ -1,8 +1,10 @@
 package fs.fresher.SystemE_commerce.service;
 
 import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.request.CartBatchRequest;
 import fs.fresher.SystemE_commerce.dto.request.UpdateCartItemRequest;
 import fs.fresher.SystemE_commerce.dto.response.CartResponse;
+import fs.fresher.SystemE_commerce.dto.response.CartSummaryResponse;
 import fs.fresher.SystemE_commerce.validator.ValidationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -48,6 +50,14 @@ public class CartRequestService {
         }
     }
     
+    /**
+     * Handle cart summary request; read-only, never creates a cart
+     */
+    public CartSummaryResponse handleGetCartSummary(String requestCartId, String cookieCartId) {
+        String finalCartId = resolveCartId(requestCartId, cookieCartId, false);
+        return cartService.getCartSummary(finalCartId);
+    }
+    
     /**
      * Handle add item to cart request with session support
      */
@@ -61,6 +71,19 @@ public class CartRequestService {
         return cartService.addItemToCart(finalCartId, request, sessionToken);
     }
     
+    /**
+     * Handle batch cart mutation request with session support
+     */
+    public CartResponse handleBatchUpdate(String requestCartId, String cookieCartId, CartBatchRequest request, String sessionToken) {
+        validationService.validateCartBatchRequest(request);
+        
+        String finalCartId = resolveCartId(requestCartId, cookieCartId, false);
+        log.info("Applying {} operations to cart {}, session={}", 
+                request.getOperations().size(), finalCartId, sessionToken);
+        
+        return cartService.applyBatch(finalCartId, request, sessionToken);
+    }
+    
     /**
      * Handle update cart item request with session support
      */
@@ -1,11 +1,14 @@
 package fs.fresher.SystemE_commerce.service;
 
 import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.request.CartBatchRequest;
 import fs.fresher.SystemE_commerce.dto.request.UpdateCartItemRequest;
 import fs.fresher.SystemE_commerce.dto.response.CartResponse;
+import fs.fresher.SystemE_commerce.dto.response.CartSummaryResponse;
 import fs.fresher.SystemE_commerce.entity.Cart;
 import fs.fresher.SystemE_commerce.entity.CartItem;
 import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.enums.CartOperationType;
 import fs.fresher.SystemE_commerce.repository.CartItemRepository;
 import fs.fresher.SystemE_commerce.repository.CartRepository;
 import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
@@ -15,9 +18,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,11 +38,23 @@ public class CartService {
     private final ProductVariantRepository productVariantRepository;
     private final InventoryReservationService inventoryReservationService;
     private final CartCleanupService cartCleanupService;
+    private final HotCartStore hotCartStore;
+    private final CartAccessTracker cartAccessTracker;
     
     @Value("${cart.ttl-days:7}")
     private int cartTtlDays;
     
     public CartResponse getCart(String cartId) {
+        if (hotCartStore.isEnabled()) {
+            HotCartStore.CartView view = hotCartStore.withCart(cartId, null, true, cart -> {
+                if (cart.isExpired()) {
+                    throw new RuntimeException("Cart has expired");
+                }
+                return cart.view();
+            });
+            return mapToCartResponse(view);
+        }
+        
         Cart cart = getOrCreateCart(cartId, null);
         // Check if cart is expired
         if (cart.isExpired()) {
@@ -47,63 +67,99 @@ public class CartService {
         return mapToCartResponse(cart);
     }
     
+    /**
+     * Badge and mini-cart view: answered from the hot copy priced by its variant rows, or from the cart row alone;
+     * cart items are never loaded. Unknown and expired carts read as empty and are not created.
+     */
+    @Transactional(readOnly = true)
+    public CartSummaryResponse getCartSummary(String cartId) {
+        if (cartId == null) {
+            return emptySummary(null);
+        }
+        if (hotCartStore.isEnabled()) {
+            HotCartStore.CartView view = hotCartStore.ifPresent(cartId, HotCartStore.HotCart::view);
+            if (view != null) {
+                if (view.isExpired()) {
+                    return emptySummary(cartId);
+                }
+                CartResponse cart = mapToCartResponse(view);
+                return new CartSummaryResponse(cart.getCartId(), cart.getItems().size(),
+                        cart.getTotalItems(), cart.getTotalAmount(), cart.getUpdatedAt());
+            }
+        }
+        
+        return cartRepository.findByCartId(cartId)
+                .filter(cart -> !cart.isExpired())
+                .map(cart -> new CartSummaryResponse(cart.getCartId(), cart.getItemCount(),
+                        cart.getTotalQuantity(), cart.getTotalAmount(), cart.getUpdatedAt()))
+                .orElseGet(() -> emptySummary(cartId));
+    }
+    
     public CartResponse addItemToCart(String cartId, AddCartItemRequest request) {
         return addItemToCart(cartId, request, null);
     }
     
+    /**
+     * Loads the cart with its items and variants in one query, applies the change in memory and lets the flush
+     * write it: one INSERT or UPDATE for the item plus the cart expiry. The response is built from that state.
+     * Only a SKU not yet in the cart costs one more read for its variant.
+     */
     public CartResponse addItemToCart(String cartId, AddCartItemRequest request, String sessionToken) {
-        Cart cart = getOrCreateCart(cartId, sessionToken);
+        if (hotCartStore.isEnabled()) {
+            return addItemToHotCart(cartId, request, sessionToken);
+        }
+        
+        Cart cart = getOrCreateCartWithItems(cartId, sessionToken);
         
         // Check if cart is expired
         if (cart.isExpired()) {
             throw new RuntimeException("Cart has expired");
         }
         
-        ProductVariant variant = productVariantRepository.findById(request.getSkuId())
-                .orElseThrow(() -> new RuntimeException("Product variant not found"));
+        CartItem existingItem = cart.getItems().stream()
+                .filter(item -> item.getProductVariant().getId().equals(request.getSkuId()))
+                .findFirst()
+                .orElse(null);
+        ProductVariant variant = existingItem != null
+                ? existingItem.getProductVariant()
+                : productVariantRepository.findByIdWithProduct(request.getSkuId())
+                        .orElseThrow(() -> new RuntimeException("Product variant not found"));
         
-        // Check available stock using inventory service
-        int availableStock = inventoryReservationService.getAvailableStock(request.getSkuId());
+        // Stock comes from the variant row already loaded, not from another lookup
+        int availableStock = Math.max(0, variant.getAvailableStock());
         if (availableStock < request.getQuantity()) {
             throw new RuntimeException("Insufficient stock. Available: " + availableStock);
         }
         
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cartItemRepository.findByCartIdAndProductVariantId(
-                cart.getId(), request.getSkuId());
-        
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            int newQuantity = item.getQuantity() + request.getQuantity();
-            int currentAvailableStock = inventoryReservationService.getAvailableStock(request.getSkuId());
-            
-            if (currentAvailableStock < newQuantity) {
-                throw new RuntimeException("Insufficient stock. Available: " + currentAvailableStock + 
-                        ", Current in cart: " + item.getQuantity());
+        if (existingItem != null) {
+            int newQuantity = existingItem.getQuantity() + request.getQuantity();
+            if (availableStock < newQuantity) {
+                throw new RuntimeException("Insufficient stock. Available: " + availableStock + 
+                        ", Current in cart: " + existingItem.getQuantity());
             }
-            
-            item.setQuantity(newQuantity);
-            cartItemRepository.save(item);
+            // Managed entity, dirty checking writes the UPDATE at flush
+            existingItem.setQuantity(newQuantity);
         } else {
             CartItem newItem = new CartItem();
             newItem.setCart(cart);
             newItem.setProductVariant(variant);
             newItem.setQuantity(request.getQuantity());
+            cart.getItems().add(newItem);
             cartItemRepository.save(newItem);
         }
         
         // Extend cart expiration when items are added
         cart.extendExpiration(cartTtlDays);
-        cartRepository.save(cart);
-        
-        // Refresh cart to get updated items
-        cart = cartRepository.findByCartIdWithItems(cart.getCartId())
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        cart.recalculateTotals();
         
         return mapToCartResponse(cart);
     }
     
     public CartResponse updateCartItem(String cartId, Long skuId, UpdateCartItemRequest request) {
+        if (hotCartStore.isEnabled()) {
+            return updateHotCartItem(cartId, skuId, request);
+        }
+        
         Cart cart = cartRepository.findByCartId(cartId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
         
@@ -123,11 +179,95 @@ public class CartService {
         // Refresh cart to get updated items
         cart = cartRepository.findByCartIdWithItems(cartId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
+        cart.recalculateTotals();
+        
+        return mapToCartResponse(cart);
+    }
+    
+    /**
+     * Applies the operations in order, all or nothing. Every added or updated variant is read in one query
+     * and stock is checked against the final quantity of each SKU before anything in the cart changes.
+     */
+    public CartResponse applyBatch(String cartId, CartBatchRequest request, String sessionToken) {
+        Map<Long, ProductVariant> variants = loadBatchVariants(request.getOperations());
+        boolean hasAdd = request.getOperations().stream()
+                .anyMatch(operation -> operation.getType() == CartOperationType.ADD);
+        
+        if (hotCartStore.isEnabled()) {
+            HotCartStore.CartView view = hotCartStore.withCart(cartId, sessionToken, true, cart -> {
+                if (cart.isExpired()) {
+                    throw new RuntimeException("Cart has expired");
+                }
+                Map<Long, Integer> current = new LinkedHashMap<>(cart.getQuantities());
+                Map<Long, Integer> quantities = applyOperations(current, request.getOperations(), variants);
+                
+                for (Long variantId : current.keySet()) {
+                    if (!quantities.containsKey(variantId)) {
+                        cart.remove(variantId);
+                    }
+                }
+                quantities.forEach((variantId, quantity) -> {
+                    if (!quantity.equals(current.get(variantId))) {
+                        cart.setQuantity(variantId, quantity);
+                    }
+                });
+                if (hasAdd) {
+                    cart.extendExpiration(cartTtlDays);
+                }
+                return cart.view();
+            });
+            return mapToCartResponse(view);
+        }
+        
+        Cart cart = getOrCreateCartWithItems(cartId, sessionToken);
+        if (cart.isExpired()) {
+            throw new RuntimeException("Cart has expired");
+        }
+        Map<Long, Integer> current = new LinkedHashMap<>();
+        cart.getItems().forEach(item -> current.put(item.getProductVariant().getId(), item.getQuantity()));
+        Map<Long, Integer> quantities = applyOperations(current, request.getOperations(), variants);
+        
+        Iterator<CartItem> iterator = cart.getItems().iterator();
+        while (iterator.hasNext()) {
+            CartItem item = iterator.next();
+            Integer quantity = quantities.get(item.getProductVariant().getId());
+            if (quantity == null) {
+                iterator.remove();
+                cartItemRepository.delete(item);
+            } else if (!quantity.equals(item.getQuantity())) {
+                item.setQuantity(quantity);
+            }
+        }
+        quantities.forEach((variantId, quantity) -> {
+            if (!current.containsKey(variantId)) {
+                CartItem newItem = new CartItem();
+                newItem.setCart(cart);
+                newItem.setProductVariant(variants.get(variantId));
+                newItem.setQuantity(quantity);
+                cart.getItems().add(newItem);
+                cartItemRepository.save(newItem);
+            }
+        });
+        if (hasAdd) {
+            cart.extendExpiration(cartTtlDays);
+        }
+        cart.recalculateTotals();
         
         return mapToCartResponse(cart);
     }
     
     public CartResponse removeItemFromCart(String cartId, Long skuId) {
+        if (hotCartStore.isEnabled()) {
+            HotCartStore.CartView view = hotCartStore.withCart(cartId, null, false, cart -> {
+                if (cart == null) {
+                    throw new RuntimeException("Cart not found");
+                }
+                cart.remove(skuId);
+                return cart.view();
+            });
+            return mapToCartResponse(view);
+        }
+        
         Cart cart = cartRepository.findByCartId(cartId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
         
@@ -136,15 +276,28 @@ public class CartService {
         // Refresh cart to get updated items
         cart = cartRepository.findByCartIdWithItems(cartId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
+        cart.recalculateTotals();
         
         return mapToCartResponse(cart);
     }
     
     public void clearCart(String cartId) {
+        if (hotCartStore.isEnabled()) {
+            hotCartStore.withCart(cartId, null, false, cart -> {
+                if (cart == null) {
+                    throw new RuntimeException("Cart not found");
+                }
+                cart.clear();
+                return null;
+            });
+            return;
+        }
+        
         Cart cart = cartRepository.findByCartId(cartId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
         
         cartItemRepository.deleteAll(cart.getItems());
+        cart.setTotals(0, 0, BigDecimal.ZERO);
     }
     
     private Cart getOrCreateCart(String cartId, String sessionToken) {
@@ -158,15 +311,42 @@ public class CartService {
                 });
     }
     
+    private Cart getOrCreateCartWithItems(String cartId, String sessionToken) {
+        Cart cart = cartId != null ? cartRepository.findByCartIdWithItems(cartId).orElse(null) : null;
+        if (cart == null) {
+            cart = new Cart();
+            cart.setCartId(cartId != null ? cartId : UUID.randomUUID().toString());
+            cart.setSessionToken(sessionToken);
+            cart.extendExpiration(cartTtlDays);
+            cart.setItems(new ArrayList<>());
+            cart = cartRepository.save(cart);
+        }
+        if (cart.getItems() == null) {
+            cart.setItems(new ArrayList<>());
+        }
+        return cart;
+    }
+    
     // Backward compatibility
     private Cart getOrCreateCart(String cartId) {
         return getOrCreateCart(cartId, null);
     }
     
     /**
-     * Clean up expired cart for this cartId if exists
+     * Clean up expired cart for this cartId if exists. A live hot copy wins over the row: its expiry may have been
+     * extended since the last flush, so it is written instead of deleted.
      */
     public void cleanupExpiredCart(String cartId) {
+        if (hotCartStore.isEnabled()) {
+            Boolean hotExpired = hotCartStore.ifPresent(cartId, HotCartStore.HotCart::isExpired);
+            if (Boolean.FALSE.equals(hotExpired)) {
+                hotCartStore.flush(cartId);
+                return;
+            }
+            if (Boolean.TRUE.equals(hotExpired)) {
+                hotCartStore.evict(cartId);
+            }
+        }
         cartRepository.findByCartId(cartId).ifPresent(cart -> {
             if (cart.isExpired()) {
                 cartRepository.delete(cart);
@@ -175,14 +355,182 @@ public class CartService {
     }
     
     /**
-     * Associate cart with session token
+     * Associate cart with session token; recorded as an access, written in the tracker's next batch
      */
-    @Transactional
     public void associateCartWithSession(String cartId, String sessionToken) {
-        cartRepository.findByCartId(cartId).ifPresent(cart -> {
-            cart.setSessionToken(sessionToken);
-            cartRepository.save(cart);
+        if (hotCartStore.isEnabled()) {
+            // The hot copy only turns dirty when the token differs; the tracker just touches the access time
+            hotCartStore.withCart(cartId, null, false, cart -> {
+                if (cart != null) {
+                    cart.setSessionToken(sessionToken);
+                }
+                return null;
+            });
+            cartAccessTracker.recordAccess(cartId, null);
+            return;
+        }
+        
+        // No read and no save here: the tracker writes token and access time in its next batch
+        cartAccessTracker.recordAccess(cartId, sessionToken);
+    }
+    
+    /**
+     * Hot store path: reads the variant row for the stock check, the cart change itself is written behind
+     */
+    private CartResponse addItemToHotCart(String cartId, AddCartItemRequest request, String sessionToken) {
+        ProductVariant variant = productVariantRepository.findByIdWithProduct(request.getSkuId())
+                .orElseThrow(() -> new RuntimeException("Product variant not found"));
+        int availableStock = Math.max(0, variant.getAvailableStock());
+        
+        HotCartStore.CartView view = hotCartStore.withCart(cartId, sessionToken, true, cart -> {
+            if (cart.isExpired()) {
+                throw new RuntimeException("Cart has expired");
+            }
+            if (availableStock < request.getQuantity()) {
+                throw new RuntimeException("Insufficient stock. Available: " + availableStock);
+            }
+            
+            Integer existing = cart.getQuantity(variant.getId());
+            int newQuantity = request.getQuantity() + (existing != null ? existing : 0);
+            if (existing != null && availableStock < newQuantity) {
+                throw new RuntimeException("Insufficient stock. Available: " + availableStock + 
+                        ", Current in cart: " + existing);
+            }
+            
+            cart.setQuantity(variant.getId(), newQuantity);
+            cart.extendExpiration(cartTtlDays);
+            return cart.view();
+        });
+        return mapToCartResponse(view);
+    }
+    
+    private CartResponse updateHotCartItem(String cartId, Long skuId, UpdateCartItemRequest request) {
+        boolean inCart = hotCartStore.withCart(cartId, null, false, cart -> {
+            if (cart == null) {
+                throw new RuntimeException("Cart not found");
+            }
+            return cart.getQuantity(skuId) != null;
+        });
+        if (!inCart) {
+            throw new RuntimeException("Item not found in cart");
+        }
+        
+        ProductVariant variant = productVariantRepository.findByIdWithProduct(skuId)
+                .orElseThrow(() -> new RuntimeException("Product variant not found"));
+        int availableStock = Math.max(0, variant.getAvailableStock());
+        if (availableStock < request.getQuantity()) {
+            throw new RuntimeException("Insufficient stock. Available: " + availableStock);
+        }
+        
+        HotCartStore.CartView view = hotCartStore.withCart(cartId, null, false, cart -> {
+            if (cart == null || cart.getQuantity(skuId) == null) {
+                throw new RuntimeException("Item not found in cart");
+            }
+            cart.setQuantity(skuId, request.getQuantity());
+            return cart.view();
         });
+        return mapToCartResponse(view);
+    }
+    
+    /**
+     * One query for the variants of every ADD and UPDATE operation
+     */
+    private Map<Long, ProductVariant> loadBatchVariants(List<CartBatchRequest.Operation> operations) {
+        Set<Long> variantIds = operations.stream()
+                .filter(operation -> operation.getType() != CartOperationType.REMOVE)
+                .map(CartBatchRequest.Operation::getSkuId)
+                .collect(Collectors.toSet());
+        if (variantIds.isEmpty()) {
+            return Map.of();
+        }
+        
+        Map<Long, ProductVariant> variants = productVariantRepository.findAllByIdWithProduct(variantIds).stream()
+                .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+        if (variants.size() < variantIds.size()) {
+            throw new RuntimeException("Product variant not found");
+        }
+        return variants;
+    }
+    
+    /**
+     * Replays the operations on a copy of the cart quantities and checks the final quantity of every touched SKU
+     */
+    private Map<Long, Integer> applyOperations(Map<Long, Integer> current, List<CartBatchRequest.Operation> operations,
+                                               Map<Long, ProductVariant> variants) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>(current);
+        for (CartBatchRequest.Operation operation : operations) {
+            Long skuId = operation.getSkuId();
+            switch (operation.getType()) {
+                case ADD -> quantities.merge(skuId, operation.getQuantity(), Integer::sum);
+                case UPDATE -> {
+                    if (!quantities.containsKey(skuId)) {
+                        throw new RuntimeException("Item not found in cart");
+                    }
+                    quantities.put(skuId, operation.getQuantity());
+                }
+                case REMOVE -> quantities.remove(skuId);
+            }
+        }
+        
+        for (ProductVariant variant : variants.values()) {
+            Integer quantity = quantities.get(variant.getId());
+            int availableStock = Math.max(0, variant.getAvailableStock());
+            if (quantity != null && availableStock < quantity) {
+                throw new RuntimeException("Insufficient stock for SKU " + variant.getSku() + 
+                        ". Available: " + availableStock);
+            }
+        }
+        return quantities;
+    }
+    
+    private CartSummaryResponse emptySummary(String cartId) {
+        return new CartSummaryResponse(cartId, 0, 0, BigDecimal.ZERO, null);
+    }
+    
+    /**
+     * Prices and stock are read from the variant rows now, not remembered from when each line last changed;
+     * lines whose variant no longer exists are left out
+     */
+    private CartResponse mapToCartResponse(HotCartStore.CartView cart) {
+        Map<Long, ProductVariant> variants = cart.getQuantities().isEmpty()
+                ? Map.of()
+                : productVariantRepository.findAllByIdWithProduct(cart.getQuantities().keySet()).stream()
+                        .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+        
+        List<CartResponse.CartItemResponse> itemResponses = new ArrayList<>();
+        cart.getQuantities().forEach((variantId, quantity) -> {
+            ProductVariant variant = variants.get(variantId);
+            if (variant == null) {
+                return;
+            }
+            itemResponses.add(new CartResponse.CartItemResponse(
+                    variant.getId(),
+                    variant.getSku(),
+                    variant.getProduct() != null ? variant.getProduct().getName() : null,
+                    variant.getSize(),
+                    variant.getColor(),
+                    variant.getPrice(),
+                    quantity,
+                    variant.getPrice().multiply(BigDecimal.valueOf(quantity)),
+                    Math.max(0, variant.getAvailableStock())
+            ));
+        });
+        
+        BigDecimal totalAmount = itemResponses.stream()
+                .map(CartResponse.CartItemResponse::getSubtotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        
+        Integer totalItems = itemResponses.stream()
+                .mapToInt(CartResponse.CartItemResponse::getQuantity)
+                .sum();
+        
+        return new CartResponse(
+                cart.getCartId(),
+                itemResponses,
+                totalAmount,
+                totalItems,
+                cart.getUpdatedAt()
+        );
     }
     
     private CartResponse mapToCartResponse(Cart cart) {
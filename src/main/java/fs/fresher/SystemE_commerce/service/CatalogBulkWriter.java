@@ -0,0 +1,332 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.CatalogImportRecord;
+import fs.fresher.SystemE_commerce.entity.CatalogImportJob;
+import fs.fresher.SystemE_commerce.exception.ErrorCode;
+import fs.fresher.SystemE_commerce.exception.ResourceNotFoundException;
+import fs.fresher.SystemE_commerce.repository.CatalogImportJobRepository;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Writes one chunk of imported products with JDBC batch inserts.
+ * Entities use IDENTITY keys, which rules out Hibernate insert batching, so the chunk goes through
+ * plain JDBC batches (rewritten to multi-row INSERTs by the driver) and reads the generated keys back.
+ * The job checkpoint is updated in the same transaction, so a chunk is either fully imported and counted or not at all.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogBulkWriter {
+
+    // Bounds the IN lists of the duplicate SKU and product lookups
+    static final int SKU_LOOKUP_BATCH = 1000;
+
+    static final String INSERT_CATEGORY_SQL =
+            "INSERT INTO categories (name, created_at, updated_at) VALUES (?, ?, ?)";
+
+    static final String INSERT_PRODUCT_SQL =
+            "INSERT INTO products (name, description, base_price, image_url, is_active, category_id, " +
+            "min_variant_price, max_variant_price, active_variant_count, total_available_stock, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, true, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String INSERT_VARIANT_SQL =
+            "INSERT INTO product_variants (sku, size, color, price, stock_quantity, reserved_quantity, version, " +
+            "is_active, product_id, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, 0, 0, true, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final CatalogImportJobRepository catalogImportJobRepository;
+    private final ProductAggregateRefresher productAggregateRefresher;
+
+    /**
+     * Insert the chunk and advance the job checkpoint by the lines it covered.
+     * categoryIds must be keyed case-insensitively, like the unique index on category names.
+     * Variants whose SKU already exists (in the database or earlier in the chunk) are skipped;
+     * a product left without any of its variants is skipped with them.
+     * A product is identified by category and name: records of a product that already exists, or that appeared
+     * earlier in the chunk, add their variants to it, so re-imports and replayed chunks create no duplicates.
+     */
+    @Transactional
+    public ChunkResult writeChunk(Long jobId, List<CatalogImportRecord> records, Map<String, Long> categoryIds,
+                                  long lines, long errors, String lastError) {
+        Set<String> takenSkus = findExistingSkus(records);
+        Map<String, Long> existingProducts = findExistingProducts(records, categoryIds);
+        int skippedVariants = 0;
+
+        // One entry per product key, in first-seen order; existing products only collect new variants
+        Map<String, CatalogImportRecord> byKey = new LinkedHashMap<>();
+        for (CatalogImportRecord record : records) {
+            List<CatalogImportRecord.Variant> fresh = new ArrayList<>(record.getVariants().size());
+            for (CatalogImportRecord.Variant variant : record.getVariants()) {
+                if (takenSkus.add(variant.getSku())) {
+                    fresh.add(variant);
+                } else {
+                    skippedVariants++;
+                }
+            }
+            if (fresh.isEmpty() && !record.getVariants().isEmpty()) {
+                continue;
+            }
+            String key = productKey(record.getCategory(), record.getName());
+            CatalogImportRecord product = byKey.get(key);
+            if (product != null) {
+                product.getVariants().addAll(fresh);
+            } else if (!existingProducts.containsKey(key) || !fresh.isEmpty()) {
+                byKey.put(key, new CatalogImportRecord(record.getCategory(), record.getName(),
+                        record.getDescription(), record.getBasePrice(), record.getImageUrl(), fresh));
+            }
+        }
+
+        List<CatalogImportRecord> products = new ArrayList<>();
+        List<CatalogImportRecord> extended = new ArrayList<>();
+        List<Long> extendedIds = new ArrayList<>();
+        byKey.forEach((key, product) -> {
+            Long existingId = existingProducts.get(key);
+            if (existingId == null) {
+                products.add(product);
+            } else if (!product.getVariants().isEmpty()) {
+                extended.add(product);
+                extendedIds.add(existingId);
+            }
+        });
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<String, Long> createdCategories = insertMissingCategories(products, categoryIds, now);
+        List<Long> productIds = insertProducts(products, categoryIds, createdCategories, now);
+        int variants = insertVariants(products, productIds, now).size();
+        if (!extended.isEmpty()) {
+            // Existing products get their aggregates recomputed with the added variants once the chunk commits
+            List<Long> addedVariantIds = insertVariants(extended, extendedIds, now);
+            variants += addedVariantIds.size();
+            productAggregateRefresher.markChanged(addedVariantIds);
+        }
+
+        CatalogImportJob job = catalogImportJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND,
+                        "Import job " + jobId + " not found"));
+        job.setProcessedLines(job.getProcessedLines() + lines);
+        job.setImportedProducts(job.getImportedProducts() + products.size());
+        job.setImportedVariants(job.getImportedVariants() + variants);
+        job.setSkippedVariants(job.getSkippedVariants() + skippedVariants);
+        job.setErrorCount(job.getErrorCount() + errors);
+        if (lastError != null) {
+            job.setLastError(lastError);
+        }
+        catalogImportJobRepository.save(job);
+
+        return new ChunkResult(products.size(), variants, skippedVariants, createdCategories);
+    }
+
+    private Set<String> findExistingSkus(List<CatalogImportRecord> records) {
+        List<String> skus = records.stream()
+                .flatMap(record -> record.getVariants().stream())
+                .map(CatalogImportRecord.Variant::getSku)
+                .distinct()
+                .toList();
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < skus.size(); from += SKU_LOOKUP_BATCH) {
+            existing.addAll(productVariantRepository.findExistingSkus(
+                    skus.subList(from, Math.min(from + SKU_LOOKUP_BATCH, skus.size()))));
+        }
+        return existing;
+    }
+
+    /**
+     * Existing products of the chunk by product key; only categories that already exist can hold one
+     */
+    private Map<String, Long> findExistingProducts(List<CatalogImportRecord> records, Map<String, Long> categoryIds) {
+        Map<Long, String> categoryNames = new HashMap<>();
+        Set<String> nameSet = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (CatalogImportRecord record : records) {
+            Long categoryId = categoryIds.get(record.getCategory());
+            if (categoryId != null) {
+                categoryNames.put(categoryId, record.getCategory());
+                nameSet.add(record.getName());
+            }
+        }
+        Map<String, Long> existing = new HashMap<>();
+        List<String> names = new ArrayList<>(nameSet);
+        for (int from = 0; from < names.size(); from += SKU_LOOKUP_BATCH) {
+            for (Object[] row : productRepository.findByCategoryAndName(categoryNames.keySet(),
+                    names.subList(from, Math.min(from + SKU_LOOKUP_BATCH, names.size())))) {
+                String category = categoryNames.get(((Number) row[1]).longValue());
+                existing.putIfAbsent(productKey(category, (String) row[2]), ((Number) row[0]).longValue());
+            }
+        }
+        return existing;
+    }
+
+    // Category and product names both compare case-insensitively in MySQL
+    private static String productKey(String category, String name) {
+        return category.toLowerCase(Locale.ROOT) + '\n' + name.toLowerCase(Locale.ROOT);
+    }
+
+    private Map<String, Long> insertMissingCategories(List<CatalogImportRecord> products,
+                                                      Map<String, Long> categoryIds, Timestamp now) {
+        // Category names are unique case-insensitively in MySQL, so dedupe the same way
+        Set<String> missingNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        products.stream()
+                .map(CatalogImportRecord::getCategory)
+                .filter(name -> !categoryIds.containsKey(name))
+                .forEach(missingNames::add);
+        List<String> missing = new ArrayList<>(missingNames);
+        if (missing.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Long> ids = batchInsert(INSERT_CATEGORY_SQL, missing.size(), (ps, i) -> {
+            ps.setString(1, missing.get(i));
+            ps.setTimestamp(2, now);
+            ps.setTimestamp(3, now);
+        });
+        Map<String, Long> created = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < missing.size(); i++) {
+            created.put(missing.get(i), ids.get(i));
+        }
+        return created;
+    }
+
+    /**
+     * Products are inserted with their variant aggregates already computed, no refresh pass is needed
+     */
+    private List<Long> insertProducts(List<CatalogImportRecord> products, Map<String, Long> categoryIds,
+                                      Map<String, Long> createdCategories, Timestamp now) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
+        return batchInsert(INSERT_PRODUCT_SQL, products.size(), (ps, i) -> {
+            CatalogImportRecord product = products.get(i);
+            Long categoryId = categoryIds.containsKey(product.getCategory())
+                    ? categoryIds.get(product.getCategory())
+                    : createdCategories.get(product.getCategory());
+            BigDecimal minPrice = null;
+            BigDecimal maxPrice = null;
+            int stock = 0;
+            for (CatalogImportRecord.Variant variant : product.getVariants()) {
+                BigDecimal price = variant.getPrice();
+                if (price != null) {
+                    minPrice = minPrice == null || price.compareTo(minPrice) < 0 ? price : minPrice;
+                    maxPrice = maxPrice == null || price.compareTo(maxPrice) > 0 ? price : maxPrice;
+                }
+                stock += stockOf(variant);
+            }
+
+            ps.setString(1, product.getName());
+            ps.setString(2, product.getDescription());
+            ps.setBigDecimal(3, product.getBasePrice());
+            ps.setString(4, product.getImageUrl());
+            ps.setLong(5, categoryId);
+            ps.setBigDecimal(6, minPrice);
+            ps.setBigDecimal(7, maxPrice);
+            ps.setInt(8, product.getVariants().size());
+            ps.setInt(9, stock);
+            ps.setTimestamp(10, now);
+            ps.setTimestamp(11, now);
+        });
+    }
+
+    /**
+     * Insert the variants of each product under the matching owner id; returns the new variant ids
+     */
+    private List<Long> insertVariants(List<CatalogImportRecord> products, List<Long> productIds, Timestamp now) {
+        List<CatalogImportRecord.Variant> variants = new ArrayList<>();
+        List<Long> owners = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            for (CatalogImportRecord.Variant variant : products.get(i).getVariants()) {
+                variants.add(variant);
+                owners.add(productIds.get(i));
+            }
+        }
+        if (variants.isEmpty()) {
+            return List.of();
+        }
+
+        return batchInsert(INSERT_VARIANT_SQL, variants.size(), (ps, i) -> {
+            CatalogImportRecord.Variant variant = variants.get(i);
+            ps.setString(1, variant.getSku());
+            ps.setString(2, variant.getSize());
+            ps.setString(3, variant.getColor());
+            if (variant.getPrice() != null) {
+                ps.setBigDecimal(4, variant.getPrice());
+            } else {
+                ps.setNull(4, Types.DECIMAL);
+            }
+            ps.setInt(5, stockOf(variant));
+            ps.setLong(6, owners.get(i));
+            ps.setTimestamp(7, now);
+            ps.setTimestamp(8, now);
+        });
+    }
+
+    /**
+     * One JDBC batch returning the generated id of every row, in row order
+     */
+    private List<Long> batchInsert(String sql, int size, RowBinder binder) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        binder.bind(ps, i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return size;
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != size) {
+            throw new IllegalStateException("Expected " + size + " generated keys but got " + keys.size());
+        }
+        List<Long> ids = new ArrayList<>(size);
+        for (Map<String, Object> key : keys) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+
+    private static int stockOf(CatalogImportRecord.Variant variant) {
+        return variant.getStockQuantity() != null ? variant.getStockQuantity() : 0;
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int i) throws SQLException;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ChunkResult {
+        private final int products;
+        private final int variants;
+        private final int skippedVariants;
+        // Categories inserted by this chunk, only valid once it has committed
+        private final Map<String, Long> createdCategories;
+    }
+}
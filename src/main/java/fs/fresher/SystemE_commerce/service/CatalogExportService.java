@@ -0,0 +1,139 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.response.CatalogExportRecord;
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import fs.fresher.SystemE_commerce.exception.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.SequenceWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams the active catalog as NDJSON (one product per line) for marketplace feeds.
+ * Rows are streamed row by row by the MySQL driver (forward-only, fetch size Integer.MIN_VALUE) and written as they
+ * arrive, so only the product currently being assembled is held in memory. Streaming is scoped to this one
+ * statement; the rest of the application keeps client-side prepared statements and buffered results.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogExportService {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    // Connector/J streams a forward-only, read-only result set row by row when given this fetch size
+    private static final int STREAM_ROWS = Integer.MIN_VALUE;
+
+    // Ordered by product so the variant rows of one product arrive consecutively
+    static final String EXPORT_SQL =
+            "SELECT p.id, p.name, p.description, p.base_price, p.image_url, c.id AS category_id, c.name AS category_name, " +
+            "v.id AS variant_id, v.sku, v.size, v.color, v.price, v.stock_quantity - v.reserved_quantity " +
+            "+ COALESCE((SELECT SUM(b.available_quantity) FROM variant_stock_buckets b WHERE b.variant_id = v.id), 0) " +
+            "AS available_stock " +
+            "FROM products p " +
+            "LEFT JOIN categories c ON c.id = p.category_id " +
+            "LEFT JOIN product_variants v ON v.product_id = p.id AND v.is_active = true " +
+            "WHERE p.is_active = true " +
+            "ORDER BY p.id, v.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonMapper jsonMapper;
+    private final AdminAuthService adminAuthService;
+
+    /**
+     * Authenticate up front so a bad key gets a proper error response instead of a truncated stream
+     */
+    public StreamingResponseBody streamCatalog(String apiKey) {
+        adminAuthService.authenticateByApiKey(apiKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.UNAUTHORIZED, "Invalid API key"));
+        return this::export;
+    }
+
+    /**
+     * Write every active product as one JSON line and return the number of products written
+     */
+    public long export(OutputStream outputStream) throws IOException {
+        long start = System.currentTimeMillis();
+        // The servlet container owns the response stream, so the writer must not close it
+        try (SequenceWriter writer = jsonMapper.writer()
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(outputStream)) {
+            ExportWriter exportWriter = new ExportWriter(writer);
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        EXPORT_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(STREAM_ROWS);
+                return statement;
+            }, exportWriter::onRow);
+            exportWriter.finish();
+            writer.flush();
+            if (exportWriter.written > 0) {
+                // The separator only goes between records, NDJSON also terminates the last line
+                outputStream.write('\n');
+            }
+
+            log.info("CATALOG EXPORT: Streamed {} products in {} ms",
+                    exportWriter.written, System.currentTimeMillis() - start);
+            return exportWriter.written;
+        }
+    }
+
+    /**
+     * Folds consecutive variant rows into one record and writes it once the next product starts
+     */
+    private static class ExportWriter {
+        private final SequenceWriter writer;
+        private CatalogExportRecord current;
+        private long written;
+
+        private ExportWriter(SequenceWriter writer) {
+            this.writer = writer;
+        }
+
+        void onRow(ResultSet rs) throws SQLException {
+            long productId = rs.getLong("id");
+            if (current == null || current.getId() != productId) {
+                finish();
+                current = new CatalogExportRecord();
+                current.setId(productId);
+                current.setName(rs.getString("name"));
+                current.setDescription(rs.getString("description"));
+                current.setBasePrice(rs.getBigDecimal("base_price"));
+                current.setImageUrl(rs.getString("image_url"));
+                current.setCategoryId(rs.getObject("category_id", Long.class));
+                current.setCategoryName(rs.getString("category_name"));
+            }
+
+            Long variantId = rs.getObject("variant_id", Long.class);
+            if (variantId != null) {
+                current.getVariants().add(new CatalogExportRecord.Variant(
+                        variantId,
+                        rs.getString("sku"),
+                        rs.getString("size"),
+                        rs.getString("color"),
+                        rs.getBigDecimal("price"),
+                        Math.max(0, rs.getInt("available_stock"))
+                ));
+            }
+        }
+
+        void finish() {
+            if (current != null) {
+                writer.write(current);
+                written++;
+                current = null;
+            }
+        }
+    }
+}
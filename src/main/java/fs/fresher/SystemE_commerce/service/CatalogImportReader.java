@@ -0,0 +1,255 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.CatalogImportRecord;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Streaming parser for catalog import files, one product record at a time.
+ * CSV: one variant per row, consecutive rows with the same category and product name form one product.
+ * NDJSON: one product with its variants per line.
+ * Every record reports how many physical lines it consumed so the import can checkpoint and resume by line.
+ */
+public class CatalogImportReader implements Closeable {
+
+    public static final String FORMAT_CSV = "CSV";
+    public static final String FORMAT_NDJSON = "NDJSON";
+
+    static final String[] CSV_HEADER = {
+            "category", "product", "description", "base_price", "image_url",
+            "sku", "size", "color", "price", "stock_quantity"
+    };
+
+    private final BufferedReader reader;
+    private final String format;
+    private final JsonMapper jsonMapper;
+
+    // Row read ahead while grouping CSV variants, it starts the next record
+    private ParsedRecord pending;
+    private boolean headerRead;
+
+    public CatalogImportReader(BufferedReader reader, String format, JsonMapper jsonMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * Skip data lines already committed by a previous run
+     */
+    public void skip(long lines) throws IOException {
+        readHeader();
+        for (long i = 0; i < lines; i++) {
+            if (reader.readLine() == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Next product record, a parse error for one line, or null at end of file
+     */
+    public ParsedRecord next() throws IOException {
+        readHeader();
+        if (FORMAT_NDJSON.equals(format)) {
+            return readJsonLine();
+        }
+
+        ParsedRecord first = pending != null ? pending : readCsvRow();
+        pending = null;
+        if (first == null || first.getError() != null) {
+            return first;
+        }
+
+        CatalogImportRecord record = first.getRecord();
+        long lines = first.getLines();
+        ParsedRecord row;
+        while ((row = readCsvRow()) != null) {
+            if (row.getError() != null || !sameProduct(record, row.getRecord())) {
+                pending = row;
+                break;
+            }
+            record.getVariants().addAll(row.getRecord().getVariants());
+            lines += row.getLines();
+        }
+        return new ParsedRecord(record, lines, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader() throws IOException {
+        if (headerRead) {
+            return;
+        }
+        headerRead = true;
+        if (FORMAT_CSV.equals(format)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            List<String> columns = splitCsv(stripBom(header));
+            List<String> expected = List.of(CSV_HEADER);
+            if (columns == null || !expected.equals(columns.stream().map(String::trim).map(String::toLowerCase).toList())) {
+                throw new IOException("CSV header must be: " + String.join(",", CSV_HEADER));
+            }
+        }
+    }
+
+    private ParsedRecord readJsonLine() throws IOException {
+        long lines = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            if (!line.isBlank()) {
+                try {
+                    CatalogImportRecord record = jsonMapper.readValue(stripBom(line), CatalogImportRecord.class);
+                    if (record.getVariants() == null) {
+                        record.setVariants(new ArrayList<>());
+                    }
+                    String error = validate(record);
+                    return new ParsedRecord(error == null ? record : null, lines, error);
+                } catch (Exception e) {
+                    return new ParsedRecord(null, lines, "Malformed JSON: " + e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    private ParsedRecord readCsvRow() throws IOException {
+        long lines = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitCsv(line);
+            if (fields == null || fields.size() != CSV_HEADER.length) {
+                return new ParsedRecord(null, lines, "Expected " + CSV_HEADER.length + " columns");
+            }
+            try {
+                CatalogImportRecord record = new CatalogImportRecord();
+                record.setCategory(emptyToNull(fields.get(0)));
+                record.setName(emptyToNull(fields.get(1)));
+                record.setDescription(emptyToNull(fields.get(2)));
+                record.setBasePrice(decimal(fields.get(3)));
+                record.setImageUrl(emptyToNull(fields.get(4)));
+                String sku = emptyToNull(fields.get(5));
+                if (sku != null) {
+                    Integer stock = emptyToNull(fields.get(9)) != null ? Integer.valueOf(fields.get(9).trim()) : null;
+                    record.getVariants().add(new CatalogImportRecord.Variant(
+                            sku, emptyToNull(fields.get(6)), emptyToNull(fields.get(7)), decimal(fields.get(8)), stock));
+                }
+                String error = validate(record);
+                return new ParsedRecord(error == null ? record : null, lines, error);
+            } catch (NumberFormatException e) {
+                return new ParsedRecord(null, lines, "Invalid number: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    static String validate(CatalogImportRecord record) {
+        if (record.getCategory() == null || record.getCategory().isBlank()) {
+            return "Category is required";
+        }
+        if (record.getName() == null || record.getName().isBlank()) {
+            return "Product name is required";
+        }
+        if (record.getBasePrice() == null || record.getBasePrice().signum() < 0) {
+            return "Base price must be zero or positive";
+        }
+        for (CatalogImportRecord.Variant variant : record.getVariants()) {
+            if (variant.getSku() == null || variant.getSku().isBlank()) {
+                return "Variant SKU is required";
+            }
+            if (variant.getPrice() != null && variant.getPrice().signum() < 0) {
+                return "Variant price must be zero or positive";
+            }
+            if (variant.getStockQuantity() != null && variant.getStockQuantity() < 0) {
+                return "Stock quantity must be zero or positive";
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameProduct(CatalogImportRecord a, CatalogImportRecord b) {
+        return Objects.equals(a.getCategory(), b.getCategory()) && Objects.equals(a.getName(), b.getName());
+    }
+
+    /**
+     * RFC 4180 style split of a single line: quoted fields may contain commas and doubled quotes.
+     * Returns null for an unterminated quote.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static BigDecimal decimal(String value) {
+        String trimmed = emptyToNull(value);
+        return trimmed != null ? new BigDecimal(trimmed) : null;
+    }
+
+    private static String emptyToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    /**
+     * Either a valid record or the error for the line(s) it came from
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ParsedRecord {
+        private final CatalogImportRecord record;
+        private final long lines;
+        private final String error;
+    }
+}
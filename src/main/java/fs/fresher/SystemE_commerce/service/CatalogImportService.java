@@ -0,0 +1,280 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.CatalogImportRecord;
+import fs.fresher.SystemE_commerce.dto.response.CatalogImportJobResponse;
+import fs.fresher.SystemE_commerce.entity.CatalogImportJob;
+import fs.fresher.SystemE_commerce.entity.Category;
+import fs.fresher.SystemE_commerce.enums.ImportJobStatus;
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import fs.fresher.SystemE_commerce.exception.ErrorCode;
+import fs.fresher.SystemE_commerce.exception.ResourceNotFoundException;
+import fs.fresher.SystemE_commerce.exception.ValidationException;
+import fs.fresher.SystemE_commerce.repository.CatalogImportJobRepository;
+import fs.fresher.SystemE_commerce.repository.CategoryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk catalog import from CSV or NDJSON files.
+ * The upload is stored on disk and processed by a single background worker in chunks; each chunk commits
+ * its rows together with the job checkpoint, so a failed or interrupted job resumes after its last chunk.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogImportService {
+
+    private final CatalogImportJobRepository catalogImportJobRepository;
+    private final CategoryRepository categoryRepository;
+    private final CatalogBulkWriter catalogBulkWriter;
+    private final AdminAuthService adminAuthService;
+    private final JsonMapper jsonMapper;
+
+    // One import at a time: concurrent imports would only contend on the same tables and SKU index
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${catalog.import.directory:${java.io.tmpdir}/catalog-imports}")
+    private String importDirectory;
+
+    @Value("${catalog.import.chunk-size:1000}")
+    private int chunkSize;
+
+    public CatalogImportJobResponse startImport(String apiKey, MultipartFile file, String format) {
+        authenticate(apiKey);
+        if (file == null || file.isEmpty()) {
+            throw new ValidationException("Import file is required");
+        }
+        String resolvedFormat = resolveFormat(format, file.getOriginalFilename());
+
+        CatalogImportJob job = new CatalogImportJob();
+        job.setFileName(file.getOriginalFilename() != null ? file.getOriginalFilename() : "upload");
+        job.setFormat(resolvedFormat);
+        try {
+            Path directory = Paths.get(importDirectory);
+            Files.createDirectories(directory);
+            Path stored = directory.resolve(UUID.randomUUID() + "." + resolvedFormat.toLowerCase(Locale.ROOT));
+            try (InputStream input = file.getInputStream()) {
+                Files.copy(input, stored, StandardCopyOption.REPLACE_EXISTING);
+            }
+            job.setStoredPath(stored.toString());
+        } catch (IOException e) {
+            log.error("CATALOG IMPORT: Failed to store upload {}", file.getOriginalFilename(), e);
+            throw new BusinessException(ErrorCode.INTERNAL_SERVER_ERROR, "Failed to store import file");
+        }
+
+        CatalogImportJob saved = catalogImportJobRepository.save(job);
+        submit(saved.getId());
+        log.info("CATALOG IMPORT: Queued job {} for {} ({})", saved.getId(), saved.getFileName(), resolvedFormat);
+        return mapToResponse(saved);
+    }
+
+    public CatalogImportJobResponse getJob(String apiKey, Long jobId) {
+        authenticate(apiKey);
+        return mapToResponse(findJob(jobId));
+    }
+
+    /**
+     * Continue a failed job from its last committed chunk
+     */
+    public CatalogImportJobResponse resumeJob(String apiKey, Long jobId) {
+        authenticate(apiKey);
+        CatalogImportJob job = findJob(jobId);
+        if (job.getStatus() != ImportJobStatus.FAILED) {
+            throw new BusinessException(ErrorCode.OPERATION_NOT_ALLOWED,
+                    "Only failed import jobs can be resumed, job is " + job.getStatus());
+        }
+        job.setStatus(ImportJobStatus.PENDING);
+        job.setLastError(null);
+        CatalogImportJob saved = catalogImportJobRepository.save(job);
+        submit(saved.getId());
+        log.info("CATALOG IMPORT: Resuming job {} after line {}", jobId, saved.getProcessedLines());
+        return mapToResponse(saved);
+    }
+
+    /**
+     * The worker dies with the JVM; jobs it left running are marked failed so they can be resumed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        try {
+            for (ImportJobStatus status : List.of(ImportJobStatus.PENDING, ImportJobStatus.RUNNING)) {
+                for (CatalogImportJob job : catalogImportJobRepository.findByStatus(status)) {
+                    job.setStatus(ImportJobStatus.FAILED);
+                    job.setLastError("Interrupted by restart, resume to continue");
+                    catalogImportJobRepository.save(job);
+                    log.warn("CATALOG IMPORT: Job {} was interrupted at line {}", job.getId(), job.getProcessedLines());
+                }
+            }
+        } catch (Exception e) {
+            log.error("CATALOG IMPORT: Failed to mark interrupted jobs", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    void submit(Long jobId) {
+        worker.submit(() -> run(jobId));
+    }
+
+    /**
+     * Process the stored file from the job checkpoint to the end, one transaction per chunk
+     */
+    void run(Long jobId) {
+        CatalogImportJob job = catalogImportJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        job.setStatus(ImportJobStatus.RUNNING);
+        job = catalogImportJobRepository.save(job);
+
+        try (BufferedReader fileReader = Files.newBufferedReader(Paths.get(job.getStoredPath()), StandardCharsets.UTF_8);
+             CatalogImportReader reader = new CatalogImportReader(fileReader, job.getFormat(), jsonMapper)) {
+            reader.skip(job.getProcessedLines());
+            Map<String, Long> categoryIds = loadCategoryIds();
+
+            List<CatalogImportRecord> chunk = new ArrayList<>(chunkSize);
+            int chunkVariants = 0;
+            long chunkLines = 0;
+            long chunkErrors = 0;
+            String chunkLastError = null;
+            CatalogImportReader.ParsedRecord parsed;
+            while ((parsed = reader.next()) != null) {
+                chunkLines += parsed.getLines();
+                if (parsed.getError() != null) {
+                    chunkErrors++;
+                    chunkLastError = "Line " + (job.getProcessedLines() + chunkLines) + ": " + parsed.getError();
+                } else {
+                    chunk.add(parsed.getRecord());
+                    chunkVariants += parsed.getRecord().getVariants().size();
+                }
+
+                if (chunk.size() >= chunkSize || chunkVariants >= chunkSize) {
+                    job = writeChunk(job, chunk, categoryIds, chunkLines, chunkErrors, chunkLastError);
+                    chunk.clear();
+                    chunkVariants = 0;
+                    chunkLines = 0;
+                    chunkErrors = 0;
+                    chunkLastError = null;
+                }
+            }
+            if (chunkLines > 0) {
+                job = writeChunk(job, chunk, categoryIds, chunkLines, chunkErrors, chunkLastError);
+            }
+
+            job.setStatus(ImportJobStatus.COMPLETED);
+            job.setCompletedAt(LocalDateTime.now());
+            job = catalogImportJobRepository.save(job);
+            log.info("CATALOG IMPORT: Job {} completed in {} ms: {} products, {} variants, {} skipped SKUs, {} bad lines",
+                    jobId, System.currentTimeMillis() - start, job.getImportedProducts(), job.getImportedVariants(),
+                    job.getSkippedVariants(), job.getErrorCount());
+        } catch (Exception e) {
+            log.error("CATALOG IMPORT: Job {} failed after line {}", jobId, job.getProcessedLines(), e);
+            // Reload so a failure inside a chunk does not persist its uncommitted counters
+            CatalogImportJob failed = catalogImportJobRepository.findById(jobId).orElse(job);
+            failed.setStatus(ImportJobStatus.FAILED);
+            failed.setLastError(truncate(e.getMessage()));
+            catalogImportJobRepository.save(failed);
+        }
+    }
+
+    private CatalogImportJob writeChunk(CatalogImportJob job, List<CatalogImportRecord> chunk,
+                                        Map<String, Long> categoryIds, long lines, long errors, String lastError) {
+        CatalogBulkWriter.ChunkResult result = catalogBulkWriter.writeChunk(
+                job.getId(), chunk, categoryIds, lines, errors, truncate(lastError));
+        // Only committed categories may be reused by later chunks
+        categoryIds.putAll(result.getCreatedCategories());
+        CatalogImportJob refreshed = findJob(job.getId());
+        log.debug("CATALOG IMPORT: Job {} committed chunk up to line {} ({} products, {} variants)",
+                job.getId(), refreshed.getProcessedLines(), result.getProducts(), result.getVariants());
+        return refreshed;
+    }
+
+    private Map<String, Long> loadCategoryIds() {
+        Map<String, Long> categoryIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Category category : categoryRepository.findAll()) {
+            categoryIds.put(category.getName(), category.getId());
+        }
+        return categoryIds;
+    }
+
+    private String resolveFormat(String format, String fileName) {
+        String candidate = format;
+        if (candidate == null || candidate.isBlank()) {
+            String lower = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+            candidate = lower.endsWith(".csv") ? CatalogImportReader.FORMAT_CSV
+                    : lower.endsWith(".ndjson") || lower.endsWith(".jsonl") || lower.endsWith(".json")
+                    ? CatalogImportReader.FORMAT_NDJSON : null;
+        }
+        if (candidate != null) {
+            candidate = candidate.trim().toUpperCase(Locale.ROOT);
+            if (candidate.equals("JSON") || candidate.equals("JSONL")) {
+                candidate = CatalogImportReader.FORMAT_NDJSON;
+            }
+        }
+        if (!CatalogImportReader.FORMAT_CSV.equals(candidate) && !CatalogImportReader.FORMAT_NDJSON.equals(candidate)) {
+            throw new ValidationException("Import format must be CSV or NDJSON");
+        }
+        return candidate;
+    }
+
+    private CatalogImportJob findJob(Long jobId) {
+        return catalogImportJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.RESOURCE_NOT_FOUND,
+                        "Import job " + jobId + " not found"));
+    }
+
+    private void authenticate(String apiKey) {
+        adminAuthService.authenticateByApiKey(apiKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.UNAUTHORIZED, "Invalid API key"));
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    private CatalogImportJobResponse mapToResponse(CatalogImportJob job) {
+        return new CatalogImportJobResponse(
+                job.getId(),
+                job.getFileName(),
+                job.getFormat(),
+                job.getStatus(),
+                job.getProcessedLines(),
+                job.getImportedProducts(),
+                job.getImportedVariants(),
+                job.getSkippedVariants(),
+                job.getErrorCount(),
+                job.getLastError(),
+                job.getCreatedAt(),
+                job.getUpdatedAt(),
+                job.getCompletedAt()
+        );
+    }
+}
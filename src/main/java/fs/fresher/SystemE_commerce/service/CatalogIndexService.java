@@ -0,0 +1,294 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.response.PagedResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductListResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductPageResponse;
+import fs.fresher.SystemE_commerce.entity.Product;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Serves product listing from an in-process catalog snapshot.
+ * Readers only dereference the current snapshot, refreshes build a new one and swap it atomically.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogIndexService {
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+
+    private LocalDateTime lastRefreshWatermark;
+
+    @Value("${catalog.in-memory.enabled:true}")
+    private boolean enabled;
+
+    // Re-read rows touched shortly before the previous refresh to cover transactions that committed late
+    @Value("${catalog.refresh-overlap-seconds:30}")
+    private int refreshOverlapSeconds;
+
+    public boolean isReady() {
+        return enabled && snapshot.get() != null;
+    }
+
+    public CatalogSnapshot currentSnapshot() {
+        CatalogSnapshot current = snapshot.get();
+        return current != null ? current : CatalogSnapshot.empty();
+    }
+
+    public PagedResponse<ProductListResponse> findProducts(
+            int page, int size, List<Long> categoryIds,
+            BigDecimal minPrice, BigDecimal maxPrice,
+            List<String> colors, List<String> sizes, String search) {
+
+        search = searchFilter(search);
+        CatalogSnapshot current = currentSnapshot();
+        RoaringBitmap matches = current.match(categoryIds, minPrice, maxPrice, colors, sizes, search);
+        return toPage(current, matches, page, size, search);
+    }
+
+    /**
+     * Listing page plus facet counts, both evaluated against the same snapshot
+     */
+    public ProductPageResponse findProductsWithFacets(
+            int page, int size, List<Long> categoryIds,
+            BigDecimal minPrice, BigDecimal maxPrice,
+            List<String> colors, List<String> sizes, String search) {
+
+        search = searchFilter(search);
+        CatalogSnapshot current = currentSnapshot();
+        RoaringBitmap matches = current.match(categoryIds, minPrice, maxPrice, colors, sizes, search);
+        CatalogSnapshot.FacetCounts counts = current.facetCounts(categoryIds, minPrice, maxPrice, colors, sizes, search);
+        CatalogSnapshot.FacetSummary summary = current.summarize(matches);
+
+        List<ProductFilterOptionsResponse.CategoryCount> categoryCounts = counts.getCategoryCounts().entrySet().stream()
+                .map(entry -> new ProductFilterOptionsResponse.CategoryCount(
+                        entry.getKey(), counts.getCategoryNames().get(entry.getKey()), entry.getValue()))
+                .sorted(Comparator.comparing(ProductFilterOptionsResponse.CategoryCount::getName,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+
+        ProductFilterOptionsResponse facets = new ProductFilterOptionsResponse(
+                categoryCounts.stream()
+                        .map(count -> new ProductFilterOptionsResponse.CategoryOption(count.getId(), count.getName()))
+                        .collect(Collectors.toList()),
+                new ArrayList<>(counts.getColorCounts().keySet()),
+                new ArrayList<>(counts.getSizeCounts().keySet()),
+                summary.getMinPrice() != null ? summary.getMinPrice() : BigDecimal.ZERO,
+                summary.getMaxPrice() != null ? summary.getMaxPrice() : BigDecimal.ZERO,
+                toFacetCounts(counts.getColorCounts()),
+                toFacetCounts(counts.getSizeCounts()),
+                categoryCounts
+        );
+        return new ProductPageResponse(toPage(current, matches, page, size, search), facets);
+    }
+
+    // A search that folds to nothing (blank, punctuation only) is no filter, as LIKE '%%' was on the database path
+    private static String searchFilter(String search) {
+        return ProductSearchIndex.fold(search).isEmpty() ? null : search;
+    }
+
+    private PagedResponse<ProductListResponse> toPage(CatalogSnapshot current, RoaringBitmap matches,
+                                                      int page, int size, String search) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        List<CatalogSnapshot.Entry> entries = search != null
+                ? current.rankedPage(matches, search, pageRequest.getPageNumber(), pageRequest.getPageSize())
+                : current.page(matches, pageRequest.getPageNumber(), pageRequest.getPageSize());
+        List<ProductListResponse> content = entries.stream()
+                .map(this::mapToProductListResponse)
+                .collect(Collectors.toList());
+
+        long totalElements = matches.getLongCardinality();
+        int totalPages = (int) Math.ceil((double) totalElements / pageRequest.getPageSize());
+        boolean hasNext = pageRequest.getPageNumber() + 1 < totalPages;
+
+        return new PagedResponse<>(
+                content,
+                pageRequest.getPageNumber(),
+                pageRequest.getPageSize(),
+                totalElements,
+                totalPages,
+                pageRequest.getPageNumber() == 0,
+                !hasNext,
+                hasNext,
+                pageRequest.getPageNumber() > 0
+        );
+    }
+
+    /**
+     * Keyset page in listing order; search narrows the matches but results are not relevance-ranked
+     */
+    public PagedResponse<ProductListResponse> findProductsAfter(
+            PageCursor cursor, int size, List<Long> categoryIds,
+            BigDecimal minPrice, BigDecimal maxPrice,
+            List<String> colors, List<String> sizes, String search, boolean includeTotal) {
+
+        search = searchFilter(search);
+        CatalogSnapshot current = currentSnapshot();
+        RoaringBitmap matches = current.match(categoryIds, minPrice, maxPrice, colors, sizes, search);
+        List<CatalogSnapshot.Entry> entries = current.pageAfter(matches,
+                cursor != null ? cursor.getCreatedAt() : null, cursor != null ? cursor.getId() : null, size + 1);
+
+        boolean hasNext = entries.size() > size;
+        List<CatalogSnapshot.Entry> pageEntries = hasNext ? entries.subList(0, size) : entries;
+        CatalogSnapshot.Entry last = hasNext ? pageEntries.get(size - 1) : null;
+
+        return PagedResponse.keyset(
+                pageEntries.stream().map(this::mapToProductListResponse).collect(Collectors.toList()),
+                size,
+                includeTotal ? matches.getLongCardinality() : null,
+                cursor == null,
+                last != null ? PageCursor.after(last.getCreatedAt(), last.getId()).encode() : null
+        );
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!enabled) {
+            log.info("CATALOG INDEX: In-memory catalog disabled, listing will query the database");
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("CATALOG INDEX: Initial build failed, listing falls back to the database", e);
+        }
+    }
+
+    /**
+     * Full rebuild from the database (startup + periodic safety net for hard deletes)
+     */
+    @Scheduled(fixedDelayString = "${catalog.full-rebuild-interval-ms:3600000}",
+               initialDelayString = "${catalog.full-rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime watermark = LocalDateTime.now();
+
+        List<Product> products = productRepository.findAllActiveWithCategory();
+        Map<Long, List<ProductVariant>> variantsByProduct = groupByProduct(productVariantRepository.findAllActive());
+        List<CatalogSnapshot.Entry> entries = products.stream()
+                .map(product -> toEntry(product, variantsByProduct.getOrDefault(product.getId(), List.of())))
+                .collect(Collectors.toList());
+
+        CatalogSnapshot previous = snapshot.get();
+        CatalogSnapshot rebuilt = CatalogSnapshot.of(previous != null ? previous.getVersion() + 1 : 1, entries);
+        snapshot.set(rebuilt);
+        lastRefreshWatermark = watermark;
+
+        log.info("CATALOG INDEX: Rebuilt snapshot v{} with {} products in {} ms",
+                rebuilt.getVersion(), rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Incremental refresh: reload only products whose product or variant rows changed since the last refresh
+     */
+    @Scheduled(fixedDelayString = "${catalog.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        CatalogSnapshot previous = snapshot.get();
+        if (!enabled || previous == null) {
+            return;
+        }
+        try {
+            LocalDateTime watermark = LocalDateTime.now();
+            LocalDateTime since = lastRefreshWatermark.minusSeconds(refreshOverlapSeconds);
+
+            Set<Long> changedProductIds = new HashSet<>(productRepository.findIdsUpdatedSince(since));
+            changedProductIds.addAll(productVariantRepository.findProductIdsWithVariantsUpdatedSince(since));
+
+            if (!changedProductIds.isEmpty()) {
+                CatalogSnapshot refreshed = previous.withChanges(
+                        previous.getVersion() + 1, changedProductIds, loadEntries(changedProductIds));
+                snapshot.set(refreshed);
+                log.debug("CATALOG INDEX: Refreshed {} products, snapshot v{} has {} products",
+                        changedProductIds.size(), refreshed.getVersion(), refreshed.size());
+            }
+            lastRefreshWatermark = watermark;
+        } catch (Exception e) {
+            log.error("CATALOG INDEX: Incremental refresh failed, keeping snapshot v{}", previous.getVersion(), e);
+        }
+    }
+
+    private List<CatalogSnapshot.Entry> loadEntries(Collection<Long> productIds) {
+        List<Product> products = productRepository.findAllByIdWithCategory(productIds);
+        Map<Long, List<ProductVariant>> variantsByProduct =
+                groupByProduct(productVariantRepository.findActiveByProductIds(productIds));
+
+        // Deactivated products are dropped from the snapshot by not being reloaded
+        return products.stream()
+                .filter(product -> Boolean.TRUE.equals(product.getIsActive()))
+                .map(product -> toEntry(product, variantsByProduct.getOrDefault(product.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, List<ProductVariant>> groupByProduct(List<ProductVariant> variants) {
+        return variants.stream()
+                .collect(Collectors.groupingBy(variant -> variant.getProduct().getId()));
+    }
+
+    private CatalogSnapshot.Entry toEntry(Product product, List<ProductVariant> variants) {
+        List<CatalogSnapshot.VariantEntry> variantEntries = variants.stream()
+                .map(variant -> new CatalogSnapshot.VariantEntry(
+                        variant.getId(),
+                        variant.getSize(),
+                        variant.getColor(),
+                        variant.getPrice()
+                ))
+                .collect(Collectors.toUnmodifiableList());
+
+        return new CatalogSnapshot.Entry(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getBasePrice(),
+                product.getImageUrl(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getCategory() != null ? product.getCategory().getName() : null,
+                product.getCreatedAt(),
+                variantEntries
+        );
+    }
+
+    private List<ProductFilterOptionsResponse.FacetCount> toFacetCounts(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> new ProductFilterOptionsResponse.FacetCount(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private ProductListResponse mapToProductListResponse(CatalogSnapshot.Entry entry) {
+        return new ProductListResponse(
+                entry.getId(),
+                entry.getName(),
+                entry.getDescription(),
+                entry.getBasePrice(),
+                entry.getImageUrl(),
+                entry.getCategoryName(),
+                entry.getCreatedAt(),
+                entry.getVariantCount(),
+                entry.getMinVariantPrice(),
+                entry.getMaxVariantPrice()
+        );
+    }
+}
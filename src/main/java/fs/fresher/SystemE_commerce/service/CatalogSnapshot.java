@@ -0,0 +1,519 @@
+package fs.fresher.SystemE_commerce.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable in-memory view of the active catalog.
+ * Products are stored in listing order (createdAt desc, id desc) so the ordinal of a product
+ * is also its position in the result list, and every facet is a compressed (Roaring) bitmap over those ordinals,
+ * so a sparse facet costs memory in proportion to its matches rather than to the catalog size.
+ * Bitmaps held by the snapshot are never handed out; every query result is a new bitmap.
+ */
+public final class CatalogSnapshot {
+
+    private static final int MAX_PRICE_BUCKETS = 64;
+
+    public static final Comparator<Entry> LISTING_ORDER = Comparator
+            .comparing(Entry::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Entry::getId, Comparator.reverseOrder());
+
+    private final long version;
+    private final List<Entry> entries;
+    private final Map<Long, Integer> ordinalById;
+    private final RoaringBitmap all;
+    private final Map<Long, RoaringBitmap> byCategory;
+    private final Map<String, RoaringBitmap> byColor;
+    private final Map<String, RoaringBitmap> bySize;
+    private final BigDecimal[] priceBucketLowerBounds;
+    private final RoaringBitmap[] byPriceBucket;
+    private final ProductSearchIndex searchIndex;
+
+    private CatalogSnapshot(long version, List<Entry> sortedEntries, ProductSearchIndex searchIndex) {
+        this.version = version;
+        this.searchIndex = searchIndex;
+        this.entries = List.copyOf(sortedEntries);
+        this.ordinalById = new HashMap<>();
+        this.all = new RoaringBitmap();
+        this.byCategory = new HashMap<>();
+        this.byColor = new HashMap<>();
+        this.bySize = new HashMap<>();
+
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            Entry entry = entries.get(ordinal);
+            ordinalById.put(entry.getId(), ordinal);
+            all.add(ordinal);
+            if (entry.getCategoryId() != null) {
+                byCategory.computeIfAbsent(entry.getCategoryId(), k -> new RoaringBitmap()).add(ordinal);
+            }
+            for (VariantEntry variant : entry.getVariants()) {
+                if (variant.getColor() != null) {
+                    byColor.computeIfAbsent(variant.getColor(), k -> new RoaringBitmap()).add(ordinal);
+                }
+                if (variant.getSize() != null) {
+                    bySize.computeIfAbsent(variant.getSize(), k -> new RoaringBitmap()).add(ordinal);
+                }
+            }
+        }
+
+        this.priceBucketLowerBounds = computePriceBuckets(entries);
+        this.byPriceBucket = new RoaringBitmap[priceBucketLowerBounds.length];
+        for (int i = 0; i < byPriceBucket.length; i++) {
+            byPriceBucket[i] = new RoaringBitmap();
+        }
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            Entry entry = entries.get(ordinal);
+            if (entry.getLowestPrice() == null) {
+                continue;
+            }
+            int from = bucketOf(entry.getLowestPrice());
+            int to = bucketOf(entry.getHighestPrice());
+            for (int bucket = from; bucket <= to; bucket++) {
+                byPriceBucket[bucket].add(ordinal);
+            }
+        }
+
+        all.runOptimize();
+        byCategory.values().forEach(RoaringBitmap::runOptimize);
+        byColor.values().forEach(RoaringBitmap::runOptimize);
+        bySize.values().forEach(RoaringBitmap::runOptimize);
+        for (RoaringBitmap bits : byPriceBucket) {
+            bits.runOptimize();
+        }
+    }
+
+    public static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0, List.of(), ProductSearchIndex.empty());
+    }
+
+    public static CatalogSnapshot of(long version, Collection<Entry> entries) {
+        return of(version, entries, ProductSearchIndex.build(entries));
+    }
+
+    private static CatalogSnapshot of(long version, Collection<Entry> entries, ProductSearchIndex searchIndex) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(LISTING_ORDER);
+        return new CatalogSnapshot(version, sorted, searchIndex);
+    }
+
+    /**
+     * Copy-on-write update: replace (or drop) the given products and re-index in memory
+     */
+    public CatalogSnapshot withChanges(long newVersion, Set<Long> changedProductIds, Collection<Entry> reloadedEntries) {
+        Map<Long, Entry> merged = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            if (!changedProductIds.contains(entry.getId())) {
+                merged.put(entry.getId(), entry);
+            }
+        }
+        for (Entry entry : reloadedEntries) {
+            merged.put(entry.getId(), entry);
+        }
+        return of(newVersion, merged.values(), searchIndex.withChanges(changedProductIds, reloadedEntries));
+    }
+
+    /**
+     * Filter by bitmap intersection; exact row-level checks only run on the surviving candidates
+     */
+    public RoaringBitmap match(List<Long> categoryIds, BigDecimal minPrice, BigDecimal maxPrice,
+                        List<String> colors, List<String> sizes, String search) {
+        RoaringBitmap result = all.clone();
+
+        if (categoryIds != null) {
+            result.and(union(categoryIds, byCategory));
+        }
+        if (colors != null) {
+            result.and(union(colors, byColor));
+        }
+        if (sizes != null) {
+            result.and(union(sizes, bySize));
+        }
+        if (minPrice != null || maxPrice != null) {
+            result.and(priceCandidates(minPrice, maxPrice));
+        }
+        if (search != null) {
+            result.and(toRoaringBitmap(searchIndex.search(search).keySet()));
+        }
+
+        boolean needsExactCheck = minPrice != null || maxPrice != null || (colors != null && sizes != null);
+        if (needsExactCheck) {
+            RoaringBitmap exact = new RoaringBitmap();
+            for (int ordinal : result) {
+                if (entries.get(ordinal).matches(minPrice, maxPrice, colors, sizes)) {
+                    exact.add(ordinal);
+                }
+            }
+            return exact;
+        }
+        return result;
+    }
+
+    /**
+     * Disjunctive facet counts for the current filter context, collected in one pass over the candidates:
+     * each dimension is counted with every other filter applied but its own selection ignored,
+     * so "Red (42)" is the result size if Red were the selected color.
+     */
+    public FacetCounts facetCounts(List<Long> categoryIds, BigDecimal minPrice, BigDecimal maxPrice,
+                                   List<String> colors, List<String> sizes, String search) {
+        // Category, color and size selections only narrow this candidate set further
+        RoaringBitmap candidates = match(null, minPrice, maxPrice, null, null, search);
+
+        Map<String, Long> colorCounts = new TreeMap<>();
+        Map<String, Long> sizeCounts = new TreeMap<>();
+        Map<Long, Long> categoryCounts = new HashMap<>();
+        Map<Long, String> categoryNames = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+
+        for (int ordinal : candidates) {
+            Entry entry = entries.get(ordinal);
+
+            if (entry.getCategoryId() != null && entry.matches(minPrice, maxPrice, colors, sizes)) {
+                categoryCounts.merge(entry.getCategoryId(), 1L, Long::sum);
+                categoryNames.putIfAbsent(entry.getCategoryId(), entry.getCategoryName());
+            }
+            if (categoryIds != null && !categoryIds.contains(entry.getCategoryId())) {
+                continue;
+            }
+
+            seen.clear();
+            for (VariantEntry variant : entry.getVariants()) {
+                if (variant.getColor() != null && !seen.contains(variant.getColor())
+                        && variant.matches(entry.getBasePrice(), minPrice, maxPrice, null, sizes)) {
+                    seen.add(variant.getColor());
+                    colorCounts.merge(variant.getColor(), 1L, Long::sum);
+                }
+            }
+            seen.clear();
+            for (VariantEntry variant : entry.getVariants()) {
+                if (variant.getSize() != null && !seen.contains(variant.getSize())
+                        && variant.matches(entry.getBasePrice(), minPrice, maxPrice, colors, null)) {
+                    seen.add(variant.getSize());
+                    sizeCounts.merge(variant.getSize(), 1L, Long::sum);
+                }
+            }
+        }
+        return new FacetCounts(colorCounts, sizeCounts, categoryCounts, categoryNames);
+    }
+
+    /**
+     * Page of search results ordered by relevance, ties broken by listing order.
+     * Filters have already been applied to the matches, so pagination runs on the final result set.
+     */
+    public List<Entry> rankedPage(RoaringBitmap matches, String search, int page, int size) {
+        Map<Long, Integer> scores = searchIndex.search(search);
+        List<Integer> ordinals = new ArrayList<>(matches.getCardinality());
+        for (int ordinal : matches) {
+            ordinals.add(ordinal);
+        }
+        ordinals.sort(Comparator
+                .comparing((Integer ordinal) -> scores.getOrDefault(entries.get(ordinal).getId(), 0), Comparator.reverseOrder())
+                .thenComparing(Comparator.naturalOrder()));
+
+        int from = (int) Math.min((long) page * size, ordinals.size());
+        int to = Math.min(from + size, ordinals.size());
+        List<Entry> content = new ArrayList<>(to - from);
+        for (Integer ordinal : ordinals.subList(from, to)) {
+            content.add(entries.get(ordinal));
+        }
+        return content;
+    }
+
+    private RoaringBitmap toRoaringBitmap(Collection<Long> productIds) {
+        RoaringBitmap bits = new RoaringBitmap();
+        for (Long productId : productIds) {
+            Integer ordinal = ordinalById.get(productId);
+            if (ordinal != null) {
+                bits.add(ordinal);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Products of the given categories (all products when no category is given)
+     */
+    public RoaringBitmap inCategories(Collection<Long> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return all.clone();
+        }
+        return union(categoryIds, byCategory);
+    }
+
+    /**
+     * Distinct colors/sizes and overall price range of the matched products
+     */
+    public FacetSummary summarize(RoaringBitmap matches) {
+        TreeSet<String> colors = new TreeSet<>();
+        TreeSet<String> sizes = new TreeSet<>();
+        BigDecimal minPrice = null;
+        BigDecimal maxPrice = null;
+
+        for (int ordinal : matches) {
+            Entry entry = entries.get(ordinal);
+            for (VariantEntry variant : entry.getVariants()) {
+                if (variant.getColor() != null) {
+                    colors.add(variant.getColor());
+                }
+                if (variant.getSize() != null) {
+                    sizes.add(variant.getSize());
+                }
+            }
+            // Mirrors MIN/MAX(COALESCE(v.price, p.basePrice)) over products left-joined to variants
+            BigDecimal low = entry.getVariants().isEmpty() ? entry.getBasePrice() : entry.getMinVariantPrice();
+            BigDecimal high = entry.getVariants().isEmpty() ? entry.getBasePrice() : entry.getMaxVariantPrice();
+            minPrice = Entry.minOf(minPrice, low);
+            maxPrice = Entry.maxOf(maxPrice, high);
+        }
+        return new FacetSummary(List.copyOf(colors), List.copyOf(sizes), minPrice, maxPrice);
+    }
+
+    /**
+     * Entries of the given page, in listing order
+     */
+    public List<Entry> page(RoaringBitmap matches, int page, int size) {
+        List<Entry> content = new ArrayList<>(size);
+        long skip = (long) page * size;
+        if (skip >= matches.getLongCardinality()) {
+            return content;
+        }
+        // select(i) is the i-th smallest ordinal, so deep pages skip straight to their first match
+        PeekableIntIterator ordinals = matches.getIntIterator();
+        ordinals.advanceIfNeeded(matches.select((int) skip));
+        while (ordinals.hasNext() && content.size() < size) {
+            content.add(entries.get(ordinals.next()));
+        }
+        return content;
+    }
+
+    /**
+     * Up to limit matching entries strictly after the cursor position, in listing order.
+     * The start ordinal is found by binary search, so cost does not grow with page depth.
+     */
+    public List<Entry> pageAfter(RoaringBitmap matches, LocalDateTime cursorCreatedAt, Long cursorId, int limit) {
+        int start = cursorCreatedAt != null ? firstOrdinalAfter(cursorCreatedAt, cursorId) : 0;
+        List<Entry> content = new ArrayList<>(limit);
+        PeekableIntIterator ordinals = matches.getIntIterator();
+        ordinals.advanceIfNeeded(start);
+        while (ordinals.hasNext() && content.size() < limit) {
+            content.add(entries.get(ordinals.next()));
+        }
+        return content;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Optional<Entry> findById(Long productId) {
+        Integer ordinal = ordinalById.get(productId);
+        return ordinal != null ? Optional.of(entries.get(ordinal)) : Optional.empty();
+    }
+
+    private int firstOrdinalAfter(LocalDateTime cursorCreatedAt, Long cursorId) {
+        Entry probe = new Entry(cursorId, null, null, null, null, null, null, cursorCreatedAt, List.of());
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (LISTING_ORDER.compare(entries.get(mid), probe) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private RoaringBitmap priceCandidates(BigDecimal minPrice, BigDecimal maxPrice) {
+        RoaringBitmap candidates = new RoaringBitmap();
+        if (priceBucketLowerBounds.length == 0) {
+            return candidates;
+        }
+        int from = minPrice != null ? bucketOf(minPrice) : 0;
+        int to = maxPrice != null ? bucketOf(maxPrice) : byPriceBucket.length - 1;
+        for (int bucket = from; bucket <= to; bucket++) {
+            candidates.or(byPriceBucket[bucket]);
+        }
+        return candidates;
+    }
+
+    private int bucketOf(BigDecimal price) {
+        int index = Arrays.binarySearch(priceBucketLowerBounds, price);
+        if (index >= 0) {
+            return index;
+        }
+        return Math.max(0, -index - 2);
+    }
+
+    private static <K> RoaringBitmap union(Collection<K> keys, Map<K, RoaringBitmap> index) {
+        RoaringBitmap union = new RoaringBitmap();
+        for (K key : keys) {
+            RoaringBitmap bits = index.get(key);
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * Quantile bucket boundaries so every bucket holds roughly the same number of price points
+     */
+    private static BigDecimal[] computePriceBuckets(List<Entry> entries) {
+        TreeSet<BigDecimal> prices = new TreeSet<>();
+        for (Entry entry : entries) {
+            if (entry.getBasePrice() != null) {
+                prices.add(entry.getBasePrice());
+            }
+            for (VariantEntry variant : entry.getVariants()) {
+                if (variant.getPrice() != null) {
+                    prices.add(variant.getPrice());
+                }
+            }
+        }
+        if (prices.isEmpty()) {
+            return new BigDecimal[0];
+        }
+        List<BigDecimal> sorted = new ArrayList<>(prices);
+        int bucketCount = Math.min(MAX_PRICE_BUCKETS, sorted.size());
+        List<BigDecimal> bounds = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            BigDecimal bound = sorted.get((int) ((long) i * sorted.size() / bucketCount));
+            if (bounds.isEmpty() || bounds.get(bounds.size() - 1).compareTo(bound) < 0) {
+                bounds.add(bound);
+            }
+        }
+        return bounds.toArray(new BigDecimal[0]);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FacetSummary {
+        private final List<String> colors;
+        private final List<String> sizes;
+        private final BigDecimal minPrice;
+        private final BigDecimal maxPrice;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FacetCounts {
+        private final Map<String, Long> colorCounts;
+        private final Map<String, Long> sizeCounts;
+        private final Map<Long, Long> categoryCounts;
+        private final Map<Long, String> categoryNames;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final Long id;
+        private final String name;
+        private final String description;
+        private final BigDecimal basePrice;
+        private final String imageUrl;
+        private final Long categoryId;
+        private final String categoryName;
+        private final LocalDateTime createdAt;
+        private final List<VariantEntry> variants;
+
+        public int getVariantCount() {
+            return variants.size();
+        }
+
+        public BigDecimal getMinVariantPrice() {
+            return variants.stream()
+                    .map(VariantEntry::getPrice)
+                    .filter(Objects::nonNull)
+                    .min(BigDecimal::compareTo)
+                    .orElse(basePrice);
+        }
+
+        public BigDecimal getMaxVariantPrice() {
+            return variants.stream()
+                    .map(VariantEntry::getPrice)
+                    .filter(Objects::nonNull)
+                    .max(BigDecimal::compareTo)
+                    .orElse(basePrice);
+        }
+
+        BigDecimal getLowestPrice() {
+            return minOf(basePrice, getMinVariantPrice());
+        }
+
+        BigDecimal getHighestPrice() {
+            return maxOf(basePrice, getMaxVariantPrice());
+        }
+
+        /**
+         * Same semantics as ProductRepository.findProductsWithFilters: one variant row must satisfy
+         * every variant predicate, while the base price can satisfy either price bound on its own
+         */
+        boolean matches(BigDecimal minPrice, BigDecimal maxPrice, List<String> colors, List<String> sizes) {
+            if (variants.isEmpty()) {
+                return colors == null && sizes == null
+                        && (minPrice == null || (basePrice != null && basePrice.compareTo(minPrice) >= 0))
+                        && (maxPrice == null || (basePrice != null && basePrice.compareTo(maxPrice) <= 0));
+            }
+            for (VariantEntry variant : variants) {
+                if (variant.matches(basePrice, minPrice, maxPrice, colors, sizes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static BigDecimal minOf(BigDecimal a, BigDecimal b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            return a.min(b);
+        }
+
+        private static BigDecimal maxOf(BigDecimal a, BigDecimal b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            return a.max(b);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class VariantEntry {
+        private final Long id;
+        private final String size;
+        private final String color;
+        private final BigDecimal price;
+
+        boolean matches(BigDecimal basePrice, BigDecimal minPrice, BigDecimal maxPrice,
+                        List<String> colors, List<String> sizes) {
+            if (colors != null && !colors.contains(color)) {
+                return false;
+            }
+            if (sizes != null && !sizes.contains(size)) {
+                return false;
+            }
+            if (minPrice != null && !atLeast(basePrice, minPrice) && !atLeast(price, minPrice)) {
+                return false;
+            }
+            return maxPrice == null || atMost(basePrice, maxPrice) || atMost(price, maxPrice);
+        }
+
+        private static boolean atLeast(BigDecimal value, BigDecimal bound) {
+            return value != null && value.compareTo(bound) >= 0;
+        }
+
+        private static boolean atMost(BigDecimal value, BigDecimal bound) {
+            return value != null && value.compareTo(bound) <= 0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.CheckoutSession;
+import fs.fresher.SystemE_commerce.repository.CartRepository;
+import fs.fresher.SystemE_commerce.repository.CheckoutSessionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires the expiry timers: releases the reservations of a checkout session within about a tick of its TTL,
+ * and deletes a cart once it expires. Every firing re-reads the row, so stale timers are harmless.
+ * The polling jobs in {@link ScheduledTaskService} remain as a safety net for timers lost to a crash or a rolled-back write.
+ * The tick runs on a thread of its own rather than the shared scheduler, so a long @Scheduled job cannot hold it up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExpiryTimerService {
+
+    private final ExpiryTimers expiryTimers;
+    private final CheckoutSessionRepository checkoutSessionRepository;
+    private final CartRepository cartRepository;
+    private final InventoryReservationService inventoryReservationService;
+    private final CartService cartService;
+
+    private ScheduledExecutorService ticker;
+
+    @Value("${expiry.tick-ms:1000}")
+    private long tickMs;
+
+    @PostConstruct
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdown();
+    }
+
+    /**
+     * Rebuild the timers from the database: every open checkout session, and the carts inside the horizon
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Object[]> sessions = checkoutSessionRepository.findOpenSessionExpirations();
+        for (Object[] row : sessions) {
+            expiryTimers.scheduleSession((String) row[0], (LocalDateTime) row[1]);
+        }
+        int carts = loadCartHorizon();
+        log.info("EXPIRY: Rebuilt timers for {} checkout sessions and {} carts", sessions.size(), carts);
+    }
+
+    /**
+     * Runs more often than the horizon is long, so every cart has a timer before it comes due
+     */
+    @Scheduled(fixedDelayString = "${expiry.cart-reload-interval-ms:3600000}",
+            initialDelayString = "${expiry.cart-reload-interval-ms:3600000}")
+    public void reloadCartHorizon() {
+        loadCartHorizon();
+    }
+
+    private int loadCartHorizon() {
+        LocalDateTime until = LocalDateTime.now().plusHours(expiryTimers.getCartHorizonHours());
+        List<Object[]> carts = cartRepository.findExpirationsBefore(until);
+        for (Object[] row : carts) {
+            expiryTimers.scheduleCart((String) row[0], (LocalDateTime) row[1]);
+        }
+        log.debug("EXPIRY: Loaded {} cart timers up to {}", carts.size(), until);
+        return carts.size();
+    }
+
+    // An exception escaping a scheduleWithFixedDelay task would cancel every later tick
+    private void tick() {
+        try {
+            fireDueTimers();
+        } catch (Exception e) {
+            log.error("EXPIRY: Timer tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public void fireDueTimers() {
+        long now = System.currentTimeMillis();
+        for (String checkoutToken : expiryTimers.pollDueSessions(now)) {
+            releaseExpiredSession(checkoutToken);
+        }
+        for (String cartId : expiryTimers.pollDueCarts(now)) {
+            try {
+                cartService.cleanupExpiredCart(cartId);
+            } catch (Exception e) {
+                log.error("EXPIRY: Failed to clean up expired cart {}: {}", cartId, e.getMessage());
+            }
+        }
+    }
+
+    private void releaseExpiredSession(String checkoutToken) {
+        try {
+            CheckoutSession session = checkoutSessionRepository.findByCheckoutToken(checkoutToken).orElse(null);
+            if (session == null || session.getIsUsed()) {
+                return;
+            }
+            if (!session.isExpired()) {
+                // The timer came from an older expiry; follow the row
+                expiryTimers.scheduleSession(checkoutToken, session.getExpiresAt());
+                return;
+            }
+            var result = inventoryReservationService.releaseReservationByToken(checkoutToken);
+            log.info("EXPIRY: Released reservations for expired session {} (released {} variants)",
+                    checkoutToken, result.get("releasedVariants"));
+        } catch (Exception e) {
+            // Left to the polling safety net
+            log.error("EXPIRY: Failed to release expired session {}: {}", checkoutToken, e.getMessage());
+        }
+    }
+}
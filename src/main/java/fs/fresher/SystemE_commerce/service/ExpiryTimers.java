@@ -0,0 +1,86 @@
+package fs.fresher.SystemE_commerce.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * In-memory expiry timers for checkout sessions (by checkout token) and carts (by cart id).
+ * Fed by {@link fs.fresher.SystemE_commerce.entity.ExpiryTimerListener} whenever a row is written, and rebuilt from
+ * the database on startup by {@link ExpiryTimerService}, which also fires the due timers.
+ * Carts are only kept when they expire within cart-horizon-hours, which bounds memory; the rest are loaded
+ * by the periodic horizon reload before they come due.
+ * Has no dependencies on purpose: entity listeners are created while the EntityManagerFactory is being built.
+ */
+@Component
+public class ExpiryTimers {
+
+    private final ExpiryWheel<String> sessions;
+    private final ExpiryWheel<String> carts;
+
+    @Value("${expiry.cart-horizon-hours:12}")
+    private long cartHorizonHours;
+
+    public ExpiryTimers(@Value("${expiry.tick-ms:1000}") long tickMs) {
+        long now = System.currentTimeMillis();
+        this.sessions = new ExpiryWheel<>(tickMs, 60, now);
+        this.carts = new ExpiryWheel<>(tickMs, 60, now);
+    }
+
+    public synchronized void scheduleSession(String checkoutToken, LocalDateTime expiresAt) {
+        if (checkoutToken != null && expiresAt != null) {
+            sessions.schedule(checkoutToken, toEpochMilli(expiresAt));
+        }
+    }
+
+    public synchronized void cancelSession(String checkoutToken) {
+        if (checkoutToken != null) {
+            sessions.cancel(checkoutToken);
+        }
+    }
+
+    public synchronized void scheduleCart(String cartId, LocalDateTime expiresAt) {
+        if (cartId == null) {
+            return;
+        }
+        if (expiresAt == null || expiresAt.isAfter(LocalDateTime.now().plusHours(cartHorizonHours))) {
+            // Beyond the horizon: drop any earlier, now stale timer and let the horizon reload pick it up
+            carts.cancel(cartId);
+            return;
+        }
+        carts.schedule(cartId, toEpochMilli(expiresAt));
+    }
+
+    public synchronized void cancelCart(String cartId) {
+        if (cartId != null) {
+            carts.cancel(cartId);
+        }
+    }
+
+    public synchronized List<String> pollDueSessions(long nowMs) {
+        return sessions.advance(nowMs);
+    }
+
+    public synchronized List<String> pollDueCarts(long nowMs) {
+        return carts.advance(nowMs);
+    }
+
+    public synchronized int sessionCount() {
+        return sessions.size();
+    }
+
+    public synchronized int cartCount() {
+        return carts.size();
+    }
+
+    long getCartHorizonHours() {
+        return cartHorizonHours;
+    }
+
+    static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,152 @@
+package fs.fresher.SystemE_commerce.service;
+
+import java.util.*;
+
+/**
+ * Hierarchical timing wheel keyed by id. Level 0 has tickMs slots; each further level is created on demand with
+ * a tick equal to the full span of the level below, so a 7-day TTL needs four levels of 60 slots at a 1s tick.
+ * Only buckets that hold entries are queued, so advancing over idle time costs nothing; entries in a due bucket
+ * of a higher level cascade down until they land in the current tick and fire.
+ * A key is returned by the first advance at or after the start of the first tick that begins after its expiry:
+ * never early, at most one tick late. Scheduling a key again replaces its previous expiry.
+ * Not thread-safe on its own; callers synchronize.
+ */
+public class ExpiryWheel<K> {
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final PriorityQueue<Bucket<K>> dueQueue = new PriorityQueue<>(Comparator.comparingLong(bucket -> bucket.expiration));
+    private final List<K> ready = new ArrayList<>();
+    private final Level root;
+    private final long tickMs;
+    private final int wheelSize;
+
+    public ExpiryWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.root = new Level(tickMs, startMs);
+    }
+
+    /**
+     * Schedule or reschedule a key; an expiry already in the past is returned by the next {@link #advance(long)}
+     */
+    public void schedule(K key, long expiresAtMs) {
+        cancel(key);
+        // Buckets come due at the start of their slot, so shift by one tick to never fire before the expiry
+        Entry<K> entry = new Entry<>(key, expiresAtMs + tickMs);
+        entries.put(key, entry);
+        if (!root.add(entry)) {
+            ready.add(key);
+        }
+    }
+
+    public void cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        if (entry.bucket != null) {
+            entry.bucket.entries.remove(entry);
+            entry.bucket = null;
+        } else {
+            ready.remove(key);
+        }
+    }
+
+    /**
+     * Move the clock to nowMs and return every key whose expiry has passed, removing them from the wheel
+     */
+    public List<K> advance(long nowMs) {
+        List<K> due = new ArrayList<>(ready);
+        ready.clear();
+        due.forEach(entries::remove);
+        Bucket<K> bucket;
+        while ((bucket = dueQueue.peek()) != null && bucket.expiration <= nowMs) {
+            dueQueue.poll();
+            root.advanceClock(bucket.expiration);
+            List<Entry<K>> drained = new ArrayList<>(bucket.entries);
+            bucket.entries.clear();
+            bucket.expiration = -1;
+            for (Entry<K> entry : drained) {
+                entry.bucket = null;
+                if (!root.add(entry)) {
+                    entries.remove(entry.key);
+                    due.add(entry.key);
+                }
+            }
+        }
+        root.advanceClock(nowMs);
+        return due;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private final class Level {
+        private final long tickMs;
+        private final long intervalMs;
+        private final List<Bucket<K>> buckets;
+        private long currentTime;
+        private Level overflow;
+
+        private Level(long tickMs, long startMs) {
+            this.tickMs = tickMs;
+            this.intervalMs = tickMs * wheelSize;
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new Bucket<>());
+            }
+            this.currentTime = startMs - (startMs % tickMs);
+        }
+
+        /**
+         * False when the entry is already inside the current tick, i.e. due
+         */
+        private boolean add(Entry<K> entry) {
+            if (entry.fireAtMs < currentTime + tickMs) {
+                return false;
+            }
+            if (entry.fireAtMs < currentTime + intervalMs) {
+                long slot = entry.fireAtMs / tickMs;
+                Bucket<K> bucket = buckets.get((int) (slot % wheelSize));
+                bucket.entries.add(entry);
+                entry.bucket = bucket;
+                long expiration = slot * tickMs;
+                if (bucket.expiration != expiration) {
+                    bucket.expiration = expiration;
+                    dueQueue.offer(bucket);
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(intervalMs, currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    private static final class Bucket<K> {
+        private final Set<Entry<K>> entries = new LinkedHashSet<>();
+        private long expiration = -1;
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long fireAtMs;
+        private Bucket<K> bucket;
+
+        private Entry(K key, long fireAtMs) {
+            this.key = key;
+            this.fireAtMs = fireAtMs;
+        }
+    }
+}
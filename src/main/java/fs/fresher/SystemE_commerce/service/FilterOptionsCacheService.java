@@ -0,0 +1,161 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
+import fs.fresher.SystemE_commerce.entity.Category;
+import fs.fresher.SystemE_commerce.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed filter sidebar options keyed by the normalized category selection.
+ * Options are derived from the in-memory catalog snapshot, so steady-state requests cost no DB round trip.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FilterOptionsCacheService {
+
+    private static final List<Long> ALL_CATEGORIES = List.of();
+
+    private final CatalogIndexService catalogIndexService;
+    private final CategoryRepository categoryRepository;
+
+    private final Map<List<Long>, CachedOptions> cache = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile List<ProductFilterOptionsResponse.CategoryOption> categoryOptions;
+    private volatile long builtForVersion = -1;
+    private volatile LocalDateTime lastRebuildAt;
+
+    @Value("${catalog.filter-options.max-entries:1000}")
+    private int maxEntries;
+
+    /**
+     * Cached options for the given categories, or null when the catalog snapshot is not available
+     */
+    public ProductFilterOptionsResponse get(List<Long> categoryIds) {
+        if (!catalogIndexService.isReady()) {
+            return null;
+        }
+
+        List<Long> key = normalize(categoryIds);
+        CachedOptions cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            cached.hits.increment();
+            return cached.options;
+        }
+
+        misses.incrementAndGet();
+        CachedOptions computed = new CachedOptions(compute(key, catalogIndexService.currentSnapshot()));
+        if (cache.size() < maxEntries) {
+            cache.putIfAbsent(key, computed);
+        }
+        return computed.options;
+    }
+
+    /**
+     * Background rebuild of every cached selection whenever the catalog snapshot changes
+     */
+    @Scheduled(fixedDelayString = "${catalog.filter-options.rebuild-interval-ms:2000}")
+    public void rebuildIfCatalogChanged() {
+        if (!catalogIndexService.isReady()) {
+            return;
+        }
+        CatalogSnapshot snapshot = catalogIndexService.currentSnapshot();
+        if (snapshot.getVersion() == builtForVersion && categoryOptions != null) {
+            return;
+        }
+        try {
+            categoryOptions = loadCategoryOptions();
+            for (Map.Entry<List<Long>, CachedOptions> entry : cache.entrySet()) {
+                entry.getValue().options = compute(entry.getKey(), snapshot);
+            }
+            builtForVersion = snapshot.getVersion();
+            lastRebuildAt = LocalDateTime.now();
+            log.debug("FILTER OPTIONS: Rebuilt {} cached selections for catalog v{}", cache.size(), builtForVersion);
+        } catch (Exception e) {
+            log.error("FILTER OPTIONS: Background rebuild failed for catalog v{}", snapshot.getVersion(), e);
+        }
+    }
+
+    /**
+     * Hit/miss counters overall and per cached category selection
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Long> hitsBySelection = cache.entrySet().stream()
+                .collect(Collectors.toMap(
+                        entry -> entry.getKey().isEmpty() ? "all" : entry.getKey().toString(),
+                        entry -> entry.getValue().hits.sum()));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", catalogIndexService.isReady());
+        stats.put("entries", cache.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitsBySelection", hitsBySelection);
+        stats.put("catalogVersion", builtForVersion);
+        stats.put("lastRebuildAt", lastRebuildAt);
+        return stats;
+    }
+
+    private ProductFilterOptionsResponse compute(List<Long> categoryIds, CatalogSnapshot snapshot) {
+        CatalogSnapshot.FacetSummary summary = snapshot.summarize(snapshot.inCategories(categoryIds));
+        return new ProductFilterOptionsResponse(
+                categoryOptions(),
+                summary.getColors(),
+                summary.getSizes(),
+                summary.getMinPrice() != null ? summary.getMinPrice() : BigDecimal.ZERO,
+                summary.getMaxPrice() != null ? summary.getMaxPrice() : BigDecimal.ZERO
+        );
+    }
+
+    private List<ProductFilterOptionsResponse.CategoryOption> categoryOptions() {
+        List<ProductFilterOptionsResponse.CategoryOption> options = categoryOptions;
+        if (options == null) {
+            options = loadCategoryOptions();
+            categoryOptions = options;
+        }
+        return options;
+    }
+
+    private List<ProductFilterOptionsResponse.CategoryOption> loadCategoryOptions() {
+        List<Category> categories = categoryRepository.findAll(Sort.by("name"));
+        return categories.stream()
+                .map(cat -> new ProductFilterOptionsResponse.CategoryOption(cat.getId(), cat.getName()))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private List<Long> normalize(List<Long> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return ALL_CATEGORIES;
+        }
+        return categoryIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private static class CachedOptions {
+        private volatile ProductFilterOptionsResponse options;
+        private final LongAdder hits = new LongAdder();
+
+        private CachedOptions(ProductFilterOptionsResponse options) {
+            this.options = options;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.Cart;
+import fs.fresher.SystemE_commerce.entity.CartItem;
+import fs.fresher.SystemE_commerce.repository.CartRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Write-behind store for active carts. Cart contents and mutations are served from memory, while prices and stock
+ * always come from the variant rows; dirty carts are written to carts/cart_items in coalesced batches, so a burst of clicks costs one write.
+ * Anything that reads carts from the database (checkout, order placement) must call {@link #flush(String)} first.
+ * Carts live in this JVM only, so the store is off by default; enable it only where instances do not share carts
+ * (a single instance or sticky sessions).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HotCartStore {
+
+    private final CartRepository cartRepository;
+    private final HotCartWriter hotCartWriter;
+
+    private final ConcurrentHashMap<String, HotCart> carts = new ConcurrentHashMap<>();
+
+    // Flushes are serialized so a forced flush never races the background batch on the same cart
+    private final Object flushLock = new Object();
+
+    @Value("${cart.hot-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cart.ttl-days:7}")
+    private int cartTtlDays;
+
+    @Value("${cart.hot-store.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${cart.hot-store.idle-seconds:300}")
+    private long idleSeconds;
+
+    @Value("${cart.hot-store.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Run an operation on the hot copy of a cart, loading it from the database on first use.
+     * Unknown carts are created when create is set, otherwise the operation sees null.
+     */
+    public <R> R withCart(String cartId, String sessionToken, boolean create, Function<HotCart, R> operation) {
+        while (true) {
+            HotCart cart = cartId != null ? carts.get(cartId) : null;
+            if (cart == null) {
+                cart = load(cartId, sessionToken, create);
+                if (cart == null) {
+                    return operation.apply(null);
+                }
+                HotCart raced = carts.putIfAbsent(cart.cartId, cart);
+                cart = raced != null ? raced : cart;
+            }
+            synchronized (cart) {
+                // Evicted between lookup and lock: start over with a fresh copy
+                if (cart.evicted) {
+                    continue;
+                }
+                cart.lastAccessedAt = System.currentTimeMillis();
+                return operation.apply(cart);
+            }
+        }
+    }
+
+    /**
+     * Run an operation on the hot copy only if the cart is already in memory, never loading it; null otherwise
+     */
+    public <R> R ifPresent(String cartId, Function<HotCart, R> operation) {
+        HotCart cart = enabled && cartId != null ? carts.get(cartId) : null;
+        if (cart == null) {
+            return null;
+        }
+        synchronized (cart) {
+            return cart.evicted ? null : operation.apply(cart);
+        }
+    }
+
+    /**
+     * Write the cart now if it has unflushed changes; committed before this returns
+     */
+    public void flush(String cartId) {
+        if (!enabled || cartId == null) {
+            return;
+        }
+        HotCart cart = carts.get(cartId);
+        if (cart == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            CartState state;
+            synchronized (cart) {
+                if (!cart.isDirty()) {
+                    return;
+                }
+                state = cart.toState();
+            }
+            hotCartWriter.write(List.of(state));
+            markFlushed(List.of(state));
+        }
+    }
+
+    /**
+     * Drop a cart from memory without writing it, e.g. after it was deleted from the database
+     */
+    public void evict(String cartId) {
+        HotCart cart = cartId != null ? carts.remove(cartId) : null;
+        if (cart != null) {
+            synchronized (cart) {
+                cart.evicted = true;
+            }
+        }
+    }
+
+    /**
+     * Background write-behind: flush dirty carts in batches, then evict idle carts and enforce the size bound.
+     * Carts whose last write failed on its own are kept out of the batches and retried one at a time.
+     */
+    @Scheduled(fixedDelayString = "${cart.hot-store.flush-interval-ms:2000}")
+    public void flushDirtyCarts() {
+        if (!enabled || carts.isEmpty()) {
+            return;
+        }
+        int written = 0;
+        synchronized (flushLock) {
+            List<CartState> batch = new ArrayList<>(flushBatchSize);
+            List<CartState> quarantined = new ArrayList<>();
+            for (HotCart cart : carts.values()) {
+                synchronized (cart) {
+                    if (cart.isDirty()) {
+                        (cart.flushFailures > 0 ? quarantined : batch).add(cart.toState());
+                    }
+                }
+                if (batch.size() >= flushBatchSize) {
+                    written += writeBatch(batch);
+                    batch = new ArrayList<>(flushBatchSize);
+                }
+            }
+            written += writeBatch(batch);
+            for (CartState state : quarantined) {
+                written += writeBatch(List.of(state));
+            }
+        }
+        int evicted = evictIdle();
+        if (written > 0 || evicted > 0) {
+            log.debug("HOT CARTS: Flushed {} carts, evicted {}, {} in memory", written, evicted, carts.size());
+        }
+    }
+
+    private int writeBatch(List<CartState> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            hotCartWriter.write(batch);
+            markFlushed(batch);
+            return batch.size();
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                recordFailure(batch.get(0), e);
+                return 0;
+            }
+            // One bad cart must not hold back the others: write them one at a time to find it
+            log.warn("HOT CARTS: Failed to flush a batch of {} carts, writing them one at a time", batch.size(), e);
+            int written = 0;
+            for (CartState state : batch) {
+                written += writeBatch(List.of(state));
+            }
+            return written;
+        }
+    }
+
+    /**
+     * The cart stays dirty and is retried alone on the next cycle, outside the batches
+     */
+    private void recordFailure(CartState state, Exception e) {
+        HotCart cart = carts.get(state.cartId);
+        int failures = 0;
+        if (cart != null) {
+            synchronized (cart) {
+                failures = ++cart.flushFailures;
+            }
+        }
+        log.error("HOT CARTS: Failed to flush cart {} ({} consecutive failures), quarantined from batches",
+                state.cartId, failures, e);
+    }
+
+    private void markFlushed(List<CartState> states) {
+        for (CartState state : states) {
+            HotCart cart = carts.get(state.cartId);
+            if (cart != null) {
+                synchronized (cart) {
+                    cart.flushedVersion = Math.max(cart.flushedVersion, state.version);
+                    cart.flushFailures = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evict clean carts idle for longer than idleSeconds, then the least recently used clean carts above maxEntries
+     */
+    private int evictIdle() {
+        long idleBefore = System.currentTimeMillis() - idleSeconds * 1000;
+        int evicted = 0;
+        List<HotCart> byAccess = new ArrayList<>(carts.values());
+        byAccess.sort(Comparator.comparingLong(cart -> cart.lastAccessedAt));
+        int excess = byAccess.size() - maxEntries;
+        for (HotCart cart : byAccess) {
+            synchronized (cart) {
+                boolean overCapacity = excess - evicted > 0;
+                if (cart.isDirty() || (cart.lastAccessedAt >= idleBefore && !overCapacity)) {
+                    continue;
+                }
+                cart.evicted = true;
+                carts.remove(cart.cartId, cart);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private HotCart load(String cartId, String sessionToken, boolean create) {
+        Cart stored = cartId != null ? cartRepository.findByCartIdWithItems(cartId).orElse(null) : null;
+        if (stored != null) {
+            return HotCart.from(stored);
+        }
+        if (!create) {
+            return null;
+        }
+        HotCart cart = new HotCart(cartId != null ? cartId : UUID.randomUUID().toString());
+        cart.sessionToken = sessionToken;
+        cart.expiresAt = LocalDateTime.now().plusDays(cartTtlDays);
+        // Never written yet: dirty from the start
+        cart.version = 1;
+        return cart;
+    }
+
+    int size() {
+        return carts.size();
+    }
+
+    /**
+     * In-memory cart; guarded by its own monitor. Holds quantities only: prices and stock are read from the
+     * variant rows whenever the cart is shown, so a line never displays what the variant looked like when it changed.
+     */
+    public static final class HotCart {
+        private final String cartId;
+        private String sessionToken;
+        private LocalDateTime expiresAt;
+        private LocalDateTime updatedAt;
+        private final LinkedHashMap<Long, Integer> quantities = new LinkedHashMap<>();
+        private long version;
+        private long flushedVersion;
+        private int flushFailures;
+        private volatile long lastAccessedAt = System.currentTimeMillis();
+        private boolean evicted;
+
+        private HotCart(String cartId) {
+            this.cartId = cartId;
+            this.updatedAt = LocalDateTime.now();
+        }
+
+        static HotCart from(Cart stored) {
+            HotCart cart = new HotCart(stored.getCartId());
+            cart.sessionToken = stored.getSessionToken();
+            cart.expiresAt = stored.getExpiresAt();
+            cart.updatedAt = stored.getUpdatedAt();
+            if (stored.getItems() != null) {
+                for (CartItem item : stored.getItems()) {
+                    cart.quantities.put(item.getProductVariant().getId(), item.getQuantity());
+                }
+            }
+            return cart;
+        }
+
+        public String getCartId() {
+            return cartId;
+        }
+
+        public boolean isExpired() {
+            return expiresAt != null && LocalDateTime.now().isAfter(expiresAt);
+        }
+
+        public LocalDateTime getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public Map<Long, Integer> getQuantities() {
+            return Collections.unmodifiableMap(quantities);
+        }
+
+        public Integer getQuantity(Long variantId) {
+            return quantities.get(variantId);
+        }
+
+        public void setQuantity(Long variantId, int quantity) {
+            quantities.put(variantId, quantity);
+            changed();
+        }
+
+        public boolean remove(Long variantId) {
+            boolean removed = quantities.remove(variantId) != null;
+            if (removed) {
+                changed();
+            }
+            return removed;
+        }
+
+        public void clear() {
+            if (!quantities.isEmpty()) {
+                quantities.clear();
+                changed();
+            }
+        }
+
+        public void setSessionToken(String sessionToken) {
+            if (!Objects.equals(this.sessionToken, sessionToken)) {
+                this.sessionToken = sessionToken;
+                changed();
+            }
+        }
+
+        public void extendExpiration(int days) {
+            expiresAt = LocalDateTime.now().plusDays(days);
+            changed();
+        }
+
+        boolean isDirty() {
+            return version > flushedVersion;
+        }
+
+        private void changed() {
+            version++;
+            updatedAt = LocalDateTime.now();
+        }
+
+        /**
+         * Copy of the lines for rendering outside the cart monitor
+         */
+        public CartView view() {
+            return new CartView(cartId, new LinkedHashMap<>(quantities), updatedAt, isExpired());
+        }
+
+        private CartState toState() {
+            return new CartState(cartId, sessionToken, expiresAt, new LinkedHashMap<>(quantities), version);
+        }
+    }
+
+    /**
+     * Quantities of a hot cart at one point in time, priced by the caller from the variant rows
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CartView {
+        private final String cartId;
+        private final Map<Long, Integer> quantities;
+        private final LocalDateTime updatedAt;
+        private final boolean expired;
+    }
+
+    /**
+     * Immutable copy of a cart handed to the writer
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CartState {
+        private final String cartId;
+        private final String sessionToken;
+        private final LocalDateTime expiresAt;
+        private final Map<Long, Integer> quantities;
+        private final long version;
+    }
+}
@@ -0,0 +1,106 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.Cart;
+import fs.fresher.SystemE_commerce.entity.CartItem;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.repository.CartItemRepository;
+import fs.fresher.SystemE_commerce.repository.CartRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes coalesced hot cart state to carts/cart_items: one read of the affected carts, then only the rows that differ.
+ * Runs in its own transaction so a forced flush is committed before the caller reads the cart.
+ */
+@Service
+@RequiredArgsConstructor
+public class HotCartWriter {
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductVariantRepository productVariantRepository;
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void write(List<HotCartStore.CartState> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        Map<String, Cart> carts = cartRepository.findAllByCartIdInWithItems(
+                        states.stream().map(HotCartStore.CartState::getCartId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Cart::getCartId, Function.identity()));
+        // Totals are priced at write time; the hot copy keeps no prices
+        Map<Long, ProductVariant> variants = productVariantRepository.findAllById(states.stream()
+                        .flatMap(state -> state.getQuantities().keySet().stream())
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+
+        for (HotCartStore.CartState state : states) {
+            // A cart removed by cleanup while it was hot is written again as a new row
+            Cart cart = carts.get(state.getCartId());
+            if (cart == null) {
+                cart = new Cart();
+                cart.setCartId(state.getCartId());
+                cart.setItems(new ArrayList<>());
+                cart = cartRepository.save(cart);
+            }
+            cart.setSessionToken(state.getSessionToken());
+            cart.setExpiresAt(state.getExpiresAt());
+            syncItems(cart, state.getQuantities());
+            cart.setTotals(state.getQuantities().size(),
+                    state.getQuantities().values().stream().mapToInt(Integer::intValue).sum(),
+                    totalAmount(state.getQuantities(), variants));
+        }
+    }
+
+    private void syncItems(Cart cart, Map<Long, Integer> quantities) {
+        if (cart.getItems() == null) {
+            cart.setItems(new ArrayList<>());
+        }
+        Map<Long, CartItem> existing = new HashMap<>();
+        Iterator<CartItem> iterator = cart.getItems().iterator();
+        while (iterator.hasNext()) {
+            CartItem item = iterator.next();
+            Long variantId = item.getProductVariant().getId();
+            if (!quantities.containsKey(variantId)) {
+                // Detach from the cascading collection first, otherwise the delete would be re-saved
+                iterator.remove();
+                cartItemRepository.delete(item);
+            } else {
+                existing.put(variantId, item);
+            }
+        }
+
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            CartItem item = existing.get(entry.getKey());
+            if (item == null) {
+                item = new CartItem();
+                item.setCart(cart);
+                item.setProductVariant(productVariantRepository.getReferenceById(entry.getKey()));
+                item.setQuantity(entry.getValue());
+                cart.getItems().add(item);
+                cartItemRepository.save(item);
+            } else if (!item.getQuantity().equals(entry.getValue())) {
+                item.setQuantity(entry.getValue());
+            }
+        }
+    }
+
+    private static BigDecimal totalAmount(Map<Long, Integer> quantities, Map<Long, ProductVariant> variants) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            ProductVariant variant = variants.get(entry.getKey());
+            if (variant != null && variant.getPrice() != null) {
+                total = total.add(variant.getPrice().multiply(BigDecimal.valueOf(entry.getValue())));
+            }
+        }
+        return total;
+    }
+}
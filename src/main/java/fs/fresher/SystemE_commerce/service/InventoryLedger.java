@@ -0,0 +1,222 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.InventoryJournalEntry;
+import fs.fresher.SystemE_commerce.repository.InventoryJournalRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional flash-sale inventory mode: available stock per variant is an in-process counter, so buyers of one SKU
+ * spin on a compare-and-set instead of queueing on its product_variants row lock. Counters sit in a
+ * ConcurrentHashMap, which stripes them by variant id, and are loaded on first use.
+ * Every movement is also written to inventory_journal in the caller's transaction; the reconciler applies the journal
+ * to product_variants in the background, and on startup replays whatever a crash left behind.
+ * Stock changed outside the ledger (admin edits, direct orders) is picked up by the reconciler as drift.
+ * Counters live in this JVM only, so enable it on a single instance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryLedger {
+
+    private final InventoryLedgerWriter inventoryLedgerWriter;
+    private final InventoryJournalRepository inventoryJournalRepository;
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    // Loading counters and reconciling are serialized, so a counter never counts a journal batch twice
+    private final Object reconcileLock = new Object();
+
+    @Value("${inventory.ledger.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.ledger.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * All-or-nothing reservation; false when any variant is short, and nothing is taken then
+     */
+    public boolean tryReserve(Map<Long, Integer> reservationMap) {
+        List<Long> variantIds = reservationMap.keySet().stream().sorted().toList();
+        Map<Long, Counter> loaded = counters(variantIds);
+
+        for (int i = 0; i < variantIds.size(); i++) {
+            Long variantId = variantIds.get(i);
+            if (!loaded.get(variantId).tryTake(reservationMap.get(variantId))) {
+                for (Long takenId : variantIds.subList(0, i)) {
+                    loaded.get(takenId).available.addAndGet(reservationMap.get(takenId));
+                }
+                log.warn("LEDGER: Insufficient stock for variant {}: requested={}, available={}",
+                        variantId, reservationMap.get(variantId), loaded.get(variantId).available.get());
+                return false;
+            }
+        }
+
+        journal(reservationMap, 1, 0);
+        return true;
+    }
+
+    public void release(Map<Long, Integer> reservationMap) {
+        Map<Long, Counter> loaded = counters(reservationMap.keySet());
+        reservationMap.forEach((variantId, quantity) -> loaded.get(variantId).available.addAndGet(quantity));
+        journal(reservationMap, -1, 0);
+    }
+
+    /**
+     * A sale takes reserved units out of stock: available stock does not move, only the journal records it
+     */
+    public void confirm(Map<Long, Integer> reservationMap) {
+        journal(reservationMap, -1, -1);
+    }
+
+    public long getAvailable(Long variantId) {
+        return counters(List.of(variantId)).get(variantId).available.get();
+    }
+
+    /**
+     * Crash recovery: apply the journal left by the previous run before reporting ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        int replayed = reconcile();
+        log.info("LEDGER: Replayed {} journal entries on startup", replayed);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.reconcile-interval-ms:1000}")
+    public void reconcileJournal() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Apply the journal in batches, then fold stock changes made outside the ledger into the loaded counters
+     */
+    int reconcile() {
+        synchronized (reconcileLock) {
+            int applied = 0;
+            InventoryLedgerWriter.ApplyResult result;
+            do {
+                result = inventoryLedgerWriter.applyJournal(reconcileBatchSize);
+                applied += result.getEntries();
+                result.getStockDeltas().forEach((variantId, delta) -> {
+                    Counter counter = counters.get(variantId);
+                    if (counter != null) {
+                        counter.stock += delta;
+                    }
+                });
+            } while (result.getEntries() == reconcileBatchSize);
+
+            Map<Long, Integer> stock = inventoryLedgerWriter.currentStock(counters.keySet());
+            stock.forEach((variantId, current) -> {
+                Counter counter = counters.get(variantId);
+                if (counter != null && counter.stock != current) {
+                    log.info("LEDGER: Stock of variant {} changed outside the ledger: {} -> {}",
+                            variantId, counter.stock, current);
+                    counter.available.addAndGet(current - counter.stock);
+                    counter.stock = current;
+                }
+            });
+            if (applied > 0) {
+                log.debug("LEDGER: Reconciled {} journal entries", applied);
+            }
+            return applied;
+        }
+    }
+
+    private Map<Long, Counter> counters(Collection<Long> variantIds) {
+        Map<Long, Counter> loaded = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long variantId : variantIds) {
+            Counter counter = counters.get(variantId);
+            if (counter != null) {
+                loaded.put(variantId, counter);
+            } else {
+                missing.add(variantId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            synchronized (reconcileLock) {
+                List<Long> toLoad = missing.stream().filter(id -> !counters.containsKey(id)).toList();
+                if (!toLoad.isEmpty()) {
+                    for (InventoryLedgerWriter.VariantStock row : inventoryLedgerWriter.loadStock(toLoad)) {
+                        counters.put(row.getVariantId(), new Counter(row.getAvailable(), row.getStock()));
+                    }
+                }
+            }
+            for (Long variantId : missing) {
+                Counter counter = counters.get(variantId);
+                if (counter == null) {
+                    throw new RuntimeException("Product variant not found: " + variantId);
+                }
+                loaded.put(variantId, counter);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Write the movement to the journal in the caller's transaction; if that transaction rolls back,
+     * the journal rows vanish with it and the counters are given back here
+     */
+    private void journal(Map<Long, Integer> quantities, int reservedSign, int stockSign) {
+        List<InventoryJournalEntry> entries = new ArrayList<>(quantities.size());
+        quantities.forEach((variantId, quantity) ->
+                entries.add(new InventoryJournalEntry(variantId, reservedSign * quantity, stockSign * quantity)));
+
+        int availableSign = stockSign - reservedSign;
+        if (availableSign != 0 && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        quantities.forEach((variantId, quantity) ->
+                                counters.get(variantId).available.addAndGet(-availableSign * quantity));
+                    }
+                }
+            });
+        }
+        inventoryJournalRepository.saveAll(entries);
+    }
+
+    private static final class Counter {
+        private final AtomicLong available;
+        // Committed stock_quantity this counter accounts for; guarded by reconcileLock
+        private long stock;
+
+        private Counter(long available, long stock) {
+            this.available = new AtomicLong(available);
+            this.stock = stock;
+        }
+
+        private boolean tryTake(int quantity) {
+            while (true) {
+                long current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
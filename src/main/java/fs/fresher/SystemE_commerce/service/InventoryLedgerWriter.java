@@ -0,0 +1,110 @@
+package fs.fresher.SystemE_commerce.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Database side of the {@link InventoryLedger}: reads the starting point of its counters and applies the journal
+ * to product_variants with set-based statements.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryLedgerWriter {
+
+    static final String APPLY_SQL =
+            "UPDATE product_variants SET reserved_quantity = GREATEST(reserved_quantity + ?, 0), " +
+            "stock_quantity = stock_quantity + ?, version = version + 1, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductAggregateRefresher productAggregateRefresher;
+
+    /**
+     * Committed stock of each variant, and its available stock with the journal rows not yet applied folded in.
+     * One statement, so it sees a batch of journal rows either before or after it was applied, never half of it.
+     */
+    public List<VariantStock> loadStock(Collection<Long> variantIds) {
+        String placeholders = String.join(",", Collections.nCopies(variantIds.size(), "?"));
+        return jdbcTemplate.query(
+                "SELECT v.id, v.stock_quantity, v.stock_quantity - v.reserved_quantity " +
+                "+ COALESCE(SUM(j.stock_delta), 0) - COALESCE(SUM(j.reserved_delta), 0) " +
+                "FROM product_variants v LEFT JOIN inventory_journal j ON j.variant_id = v.id " +
+                "WHERE v.id IN (" + placeholders + ") GROUP BY v.id, v.stock_quantity, v.reserved_quantity",
+                (rs, rowNum) -> new VariantStock(rs.getLong(1), rs.getInt(2), rs.getLong(3)),
+                variantIds.toArray());
+    }
+
+    public Map<Long, Integer> currentStock(Collection<Long> variantIds) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (variantIds.isEmpty()) {
+            return stock;
+        }
+        String placeholders = String.join(",", Collections.nCopies(variantIds.size(), "?"));
+        jdbcTemplate.query("SELECT id, stock_quantity FROM product_variants WHERE id IN (" + placeholders + ")",
+                rs -> {
+                    stock.put(rs.getLong(1), rs.getInt(2));
+                },
+                variantIds.toArray());
+        return stock;
+    }
+
+    /**
+     * Apply the oldest batchSize journal rows: one update per variant with the summed deltas, in variant id order,
+     * then delete exactly those rows. Rows committed late with a lower id are simply picked up by the next batch.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public ApplyResult applyJournal(int batchSize) {
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT id, variant_id, reserved_delta, stock_delta FROM inventory_journal ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getInt(4)},
+                batchSize);
+        if (rows.isEmpty()) {
+            return new ApplyResult(0, Collections.emptyMap());
+        }
+
+        Map<Long, int[]> deltas = new TreeMap<>();
+        for (long[] row : rows) {
+            int[] delta = deltas.computeIfAbsent(row[1], id -> new int[2]);
+            delta[0] += (int) row[2];
+            delta[1] += (int) row[3];
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        Map<Long, Integer> stockDeltas = new HashMap<>();
+        deltas.forEach((variantId, delta) -> {
+            updates.add(new Object[] {delta[0], delta[1], now, variantId});
+            stockDeltas.put(variantId, delta[1]);
+        });
+        jdbcTemplate.batchUpdate(APPLY_SQL, updates);
+
+        String placeholders = String.join(",", Collections.nCopies(rows.size(), "?"));
+        jdbcTemplate.update("DELETE FROM inventory_journal WHERE id IN (" + placeholders + ")",
+                rows.stream().map(row -> (Object) row[0]).toArray());
+        productAggregateRefresher.markChanged(deltas.keySet());
+        return new ApplyResult(rows.size(), stockDeltas);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class VariantStock {
+        private final Long variantId;
+        private final int stock;
+        private final long available;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ApplyResult {
+        private final int entries;
+        private final Map<Long, Integer> stockDeltas;
+    }
+}
@@ -3,20 +3,22 @@ package fs.fresher.SystemE_commerce.service;
 import fs.fresher.SystemE_commerce.dto.request.InventoryReserveRequest;
 import fs.fresher.SystemE_commerce.dto.response.InventoryReservationResponse;
 import fs.fresher.SystemE_commerce.entity.*;
+import fs.fresher.SystemE_commerce.exception.InventoryException;
 import fs.fresher.SystemE_commerce.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -25,154 +27,179 @@ import java.util.stream.Collectors;
 @Slf4j
 public class InventoryReservationService {
     
+    // Rows are already locked and checked by lockAvailableStock
+    static final String RESERVE_LOCKED_SQL =
+            "UPDATE product_variants SET reserved_quantity = reserved_quantity + ?, version = version + 1, " +
+            "updated_at = ? WHERE id = ?";
+    
+    static final String CONFIRM_SQL =
+            "UPDATE product_variants SET stock_quantity = stock_quantity - ?, " +
+            "reserved_quantity = GREATEST(reserved_quantity - ?, 0), version = version + 1, updated_at = ? WHERE id = ?";
+    
+    static final String RELEASE_SQL =
+            "UPDATE product_variants SET reserved_quantity = GREATEST(reserved_quantity - ?, 0), version = version + 1, " +
+            "updated_at = ? WHERE id = ?";
+    
     private final ProductVariantRepository productVariantRepository;
     private final CheckoutSessionRepository checkoutSessionRepository;
     private final StockReservationRepository stockReservationRepository;
     private final CartRepository cartRepository;
-    
-    @Value("${inventory.max-retry-attempts:3}")
-    private int maxRetryAttempts;
-    
-    @Value("${inventory.retry-delay-ms:100}")
-    private int retryDelayMs;
+    private final HotCartStore hotCartStore;
+    private final InventoryLedger inventoryLedger;
+    private final ReservationCombiner reservationCombiner;
+    private final StockBucketService stockBucketService;
+    private final ProductAggregateRefresher productAggregateRefresher;
+    private final JdbcTemplate jdbcTemplate;
     
     /**
-     * Atomic reservation with pessimistic locking for critical "last item" scenarios
-     * Handles race conditions when multiple users try to buy the last item
+     * Atomic reservation with one guarded UPDATE, for critical "last item" scenarios.
+     * The stock check and the increment are the same statement, so two buyers of the last unit cannot both win
+     * and no read lock, version retry or SERIALIZABLE range lock is needed.
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public boolean reserveStock(Long variantId, Integer quantity) {
-        return reserveStockWithRetry(variantId, quantity, maxRetryAttempts);
-    }
-    
-    private boolean reserveStockWithRetry(Long variantId, Integer quantity, int maxAttempts) {
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            try {
-                // Use pessimistic lock to prevent concurrent modifications - critical for last item scenarios
-                ProductVariant variant = productVariantRepository.findByIdWithLock(variantId)
-                        .orElseThrow(() -> new RuntimeException("Product variant not found: " + variantId));
-                
-                int availableStock = variant.getStockQuantity() - variant.getReservedQuantity();
-                
-                if (availableStock < quantity) {
-                    log.warn("Insufficient stock for variant {} ({}): requested={}, available={}, total={}, reserved={}", 
-                            variantId, variant.getSku(), quantity, availableStock, 
-                            variant.getStockQuantity(), variant.getReservedQuantity());
-                    return false;
-                }
-                
-                // Atomic update - this is where the "last item" race condition is resolved
-                variant.setReservedQuantity(variant.getReservedQuantity() + quantity);
-                productVariantRepository.save(variant);
-                
-                log.info("Successfully reserved {} units for variant {} {} (attempt {}). Available stock now: {}", 
-                        quantity, variantId, variant.getSku(), attempt, 
-                        variant.getStockQuantity() - variant.getReservedQuantity());
-                return true;
-                
-            } catch (OptimisticLockingFailureException e) {
-                log.warn("Optimistic locking failure for variant {} (attempt {}): {}", variantId, attempt, e.getMessage());
-                if (attempt == maxAttempts) {
-                    log.error("Failed to reserve stock for variant {} after {} attempts", variantId, maxAttempts);
-                    return false;
-                }
-                // Exponential backoff to reduce contention
-                try {
-                    Thread.sleep(retryDelayMs * attempt);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return false;
-                }
-            } catch (RuntimeException e) {
-                // Re-throw RuntimeExceptions like "Product variant not found" to maintain consistency with other methods
-                if (e.getMessage() != null && e.getMessage().contains("Product variant not found")) {
-                    throw e;
-                }
-                log.error("Failed to reserve stock for variant {}: {}", variantId, e.getMessage());
-                return false;
-            } catch (Exception e) {
-                log.error("Failed to reserve stock for variant {}: {}", variantId, e.getMessage());
+        if (inventoryLedger.isEnabled()) {
+            return inventoryLedger.tryReserve(Map.of(variantId, quantity));
+        }
+        // Bucketed variants go around the combiner, which only sees the units left on the variant row
+        if (reservationCombiner.isEnabled() && !stockBucketService.isBucketed(variantId)) {
+            return reservationCombiner.reserve(Map.of(variantId, quantity));
+        }
+        if (stockBucketService.isBucketed(variantId)) {
+            if (!stockBucketService.reserve(variantId, quantity)) {
+                logRejectedReservation(variantId, quantity);
                 return false;
             }
+            log.info("Successfully reserved {} units for variant {} from its stock buckets", quantity, variantId);
+            return true;
         }
-        return false;
+        if (productVariantRepository.reserveIfAvailable(variantId, quantity, LocalDateTime.now()) == 0) {
+            logRejectedReservation(variantId, quantity);
+            return false;
+        }
+        productAggregateRefresher.markChanged(List.of(variantId));
+        
+        log.info("Successfully reserved {} units for variant {}", quantity, variantId);
+        return true;
     }
     
     /**
      * Batch reservation for multiple items (checkout scenario)
-     * CRITICAL: Handles "last item" scenarios with proper locking
+     * CRITICAL: Handles "last item" scenarios by locking all rows before deciding
      * All-or-nothing approach: either all items are reserved or none
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public boolean reserveMultipleStock(Map<Long, Integer> reservationMap) {
         try {
-            log.info("Starting batch reservation for {} variants with SERIALIZABLE isolation", reservationMap.size());
+            log.info("Starting batch reservation for {} variants", reservationMap.size());
             
-            // Step 1: Acquire locks on ALL variants first (prevents deadlocks)
-            // This is CRITICAL for "last item" scenarios where multiple users compete
-            Map<Long, ProductVariant> lockedVariants = new HashMap<>();
+            if (inventoryLedger.isEnabled()) {
+                return inventoryLedger.tryReserve(reservationMap);
+            }
             
-            for (Long variantId : reservationMap.keySet()) {
-                ProductVariant variant = productVariantRepository.findByIdWithLock(variantId)
-                        .orElseThrow(() -> new RuntimeException("Product variant not found: " + variantId));
-                lockedVariants.put(variantId, variant);
-                
-                log.debug("Acquired lock on variant {} ({})", variantId, variant.getSku());
+            // Variants split into stock buckets are reserved from their buckets after the plain rows are checked
+            Map<Long, Integer> rowReservations = new HashMap<>();
+            Map<Long, Integer> bucketReservations = new TreeMap<>();
+            reservationMap.forEach((variantId, quantity) ->
+                    (stockBucketService.isBucketed(variantId) ? bucketReservations : rowReservations).put(variantId, quantity));
+            
+            if (reservationCombiner.isEnabled()) {
+                // The combiner only sees the units left on the variant row, so bucketed variants go around it
+                ReservationCombiner.Grant grant = null;
+                if (!rowReservations.isEmpty() && (grant = reservationCombiner.hold(rowReservations)) == null) {
+                    return false;
+                }
+                if (!reserveFromBuckets(bucketReservations)) {
+                    // Combiner batches have committed already and returning false does not roll them back; the
+                    // grant is given back once, so a rollback of this transaction afterwards does not repeat it
+                    if (grant != null) {
+                        grant.giveBack();
+                    }
+                    return false;
+                }
+                log.info("Successfully completed combined batch reservation for {} variants", reservationMap.size());
+                return true;
+            }
+            
+            // Step 1: Lock ALL variant rows in one statement, in ascending id order, so overlapping carts queue
+            // behind each other instead of deadlocking
+            Map<Long, Integer> available = new HashMap<>();
+            if (!rowReservations.isEmpty()) {
+                for (Object[] row : productVariantRepository.lockAvailableStock(rowReservations.keySet())) {
+                    available.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+                }
             }
             
-            // Step 2: Validate ALL items availability BEFORE making any changes
-            // This ensures atomic all-or-nothing behavior
-            for (Map.Entry<Long, Integer> entry : reservationMap.entrySet()) {
+            // Step 2: Validate ALL items against the locked rows BEFORE making any changes
+            for (Map.Entry<Long, Integer> entry : rowReservations.entrySet()) {
                 Long variantId = entry.getKey();
-                Integer requestedQuantity = entry.getValue();
-                ProductVariant variant = lockedVariants.get(variantId);
-                
-                int availableStock = variant.getStockQuantity() - variant.getReservedQuantity();
-                
-                if (availableStock < requestedQuantity) {
-                    log.warn("INSUFFICIENT STOCK - Batch reservation failed for variant {} ({}): " +
-                            "requested={}, available={}, total={}, reserved={}", 
-                            variantId, variant.getSku(), requestedQuantity, availableStock, 
-                            variant.getStockQuantity(), variant.getReservedQuantity());
+                Integer availableStock = available.get(variantId);
+                if (availableStock == null) {
+                    throw new RuntimeException("Product variant not found: " + variantId);
+                }
+                if (availableStock < entry.getValue()) {
+                    log.warn("INSUFFICIENT STOCK - Batch reservation failed for variant {}: requested={}, available={}", 
+                            variantId, entry.getValue(), availableStock);
                     
                     // Return false immediately - no partial reservations
                     return false;
                 }
-                
-                log.debug("Stock validation passed for variant {} ({}): requested={}, available={}", 
-                        variantId, variant.getSku(), requestedQuantity, availableStock);
             }
             
-            // Step 3: All validations passed - perform ALL reservations atomically
-            log.info("All stock validations passed - proceeding with atomic reservations");
+            // Step 3: Take the bucketed variants
+            if (!reserveFromBuckets(bucketReservations)) {
+                return false;
+            }
             
-            for (Map.Entry<Long, Integer> entry : reservationMap.entrySet()) {
-                Long variantId = entry.getKey();
-                Integer quantity = entry.getValue();
-                ProductVariant variant = lockedVariants.get(variantId);
-                
-                int oldReserved = variant.getReservedQuantity();
-                variant.setReservedQuantity(oldReserved + quantity);
-                productVariantRepository.save(variant);
-                
-                log.info("Reserved {} units for variant {} ({}): reserved {} -> {}, available now: {}", 
-                        quantity, variantId, variant.getSku(), oldReserved, variant.getReservedQuantity(),
-                        variant.getStockQuantity() - variant.getReservedQuantity());
+            // Step 4: All validations passed - write every row reservation in one JDBC batch
+            if (!rowReservations.isEmpty()) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                jdbcTemplate.batchUpdate(RESERVE_LOCKED_SQL, rowReservations.entrySet().stream()
+                        .sorted(Map.Entry.comparingByKey())
+                        .map(entry -> new Object[] {entry.getValue(), now, entry.getKey()})
+                        .toList());
+                productAggregateRefresher.markChanged(rowReservations.keySet());
             }
             
             log.info("Successfully completed atomic batch reservation for {} variants", reservationMap.size());
             return true;
             
-        } catch (OptimisticLockingFailureException e) {
-            log.warn("Optimistic locking failure during batch reservation - likely concurrent access: {}", e.getMessage());
-            return false;
-            
         } catch (Exception e) {
             log.error("Batch reservation failed with error: {}", e.getMessage(), e);
             throw new RuntimeException("Stock reservation failed: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * All or nothing over the bucketed variants; a short one gives back what was taken, as this transaction commits
+     */
+    private boolean reserveFromBuckets(Map<Long, Integer> bucketReservations) {
+        Map<Long, Integer> taken = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : bucketReservations.entrySet()) {
+            if (!stockBucketService.reserve(entry.getKey(), entry.getValue())) {
+                taken.forEach(stockBucketService::release);
+                log.warn("INSUFFICIENT STOCK - Batch reservation failed for variant {}: requested={}, buckets short",
+                        entry.getKey(), entry.getValue());
+                return false;
+            }
+            taken.put(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+    
+    /**
+     * A guarded update that matched no row: a missing variant is an error, a short one is a normal rejection.
+     * Only runs on the failure path, so a single-variant reservation never reads the row.
+     */
+    private void logRejectedReservation(Long variantId, Integer quantity) {
+        ProductVariant variant = productVariantRepository.findById(variantId)
+                .orElseThrow(() -> new RuntimeException("Product variant not found: " + variantId));
+        
+        log.warn("INSUFFICIENT STOCK for variant {} ({}): requested={}, available={}, total={}, reserved={}", 
+                variantId, variant.getSku(), quantity, variant.getAvailableStock(), 
+                variant.getStockQuantity(), variant.getReservedQuantity());
+    }
+    
     /**
      * Release reservation (when checkout expires or order is cancelled)
      * Critical for automatic inventory release after TTL
@@ -180,16 +207,22 @@ public class InventoryReservationService {
     @Transactional
     public void releaseReservation(Long variantId, Integer quantity) {
         try {
-            ProductVariant variant = productVariantRepository.findById(variantId)
-                    .orElseThrow(() -> new RuntimeException("Product variant not found: " + variantId));
-            
-            int currentReserved = variant.getReservedQuantity();
-            int newReservedQuantity = Math.max(0, currentReserved - quantity);
-            variant.setReservedQuantity(newReservedQuantity);
-            productVariantRepository.save(variant);
+            if (inventoryLedger.isEnabled()) {
+                inventoryLedger.release(Map.of(variantId, quantity));
+                log.info("Released {} units reservation for variant {} in the ledger", quantity, variantId);
+                return;
+            }
+            if (stockBucketService.isBucketed(variantId)) {
+                stockBucketService.release(variantId, quantity);
+                log.info("Released {} units reservation for variant {} to its stock buckets", quantity, variantId);
+                return;
+            }
+            if (productVariantRepository.releaseReserved(variantId, quantity, LocalDateTime.now()) == 0) {
+                throw new RuntimeException("Product variant not found: " + variantId);
+            }
+            productAggregateRefresher.markChanged(List.of(variantId));
             
-            log.info("Released {} units reservation for variant {} ({}). Reserved: {} -> {}", 
-                    quantity, variantId, variant.getSku(), currentReserved, newReservedQuantity);
+            log.info("Released {} units reservation for variant {}", quantity, variantId);
             
         } catch (Exception e) {
             log.error("Failed to release reservation for variant {}: {}", variantId, e.getMessage());
@@ -201,36 +234,50 @@ public class InventoryReservationService {
      */
     @Transactional
     public void confirmReservation(Long variantId, Integer quantity) {
-        try {
-            ProductVariant variant = productVariantRepository.findById(variantId)
-                    .orElseThrow(() -> new RuntimeException("Product variant not found: " + variantId));
-            
-            int oldStock = variant.getStockQuantity();
-            int oldReserved = variant.getReservedQuantity();
-            
-            // Decrease both stock and reserved quantities
-            variant.setStockQuantity(variant.getStockQuantity() - quantity);
-            variant.setReservedQuantity(Math.max(0, variant.getReservedQuantity() - quantity));
-            productVariantRepository.save(variant);
-            
-            log.info("Confirmed reservation for variant {} ({}): sold {} units. Stock: {} -> {}, Reserved: {} -> {}", 
-                    variantId, variant.getSku(), quantity, oldStock, variant.getStockQuantity(), 
-                    oldReserved, variant.getReservedQuantity());
-            
-        } catch (Exception e) {
-            log.error("Failed to confirm reservation for variant {}: {}", variantId, e.getMessage());
-            throw new RuntimeException("Failed to confirm reservation: " + e.getMessage());
+        confirmAggregatedReservations(Map.of(variantId, quantity));
+        log.info("Confirmed reservation for variant {}: sold {} units", variantId, quantity);
+    }
+    
+    /**
+     * Take sold units out of stock and reserved stock for every variant at once: one JDBC batch over the variant
+     * rows in id order; the product aggregates follow after commit. Parked bucket units are part of reserved stock,
+     * so bucketed variants need nothing extra.
+     */
+    private void confirmAggregatedReservations(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        if (inventoryLedger.isEnabled()) {
+            inventoryLedger.confirm(quantities);
+            return;
+        }
+        
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = sorted.entrySet().stream()
+                .map(entry -> new Object[] {entry.getValue(), entry.getValue(), now, entry.getKey()})
+                .toList();
+        int[] updated = jdbcTemplate.batchUpdate(CONFIRM_SQL, batch);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                throw new RuntimeException("Product variant not found: " + batch.get(i)[3]);
+            }
         }
+        productAggregateRefresher.markChanged(sorted.keySet());
     }
     
     /**
-     * Get current available stock (considering reservations)
+     * Get current available stock (considering reservations, and counting units parked in stock buckets)
      */
     public int getAvailableStock(Long variantId) {
+        if (inventoryLedger.isEnabled()) {
+            return (int) Math.max(0, inventoryLedger.getAvailable(variantId));
+        }
+        
         ProductVariant variant = productVariantRepository.findById(variantId)
                 .orElseThrow(() -> new RuntimeException("Product variant not found: " + variantId));
         
-        return Math.max(0, variant.getStockQuantity() - variant.getReservedQuantity());
+        return Math.max(0, variant.getAvailableStock());
     }
     
     /**
@@ -249,7 +296,40 @@ public class InventoryReservationService {
     }
     
     /**
-     * Get detailed stock information for monitoring
+     * Set-based release of quantities already summed per variant, in the caller's transaction: one JDBC batch over
+     * the variant rows in id order; the product aggregates follow after commit. Used by the bulk release of expired
+     * sessions.
+     */
+    @Transactional
+    public void releaseAggregatedReservations(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        if (inventoryLedger.isEnabled()) {
+            inventoryLedger.release(quantities);
+            return;
+        }
+        
+        Map<Long, Integer> rowReleases = new TreeMap<>();
+        quantities.forEach((variantId, quantity) -> {
+            if (stockBucketService.isBucketed(variantId)) {
+                stockBucketService.release(variantId, quantity);
+            } else {
+                rowReleases.put(variantId, quantity);
+            }
+        });
+        if (!rowReleases.isEmpty()) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(RELEASE_SQL, rowReleases.entrySet().stream()
+                    .map(entry -> new Object[] {entry.getValue(), now, entry.getKey()})
+                    .toList());
+            productAggregateRefresher.markChanged(rowReleases.keySet());
+        }
+    }
+    
+    /**
+     * Get detailed stock information for monitoring. Units parked in stock buckets are reported as available,
+     * not reserved.
      */
     public StockInfo getStockInfo(Long variantId) {
         ProductVariant variant = productVariantRepository.findById(variantId)
@@ -259,8 +339,8 @@ public class InventoryReservationService {
                 variant.getId(),
                 variant.getSku(),
                 variant.getStockQuantity(),
-                variant.getReservedQuantity(),
-                variant.getStockQuantity() - variant.getReservedQuantity()
+                variant.getReservedQuantity() - variant.getBucketedStock(),
+                variant.getAvailableStock()
         );
     }
     
@@ -288,14 +368,15 @@ public class InventoryReservationService {
      * Follows sequence diagram: Client -> InventoryController -> InventoryReservationService
      * Handles: Inventory hold (15 mins fixed), Last item processing, Auto-release on expiry
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public InventoryReservationResponse reserveInventory(InventoryReserveRequest request) {
         final int TTL_MINUTES = 15; // Fixed TTL managed by backend
         log.info("Starting inventory reservation for cart: {} with fixed TTL: {} minutes", 
                 request.getCartId(), TTL_MINUTES);
         
         try {
-            // Step 1: Validate cart (as per sequence diagram)
+            // Step 1: Validate cart (as per sequence diagram), written through from the hot store first
+            hotCartStore.flush(request.getCartId());
             Cart cart = cartRepository.findByCartId(request.getCartId())
                     .orElseThrow(() -> new RuntimeException("Cart not found: " + request.getCartId()));
             
@@ -387,8 +468,8 @@ public class InventoryReservationService {
             CheckoutSession session = checkoutSessionRepository.findByCheckoutToken(reservationToken)
                     .orElseThrow(() -> new RuntimeException("Reservation not found: " + reservationToken));
             
-            // Step 2: Check if already processed (prevent double-release)
-            if (session.getIsUsed()) {
+            // Step 2: Claim the release (prevents double-release, and releasing units already sold)
+            if (checkoutSessionRepository.markReleased(session.getId()) == 0) {
                 log.warn("Reservation {} already processed - skipping release", reservationToken);
                 Map<String, Object> response = new HashMap<>();
                 response.put("reservationToken", reservationToken);
@@ -397,6 +478,8 @@ public class InventoryReservationService {
                 response.put("timestamp", LocalDateTime.now());
                 return response;
             }
+            // Keeps the managed entity in step with the bulk update, so a later save does not reopen it
+            session.setIsUsed(true);
             
             // Step 3: Find all stock reservations for this session
             List<StockReservation> reservations = stockReservationRepository.findByCheckoutSessionId(session.getId());
@@ -421,10 +504,6 @@ public class InventoryReservationService {
                 log.info("Released reservations for {} variants in session: {}", reservationMap.size(), reservationToken);
             }
             
-            // Step 6: Mark session as used to prevent reprocessing
-            session.setIsUsed(true);
-            checkoutSessionRepository.save(session);
-            
             log.info("Successfully released reservation: {} (expired: {}, cart: {})", 
                     reservationToken, session.isExpired(), session.getCartId());
             
@@ -452,7 +531,9 @@ public class InventoryReservationService {
     }
     
     /**
-     * High-level method to confirm a reservation by token
+     * High-level method to confirm a reservation by token.
+     * Idempotent: the session is claimed with confirmed_at before any stock moves, so a retried confirm
+     * for the same token is a no-op instead of selling the units twice. A released session cannot be confirmed.
      */
     @Transactional
     public Map<String, Object> confirmReservationByToken(String reservationToken) {
@@ -461,24 +542,37 @@ public class InventoryReservationService {
         CheckoutSession session = checkoutSessionRepository.findByCheckoutToken(reservationToken)
                 .orElseThrow(() -> new RuntimeException("Reservation not found: " + reservationToken));
         
-        List<StockReservation> reservations = stockReservationRepository.findByCheckoutSessionId(session.getId());
+        Map<String, Object> response = new HashMap<>();
+        response.put("reservationToken", reservationToken);
+        response.put("timestamp", LocalDateTime.now());
         
-        for (StockReservation reservation : reservations) {
-            // Use existing low-level method
-            confirmReservation(
-                    reservation.getProductVariant().getId(),
-                    reservation.getQuantity()
-            );
+        LocalDateTime now = LocalDateTime.now();
+        boolean claimed = session.getConfirmedAt() == null
+                && checkoutSessionRepository.markConfirmed(session.getId(), now) == 1;
+        if (!claimed) {
+            // Not confirmed before and not by a concurrent confirm either: the session was released
+            if (session.getConfirmedAt() == null && checkoutSessionRepository.countConfirmedForUpdate(session.getId()) == 0) {
+                throw InventoryException.alreadyReleased(reservationToken);
+            }
+            log.info("Reservation {} already confirmed - skipping", reservationToken);
+            response.put("status", "ALREADY_CONFIRMED");
+            response.put("message", "Inventory reservation was already confirmed");
+            return response;
         }
+        // Keeps the managed entity in step with the bulk update, so a later save does not clear it
+        session.setConfirmedAt(now);
         
-        log.info("Successfully confirmed reservation: {}", reservationToken);
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Object[] row : stockReservationRepository.sumQuantitiesBySession(session.getId())) {
+            quantities.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+        }
+        confirmAggregatedReservations(quantities);
+        
+        log.info("Successfully confirmed reservation: {} ({} variants)", reservationToken, quantities.size());
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("reservationToken", reservationToken);
         response.put("status", "CONFIRMED");
         response.put("message", "Inventory reservation confirmed successfully");
-        response.put("timestamp", LocalDateTime.now());
-        
+        response.put("confirmedVariants", quantities.size());
         return response;
     }
     
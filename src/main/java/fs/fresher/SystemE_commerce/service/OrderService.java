@@ -39,9 +39,11 @@ public class OrderService {
     private final CheckoutService checkoutService;
     private final CartService cartService;
     private final CartRepository cartRepository;
+    private final HotCartStore hotCartStore;
     private final StockReservationRepository stockReservationRepository;
     private final ProductVariantRepository productVariantRepository;
     private final InventoryReservationService inventoryReservationService;
+    private final ProductAggregateRefresher productAggregateRefresher;
     private final EmailService emailService;
     private final ValidationService validationService;
     
@@ -57,6 +59,12 @@ public class OrderService {
         
         List<CartItem> cartItems;
         
+        // Write a hot cart through before the first read, so this transaction's snapshot includes it.
+        // Checkout-token orders use the cart as flushed when the stock was reserved.
+        if (request.getCheckoutToken() == null) {
+            hotCartStore.flush(request.getCartId());
+        }
+        
         // Get cart items either from checkout session or directly from cart
         if (request.getCheckoutToken() != null) {
             CheckoutSession session = checkoutService.validateCheckoutSession(request.getCheckoutToken());
@@ -202,6 +210,9 @@ public class OrderService {
                 variant.setStockQuantity(currentStock - cartItem.getQuantity());
                 productVariantRepository.save(variant);
             }
+            productAggregateRefresher.markChanged(cartItems.stream()
+                    .map(cartItem -> cartItem.getProductVariant().getId())
+                    .collect(Collectors.toSet()));
         }
         
         // Save order with all cascade relationships (OrderItems will be saved automatically)
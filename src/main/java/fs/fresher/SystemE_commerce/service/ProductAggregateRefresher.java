@@ -0,0 +1,106 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the denormalized variant aggregates on products up to date without touching the products table inside
+ * stock transactions. Stock movements record their variants here once they commit; the scheduled pass recomputes
+ * the owning products in short transactions of their own, so checkouts for sibling variants never queue on the
+ * product row. Listing aggregates trail the variant rows by at most one interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductAggregateRefresher {
+
+    private final ProductVariantRepository productVariantRepository;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${catalog.aggregates.refresh-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Queue the products owning these variants for a refresh once the caller's transaction commits;
+     * nothing is queued when it rolls back
+     */
+    public void markChanged(Collection<Long> variantIds) {
+        if (variantIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.addAll(variantIds);
+            return;
+        }
+        List<Long> changed = List.copyOf(variantIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.addAll(changed);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.aggregates.refresh-interval-ms:1000}")
+    public void refreshPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Variant id order, so concurrent passes on several instances take product locks in a similar order
+        TreeSet<Long> drained = new TreeSet<>();
+        for (Long variantId : pending) {
+            if (pending.remove(variantId)) {
+                drained.add(variantId);
+            }
+        }
+
+        List<Long> chunk = new ArrayList<>(batchSize);
+        int refreshed = 0;
+        for (Long variantId : drained) {
+            chunk.add(variantId);
+            if (chunk.size() == batchSize) {
+                refreshed += refresh(chunk);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            refreshed += refresh(chunk);
+        }
+        log.debug("PRODUCT AGGREGATES: Refreshed {} products for {} changed variants", refreshed, drained.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshPending();
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private int refresh(List<Long> variantIds) {
+        try {
+            return productVariantRepository.refreshProductAggregates(variantIds);
+        } catch (Exception e) {
+            // Retried on the next pass together with anything changed meanwhile
+            pending.addAll(variantIds);
+            log.error("PRODUCT AGGREGATES: Failed to refresh products of {} variants", variantIds.size(), e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package fs.fresher.SystemE_commerce.service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable trigram inverted index over product name and description.
+ * Text is folded before indexing (lower case, Vietnamese diacritics stripped, đ -> d)
+ * so "ao thun" finds "Áo thun". Updates copy only the posting lists they touch.
+ */
+public final class ProductSearchIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int SCORE_NAME_PREFIX = 3;
+    private static final int SCORE_NAME = 2;
+    private static final int SCORE_DESCRIPTION = 1;
+
+    private final Map<String, Set<Long>> postings;
+    private final Map<Long, Document> documents;
+
+    private ProductSearchIndex(Map<String, Set<Long>> postings, Map<Long, Document> documents) {
+        this.postings = postings;
+        this.documents = documents;
+    }
+
+    public static ProductSearchIndex build(Collection<CatalogSnapshot.Entry> entries) {
+        return empty().withChanges(Set.of(), entries);
+    }
+
+    public static ProductSearchIndex empty() {
+        return new ProductSearchIndex(Map.of(), Map.of());
+    }
+
+    /**
+     * Copy-on-write update: remove changed products, then index the reloaded ones
+     */
+    public ProductSearchIndex withChanges(Set<Long> changedProductIds, Collection<CatalogSnapshot.Entry> reloadedEntries) {
+        Map<String, Set<Long>> newPostings = new HashMap<>(postings);
+        Map<Long, Document> newDocuments = new HashMap<>(documents);
+        Set<String> copied = new HashSet<>();
+
+        for (Long productId : changedProductIds) {
+            Document removed = newDocuments.remove(productId);
+            if (removed == null) {
+                continue;
+            }
+            for (String gram : removed.grams) {
+                Set<Long> ids = mutablePosting(newPostings, copied, gram);
+                ids.remove(productId);
+                if (ids.isEmpty()) {
+                    newPostings.remove(gram);
+                }
+            }
+        }
+
+        for (CatalogSnapshot.Entry entry : reloadedEntries) {
+            Document document = Document.of(entry);
+            Document previous = newDocuments.put(entry.getId(), document);
+            if (previous != null) {
+                for (String gram : previous.grams) {
+                    mutablePosting(newPostings, copied, gram).remove(entry.getId());
+                }
+            }
+            for (String gram : document.grams) {
+                mutablePosting(newPostings, copied, gram).add(entry.getId());
+            }
+        }
+        newPostings.values().removeIf(Set::isEmpty);
+
+        return new ProductSearchIndex(newPostings, newDocuments);
+    }
+
+    /**
+     * Relevance score per matching product id; products that do not contain the query are absent
+     */
+    public Map<Long, Integer> search(String query) {
+        String folded = fold(query);
+        if (folded.isEmpty()) {
+            return Map.of();
+        }
+
+        Collection<Long> candidates = candidates(folded);
+        Map<Long, Integer> scores = new HashMap<>();
+        for (Long productId : candidates) {
+            int score = documents.get(productId).score(folded);
+            if (score > 0) {
+                scores.put(productId, score);
+            }
+        }
+        return scores;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Intersect the posting lists of every query trigram, shortest first.
+     * Queries shorter than a trigram are verified against every document.
+     */
+    private Collection<Long> candidates(String folded) {
+        Set<String> queryGrams = grams(folded);
+        if (queryGrams.isEmpty()) {
+            return documents.keySet();
+        }
+
+        List<Set<Long>> lists = new ArrayList<>(queryGrams.size());
+        for (String gram : queryGrams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private static Set<Long> mutablePosting(Map<String, Set<Long>> postings, Set<String> copied, String gram) {
+        if (copied.add(gram)) {
+            Set<Long> existing = postings.get(gram);
+            postings.put(gram, existing != null ? new HashSet<>(existing) : new HashSet<>());
+        }
+        return postings.get(gram);
+    }
+
+    /**
+     * Lower case, strip diacritics and collapse punctuation to single spaces
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace('đ', 'd');
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    static Set<String> grams(String folded) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static final class Document {
+        private final String name;
+        private final String description;
+        private final Set<String> grams;
+
+        private Document(String name, String description) {
+            this.name = name;
+            this.description = description;
+            this.grams = grams(name);
+            this.grams.addAll(grams(description));
+        }
+
+        static Document of(CatalogSnapshot.Entry entry) {
+            return new Document(fold(entry.getName()), fold(entry.getDescription()));
+        }
+
+        int score(String folded) {
+            if (name.startsWith(folded) || name.contains(" " + folded)) {
+                return SCORE_NAME_PREFIX;
+            }
+            if (name.contains(folded)) {
+                return SCORE_NAME;
+            }
+            if (description.contains(folded)) {
+                return SCORE_DESCRIPTION;
+            }
+            return 0;
+        }
+    }
+}
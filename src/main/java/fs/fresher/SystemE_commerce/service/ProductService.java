@@ -4,23 +4,30 @@ import fs.fresher.SystemE_commerce.dto.response.PagedResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductDetailResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductListResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductPageResponse;
 import fs.fresher.SystemE_commerce.entity.Category;
 import fs.fresher.SystemE_commerce.entity.Product;
 import fs.fresher.SystemE_commerce.entity.ProductVariant;
 import fs.fresher.SystemE_commerce.exception.ResourceNotFoundException;
+import fs.fresher.SystemE_commerce.exception.ValidationException;
 import fs.fresher.SystemE_commerce.repository.CategoryRepository;
 import fs.fresher.SystemE_commerce.repository.ProductRepository;
 import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,21 +38,40 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final ProductVariantRepository productVariantRepository;
     private final CategoryRepository categoryRepository;
+    private final CatalogIndexService catalogIndexService;
+    private final FilterOptionsCacheService filterOptionsCacheService;
     
     public PagedResponse<ProductListResponse> getProducts(
             int page, int size, List<Long> categoryIds, 
             BigDecimal minPrice, BigDecimal maxPrice, 
             List<String> colors, List<String> sizes, String search) {
+        return getProducts(page, size, categoryIds, minPrice, maxPrice, colors, sizes, search, false);
+    }
+    
+    /**
+     * In-stock listings always query the database: stock moves too often for the catalog snapshot
+     */
+    public PagedResponse<ProductListResponse> getProducts(
+            int page, int size, List<Long> categoryIds, 
+            BigDecimal minPrice, BigDecimal maxPrice, 
+            List<String> colors, List<String> sizes, String search, boolean inStock) {
         
         try {
+            if (!inStock && catalogIndexService.isReady()) {
+                return catalogIndexService.findProducts(
+                        page, size, categoryIds, minPrice, maxPrice, colors, sizes, search);
+            }
+            
             Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
             
-            Page<Product> productPage = productRepository.findProductsWithFilters(
-                    categoryIds, minPrice, maxPrice, colors, sizes, search, pageable);
+            // Without variant-level filters the denormalized product columns answer price and stock
+            Page<Product> productPage = colors == null && sizes == null
+                    ? productRepository.findProductsWithProductLevelFilters(
+                            categoryIds, minPrice, maxPrice, search, inStockFilter(inStock), pageable)
+                    : productRepository.findProductsWithFilters(
+                            categoryIds, minPrice, maxPrice, colors, sizes, search, inStockFilter(inStock), pageable);
             
-            List<ProductListResponse> content = productPage.getContent().stream()
-                    .map(this::mapToProductListResponse)
-                    .collect(Collectors.toList());
+            List<ProductListResponse> content = mapToProductListResponses(productPage.getContent());
             
             return new PagedResponse<>(
                     content,
@@ -65,7 +91,71 @@ public class ProductService {
         }
     }
     
+    /**
+     * Listing page with facet counts for the same filters. Facets come from the in-memory catalog;
+     * while it is unavailable the page is served from the database without facets.
+     */
+    public ProductPageResponse getProductsWithFacets(
+            int page, int size, List<Long> categoryIds,
+            BigDecimal minPrice, BigDecimal maxPrice,
+            List<String> colors, List<String> sizes, String search, boolean inStock) {
+        
+        if (!inStock && catalogIndexService.isReady()) {
+            return catalogIndexService.findProductsWithFacets(
+                    page, size, categoryIds, minPrice, maxPrice, colors, sizes, search);
+        }
+        return new ProductPageResponse(
+                getProducts(page, size, categoryIds, minPrice, maxPrice, colors, sizes, search, inStock), null);
+    }
+    
+    /**
+     * Keyset (cursor) listing ordered by createdAt DESC, id DESC.
+     * Cost per page is constant; the total count is only computed when includeTotal is set.
+     */
+    public PagedResponse<ProductListResponse> getProductsByCursor(
+            String cursor, int size, List<Long> categoryIds,
+            BigDecimal minPrice, BigDecimal maxPrice,
+            List<String> colors, List<String> sizes, String search, boolean inStock, boolean includeTotal) {
+        
+        if (size < 1) {
+            throw new ValidationException("Page size must be at least 1");
+        }
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        if (!inStock && catalogIndexService.isReady()) {
+            return catalogIndexService.findProductsAfter(
+                    pageCursor, size, categoryIds, minPrice, maxPrice, colors, sizes, search, includeTotal);
+        }
+        
+        // Fetch one extra row to learn whether a next page exists without counting
+        List<Product> products = productRepository.findProductsWithFiltersAfter(
+                categoryIds, minPrice, maxPrice, colors, sizes, search, inStockFilter(inStock),
+                pageCursor != null ? pageCursor.getCreatedAt() : null,
+                pageCursor != null ? pageCursor.getId() : null,
+                PageRequest.of(0, size + 1));
+        
+        boolean hasNext = products.size() > size;
+        List<Product> pageProducts = hasNext ? products.subList(0, size) : products;
+        Product last = hasNext ? pageProducts.get(size - 1) : null;
+        Long totalElements = includeTotal
+                ? productRepository.countProductsWithFilters(
+                        categoryIds, minPrice, maxPrice, colors, sizes, search, inStockFilter(inStock))
+                : null;
+        
+        return PagedResponse.keyset(
+                mapToProductListResponses(pageProducts),
+                size,
+                totalElements,
+                pageCursor == null,
+                last != null ? PageCursor.after(last.getCreatedAt(), last.getId()).encode() : null
+        );
+    }
+    
     public ProductFilterOptionsResponse getFilterOptions(List<Long> categoryIds) {
+        ProductFilterOptionsResponse cached = filterOptionsCacheService.get(categoryIds);
+        if (cached != null) {
+            return cached;
+        }
+        
         List<String> availableColors = productRepository.findAvailableColorsByCategories(categoryIds);
         List<String> availableSizes = productRepository.findAvailableSizesByCategories(categoryIds);
         BigDecimal minPrice = productRepository.findMinPriceByCategories(categoryIds);
@@ -85,6 +175,10 @@ public class ProductService {
         );
     }
     
+    public Map<String, Object> getFilterOptionsCacheStatistics() {
+        return filterOptionsCacheService.getStatistics();
+    }
+    
     public ProductDetailResponse getProductDetail(Long productId) {
         Product product = productRepository.findByIdWithCategory(productId)
                 .orElseThrow(() -> ResourceNotFoundException.product(productId));
@@ -94,19 +188,68 @@ public class ProductService {
         return mapToProductDetailResponse(product, variants);
     }
     
-    private ProductListResponse mapToProductListResponse(Product product) {
-        // Sử dụng repository để lấy variants thay vì lazy loading
-        List<ProductVariant> variants = productVariantRepository.findByProductIdAndIsActiveTrue(product.getId());
+    /**
+     * Backfill the denormalized variant aggregates on startup, covering rows written before they existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void refreshProductAggregates() {
+        try {
+            int updated = productVariantRepository.refreshAllProductAggregates();
+            log.info("PRODUCT AGGREGATES: Refreshed variant price range and stock on {} products", updated);
+        } catch (Exception e) {
+            log.error("PRODUCT AGGREGATES: Backfill failed, listing falls back to variant summaries", e);
+        }
+    }
+    
+    private Boolean inStockFilter(boolean inStock) {
+        return inStock ? Boolean.TRUE : null;
+    }
+    
+    private List<ProductListResponse> mapToProductListResponses(List<Product> products) {
+        if (products.isEmpty()) {
+            return List.of();
+        }
         
-        BigDecimal minPrice = variants.stream()
-                .map(ProductVariant::getPrice)
-                .min(BigDecimal::compareTo)
-                .orElse(product.getBasePrice());
+        // Products carrying the denormalized aggregates need no variant query at all;
+        // the rest are summarized with one aggregate query for the whole page
+        List<Long> productIds = products.stream()
+                .filter(product -> product.getActiveVariantCount() == null)
+                .map(Product::getId)
+                .collect(Collectors.toList());
+        Map<Long, ProductVariantRepository.VariantSummary> summaries = productIds.isEmpty()
+                ? Map.of()
+                : productVariantRepository.summarizeActiveVariantsByProductIds(productIds).stream()
+                        .collect(Collectors.toMap(ProductVariantRepository.VariantSummary::getProductId, Function.identity()));
         
-        BigDecimal maxPrice = variants.stream()
-                .map(ProductVariant::getPrice)
-                .max(BigDecimal::compareTo)
-                .orElse(product.getBasePrice());
+        return products.stream()
+                .map(product -> product.getActiveVariantCount() != null
+                        ? mapToProductListResponse(product)
+                        : mapToProductListResponse(product, summaries.get(product.getId())))
+                .collect(Collectors.toList());
+    }
+    
+    private ProductListResponse mapToProductListResponse(Product product) {
+        return new ProductListResponse(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getBasePrice(),
+                product.getImageUrl(),
+                product.getCategory() != null ? product.getCategory().getName() : null,
+                product.getCreatedAt(),
+                product.getActiveVariantCount(),
+                product.getMinVariantPrice() != null ? product.getMinVariantPrice() : product.getBasePrice(),
+                product.getMaxVariantPrice() != null ? product.getMaxVariantPrice() : product.getBasePrice()
+        );
+    }
+    
+    private ProductListResponse mapToProductListResponse(Product product, ProductVariantRepository.VariantSummary summary) {
+        int variantCount = summary != null ? summary.getVariantCount().intValue() : 0;
+        BigDecimal minPrice = summary != null && summary.getMinPrice() != null
+                ? summary.getMinPrice() : product.getBasePrice();
+        BigDecimal maxPrice = summary != null && summary.getMaxPrice() != null
+                ? summary.getMaxPrice() : product.getBasePrice();
         
         return new ProductListResponse(
                 product.getId(),
@@ -116,7 +259,7 @@ public class ProductService {
                 product.getImageUrl(),
                 product.getCategory() != null ? product.getCategory().getName() : null,
                 product.getCreatedAt(),
-                variants.size(),
+                variantCount,
                 minPrice,
                 maxPrice
         );
@@ -0,0 +1,277 @@
+package fs.fresher.SystemE_commerce.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional group commit for hot variants: reservation requests for the same variant that arrive within window-ms
+ * are decided together by {@link ReservationCombinerWriter}, which takes the row lock once per batch instead of
+ * once per checkout. Each caller waits for its own outcome.
+ * Batches commit on their own, so a multi-item reservation that fails part-way, or whose surrounding transaction
+ * rolls back, gives its granted units back through the same lanes; a give-back whose batch fails is queued again
+ * with backoff until it is applied. Variants split into stock buckets never come through here.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationCombiner {
+
+    private final ReservationCombinerWriter reservationCombinerWriter;
+
+    private final ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    @Value("${inventory.combiner.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.combiner.window-ms:2}")
+    private long windowMs;
+
+    @Value("${inventory.combiner.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${inventory.combiner.wait-timeout-ms:2000}")
+    private long waitTimeoutMs;
+
+    @Value("${inventory.combiner.threads:4}")
+    private int threads;
+
+    @Value("${inventory.combiner.retry-backoff-ms:100}")
+    private long retryBackoffMs;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reservation-combiner-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * All-or-nothing reservation of every variant in the map. If the caller's transaction later rolls back,
+     * the units are given back after it completes.
+     */
+    public boolean reserve(Map<Long, Integer> reservationMap) {
+        return hold(reservationMap) != null;
+    }
+
+    /**
+     * Same as {@link #reserve}, returning the granted units for a caller that may have to give them back before its
+     * transaction ends; null when they were not granted
+     */
+    public Grant hold(Map<Long, Integer> reservationMap) {
+        Map<Long, Request> requests = new HashMap<>();
+        reservationMap.forEach((variantId, quantity) -> requests.put(variantId, submit(variantId, quantity)));
+
+        Map<Long, Integer> granted = new HashMap<>();
+        RuntimeException failure = null;
+        for (Map.Entry<Long, Request> entry : requests.entrySet()) {
+            try {
+                if (await(entry.getValue())) {
+                    granted.put(entry.getKey(), entry.getValue().getQuantity());
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        if (granted.size() < reservationMap.size()) {
+            giveBack(granted);
+            if (failure != null) {
+                throw failure;
+            }
+            log.warn("COMBINER: Insufficient stock for part of {} - gave back {} granted variants",
+                    reservationMap.keySet(), granted.size());
+            return null;
+        }
+
+        Grant grant = new Grant(granted);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        grant.giveBack();
+                    }
+                }
+            });
+        }
+        return grant;
+    }
+
+    /**
+     * Return units granted by a batch that has already committed; applied with the next batch of each variant
+     */
+    void giveBack(Map<Long, Integer> quantities) {
+        quantities.forEach((variantId, quantity) -> submit(variantId, -quantity));
+    }
+
+    private Request submit(Long variantId, int quantity) {
+        Request request = new Request(quantity);
+        enqueue(variantId, List.of(request));
+        return request;
+    }
+
+    private void enqueue(Long variantId, List<Request> requests) {
+        Lane lane = lanes.computeIfAbsent(variantId, id -> new Lane());
+        lane.queue.addAll(requests);
+        if (lane.scheduled.compareAndSet(false, true)) {
+            executor.schedule(() -> flush(variantId, lane), windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Long variantId, Lane lane) {
+        // Cleared before draining: a request queued from here on schedules the next flush itself
+        lane.scheduled.set(false);
+        List<Request> batch = new ArrayList<>();
+        Request request;
+        while (batch.size() < maxBatchSize && (request = lane.queue.poll()) != null) {
+            batch.add(request);
+        }
+        if (!lane.queue.isEmpty() && lane.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> flush(variantId, lane));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Boolean> granted = reservationCombinerWriter.applyBatch(variantId, batch);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(granted.get(i));
+            }
+            log.debug("COMBINER: Applied batch of {} requests for variant {}", batch.size(), variantId);
+        } catch (Exception e) {
+            log.error("COMBINER: Batch of {} requests for variant {} failed: {}", batch.size(), variantId, e.getMessage());
+            List<Request> giveBacks = new ArrayList<>();
+            for (Request failed : batch) {
+                if (failed.getQuantity() < 0) {
+                    giveBacks.add(failed);
+                } else {
+                    failed.result.completeExceptionally(e);
+                }
+            }
+            if (!giveBacks.isEmpty()) {
+                retry(variantId, giveBacks);
+            }
+        }
+    }
+
+    /**
+     * Give-backs have no caller waiting and their units are lost if dropped: queue them again after a backoff
+     * that doubles with each failed attempt, up to 256 times the base
+     */
+    private void retry(Long variantId, List<Request> giveBacks) {
+        int attempts = 0;
+        for (Request giveBack : giveBacks) {
+            attempts = Math.max(attempts, ++giveBack.attempts);
+        }
+        long delayMs = retryBackoffMs << Math.min(attempts - 1, 8);
+        log.warn("COMBINER: Retrying {} give-backs for variant {} in {} ms (attempt {})",
+                giveBacks.size(), variantId, delayMs, attempts + 1);
+        executor.schedule(() -> enqueue(variantId, giveBacks), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait for the batch outcome. On timeout the request is abandoned if no batch has claimed it yet;
+     * once claimed, its outcome is about to be committed and is waited for.
+     */
+    private boolean await(Request request) {
+        try {
+            try {
+                return request.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (request.abandon()) {
+                    log.warn("COMBINER: Gave up on a reservation of {} units after {} ms", request.getQuantity(), waitTimeoutMs);
+                    return false;
+                }
+                return request.result.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (request.abandon()) {
+                return false;
+            }
+            return request.result.join();
+        }
+    }
+
+    /**
+     * Units granted to one {@link #hold} call. They are given back at most once, whether by the caller or by the
+     * rollback of its transaction: a second give-back would release units other buyers hold.
+     */
+    public final class Grant {
+        private final Map<Long, Integer> quantities;
+        private final AtomicBoolean givenBack = new AtomicBoolean();
+
+        private Grant(Map<Long, Integer> quantities) {
+            this.quantities = quantities;
+        }
+
+        public void giveBack() {
+            if (givenBack.compareAndSet(false, true)) {
+                ReservationCombiner.this.giveBack(quantities);
+            }
+        }
+    }
+
+    private static final class Lane {
+        private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    public static final class Request {
+        private static final int PENDING = 0;
+        private static final int CLAIMED = 1;
+        private static final int ABANDONED = 2;
+
+        @Getter
+        private final int quantity;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Failed batches this give-back was part of; only touched by the flushing thread
+        private int attempts;
+
+        Request(int quantity) {
+            this.quantity = quantity;
+        }
+
+        /**
+         * Taken by a batch that is about to grant it; false when the caller has already given up
+         */
+        boolean claim() {
+            return state.compareAndSet(PENDING, CLAIMED);
+        }
+
+        boolean abandon() {
+            return state.compareAndSet(PENDING, ABANDONED);
+        }
+    }
+}
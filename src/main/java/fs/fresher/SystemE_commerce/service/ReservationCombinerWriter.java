@@ -0,0 +1,71 @@
+package fs.fresher.SystemE_commerce.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies one batch of the {@link ReservationCombiner} to a variant: lock the row once, decide every request
+ * against its available stock in memory, then write the net change in a single UPDATE.
+ * Runs in its own transaction, so the decisions handed back are committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReservationCombinerWriter {
+
+    static final String LOCK_SQL =
+            "SELECT stock_quantity - reserved_quantity FROM product_variants WHERE id = ? FOR UPDATE";
+
+    static final String APPLY_SQL =
+            "UPDATE product_variants SET reserved_quantity = GREATEST(reserved_quantity + ?, 0), " +
+            "version = version + 1, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductAggregateRefresher productAggregateRefresher;
+
+    /**
+     * Whether each request was granted, in request order. Give-backs (negative quantities) are applied first and
+     * always granted; reservations are then granted first come, first served while stock lasts.
+     * Reservations already abandoned by their caller are skipped.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Boolean> applyBatch(Long variantId, List<ReservationCombiner.Request> requests) {
+        Integer available = jdbcTemplate.query(LOCK_SQL, rs -> rs.next() ? rs.getInt(1) : null, variantId);
+        if (available == null) {
+            throw new RuntimeException("Product variant not found: " + variantId);
+        }
+
+        List<Boolean> granted = new ArrayList<>(requests.size());
+        int net = 0;
+        for (ReservationCombiner.Request request : requests) {
+            if (request.getQuantity() < 0) {
+                net += request.getQuantity();
+                available -= request.getQuantity();
+            }
+        }
+        for (ReservationCombiner.Request request : requests) {
+            if (request.getQuantity() < 0) {
+                granted.add(true);
+            } else if (request.getQuantity() <= available && request.claim()) {
+                net += request.getQuantity();
+                available -= request.getQuantity();
+                granted.add(true);
+            } else {
+                granted.add(false);
+            }
+        }
+
+        if (net != 0) {
+            jdbcTemplate.update(APPLY_SQL, net, Timestamp.valueOf(LocalDateTime.now()), variantId);
+            productAggregateRefresher.markChanged(List.of(variantId));
+        }
+        return granted;
+    }
+}
@@ -0,0 +1,72 @@
+package fs.fresher.SystemE_commerce.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Releases expired checkout sessions one chunk per transaction with set-based statements: the chunk's sessions are
+ * locked FOR UPDATE, their reserved quantities summed per variant in one query, released with one batch over the
+ * variant rows, and the sessions marked used in one UPDATE. A session released by token or confirmed meanwhile
+ * is skipped.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReservationReleaseWriter {
+
+    static final String SELECT_EXPIRED_SQL =
+            "SELECT id FROM checkout_sessions WHERE id > ? AND expires_at < ? AND is_used = false " +
+            "AND confirmed_at IS NULL ORDER BY id LIMIT ? FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryReservationService inventoryReservationService;
+
+    /**
+     * Release the next chunk of sessions after afterId that expired before now; an empty chunk completes the run
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public ChunkResult releaseChunk(LocalDateTime now, long afterId, int chunkSize) {
+        List<Long> sessionIds = jdbcTemplate.queryForList(SELECT_EXPIRED_SQL, Long.class,
+                afterId, Timestamp.valueOf(now), chunkSize);
+        if (sessionIds.isEmpty()) {
+            return new ChunkResult(afterId, 0, 0, 0, true);
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(sessionIds.size(), "?"));
+        Object[] ids = sessionIds.toArray();
+        Map<Long, Integer> quantities = new TreeMap<>();
+        jdbcTemplate.query("SELECT product_variant_id, SUM(quantity) FROM stock_reservations " +
+                        "WHERE checkout_session_id IN (" + placeholders + ") GROUP BY product_variant_id",
+                rs -> {
+                    quantities.put(rs.getLong(1), rs.getInt(2));
+                },
+                ids);
+
+        inventoryReservationService.releaseAggregatedReservations(quantities);
+        jdbcTemplate.update("UPDATE checkout_sessions SET is_used = true WHERE id IN (" + placeholders + ")", ids);
+
+        int units = quantities.values().stream().mapToInt(Integer::intValue).sum();
+        return new ChunkResult(sessionIds.get(sessionIds.size() - 1), sessionIds.size(), quantities.size(), units, false);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ChunkResult {
+        private final long lastSessionId;
+        private final int releasedSessions;
+        private final int releasedVariants;
+        private final int releasedUnits;
+        private final boolean completed;
+    }
+}
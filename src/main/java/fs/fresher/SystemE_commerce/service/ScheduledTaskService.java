@@ -18,12 +18,15 @@ import java.util.List;
 public class ScheduledTaskService {
     
     private final CheckoutSessionRepository checkoutSessionRepository;
-    private final InventoryReservationService inventoryReservationService;
     private final CartCleanupService cartCleanupService;
+    private final ReservationReleaseWriter reservationReleaseWriter;
     
     @Value("${inventory.cleanup-interval-seconds:60}")
     private int cleanupIntervalSeconds;
     
+    @Value("${inventory.release.chunk-size:500}")
+    private int releaseChunkSize;
+    
     @Value("${inventory.old-session-cleanup-hours:1}")
     private int oldSessionCleanupHours;
     
@@ -31,64 +34,45 @@ public class ScheduledTaskService {
     private int cartCleanupIntervalHours;
     
     /**
-     * CRITICAL: Auto-release expired inventory reservations (10-15 minutes TTL)
-     * Runs every minute to ensure timely release of "last item" scenarios
-     * Prevents inventory from being locked up by abandoned checkout sessions
+     * SAFETY NET: Auto-release expired inventory reservations (10-15 minutes TTL)
+     * Expiries are normally released within a second by ExpiryTimerService; this scan catches
+     * sessions whose timer was lost (crash, rolled-back write) and runs every 10 minutes by default.
+     * Releases in id-ordered chunks, one transaction each, with set-based statements per chunk,
+     * so a backlog of thousands of sessions takes a few round trips per chunk instead of several per session.
      */
     @Scheduled(fixedRateString = "${inventory.cleanup-interval-seconds:60}000")
-    @Transactional
     public void cleanupExpiredCheckoutSessions() {
-        try {
-            LocalDateTime now = LocalDateTime.now();
-            List<CheckoutSession> expiredSessions = checkoutSessionRepository.findExpiredSessions(now);
-            
-            if (expiredSessions.isEmpty()) {
-                log.debug("No expired checkout sessions found at {}", now);
-                return;
-            }
-            
-            log.info("AUTO-RELEASE: Found {} expired checkout sessions to process at {}", 
-                    expiredSessions.size(), now);
-            
-            int processedCount = 0;
-            int errorCount = 0;
-            int alreadyProcessedCount = 0;
-            
-            for (CheckoutSession session : expiredSessions) {
-                if (!session.getIsUsed()) {
-                    try {
-                        log.info("AUTO-RELEASE: Processing expired session: {} (expired at: {}, cart: {})", 
-                                session.getCheckoutToken(), session.getExpiresAt(), session.getCartId());
-                        
-                        // Use InventoryReservationService for proper release handling
-                        var result = inventoryReservationService.releaseReservationByToken(session.getCheckoutToken());
-                        
-                        processedCount++;
-                        log.info("AUTO-RELEASE: Successfully released reservations for expired session: {} (released {} variants)", 
-                                session.getCheckoutToken(), result.get("releasedVariants"));
-                        
-                    } catch (Exception e) {
-                        errorCount++;
-                        log.error("AUTO-RELEASE: Failed to release reservations for session {}: {}", 
-                                session.getCheckoutToken(), e.getMessage(), e);
-                    }
-                } else {
-                    alreadyProcessedCount++;
-                    log.debug("AUTO-RELEASE: Session {} already processed", session.getCheckoutToken());
-                }
+        LocalDateTime now = LocalDateTime.now();
+        long started = System.currentTimeMillis();
+        long afterId = 0;
+        int chunks = 0;
+        int sessions = 0;
+        int units = 0;
+        
+        while (true) {
+            ReservationReleaseWriter.ChunkResult chunk;
+            try {
+                chunk = reservationReleaseWriter.releaseChunk(now, afterId, releaseChunkSize);
+            } catch (Exception e) {
+                log.error("AUTO-RELEASE: Chunk after session id {} failed, it will be retried on the next run", afterId, e);
+                break;
             }
-            
-            log.info("AUTO-RELEASE: Cleanup completed - {} processed, {} already processed, {} errors out of {} total", 
-                    processedCount, alreadyProcessedCount, errorCount, expiredSessions.size());
-            
-            // Alert if high error rate
-            if (errorCount > 0 && errorCount > processedCount / 2) {
-                log.error("AUTO-RELEASE: HIGH ERROR RATE detected - {} errors out of {} attempts. Check system health!", 
-                        errorCount, processedCount + errorCount);
+            if (chunk.isCompleted()) {
+                break;
             }
-            
-        } catch (Exception e) {
-            log.error("AUTO-RELEASE: CRITICAL ERROR in expired checkout sessions cleanup job", e);
+            chunks++;
+            sessions += chunk.getReleasedSessions();
+            units += chunk.getReleasedUnits();
+            afterId = chunk.getLastSessionId();
+            log.debug("AUTO-RELEASE: Chunk {} - {} sessions, {} units over {} variants, up to session id {}", 
+                    chunks, chunk.getReleasedSessions(), chunk.getReleasedUnits(), chunk.getReleasedVariants(), afterId);
+        }
+        
+        if (sessions > 0) {
+            log.info("AUTO-RELEASE: Released {} expired sessions ({} units) in {} chunks in {} ms", 
+                    sessions, units, chunks, System.currentTimeMillis() - started);
+        } else {
+            log.debug("No expired checkout sessions found at {}", now);
         }
     }
     
@@ -157,7 +141,6 @@ public class ScheduledTaskService {
      * Runs every 6 hours by default to maintain database hygiene
      */
     @Scheduled(fixedRateString = "${cart.cleanup-interval-hours:6}000000") // Convert hours to milliseconds
-    @Transactional
     public void cleanupExpiredCarts() {
         try {
             log.info("CART CLEANUP: Starting scheduled cart cleanup");
@@ -197,7 +180,7 @@ public class ScheduledTaskService {
                     stats.get("emptyCarts"));
             
             // Log warning if too many expired carts (might indicate cleanup issues)
-            int expiredCount = (Integer) stats.get("expiredCarts");
+            long expiredCount = ((Number) stats.get("expiredCarts")).longValue();
             if (expiredCount > 50) {
                 log.warn("High number of expired carts detected: {}. Check cart cleanup job performance.", 
                         expiredCount);
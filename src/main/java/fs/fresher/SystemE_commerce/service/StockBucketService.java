@@ -0,0 +1,179 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import fs.fresher.SystemE_commerce.exception.ErrorCode;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optional split stock layout for hot variants: an admin splits a variant's free stock across N bucket rows, and
+ * each reservation takes its units from a random bucket, falling back to the others in turn. Buyers of one SKU then
+ * queue on N row locks instead of one, so contention drops roughly N-fold.
+ * Parked units stay counted in the variant's reserved_quantity, so confirming a sale and every stock read keep
+ * working on the variant row; available stock adds the buckets back in. The rebalancer evens the buckets out and
+ * folds restocks and outside stock edits into them in the background.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockBucketService {
+
+    private final StockBucketWriter stockBucketWriter;
+    private final ProductVariantRepository productVariantRepository;
+    private final AdminAuthService adminAuthService;
+
+    // Bucket count per split variant; reloaded on every rebalance pass, so splits made by other instances show up
+    private final ConcurrentHashMap<Long, Integer> bucketCounts = new ConcurrentHashMap<>();
+
+    @Value("${inventory.buckets.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.buckets.default-count:8}")
+    private int defaultCount;
+
+    @Value("${inventory.buckets.max-count:64}")
+    private int maxCount;
+
+    public boolean isBucketed(Long variantId) {
+        return enabled && bucketCounts.containsKey(variantId);
+    }
+
+    /**
+     * Units currently parked in the variant's buckets; only worth asking for variants that are bucketed
+     */
+    public int getParkedUnits(Long variantId) {
+        return stockBucketWriter.sumParkedUnits(variantId);
+    }
+
+    /**
+     * Take units from a random bucket, trying the others in turn; when no single bucket holds enough, take them
+     * across all buckets at once. Runs in the caller's transaction.
+     */
+    public boolean reserve(Long variantId, int quantity) {
+        int buckets = bucketCounts.getOrDefault(variantId, 0);
+        int start = buckets > 0 ? ThreadLocalRandom.current().nextInt(buckets) : 0;
+        for (int i = 0; i < buckets; i++) {
+            if (stockBucketWriter.takeFromBucket(variantId, (start + i) % buckets, quantity)) {
+                return true;
+            }
+        }
+        return stockBucketWriter.takeAcrossBuckets(variantId, quantity);
+    }
+
+    /**
+     * Give units back to a random bucket, or to the variant row when the variant has been merged meanwhile
+     */
+    public void release(Long variantId, int quantity) {
+        int buckets = bucketCounts.getOrDefault(variantId, 0);
+        if (buckets > 0 && stockBucketWriter.giveBack(variantId, ThreadLocalRandom.current().nextInt(buckets), quantity)) {
+            return;
+        }
+        if (productVariantRepository.releaseReserved(variantId, quantity, LocalDateTime.now()) == 0) {
+            throw new RuntimeException("Product variant not found: " + variantId);
+        }
+    }
+
+    public Map<String, Object> splitVariant(String apiKey, Long variantId, Integer buckets) {
+        authenticate(apiKey);
+        requireEnabled();
+        int bucketCount = buckets != null ? buckets : defaultCount;
+        if (bucketCount < 2 || bucketCount > maxCount) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST,
+                    "Bucket count must be between 2 and " + maxCount + ", got " + bucketCount);
+        }
+
+        int parked = split(variantId, bucketCount);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("variantId", variantId);
+        response.put("buckets", bucketCount);
+        response.put("parkedUnits", parked);
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    public Map<String, Object> mergeVariant(String apiKey, Long variantId) {
+        authenticate(apiKey);
+        requireEnabled();
+        int returned = merge(variantId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("variantId", variantId);
+        response.put("returnedUnits", returned);
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    int split(Long variantId, int bucketCount) {
+        int parked = stockBucketWriter.split(variantId, bucketCount);
+        bucketCounts.put(variantId, bucketCount);
+        log.info("BUCKETS: Split variant {} into {} buckets holding {} units", variantId, bucketCount, parked);
+        return parked;
+    }
+
+    int merge(Long variantId) {
+        // Dropped first: reservations arriving meanwhile go back to the variant row
+        bucketCounts.remove(variantId);
+        int returned = stockBucketWriter.merge(variantId);
+        log.info("BUCKETS: Merged the buckets of variant {} back, returning {} units", variantId, returned);
+        return returned;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadBuckets() {
+        if (enabled) {
+            reloadBucketCounts();
+            log.info("BUCKETS: {} variants use split stock", bucketCounts.size());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.buckets.rebalance-interval-ms:1000}")
+    public void rebalanceBuckets() {
+        if (!enabled) {
+            return;
+        }
+        reloadBucketCounts();
+        int rebalanced = 0;
+        for (Long variantId : bucketCounts.keySet()) {
+            try {
+                if (stockBucketWriter.rebalance(variantId)) {
+                    rebalanced++;
+                }
+            } catch (Exception e) {
+                log.error("BUCKETS: Failed to rebalance variant {}: {}", variantId, e.getMessage());
+            }
+        }
+        if (rebalanced > 0) {
+            log.debug("BUCKETS: Rebalanced {} variants", rebalanced);
+        }
+    }
+
+    private void reloadBucketCounts() {
+        Map<Long, Integer> current = stockBucketWriter.loadBucketCounts();
+        bucketCounts.keySet().retainAll(current.keySet());
+        bucketCounts.putAll(current);
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "Stock buckets are disabled");
+        }
+    }
+
+    private void authenticate(String apiKey) {
+        adminAuthService.authenticateByApiKey(apiKey)
+                .orElseThrow(() -> new BusinessException(ErrorCode.UNAUTHORIZED, "Invalid API key"));
+    }
+}
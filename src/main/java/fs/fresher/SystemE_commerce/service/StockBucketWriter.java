@@ -0,0 +1,246 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import fs.fresher.SystemE_commerce.exception.ErrorCode;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Database side of the {@link StockBucketService}. Units parked in variant_stock_buckets are already counted in the
+ * variant's reserved_quantity, so taking or returning them only touches a bucket row; the product aggregates are
+ * queued for a refresh after commit like any other stock movement.
+ * Whenever both are locked, the buckets of a variant are locked in bucket_no order before its variant row.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockBucketWriter {
+
+    static final String TAKE_SQL =
+            "UPDATE variant_stock_buckets SET available_quantity = available_quantity - ?, updated_at = ? " +
+            "WHERE variant_id = ? AND bucket_no = ? AND available_quantity >= ?";
+
+    static final String GIVE_SQL =
+            "UPDATE variant_stock_buckets SET available_quantity = available_quantity + ?, updated_at = ? " +
+            "WHERE variant_id = ? AND bucket_no = ?";
+
+    static final String READ_BUCKETS_SQL =
+            "SELECT bucket_no, available_quantity FROM variant_stock_buckets WHERE variant_id = ? ORDER BY bucket_no";
+
+    static final String READ_VARIANT_SQL =
+            "SELECT stock_quantity - reserved_quantity FROM product_variants WHERE id = ?";
+
+    static final String LOCK_BUCKETS_SQL =
+            "SELECT bucket_no, available_quantity FROM variant_stock_buckets WHERE variant_id = ? " +
+            "ORDER BY bucket_no FOR UPDATE";
+
+    static final String LOCK_VARIANT_SQL =
+            "SELECT stock_quantity - reserved_quantity FROM product_variants WHERE id = ? FOR UPDATE";
+
+    static final String SET_BUCKET_SQL =
+            "UPDATE variant_stock_buckets SET available_quantity = ?, updated_at = ? WHERE variant_id = ? AND bucket_no = ?";
+
+    static final String INSERT_BUCKET_SQL =
+            "INSERT INTO variant_stock_buckets (variant_id, bucket_no, available_quantity, updated_at) VALUES (?, ?, ?, ?)";
+
+    static final String PARK_SQL =
+            "UPDATE product_variants SET reserved_quantity = GREATEST(reserved_quantity + ?, 0), version = version + 1, " +
+            "updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductAggregateRefresher productAggregateRefresher;
+
+    public Map<Long, Integer> loadBucketCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT variant_id, COUNT(*) FROM variant_stock_buckets GROUP BY variant_id",
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getInt(2));
+                });
+        return counts;
+    }
+
+    public int sumParkedUnits(Long variantId) {
+        Integer parked = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(available_quantity), 0) FROM variant_stock_buckets WHERE variant_id = ?",
+                Integer.class, variantId);
+        return parked != null ? parked : 0;
+    }
+
+    /**
+     * Take units from one bucket in one guarded statement; false when it holds fewer
+     */
+    public boolean takeFromBucket(Long variantId, int bucketNo, int quantity) {
+        if (jdbcTemplate.update(TAKE_SQL, quantity, now(), variantId, bucketNo, quantity) == 0) {
+            return false;
+        }
+        productAggregateRefresher.markChanged(List.of(variantId));
+        return true;
+    }
+
+    /**
+     * Slow path for a quantity no single bucket holds: lock every bucket, take what they have, and reserve the rest
+     * from free stock on the variant row that has not been parked yet. Nothing is written unless all of it fits.
+     * Must run inside the caller's transaction.
+     */
+    public boolean takeAcrossBuckets(Long variantId, int quantity) {
+        List<int[]> buckets = lockBuckets(variantId);
+        List<Object[]> takes = new ArrayList<>();
+        int remaining = quantity;
+        Timestamp now = now();
+        for (int[] bucket : buckets) {
+            if (remaining == 0) {
+                break;
+            }
+            int taken = Math.min(bucket[1], remaining);
+            if (taken > 0) {
+                takes.add(new Object[] {bucket[1] - taken, now, variantId, bucket[0]});
+                remaining -= taken;
+            }
+        }
+        if (remaining > 0 && productVariantRepository.reserveIfAvailable(variantId, remaining, now.toLocalDateTime()) == 0) {
+            return false;
+        }
+        if (!takes.isEmpty()) {
+            jdbcTemplate.batchUpdate(SET_BUCKET_SQL, takes);
+        }
+        productAggregateRefresher.markChanged(List.of(variantId));
+        return true;
+    }
+
+    /**
+     * Return units to one bucket; false when the variant has no such bucket any more
+     */
+    public boolean giveBack(Long variantId, int bucketNo, int quantity) {
+        if (jdbcTemplate.update(GIVE_SQL, quantity, now(), variantId, bucketNo) == 0) {
+            return false;
+        }
+        productAggregateRefresher.markChanged(List.of(variantId));
+        return true;
+    }
+
+    /**
+     * Park the variant's free stock in evenly filled buckets. Returns the units parked.
+     */
+    @Transactional
+    public int split(Long variantId, int bucketCount) {
+        if (!lockBuckets(variantId).isEmpty()) {
+            throw new BusinessException(ErrorCode.DUPLICATE_RESOURCE,
+                    "Product variant " + variantId + " is already split into stock buckets");
+        }
+        Integer free = jdbcTemplate.query(LOCK_VARIANT_SQL, rs -> rs.next() ? rs.getInt(1) : null, variantId);
+        if (free == null) {
+            throw new BusinessException(ErrorCode.PRODUCT_VARIANT_NOT_FOUND, "Product variant not found: " + variantId);
+        }
+
+        int parked = Math.max(free, 0);
+        Timestamp now = now();
+        List<Object[]> rows = new ArrayList<>(bucketCount);
+        for (int bucketNo = 0; bucketNo < bucketCount; bucketNo++) {
+            rows.add(new Object[] {variantId, bucketNo, share(parked, bucketCount, bucketNo), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_BUCKET_SQL, rows);
+        if (parked > 0) {
+            jdbcTemplate.update(PARK_SQL, parked, now, variantId);
+        }
+        return parked;
+    }
+
+    /**
+     * Fold the buckets back into the variant row and delete them. Returns the units that were parked.
+     */
+    @Transactional
+    public int merge(Long variantId) {
+        List<int[]> buckets = lockBuckets(variantId);
+        if (buckets.isEmpty()) {
+            throw new BusinessException(ErrorCode.RESOURCE_NOT_FOUND,
+                    "Product variant " + variantId + " is not split into stock buckets");
+        }
+        int parked = buckets.stream().mapToInt(bucket -> bucket[1]).sum();
+        if (parked != 0) {
+            jdbcTemplate.update(PARK_SQL, -parked, now(), variantId);
+        }
+        jdbcTemplate.update("DELETE FROM variant_stock_buckets WHERE variant_id = ?", variantId);
+        return parked;
+    }
+
+    /**
+     * Spread the variant's sellable units evenly over its buckets again: units drained unevenly by reservations,
+     * units given back, and free stock on the variant row from restocks or outside edits. When outside edits left
+     * the variant oversold, the buckets are emptied instead. The check is a plain read; rows are only locked, and
+     * the product aggregates only queued, when there is something to write. False when the buckets were balanced
+     * enough to leave alone.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean rebalance(Long variantId) {
+        Integer seen = jdbcTemplate.query(READ_VARIANT_SQL, rs -> rs.next() ? rs.getInt(1) : null, variantId);
+        if (seen == null || isBalanced(readBuckets(variantId), seen)) {
+            return false;
+        }
+
+        // Decided again under the locks: reservations may have moved units since the plain read
+        List<int[]> buckets = lockBuckets(variantId);
+        Integer free = jdbcTemplate.query(LOCK_VARIANT_SQL, rs -> rs.next() ? rs.getInt(1) : null, variantId);
+        if (free == null || isBalanced(buckets, free)) {
+            return false;
+        }
+        int parked = buckets.stream().mapToInt(bucket -> bucket[1]).sum();
+        int sellable = Math.max(parked + free, 0);
+        Timestamp now = now();
+        List<Object[]> updates = new ArrayList<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            int target = share(sellable, buckets.size(), i);
+            if (buckets.get(i)[1] != target) {
+                updates.add(new Object[] {target, now, variantId, buckets.get(i)[0]});
+            }
+        }
+        jdbcTemplate.batchUpdate(SET_BUCKET_SQL, updates);
+        if (sellable != parked) {
+            jdbcTemplate.update(PARK_SQL, sellable - parked, now, variantId);
+        }
+        productAggregateRefresher.markChanged(List.of(variantId));
+        return true;
+    }
+
+    // No buckets counts as balanced: the variant was merged meanwhile
+    private static boolean isBalanced(List<int[]> buckets, int free) {
+        if (buckets.isEmpty()) {
+            return true;
+        }
+        int parked = 0;
+        int lowest = Integer.MAX_VALUE;
+        for (int[] bucket : buckets) {
+            parked += bucket[1];
+            lowest = Math.min(lowest, bucket[1]);
+        }
+        int sellable = Math.max(parked + free, 0);
+        return free == 0 && lowest * 2 >= sellable / buckets.size();
+    }
+
+    private List<int[]> readBuckets(Long variantId) {
+        return jdbcTemplate.query(READ_BUCKETS_SQL, (rs, rowNum) -> new int[] {rs.getInt(1), rs.getInt(2)}, variantId);
+    }
+
+    private List<int[]> lockBuckets(Long variantId) {
+        return jdbcTemplate.query(LOCK_BUCKETS_SQL, (rs, rowNum) -> new int[] {rs.getInt(1), rs.getInt(2)}, variantId);
+    }
+
+    // Even split with the remainder going to the lowest bucket numbers
+    private static int share(int units, int bucketCount, int index) {
+        return units / bucketCount + (index < units % bucketCount ? 1 : 0);
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+}
@@ -1,7 +1,9 @@
 package fs.fresher.SystemE_commerce.validator;
 
 import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.request.CartBatchRequest;
 import fs.fresher.SystemE_commerce.dto.request.UpdateCartItemRequest;
+import fs.fresher.SystemE_commerce.enums.CartOperationType;
 import fs.fresher.SystemE_commerce.exception.ValidationException;
 import org.springframework.stereotype.Component;
 
@@ -11,6 +13,8 @@ import java.util.List;
 @Component
 public class CartValidator {
     
+    private static final int MAX_BATCH_OPERATIONS = 50;
+    
     /**
      * Validate add cart item request
      */
@@ -53,6 +57,47 @@ public class CartValidator {
         }
     }
     
+    /**
+     * Validate batch cart request, reporting every invalid operation by its position
+     */
+    public void validateCartBatchRequest(CartBatchRequest request) {
+        List<String> errors = new ArrayList<>();
+        
+        if (request.getOperations() == null || request.getOperations().isEmpty()) {
+            errors.add("At least one operation is required");
+        } else if (request.getOperations().size() > MAX_BATCH_OPERATIONS) {
+            errors.add("Cannot apply more than " + MAX_BATCH_OPERATIONS + " operations at once");
+        } else {
+            for (int i = 0; i < request.getOperations().size(); i++) {
+                CartBatchRequest.Operation operation = request.getOperations().get(i);
+                String prefix = "Operation " + (i + 1) + ": ";
+                if (operation == null) {
+                    errors.add(prefix + "operation is required");
+                    continue;
+                }
+                if (operation.getType() == null) {
+                    errors.add(prefix + "type is required");
+                }
+                if (operation.getSkuId() == null) {
+                    errors.add(prefix + "SKU ID is required");
+                }
+                if (operation.getType() != CartOperationType.REMOVE) {
+                    if (operation.getQuantity() == null) {
+                        errors.add(prefix + "quantity is required");
+                    } else if (operation.getQuantity() < 1) {
+                        errors.add(prefix + "quantity must be at least 1");
+                    } else if (operation.getQuantity() > 99) {
+                        errors.add(prefix + "quantity cannot exceed 99");
+                    }
+                }
+            }
+        }
+        
+        if (!errors.isEmpty()) {
+            throw new ValidationException("Cart batch validation failed", errors);
+        }
+    }
+    
     /**
      * Validate cart ID
      */
@@ -1,6 +1,7 @@
 package fs.fresher.SystemE_commerce.validator;
 
 import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.request.CartBatchRequest;
 import fs.fresher.SystemE_commerce.dto.request.PlaceOrderRequest;
 import fs.fresher.SystemE_commerce.dto.request.UpdateCartItemRequest;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +42,10 @@ public class ValidationService {
         cartValidator.validateUpdateCartItemRequest(request);
     }
     
+    public void validateCartBatchRequest(CartBatchRequest request) {
+        cartValidator.validateCartBatchRequest(request);
+    }
+    
     public void validateCartId(String cartId, boolean required) {
         cartValidator.validateCartId(cartId, required);
     }
@@ -166,6 +166,28 @@ class AdminOrderServiceTest {
         verify(orderRepository, never()).findOrdersWithStatus(any(), any());
     }
 
+    @Test
+    void getOrdersByCursor_ShouldSeekAndSkipCountByDefault() {
+        // Given
+        when(adminAuthService.authenticateByApiKey("valid-api-key"))
+                .thenReturn(Optional.of(mockAdmin));
+        when(orderRepository.findOrdersWithStatusAfter(eq(OrderStatus.CONFIRMED), isNull(), isNull(), any(Pageable.class)))
+                .thenReturn(Arrays.asList(mockOrder));
+
+        // When
+        PagedResponse<AdminOrderListResponse> result = adminOrderService.getOrdersByCursor(
+                "valid-api-key", OrderStatus.CONFIRMED, "", 10, false);
+
+        // Then
+        assertEquals(1, result.getContent().size());
+        assertTrue(result.isFirst());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+        assertEquals(-1, result.getTotalElements());
+        verify(orderRepository, never()).countOrdersWithStatus(any());
+        verify(orderRepository, never()).findOrdersWithStatus(any(), any());
+    }
+
     @Test
     void getOrderDetail_WithValidApiKeyAndOrderId_ShouldReturnOrderDetail() {
         // Given
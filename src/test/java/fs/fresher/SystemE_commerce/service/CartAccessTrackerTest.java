@@ -0,0 +1,92 @@
+package fs.fresher.SystemE_commerce.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartAccessTrackerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CartAccessTracker cartAccessTracker;
+
+    @BeforeEach
+    void setUp() {
+        cartAccessTracker = new CartAccessTracker(jdbcTemplate);
+    }
+
+    @Test
+    void flush_ShouldCoalesceRepeatedAccessesIntoOneBatchedUpdate() {
+        // Given - three views of cart-1 and one of cart-2
+        cartAccessTracker.recordAccess("cart-1", "session-a");
+        cartAccessTracker.recordAccess("cart-1", null);
+        cartAccessTracker.recordAccess("cart-1", "session-b");
+        cartAccessTracker.recordAccess("cart-2", null);
+
+        // When
+        cartAccessTracker.flush();
+        cartAccessTracker.flush();
+
+        // Then - one batch, one row per cart, latest token kept
+        List<Object[]> batch = captureBatches(1).get(0);
+        assertEquals(2, batch.size());
+        Object[] cart1 = batch.stream().filter(row -> "cart-1".equals(row[3])).findFirst().orElseThrow();
+        Object[] cart2 = batch.stream().filter(row -> "cart-2".equals(row[3])).findFirst().orElseThrow();
+        assertEquals("session-b", cart1[0]);
+        assertNull(cart2[0]);
+        assertEquals(0, cartAccessTracker.pendingCount());
+    }
+
+    @Test
+    void recordAccess_WithoutTokenAfterToken_ShouldKeepKnownToken() {
+        cartAccessTracker.recordAccess("cart-1", "session-a");
+        cartAccessTracker.recordAccess("cart-1", null);
+
+        cartAccessTracker.flush();
+
+        assertEquals("session-a", captureBatches(1).get(0).get(0)[0]);
+    }
+
+    @Test
+    void flush_WithNoAccesses_ShouldNotTouchDatabase() {
+        cartAccessTracker.recordAccess(null, "session-a");
+
+        cartAccessTracker.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void flush_WhenUpdateFails_ShouldRetryNextCycle() {
+        cartAccessTracker.recordAccess("cart-1", "session-a");
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new IllegalStateException("Lock wait timeout"))
+                .thenReturn(new int[]{1});
+
+        cartAccessTracker.flush();
+        assertEquals(1, cartAccessTracker.pendingCount());
+        cartAccessTracker.flush();
+
+        assertEquals(0, cartAccessTracker.pendingCount());
+        assertEquals("session-a", captureBatches(2).get(1).get(0)[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Object[]>> captureBatches(int times) {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(times)).batchUpdate(anyString(), captor.capture());
+        return captor.getAllValues();
+    }
+}
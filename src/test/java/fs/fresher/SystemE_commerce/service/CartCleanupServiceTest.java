@@ -1,6 +1,8 @@
 package fs.fresher.SystemE_commerce.service;
 
 import fs.fresher.SystemE_commerce.entity.Cart;
+import fs.fresher.SystemE_commerce.entity.CartCleanupCheckpoint;
+import fs.fresher.SystemE_commerce.enums.CartCleanupTask;
 import fs.fresher.SystemE_commerce.repository.CartRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,13 +13,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,6 +26,9 @@ class CartCleanupServiceTest {
     @Mock
     private CartRepository cartRepository;
     
+    @Mock
+    private CartCleanupWriter cartCleanupWriter;
+    
     @InjectMocks
     private CartCleanupService cartCleanupService;
     
@@ -33,77 +36,91 @@ class CartCleanupServiceTest {
     void setUp() {
         ReflectionTestUtils.setField(cartCleanupService, "cartTtlDays", 7);
         ReflectionTestUtils.setField(cartCleanupService, "inactiveThresholdDays", 3);
+        ReflectionTestUtils.setField(cartCleanupService, "chunkSize", 2);
     }
     
     @Test
-    void cleanupExpiredCarts_WithExpiredCarts_ShouldDeleteThem() {
+    void cleanupExpiredCarts_ShouldDeleteChunkByChunkUntilDone() {
         // Given
-        LocalDateTime now = LocalDateTime.now();
-        Cart expiredCart1 = createMockCart("cart-1", now.minusDays(1));
-        Cart expiredCart2 = createMockCart("cart-2", now.minusDays(2));
-        
-        when(cartRepository.findExpiredCarts(any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(expiredCart1, expiredCart2));
+        when(cartCleanupWriter.startOrResume(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> checkpoint(CartCleanupTask.EXPIRED, invocation.getArgument(1), 0L));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class), eq(0L), eq(2)))
+                .thenReturn(new CartCleanupWriter.ChunkResult(12L, 2, 5, false));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class), eq(12L), eq(2)))
+                .thenReturn(new CartCleanupWriter.ChunkResult(30L, 1, 0, false));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class), eq(30L), eq(2)))
+                .thenReturn(new CartCleanupWriter.ChunkResult(30L, 0, 0, true));
         
         // When
         Map<String, Object> result = cartCleanupService.cleanupExpiredCarts();
         
         // Then
-        assertEquals(2, result.get("expiredCartsFound"));
-        assertEquals(2, result.get("deletedCarts"));
+        assertEquals(2, result.get("chunks"));
+        assertEquals(3L, result.get("deletedCarts"));
+        assertEquals(5L, result.get("deletedItems"));
         assertEquals(0, result.get("errors"));
-        
-        verify(cartRepository).delete(expiredCart1);
-        verify(cartRepository).delete(expiredCart2);
+        verify(cartRepository, never()).findExpiredCarts(any());
+        verify(cartRepository, never()).delete(any(Cart.class));
     }
     
     @Test
     void cleanupExpiredCarts_WithNoExpiredCarts_ShouldReturnZero() {
         // Given
-        when(cartRepository.findExpiredCarts(any(LocalDateTime.class)))
-                .thenReturn(List.of());
+        when(cartCleanupWriter.startOrResume(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> checkpoint(CartCleanupTask.EXPIRED, invocation.getArgument(1), 0L));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class), eq(0L), anyInt()))
+                .thenReturn(new CartCleanupWriter.ChunkResult(0L, 0, 0, true));
         
         // When
         Map<String, Object> result = cartCleanupService.cleanupExpiredCarts();
         
         // Then
-        assertEquals(0, result.get("expiredCartsFound"));
-        assertEquals(0, result.get("deletedCarts"));
+        assertEquals(0, result.get("chunks"));
+        assertEquals(0L, result.get("deletedCarts"));
+    }
+    
+    @Test
+    void cleanupExpiredCarts_AfterCrash_ShouldResumeFromCheckpointWithOriginalCutoff() {
+        // Given - a previous run committed chunks up to cart id 40 before dying
+        LocalDateTime originalCutoff = LocalDateTime.now().minusHours(6);
+        when(cartCleanupWriter.startOrResume(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class)))
+                .thenReturn(checkpoint(CartCleanupTask.EXPIRED, originalCutoff, 40L));
+        when(cartCleanupWriter.deleteChunk(CartCleanupTask.EXPIRED, originalCutoff, 40L, 2))
+                .thenReturn(new CartCleanupWriter.ChunkResult(40L, 0, 0, true));
         
-        verify(cartRepository, never()).delete(any(Cart.class));
+        // When
+        Map<String, Object> result = cartCleanupService.cleanupExpiredCarts();
+        
+        // Then
+        assertEquals(40L, result.get("lastCartId"));
+        verify(cartCleanupWriter, never()).deleteChunk(any(), any(), eq(0L), anyInt());
     }
     
     @Test
-    void cleanupEmptyInactiveCarts_WithEmptyInactiveCarts_ShouldDeleteThem() {
+    void cleanupEmptyInactiveCarts_WhenChunkFails_ShouldStopAndReportError() {
         // Given
-        LocalDateTime now = LocalDateTime.now();
-        Cart emptyCart1 = createMockCart("empty-cart-1", now.plusDays(1));
-        Cart emptyCart2 = createMockCart("empty-cart-2", now.plusDays(2));
-        
-        when(cartRepository.findEmptyInactiveCarts(any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(emptyCart1, emptyCart2));
+        when(cartCleanupWriter.startOrResume(eq(CartCleanupTask.EMPTY_INACTIVE), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> checkpoint(CartCleanupTask.EMPTY_INACTIVE, invocation.getArgument(1), 0L));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EMPTY_INACTIVE), any(LocalDateTime.class), eq(0L), anyInt()))
+                .thenReturn(new CartCleanupWriter.ChunkResult(8L, 2, 0, false));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EMPTY_INACTIVE), any(LocalDateTime.class), eq(8L), anyInt()))
+                .thenThrow(new IllegalStateException("Lock wait timeout"));
         
         // When
         Map<String, Object> result = cartCleanupService.cleanupEmptyInactiveCarts();
         
         // Then
-        assertEquals(2, result.get("emptyInactiveCartsFound"));
-        assertEquals(2, result.get("deletedCarts"));
-        assertEquals(0, result.get("errors"));
-        
-        verify(cartRepository).delete(emptyCart1);
-        verify(cartRepository).delete(emptyCart2);
+        assertEquals(2L, result.get("deletedCarts"));
+        assertEquals(1, result.get("errors"));
+        assertEquals(8L, result.get("lastCartId"));
     }
     
     @Test
     void getCartStatistics_ShouldReturnCorrectStats() {
         // Given
-        when(cartRepository.findExpiredCarts(any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(new Cart(), new Cart()));
-        when(cartRepository.findInactiveCarts(any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(new Cart()));
-        when(cartRepository.findEmptyCarts())
-                .thenReturn(Arrays.asList(new Cart(), new Cart(), new Cart()));
+        when(cartRepository.countExpiredCarts(any(LocalDateTime.class))).thenReturn(2L);
+        when(cartRepository.countInactiveCarts(any(LocalDateTime.class))).thenReturn(1L);
+        when(cartRepository.countEmptyCarts()).thenReturn(3L);
         when(cartRepository.count()).thenReturn(10L);
         
         // When
@@ -111,10 +128,33 @@ class CartCleanupServiceTest {
         
         // Then
         assertEquals(10L, stats.get("totalCarts"));
-        assertEquals(2, stats.get("expiredCarts"));
-        assertEquals(1, stats.get("inactiveCarts"));
-        assertEquals(3, stats.get("emptyCarts"));
+        assertEquals(2L, stats.get("expiredCarts"));
+        assertEquals(1L, stats.get("inactiveCarts"));
+        assertEquals(3L, stats.get("emptyCarts"));
         assertNotNull(stats.get("timestamp"));
+        verify(cartRepository, never()).findExpiredCarts(any());
+        verify(cartRepository, never()).findInactiveCarts(any());
+        verify(cartRepository, never()).findEmptyCarts();
+    }
+    
+    @Test
+    void getCartStatistics_ShouldReuseRecentCountsUntilCleanupRuns() {
+        // Given
+        ReflectionTestUtils.setField(cartCleanupService, "statisticsMaxAgeSeconds", 60L);
+        when(cartRepository.count()).thenReturn(10L);
+        when(cartCleanupWriter.startOrResume(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> checkpoint(CartCleanupTask.EXPIRED, invocation.getArgument(1), 0L));
+        when(cartCleanupWriter.deleteChunk(eq(CartCleanupTask.EXPIRED), any(LocalDateTime.class), eq(0L), anyInt()))
+                .thenReturn(new CartCleanupWriter.ChunkResult(0L, 0, 0, true));
+        
+        // When
+        cartCleanupService.getCartStatistics();
+        cartCleanupService.getCartStatistics();
+        cartCleanupService.cleanupExpiredCarts();
+        cartCleanupService.getCartStatistics();
+        
+        // Then
+        verify(cartRepository, times(2)).count();
     }
     
     @Test
@@ -154,6 +194,14 @@ class CartCleanupServiceTest {
         verify(cartRepository, never()).delete(any(Cart.class));
     }
     
+    private CartCleanupCheckpoint checkpoint(CartCleanupTask task, LocalDateTime cutoff, long lastCartId) {
+        CartCleanupCheckpoint checkpoint = new CartCleanupCheckpoint();
+        checkpoint.setTask(task);
+        checkpoint.setCutoff(cutoff);
+        checkpoint.setLastCartId(lastCartId);
+        return checkpoint;
+    }
+    
     private Cart createMockCart(String cartId, LocalDateTime expiresAt) {
         Cart cart = new Cart();
         cart.setCartId(cartId);
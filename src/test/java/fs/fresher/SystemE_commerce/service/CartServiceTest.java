@@ -1,9 +1,12 @@
 package fs.fresher.SystemE_commerce.service;
 
 import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.request.CartBatchRequest;
 import fs.fresher.SystemE_commerce.dto.request.UpdateCartItemRequest;
 import fs.fresher.SystemE_commerce.dto.response.CartResponse;
+import fs.fresher.SystemE_commerce.dto.response.CartSummaryResponse;
 import fs.fresher.SystemE_commerce.entity.*;
+import fs.fresher.SystemE_commerce.enums.CartOperationType;
 import fs.fresher.SystemE_commerce.repository.CartItemRepository;
 import fs.fresher.SystemE_commerce.repository.CartRepository;
 import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
@@ -16,6 +19,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -42,6 +46,12 @@ class CartServiceTest {
     @Mock
     private CartCleanupService cartCleanupService;
 
+    @Mock
+    private HotCartStore hotCartStore;
+
+    @Mock
+    private CartAccessTracker cartAccessTracker;
+
     @InjectMocks
     private CartService cartService;
 
@@ -148,19 +158,16 @@ class CartServiceTest {
     @Test
     void addItemToCart_WithNewItem_ShouldAddItemSuccessfully() {
         // Given
-        when(cartRepository.findByCartId("cart-123")).thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findById(1L)).thenReturn(Optional.of(mockVariant));
-        when(inventoryReservationService.getAvailableStock(1L)).thenReturn(10);
-        when(cartItemRepository.findByCartIdAndProductVariantId(1L, 1L)).thenReturn(Optional.empty());
-        when(cartItemRepository.save(any(CartItem.class))).thenReturn(mockCartItem);
+        mockCart.setItems(new ArrayList<>());
         when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
-        when(cartRepository.save(any(Cart.class))).thenReturn(mockCart);
+        when(productVariantRepository.findByIdWithProduct(1L)).thenReturn(Optional.of(mockVariant));
 
         // When
         CartResponse result = cartService.addItemToCart("cart-123", addItemRequest);
 
-        // Then
-        assertNotNull(result);
+        // Then - response comes from the in-memory cart
+        assertEquals(1, result.getItems().size());
+        assertEquals(3, result.getTotalItems());
         verify(cartItemRepository).save(argThat(item -> 
             item.getQuantity() == 3 && item.getProductVariant().getId().equals(1L)
         ));
@@ -169,30 +176,46 @@ class CartServiceTest {
     @Test
     void addItemToCart_WithExistingItem_ShouldUpdateQuantity() {
         // Given
-        when(cartRepository.findByCartId("cart-123")).thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findById(1L)).thenReturn(Optional.of(mockVariant));
-        when(inventoryReservationService.getAvailableStock(1L)).thenReturn(10);
-        when(cartItemRepository.findByCartIdAndProductVariantId(1L, 1L)).thenReturn(Optional.of(mockCartItem));
-        when(cartItemRepository.save(any(CartItem.class))).thenReturn(mockCartItem);
         when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
-        when(cartRepository.save(any(Cart.class))).thenReturn(mockCart);
 
         // When
         CartResponse result = cartService.addItemToCart("cart-123", addItemRequest);
 
+        // Then - managed item is updated in place, the flush writes it
+        assertEquals(5, mockCartItem.getQuantity()); // 2 existing + 3 new
+        assertEquals(5, result.getTotalItems());
+        assertEquals(1, mockCart.getItemCount());
+        assertEquals(5, mockCart.getTotalQuantity());
+        assertEquals(new BigDecimal("500.00"), mockCart.getTotalAmount());
+        verify(cartItemRepository, never()).save(any());
+        verify(productVariantRepository, never()).findByIdWithProduct(any());
+    }
+
+    @Test
+    void addItemToCart_ShouldStayWithinStatementBudget() {
+        // Given - new SKU: one cart read, one variant read, one item insert; the cart touch is a flush UPDATE
+        mockCart.setItems(new ArrayList<>());
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
+        when(productVariantRepository.findByIdWithProduct(1L)).thenReturn(Optional.of(mockVariant));
+
+        // When
+        cartService.addItemToCart("cart-123", addItemRequest);
+
         // Then
-        assertNotNull(result);
-        verify(cartItemRepository).save(argThat(item -> 
-            item.getQuantity() == 5 // 2 existing + 3 new
-        ));
+        verify(cartRepository, times(1)).findByCartIdWithItems("cart-123");
+        verify(productVariantRepository, times(1)).findByIdWithProduct(1L);
+        verify(cartItemRepository, times(1)).save(any(CartItem.class));
+        verifyNoMoreInteractions(cartRepository, cartItemRepository, productVariantRepository);
+        verifyNoInteractions(inventoryReservationService);
     }
 
     @Test
     void addItemToCart_WithInsufficientStock_ShouldThrowException() {
         // Given
-        when(cartRepository.findByCartId("cart-123")).thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findById(1L)).thenReturn(Optional.of(mockVariant));
-        when(inventoryReservationService.getAvailableStock(1L)).thenReturn(2); // Less than requested
+        mockCart.setItems(new ArrayList<>());
+        mockVariant.setReservedQuantity(8); // 2 available, 3 requested
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
+        when(productVariantRepository.findByIdWithProduct(1L)).thenReturn(Optional.of(mockVariant));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class,
@@ -205,8 +228,9 @@ class CartServiceTest {
     @Test
     void addItemToCart_WithNonExistentProduct_ShouldThrowException() {
         // Given
-        when(cartRepository.findByCartId("cart-123")).thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findById(1L)).thenReturn(Optional.empty());
+        mockCart.setItems(new ArrayList<>());
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
+        when(productVariantRepository.findByIdWithProduct(1L)).thenReturn(Optional.empty());
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class,
@@ -342,12 +366,9 @@ class CartServiceTest {
     void addItemToCart_WithExistingItemAndInsufficientStockForTotal_ShouldThrowException() {
         // Given
         mockCartItem.setQuantity(8); // Already 8 in cart
-        addItemRequest.setQuantity(3); // Want to add 3 more = 11 total
+        addItemRequest.setQuantity(3); // Want to add 3 more = 11 total, only 10 in stock
         
-        when(cartRepository.findByCartId("cart-123")).thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findById(1L)).thenReturn(Optional.of(mockVariant));
-        when(inventoryReservationService.getAvailableStock(1L)).thenReturn(10); // Only 10 available
-        when(cartItemRepository.findByCartIdAndProductVariantId(1L, 1L)).thenReturn(Optional.of(mockCartItem));
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class,
@@ -355,4 +376,121 @@ class CartServiceTest {
         assertTrue(exception.getMessage().contains("Insufficient stock"));
         assertTrue(exception.getMessage().contains("Current in cart: 8"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void applyBatch_ShouldApplyAllOperationsWithOneVariantQuery() {
+        // Given - cart holds 2 x variant 1; add variant 2, bump variant 1, then remove variant 1 again
+        ProductVariant otherVariant = new ProductVariant();
+        otherVariant.setId(2L);
+        otherVariant.setProduct(mockProduct);
+        otherVariant.setSku("TEST-SKU-002");
+        otherVariant.setPrice(new BigDecimal("50.00"));
+        otherVariant.setStockQuantity(5);
+        otherVariant.setReservedQuantity(0);
+        mockCart.setItems(new ArrayList<>(List.of(mockCartItem)));
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
+        when(productVariantRepository.findAllByIdWithProduct(anyCollection()))
+                .thenReturn(List.of(mockVariant, otherVariant));
+
+        CartBatchRequest request = batch(
+                new CartBatchRequest.Operation(CartOperationType.ADD, 2L, 4),
+                new CartBatchRequest.Operation(CartOperationType.UPDATE, 1L, 6),
+                new CartBatchRequest.Operation(CartOperationType.REMOVE, 1L, null));
+
+        // When
+        CartResponse result = cartService.applyBatch("cart-123", request, "session-1");
+
+        // Then
+        assertEquals(1, result.getItems().size());
+        assertEquals(4, result.getTotalItems());
+        assertEquals(new BigDecimal("200.00"), result.getTotalAmount());
+        verify(productVariantRepository, times(1)).findAllByIdWithProduct(anyCollection());
+        verify(cartItemRepository).delete(mockCartItem);
+        verify(cartItemRepository).save(argThat(item -> item.getProductVariant() == otherVariant && item.getQuantity() == 4));
+        verifyNoMoreInteractions(productVariantRepository, cartItemRepository);
+        verifyNoInteractions(inventoryReservationService);
+    }
+
+    @Test
+    void applyBatch_WithInsufficientStockForFinalQuantity_ShouldChangeNothing() {
+        // Given - 2 in cart, two adds of 5 reach 12 but only 10 in stock
+        mockCart.setItems(new ArrayList<>(List.of(mockCartItem)));
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
+        when(productVariantRepository.findAllByIdWithProduct(anyCollection())).thenReturn(List.of(mockVariant));
+
+        CartBatchRequest request = batch(
+                new CartBatchRequest.Operation(CartOperationType.ADD, 1L, 5),
+                new CartBatchRequest.Operation(CartOperationType.ADD, 1L, 5));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> cartService.applyBatch("cart-123", request, null));
+        assertTrue(exception.getMessage().contains("Insufficient stock"));
+        assertEquals(2, mockCartItem.getQuantity());
+        verifyNoInteractions(cartItemRepository);
+    }
+
+    @Test
+    void applyBatch_WithUpdateOfItemNotInCart_ShouldThrowException() {
+        // Given
+        mockCart.setItems(new ArrayList<>());
+        when(cartRepository.findByCartIdWithItems("cart-123")).thenReturn(Optional.of(mockCart));
+        when(productVariantRepository.findAllByIdWithProduct(anyCollection())).thenReturn(List.of(mockVariant));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> cartService.applyBatch("cart-123",
+                    batch(new CartBatchRequest.Operation(CartOperationType.UPDATE, 1L, 3)), null));
+        assertEquals("Item not found in cart", exception.getMessage());
+        verifyNoInteractions(cartItemRepository);
+    }
+
+    @Test
+    void applyBatch_WithUnknownVariant_ShouldThrowBeforeLoadingCart() {
+        // Given
+        when(productVariantRepository.findAllByIdWithProduct(anyCollection())).thenReturn(List.of(mockVariant));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> cartService.applyBatch("cart-123", batch(
+                    new CartBatchRequest.Operation(CartOperationType.ADD, 1L, 1),
+                    new CartBatchRequest.Operation(CartOperationType.ADD, 99L, 1)), null));
+        assertEquals("Product variant not found", exception.getMessage());
+        verifyNoInteractions(cartRepository, cartItemRepository);
+    }
+
+    private CartBatchRequest batch(CartBatchRequest.Operation... operations) {
+        return new CartBatchRequest(List.of(operations));
+    }
+
+    @Test
+    void getCartSummary_ShouldReadStoredTotalsFromCartRowOnly() {
+        // Given
+        mockCart.setTotals(1, 2, new BigDecimal("200.00"));
+        when(cartRepository.findByCartId("cart-123")).thenReturn(Optional.of(mockCart));
+
+        // When
+        CartSummaryResponse summary = cartService.getCartSummary("cart-123");
+
+        // Then
+        assertEquals(1, summary.getItemCount());
+        assertEquals(2, summary.getTotalQuantity());
+        assertEquals(new BigDecimal("200.00"), summary.getTotalAmount());
+        verify(cartRepository, never()).findByCartIdWithItems(any());
+        verifyNoInteractions(cartItemRepository, productVariantRepository);
+    }
+
+    @Test
+    void getCartSummary_WithUnknownCart_ShouldReturnEmptySummaryWithoutCreatingCart() {
+        // Given
+        when(cartRepository.findByCartId("missing")).thenReturn(Optional.empty());
+
+        // When
+        CartSummaryResponse summary = cartService.getCartSummary("missing");
+
+        // Then
+        assertEquals(0, summary.getTotalQuantity());
+        assertEquals(BigDecimal.ZERO, summary.getTotalAmount());
+        verify(cartRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,169 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.CatalogImportRecord;
+import fs.fresher.SystemE_commerce.entity.CatalogImportJob;
+import fs.fresher.SystemE_commerce.repository.CatalogImportJobRepository;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogBulkWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductVariantRepository productVariantRepository;
+
+    @Mock
+    private CatalogImportJobRepository catalogImportJobRepository;
+
+    @Mock
+    private ProductAggregateRefresher productAggregateRefresher;
+
+    @InjectMocks
+    private CatalogBulkWriter catalogBulkWriter;
+
+    // Parameter rows of every batch insert, by SQL
+    private final Map<String, List<Map<Integer, Object>>> inserts = new HashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1000);
+    private Map<String, Long> categoryIds;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        categoryIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        categoryIds.put("Shirts", 5L);
+        when(catalogImportJobRepository.findById(1L)).thenReturn(Optional.of(new CatalogImportJob()));
+        // Not every test inserts anything
+        lenient().doAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            String[] sql = new String[1];
+            when(connection.prepareStatement(anyString(), anyInt())).thenAnswer(prepare -> {
+                sql[0] = prepare.getArgument(0);
+                return null;
+            });
+            ((PreparedStatementCreator) invocation.getArgument(0)).createPreparedStatement(connection);
+
+            BatchPreparedStatementSetter setter = invocation.getArgument(1);
+            KeyHolder keyHolder = invocation.getArgument(2);
+            List<Map<Integer, Object>> rows = inserts.computeIfAbsent(sql[0], key -> new ArrayList<>());
+            for (int i = 0; i < setter.getBatchSize(); i++) {
+                Map<Integer, Object> row = new HashMap<>();
+                setter.setValues(recordingStatement(row), i);
+                rows.add(row);
+                keyHolder.getKeyList().add(Map.of("GENERATED_KEY", nextId.getAndIncrement()));
+            }
+            return new int[setter.getBatchSize()];
+        }).when(jdbcTemplate).batchUpdate(any(PreparedStatementCreator.class),
+                any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+    }
+
+    @Test
+    void writeChunk_WithExistingProduct_ShouldAddVariantsToItInsteadOfDuplicating() {
+        // Given - "tee" already exists in Shirts as product 100, one of the two SKUs is taken
+        when(productVariantRepository.findExistingSkus(anyList())).thenReturn(List.of("TEE-M"));
+        when(productRepository.findByCategoryAndName(any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[] {100L, 5L, "Tee"}));
+        CatalogImportRecord tee = record("shirts", "TEE", variant("TEE-M"), variant("TEE-L"));
+
+        // When
+        CatalogBulkWriter.ChunkResult result = catalogBulkWriter.writeChunk(
+                1L, List.of(tee), categoryIds, 2, 0, null);
+
+        // Then - no product row, the new variant is owned by product 100 and its aggregates are queued
+        assertEquals(0, result.getProducts());
+        assertEquals(1, result.getVariants());
+        assertEquals(1, result.getSkippedVariants());
+        assertFalse(inserts.containsKey(CatalogBulkWriter.INSERT_PRODUCT_SQL));
+        List<Map<Integer, Object>> variants = inserts.get(CatalogBulkWriter.INSERT_VARIANT_SQL);
+        assertEquals(1, variants.size());
+        assertEquals("TEE-L", variants.get(0).get(1));
+        assertEquals(100L, variants.get(0).get(6));
+        verify(productAggregateRefresher).markChanged(List.of(1000L));
+    }
+
+    @Test
+    void writeChunk_WithExistingProductWithoutVariants_ShouldSkipIt() {
+        // Given
+        when(productRepository.findByCategoryAndName(any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[] {100L, 5L, "Gift Card"}));
+
+        // When
+        CatalogBulkWriter.ChunkResult result = catalogBulkWriter.writeChunk(
+                1L, List.of(record("Shirts", "Gift Card")), categoryIds, 1, 0, null);
+
+        // Then
+        assertEquals(0, result.getProducts());
+        verifyNoInteractions(jdbcTemplate, productAggregateRefresher);
+    }
+
+    @Test
+    void writeChunk_WithOneProductSplitAcrossRecords_ShouldInsertItOnce() {
+        // Given - the rows of "Polo" are not consecutive in the file
+        when(productVariantRepository.findExistingSkus(anyList())).thenReturn(List.of());
+        when(productRepository.findByCategoryAndName(any(), any())).thenReturn(List.of());
+        List<CatalogImportRecord> records = List.of(
+                record("Shirts", "Polo", variant("POLO-M")),
+                record("Shirts", "Tee", variant("TEE-M")),
+                record("shirts", "polo", variant("POLO-L")));
+
+        // When
+        CatalogBulkWriter.ChunkResult result = catalogBulkWriter.writeChunk(1L, records, categoryIds, 3, 0, null);
+
+        // Then - two products; both Polo variants are owned by the first product id
+        assertEquals(2, result.getProducts());
+        assertEquals(3, result.getVariants());
+        List<Map<Integer, Object>> products = inserts.get(CatalogBulkWriter.INSERT_PRODUCT_SQL);
+        assertEquals(List.of("Polo", "Tee"), products.stream().map(row -> row.get(1)).toList());
+        assertEquals(2, products.get(0).get(8));
+        Map<Object, Object> owners = new HashMap<>();
+        inserts.get(CatalogBulkWriter.INSERT_VARIANT_SQL).forEach(row -> owners.put(row.get(1), row.get(6)));
+        assertEquals(1000L, owners.get("POLO-M"));
+        assertEquals(1000L, owners.get("POLO-L"));
+        assertEquals(1001L, owners.get("TEE-M"));
+        verifyNoInteractions(productAggregateRefresher);
+    }
+
+    private static CatalogImportRecord record(String category, String name, CatalogImportRecord.Variant... variants) {
+        return new CatalogImportRecord(category, name, null, new BigDecimal("10.00"), null,
+                new ArrayList<>(List.of(variants)));
+    }
+
+    private static CatalogImportRecord.Variant variant(String sku) {
+        return new CatalogImportRecord.Variant(sku, null, null, new BigDecimal("10.00"), 3);
+    }
+
+    // Records setX(index, value) calls; setNull records null
+    private static PreparedStatement recordingStatement(Map<Integer, Object> row) {
+        return mock(PreparedStatement.class, invocation -> {
+            if (invocation.getMethod().getName().startsWith("set")) {
+                row.put(invocation.getArgument(0),
+                        invocation.getMethod().getName().equals("setNull") ? null : invocation.getArgument(1));
+            }
+            return null;
+        });
+    }
+}
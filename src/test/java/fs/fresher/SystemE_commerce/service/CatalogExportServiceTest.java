@@ -0,0 +1,113 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.AdminUser;
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogExportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private AdminAuthService adminAuthService;
+
+    // Columns the test does not care about (description, image, category...) read as null
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private ResultSet resultSet;
+
+    private CatalogExportService catalogExportService;
+
+    @BeforeEach
+    void setUp() {
+        catalogExportService = new CatalogExportService(jdbcTemplate, JsonMapper.builder().build(), adminAuthService);
+    }
+
+    @Test
+    void export_ShouldWriteOneLinePerProductWithItsVariants() throws Exception {
+        // Given - product 1 has two variant rows, product 2 has none
+        when(resultSet.getLong("id")).thenReturn(1L, 1L, 2L);
+        when(resultSet.getString("name")).thenReturn("Shirt", "Hat");
+        when(resultSet.getBigDecimal("base_price")).thenReturn(new BigDecimal("100.00"), new BigDecimal("50.00"));
+        when(resultSet.getObject("variant_id", Long.class)).thenReturn(11L, 12L, null);
+        when(resultSet.getString("sku")).thenReturn("SKU-11", "SKU-12");
+        when(resultSet.getInt("available_stock")).thenReturn(5, -2);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int row = 0; row < 3; row++) {
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long written = catalogExportService.export(out);
+
+        // Then
+        assertEquals(2, written);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"Shirt\""));
+        assertTrue(lines[0].contains("\"sku\":\"SKU-11\"") && lines[0].contains("\"sku\":\"SKU-12\""));
+        assertTrue(lines[0].contains("\"availableStock\":0"), "Oversold stock is clamped to zero");
+        assertTrue(lines[1].contains("\"name\":\"Hat\"") && lines[1].contains("\"variants\":[]"));
+        assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("\n"));
+    }
+
+    @Test
+    void export_ShouldStreamRowsOnItsOwnStatementOnly() throws Exception {
+        // Given
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(CatalogExportService.EXPORT_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(statement);
+
+        // When
+        catalogExportService.export(new ByteArrayOutputStream());
+
+        // Then - Integer.MIN_VALUE makes Connector/J stream this result set without a server-side cursor
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).query(creator.capture(), any(RowCallbackHandler.class));
+        assertSame(statement, creator.getValue().createPreparedStatement(connection));
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Test
+    void streamCatalog_WithInvalidApiKey_ShouldFailBeforeStreaming() {
+        when(adminAuthService.authenticateByApiKey("bad-key")).thenReturn(Optional.empty());
+
+        assertThrows(BusinessException.class, () -> catalogExportService.streamCatalog("bad-key"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void streamCatalog_WithValidApiKey_ShouldReturnBody() {
+        when(adminAuthService.authenticateByApiKey("valid-key")).thenReturn(Optional.of(new AdminUser()));
+
+        assertNotNull(catalogExportService.streamCatalog("valid-key"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,100 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.CatalogImportRecord;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogImportReaderTest {
+
+    private static final String HEADER = "category,product,description,base_price,image_url,sku,size,color,price,stock_quantity\n";
+
+    @Test
+    void next_Csv_ShouldGroupConsecutiveRowsOfSameProduct() throws IOException {
+        CatalogImportReader reader = reader(HEADER +
+                "Shirts,Basic Tee,\"Soft, cotton\",100.00,,TEE-M,M,Red,90.00,5\n" +
+                "Shirts,Basic Tee,\"Soft, cotton\",100.00,,TEE-L,L,Red,110.00,3\n" +
+                "Shoes,Runner,,300.00,,RUN-42,42,Blue,,\n", CatalogImportReader.FORMAT_CSV);
+
+        CatalogImportReader.ParsedRecord tee = reader.next();
+        assertNull(tee.getError());
+        assertEquals(2, tee.getLines());
+        assertEquals("Soft, cotton", tee.getRecord().getDescription());
+        assertEquals(List.of("TEE-M", "TEE-L"), skus(tee.getRecord()));
+
+        CatalogImportReader.ParsedRecord runner = reader.next();
+        assertEquals(1, runner.getLines());
+        assertNull(runner.getRecord().getVariants().get(0).getPrice());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_Csv_ShouldReportBadRowWithoutDroppingNeighbours() throws IOException {
+        CatalogImportReader reader = reader(HEADER +
+                "Shirts,Basic Tee,,100.00,,TEE-M,M,Red,90.00,5\n" +
+                "Shirts,Broken,,abc,,BRK-1,M,Red,90.00,5\n" +
+                "Shirts,Polo,,120.00,,POLO-M,M,White,120.00,2\n", CatalogImportReader.FORMAT_CSV);
+
+        assertEquals("Basic Tee", reader.next().getRecord().getName());
+        CatalogImportReader.ParsedRecord broken = reader.next();
+        assertNotNull(broken.getError());
+        assertNull(broken.getRecord());
+        assertEquals("Polo", reader.next().getRecord().getName());
+    }
+
+    @Test
+    void skip_ShouldResumeAfterCommittedLines() throws IOException {
+        CatalogImportReader reader = reader(HEADER +
+                "Shirts,Basic Tee,,100.00,,TEE-M,M,Red,90.00,5\n" +
+                "Shirts,Basic Tee,,100.00,,TEE-L,L,Red,110.00,3\n" +
+                "Shirts,Polo,,120.00,,POLO-M,M,White,120.00,2\n", CatalogImportReader.FORMAT_CSV);
+
+        reader.skip(2);
+
+        assertEquals(List.of("POLO-M"), skus(reader.next().getRecord()));
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_Csv_WithWrongHeader_ShouldFail() {
+        CatalogImportReader reader = reader("name,price\nTee,10\n", CatalogImportReader.FORMAT_CSV);
+
+        assertThrows(IOException.class, reader::next);
+    }
+
+    @Test
+    void next_Ndjson_ShouldParseOneProductPerLine() throws IOException {
+        CatalogImportReader reader = reader(
+                "{\"category\":\"Shirts\",\"name\":\"Tee\",\"basePrice\":100,\"variants\":[" +
+                "{\"sku\":\"TEE-M\",\"size\":\"M\",\"price\":90,\"stockQuantity\":5}]}\n" +
+                "\n" +
+                "{\"category\":\"Shirts\",\"basePrice\":100}\n" +
+                "not json\n", CatalogImportReader.FORMAT_NDJSON);
+
+        CatalogImportReader.ParsedRecord tee = reader.next();
+        assertEquals(new BigDecimal("100"), tee.getRecord().getBasePrice());
+        assertEquals(List.of("TEE-M"), skus(tee.getRecord()));
+
+        CatalogImportReader.ParsedRecord missingName = reader.next();
+        assertEquals("Product name is required", missingName.getError());
+        assertEquals(2, missingName.getLines());
+
+        assertTrue(reader.next().getError().startsWith("Malformed JSON"));
+        assertNull(reader.next());
+    }
+
+    private CatalogImportReader reader(String content, String format) {
+        return new CatalogImportReader(new BufferedReader(new StringReader(content)), format, JsonMapper.builder().build());
+    }
+
+    private List<String> skus(CatalogImportRecord record) {
+        return record.getVariants().stream().map(CatalogImportRecord.Variant::getSku).toList();
+    }
+}
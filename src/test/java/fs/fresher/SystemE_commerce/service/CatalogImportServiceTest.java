@@ -0,0 +1,171 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.CatalogImportRecord;
+import fs.fresher.SystemE_commerce.dto.response.CatalogImportJobResponse;
+import fs.fresher.SystemE_commerce.entity.AdminUser;
+import fs.fresher.SystemE_commerce.entity.CatalogImportJob;
+import fs.fresher.SystemE_commerce.entity.Category;
+import fs.fresher.SystemE_commerce.enums.ImportJobStatus;
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import fs.fresher.SystemE_commerce.repository.CatalogImportJobRepository;
+import fs.fresher.SystemE_commerce.repository.CategoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogImportServiceTest {
+
+    @Mock
+    private CatalogImportJobRepository catalogImportJobRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private CatalogBulkWriter catalogBulkWriter;
+
+    @Mock
+    private AdminAuthService adminAuthService;
+
+    @TempDir
+    Path tempDir;
+
+    private CatalogImportService catalogImportService;
+    private CatalogImportJob job;
+    private final List<List<String>> committedChunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        catalogImportService = new CatalogImportService(catalogImportJobRepository, categoryRepository,
+                catalogBulkWriter, adminAuthService, JsonMapper.builder().build());
+        ReflectionTestUtils.setField(catalogImportService, "chunkSize", 2);
+
+        job = new CatalogImportJob();
+        job.setId(1L);
+        job.setFormat(CatalogImportReader.FORMAT_CSV);
+        job.setFileName("catalog.csv");
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogImportService.shutdown();
+    }
+
+    @Test
+    void run_ShouldCommitChunksWithTheirLinesAndComplete() throws IOException {
+        // Given - three products over four lines, one bad line
+        job.setStoredPath(writeFile(
+                "Shirts,Tee,,100.00,,TEE-M,M,Red,90.00,5",
+                "Shirts,Tee,,100.00,,TEE-L,L,Red,110.00,3",
+                "Shirts,Broken,,abc,,BRK-1,M,Red,90.00,5",
+                "Shoes,Runner,,300.00,,RUN-42,42,Blue,300.00,1").toString());
+        stubJobAndWriter();
+
+        // When
+        catalogImportService.run(1L);
+
+        // Then - the first chunk closes once it holds two variants
+        assertEquals(List.of(List.of("Tee"), List.of("Runner")), committedChunks);
+        verify(catalogBulkWriter).writeChunk(eq(1L), anyList(), anyMap(), eq(2L), eq(0L), isNull());
+        verify(catalogBulkWriter).writeChunk(eq(1L), anyList(), anyMap(), eq(2L), eq(1L), startsWith("Line 3:"));
+        assertEquals(ImportJobStatus.COMPLETED, job.getStatus());
+        assertNotNull(job.getCompletedAt());
+    }
+
+    @Test
+    void run_WithCheckpoint_ShouldSkipCommittedLines() throws IOException {
+        job.setStoredPath(writeFile(
+                "Shirts,Tee,,100.00,,TEE-M,M,Red,90.00,5",
+                "Shirts,Tee,,100.00,,TEE-L,L,Red,110.00,3",
+                "Shoes,Runner,,300.00,,RUN-42,42,Blue,300.00,1").toString());
+        job.setProcessedLines(2L);
+        stubJobAndWriter();
+
+        catalogImportService.run(1L);
+
+        assertEquals(List.of(List.of("Runner")), committedChunks);
+        assertEquals(ImportJobStatus.COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void run_WhenChunkFails_ShouldMarkJobFailed() throws IOException {
+        job.setStoredPath(writeFile("Shirts,Tee,,100.00,,TEE-M,M,Red,90.00,5").toString());
+        when(catalogImportJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(catalogImportJobRepository.save(any(CatalogImportJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(categoryRepository.findAll()).thenReturn(List.of());
+        when(catalogBulkWriter.writeChunk(anyLong(), anyList(), anyMap(), anyLong(), anyLong(), any()))
+                .thenThrow(new IllegalStateException("Deadlock"));
+
+        catalogImportService.run(1L);
+
+        assertEquals(ImportJobStatus.FAILED, job.getStatus());
+        assertEquals("Deadlock", job.getLastError());
+        assertEquals(0L, job.getProcessedLines());
+    }
+
+    @Test
+    void resumeJob_WhenNotFailed_ShouldReject() {
+        when(adminAuthService.authenticateByApiKey("key")).thenReturn(Optional.of(new AdminUser()));
+        job.setStatus(ImportJobStatus.COMPLETED);
+        when(catalogImportJobRepository.findById(1L)).thenReturn(Optional.of(job));
+
+        assertThrows(BusinessException.class, () -> catalogImportService.resumeJob("key", 1L));
+        verify(catalogImportJobRepository, never()).save(any());
+    }
+
+    @Test
+    void getJob_ShouldExposeProgress() {
+        when(adminAuthService.authenticateByApiKey("key")).thenReturn(Optional.of(new AdminUser()));
+        job.setProcessedLines(4000L);
+        job.setImportedVariants(3990L);
+        when(catalogImportJobRepository.findById(1L)).thenReturn(Optional.of(job));
+
+        CatalogImportJobResponse response = catalogImportService.getJob("key", 1L);
+
+        assertEquals(4000L, response.getProcessedLines());
+        assertEquals(3990L, response.getImportedVariants());
+    }
+
+    private void stubJobAndWriter() {
+        Category shirts = new Category();
+        shirts.setId(7L);
+        shirts.setName("Shirts");
+        when(catalogImportJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(catalogImportJobRepository.save(any(CatalogImportJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(categoryRepository.findAll()).thenReturn(List.of(shirts));
+        when(catalogBulkWriter.writeChunk(anyLong(), anyList(), anyMap(), anyLong(), anyLong(), any()))
+                .thenAnswer(invocation -> {
+                    List<CatalogImportRecord> records = invocation.getArgument(1);
+                    Map<String, Long> categoryIds = invocation.getArgument(2);
+                    assertEquals(7L, categoryIds.get("shirts"));
+                    committedChunks.add(records.stream().map(CatalogImportRecord::getName).toList());
+                    job.setProcessedLines(job.getProcessedLines() + (long) invocation.getArgument(3));
+                    return new CatalogBulkWriter.ChunkResult(records.size(), 0, 0, Map.of());
+                });
+    }
+
+    private Path writeFile(String... rows) throws IOException {
+        Path file = tempDir.resolve("catalog.csv");
+        Files.writeString(file, String.join(",", CatalogImportReader.CSV_HEADER) + "\n" + String.join("\n", rows) + "\n");
+        return file;
+    }
+}
@@ -0,0 +1,270 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.response.PagedResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductListResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductPageResponse;
+import fs.fresher.SystemE_commerce.entity.Category;
+import fs.fresher.SystemE_commerce.entity.Product;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogIndexServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductVariantRepository productVariantRepository;
+
+    @InjectMocks
+    private CatalogIndexService catalogIndexService;
+
+    private Category shirts;
+    private Category shoes;
+    private Product redShirt;
+    private Product blueShoe;
+    private Product mixedShirt;
+    private List<ProductVariant> variants;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(catalogIndexService, "enabled", true);
+        ReflectionTestUtils.setField(catalogIndexService, "refreshOverlapSeconds", 30);
+
+        shirts = category(1L, "Shirts");
+        shoes = category(2L, "Shoes");
+
+        LocalDateTime now = LocalDateTime.now();
+        redShirt = product(1L, "Red Shirt", "100.00", shirts, now.minusDays(3));
+        blueShoe = product(2L, "Blue Shoe", "300.00", shoes, now.minusDays(2));
+        mixedShirt = product(3L, "Mixed Shirt", "150.00", shirts, now.minusDays(1));
+
+        variants = List.of(
+                variant(11L, redShirt, "Red", "M", "90.00"),
+                variant(12L, redShirt, "Red", "L", "110.00"),
+                variant(21L, blueShoe, "Blue", "42", "300.00"),
+                variant(31L, mixedShirt, "Red", "L", "140.00"),
+                variant(32L, mixedShirt, "Blue", "M", "160.00")
+        );
+
+        when(productRepository.findAllActiveWithCategory()).thenReturn(List.of(redShirt, blueShoe, mixedShirt));
+        when(productVariantRepository.findAllActive()).thenReturn(variants);
+        catalogIndexService.rebuild();
+    }
+
+    @Test
+    void rebuild_ShouldMakeIndexReady() {
+        assertTrue(catalogIndexService.isReady());
+        assertEquals(3, catalogIndexService.currentSnapshot().size());
+    }
+
+    @Test
+    void findProducts_WithoutFilters_ShouldReturnNewestFirst() {
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, null, null, null, null, null, null);
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(List.of(3L, 2L, 1L), ids(result));
+        ProductListResponse mixed = result.getContent().get(0);
+        assertEquals(2, mixed.getTotalVariants());
+        assertEquals(new BigDecimal("140.00"), mixed.getMinPrice());
+        assertEquals(new BigDecimal("160.00"), mixed.getMaxPrice());
+    }
+
+    @Test
+    void findProducts_WithCategoryAndColor_ShouldIntersectBitmaps() {
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, List.of(1L), null, null, List.of("Blue"), null, null);
+
+        assertEquals(List.of(3L), ids(result));
+    }
+
+    @Test
+    void findProducts_WithColorAndSize_ShouldRequireSameVariant() {
+        // Red Shirt has Red/M, Mixed Shirt only has Red/L and Blue/M
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, null, null, null, List.of("Red"), List.of("M"), null);
+
+        assertEquals(List.of(1L), ids(result));
+    }
+
+    @Test
+    void findProducts_WithPriceRange_ShouldMatchBaseOrVariantPrice() {
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, null, new BigDecimal("120.00"), new BigDecimal("200.00"), null, null, null);
+
+        assertEquals(List.of(3L), ids(result));
+    }
+
+    @Test
+    void findProducts_WithSearch_ShouldMatchNameCaseInsensitive() {
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, null, null, null, null, null, "shirt");
+
+        assertEquals(List.of(3L, 1L), ids(result));
+    }
+
+    @Test
+    void findProducts_WithBlankOrPunctuationSearch_ShouldNotFilter() {
+        PagedResponse<ProductListResponse> blank = catalogIndexService.findProducts(
+                0, 10, null, null, null, null, null, " ");
+        PagedResponse<ProductListResponse> punctuation = catalogIndexService.findProducts(
+                0, 10, null, null, null, null, null, "?!");
+
+        assertEquals(List.of(3L, 2L, 1L), ids(blank));
+        assertEquals(List.of(3L, 2L, 1L), ids(punctuation));
+    }
+
+    @Test
+    void findProducts_WithSearchAndFilters_ShouldRankAfterFiltering() {
+        redShirt.setDescription("Pairs well with a blue shoe");
+        catalogIndexService.rebuild();
+
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, null, null, null, List.of("Red", "Blue"), null, "blue shoe");
+
+        // Name match ranks above description match; both survive the color filter
+        assertEquals(List.of(2L, 1L), ids(result));
+        assertEquals(2, result.getTotalElements());
+    }
+
+    @Test
+    void findProducts_WithPagination_ShouldSliceMatches() {
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                1, 2, null, null, null, null, null, null);
+
+        assertEquals(List.of(1L), ids(result));
+        assertEquals(3, result.getTotalElements());
+        assertEquals(2, result.getTotalPages());
+        assertFalse(result.isFirst());
+        assertTrue(result.isLast());
+        assertTrue(result.isHasPrevious());
+    }
+
+    @Test
+    void findProducts_WithPagePastTheMatches_ShouldReturnEmptyContent() {
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                5, 2, null, null, null, null, null, null);
+
+        assertTrue(result.getContent().isEmpty());
+        assertEquals(3, result.getTotalElements());
+    }
+
+    @Test
+    void findProductsWithFacets_ShouldCountEachDimensionIgnoringItsOwnSelection() {
+        ProductPageResponse result = catalogIndexService.findProductsWithFacets(
+                0, 10, List.of(1L), null, null, List.of("Red"), null, null);
+
+        assertEquals(List.of(3L, 1L), ids(result));
+        ProductFilterOptionsResponse facets = result.getFacets();
+        // Colors ignore the color selection: Blue still shows what selecting it would return
+        assertEquals(List.of(facet("Blue", 1), facet("Red", 2)), facets.getColorCounts());
+        // Sizes respect the Red selection: Mixed Shirt only has L in red
+        assertEquals(List.of(facet("L", 2), facet("M", 1)), facets.getSizeCounts());
+        // Categories ignore the category selection: Shoes has no red variant
+        assertEquals(List.of(new ProductFilterOptionsResponse.CategoryCount(1L, "Shirts", 2)),
+                facets.getCategoryCounts());
+        assertEquals(new BigDecimal("90.00"), facets.getMinPrice());
+        assertEquals(new BigDecimal("160.00"), facets.getMaxPrice());
+    }
+
+    @Test
+    void findProductsAfter_ShouldWalkAllPagesWithCursor() {
+        PagedResponse<ProductListResponse> first = catalogIndexService.findProductsAfter(
+                null, 2, null, null, null, null, null, null, true);
+
+        assertEquals(List.of(3L, 2L), ids(first));
+        assertEquals(3, first.getTotalElements());
+        assertTrue(first.isHasNext());
+
+        PagedResponse<ProductListResponse> second = catalogIndexService.findProductsAfter(
+                PageCursor.decode(first.getNextCursor()), 2, null, null, null, null, null, null, false);
+
+        assertEquals(List.of(1L), ids(second));
+        assertEquals(-1, second.getTotalElements());
+        assertFalse(second.isHasNext());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void refresh_ShouldReloadOnlyChangedProductsAndSwapSnapshot() {
+        long previousVersion = catalogIndexService.currentSnapshot().getVersion();
+        blueShoe.setIsActive(false);
+        when(productRepository.findIdsUpdatedSince(any())).thenReturn(List.of(2L));
+        when(productVariantRepository.findProductIdsWithVariantsUpdatedSince(any())).thenReturn(List.of());
+        when(productRepository.findAllByIdWithCategory(Set.of(2L))).thenReturn(List.of(blueShoe));
+        when(productVariantRepository.findActiveByProductIds(Set.of(2L))).thenReturn(List.of(variants.get(2)));
+
+        catalogIndexService.refresh();
+
+        assertEquals(previousVersion + 1, catalogIndexService.currentSnapshot().getVersion());
+        PagedResponse<ProductListResponse> result = catalogIndexService.findProducts(
+                0, 10, null, null, null, null, null, null);
+        assertEquals(List.of(3L, 1L), ids(result));
+        verify(productRepository, times(1)).findAllActiveWithCategory();
+    }
+
+    @Test
+    void isReady_WhenDisabled_ShouldReturnFalse() {
+        ReflectionTestUtils.setField(catalogIndexService, "enabled", false);
+
+        assertFalse(catalogIndexService.isReady());
+    }
+
+    private List<Long> ids(PagedResponse<ProductListResponse> page) {
+        return page.getContent().stream().map(ProductListResponse::getId).toList();
+    }
+
+    private ProductFilterOptionsResponse.FacetCount facet(String value, long count) {
+        return new ProductFilterOptionsResponse.FacetCount(value, count);
+    }
+
+    private Category category(Long id, String name) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        return category;
+    }
+
+    private Product product(Long id, String name, String basePrice, Category category, LocalDateTime createdAt) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setBasePrice(new BigDecimal(basePrice));
+        product.setCategory(category);
+        product.setCreatedAt(createdAt);
+        product.setIsActive(true);
+        return product;
+    }
+
+    private ProductVariant variant(Long id, Product product, String color, String size, String price) {
+        ProductVariant variant = new ProductVariant();
+        variant.setId(id);
+        variant.setProduct(product);
+        variant.setSku("SKU-" + id);
+        variant.setColor(color);
+        variant.setSize(size);
+        variant.setPrice(new BigDecimal(price));
+        variant.setIsActive(true);
+        return variant;
+    }
+}
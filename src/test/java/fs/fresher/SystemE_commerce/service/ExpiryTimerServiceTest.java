@@ -0,0 +1,161 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.CheckoutSession;
+import fs.fresher.SystemE_commerce.repository.CartRepository;
+import fs.fresher.SystemE_commerce.repository.CheckoutSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiryTimerServiceTest {
+
+    @Mock
+    private CheckoutSessionRepository checkoutSessionRepository;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private InventoryReservationService inventoryReservationService;
+
+    @Mock
+    private CartService cartService;
+
+    private ExpiryTimers expiryTimers;
+    private ExpiryTimerService expiryTimerService;
+
+    @BeforeEach
+    void setUp() {
+        expiryTimers = new ExpiryTimers(1000);
+        ReflectionTestUtils.setField(expiryTimers, "cartHorizonHours", 12L);
+        expiryTimerService = new ExpiryTimerService(expiryTimers, checkoutSessionRepository, cartRepository,
+                inventoryReservationService, cartService);
+    }
+
+    @Test
+    void rebuild_ShouldReleaseSessionsThatExpiredWhileDown() {
+        // Given
+        LocalDateTime expiredAt = LocalDateTime.now().minusMinutes(2);
+        List<Object[]> sessions = List.<Object[]>of(new Object[]{"token-1", expiredAt});
+        List<Object[]> carts = List.<Object[]>of(new Object[]{"cart-1", LocalDateTime.now().plusHours(3)});
+        when(checkoutSessionRepository.findOpenSessionExpirations()).thenReturn(sessions);
+        when(cartRepository.findExpirationsBefore(any(LocalDateTime.class))).thenReturn(carts);
+        when(checkoutSessionRepository.findByCheckoutToken("token-1")).thenReturn(Optional.of(session("token-1", expiredAt, false)));
+        when(inventoryReservationService.releaseReservationByToken("token-1")).thenReturn(Map.of("releasedVariants", 1));
+
+        // When
+        expiryTimerService.rebuild();
+        expiryTimerService.fireDueTimers();
+
+        // Then
+        verify(inventoryReservationService).releaseReservationByToken("token-1");
+        verifyNoInteractions(cartService);
+        assertEquals(1, expiryTimers.cartCount());
+    }
+
+    @Test
+    void fireDueTimers_WithUsedSession_ShouldNotRelease() {
+        LocalDateTime expiredAt = LocalDateTime.now().minusSeconds(5);
+        expiryTimers.scheduleSession("token-1", expiredAt);
+        when(checkoutSessionRepository.findByCheckoutToken("token-1")).thenReturn(Optional.of(session("token-1", expiredAt, true)));
+
+        expiryTimerService.fireDueTimers();
+
+        verifyNoInteractions(inventoryReservationService);
+    }
+
+    @Test
+    void fireDueTimers_WhenRowExpiresLater_ShouldRescheduleInsteadOfRelease() {
+        expiryTimers.scheduleSession("token-1", LocalDateTime.now().minusSeconds(5));
+        when(checkoutSessionRepository.findByCheckoutToken("token-1"))
+                .thenReturn(Optional.of(session("token-1", LocalDateTime.now().plusMinutes(10), false)));
+
+        expiryTimerService.fireDueTimers();
+
+        verifyNoInteractions(inventoryReservationService);
+        assertEquals(1, expiryTimers.sessionCount());
+    }
+
+    @Test
+    void fireDueTimers_ShouldCleanUpDueCarts() {
+        expiryTimers.scheduleCart("cart-1", LocalDateTime.now().minusSeconds(1));
+
+        expiryTimerService.fireDueTimers();
+
+        verify(cartService).cleanupExpiredCart("cart-1");
+        assertEquals(0, expiryTimers.cartCount());
+    }
+
+    @Test
+    void scheduleCart_BeyondHorizon_ShouldDropEarlierTimer() {
+        expiryTimers.scheduleCart("cart-1", LocalDateTime.now().plusHours(1));
+        expiryTimers.scheduleCart("cart-1", LocalDateTime.now().plusDays(7));
+
+        assertEquals(0, expiryTimers.cartCount());
+    }
+
+    @Test
+    void tick_ShouldKeepFiringWhileTheSharedSchedulerThreadIsBlocked() throws Exception {
+        // Given - Spring's default scheduler: one thread, held by a long-running job
+        ThreadPoolTaskScheduler sharedScheduler = new ThreadPoolTaskScheduler();
+        sharedScheduler.setPoolSize(1);
+        sharedScheduler.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        sharedScheduler.execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+        LocalDateTime expiredAt = LocalDateTime.now().minusSeconds(1);
+        expiryTimers.scheduleSession("token-1", expiredAt);
+        CountDownLatch released = new CountDownLatch(1);
+        when(checkoutSessionRepository.findByCheckoutToken("token-1")).thenReturn(Optional.of(session("token-1", expiredAt, false)));
+        when(inventoryReservationService.releaseReservationByToken("token-1")).thenAnswer(invocation -> {
+            released.countDown();
+            return Map.of("releasedVariants", 1);
+        });
+        ReflectionTestUtils.setField(expiryTimerService, "tickMs", 20L);
+
+        try {
+            // When
+            expiryTimerService.start();
+
+            // Then
+            assertTrue(released.await(2, TimeUnit.SECONDS), "The expiry tick waited for the blocked scheduler thread");
+        } finally {
+            expiryTimerService.shutdown();
+            release.countDown();
+            sharedScheduler.shutdown();
+        }
+    }
+
+    private CheckoutSession session(String token, LocalDateTime expiresAt, boolean used) {
+        CheckoutSession session = new CheckoutSession();
+        session.setCheckoutToken(token);
+        session.setExpiresAt(expiresAt);
+        session.setIsUsed(used);
+        return session;
+    }
+}
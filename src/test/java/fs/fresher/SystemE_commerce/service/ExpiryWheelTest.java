@@ -0,0 +1,68 @@
+package fs.fresher.SystemE_commerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiryWheelTest {
+
+    private static final long START = 1_000_000_000L;
+
+    @Test
+    void advance_ShouldFireWithinOneTickAfterExpiryAndNeverBefore() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(1000, 60, START);
+        wheel.schedule("session", START + 15 * 60_000 + 300);
+
+        assertTrue(wheel.advance(START + 15 * 60_000 + 299).isEmpty());
+        assertEquals(List.of("session"), wheel.advance(START + 15 * 60_000 + 1_300));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldCascadeLongExpiriesDownFromHigherLevels() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(1000, 60, START);
+        long sevenDays = 7L * 24 * 3600 * 1000;
+        wheel.schedule("cart", START + sevenDays);
+
+        // Advancing in coarse steps, as a scheduler that was paused would
+        for (long now = START; now < START + sevenDays; now += 3_600_000) {
+            assertTrue(wheel.advance(now).isEmpty());
+        }
+        assertTrue(wheel.advance(START + sevenDays - 1).isEmpty());
+        assertEquals(List.of("cart"), wheel.advance(START + sevenDays + 1000));
+    }
+
+    @Test
+    void schedule_AgainShouldReplaceEarlierExpiry() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(1000, 60, START);
+        wheel.schedule("cart", START + 5_000);
+        wheel.schedule("cart", START + 3_600_000);
+
+        assertTrue(wheel.advance(START + 10_000).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("cart"), wheel.advance(START + 3_601_000));
+    }
+
+    @Test
+    void cancel_ShouldRemoveTimer() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(1000, 60, START);
+        wheel.schedule("a", START + 5_000);
+        wheel.schedule("b", START - 5_000);
+        wheel.cancel("a");
+        wheel.cancel("b");
+
+        assertTrue(wheel.advance(START + 60_000).isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_WithPastExpiry_ShouldFireOnNextAdvance() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(1000, 60, START);
+        wheel.schedule("late", START - 60_000);
+
+        assertEquals(List.of("late"), wheel.advance(START));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,118 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
+import fs.fresher.SystemE_commerce.entity.Category;
+import fs.fresher.SystemE_commerce.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FilterOptionsCacheServiceTest {
+
+    @Mock
+    private CatalogIndexService catalogIndexService;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @InjectMocks
+    private FilterOptionsCacheService filterOptionsCacheService;
+
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(filterOptionsCacheService, "maxEntries", 1000);
+
+        LocalDateTime now = LocalDateTime.now();
+        snapshot = CatalogSnapshot.of(1, List.of(
+                new CatalogSnapshot.Entry(1L, "Shirt", null, new BigDecimal("100.00"), null, 1L, "Shirts", now,
+                        List.of(new CatalogSnapshot.VariantEntry(11L, "M", "Red", new BigDecimal("90.00")),
+                                new CatalogSnapshot.VariantEntry(12L, "L", "Blue", new BigDecimal("120.00")))),
+                new CatalogSnapshot.Entry(2L, "Shoe", null, new BigDecimal("300.00"), null, 2L, "Shoes", now,
+                        List.of(new CatalogSnapshot.VariantEntry(21L, "42", "Black", new BigDecimal("310.00"))))
+        ));
+
+        Category shirts = new Category();
+        shirts.setId(1L);
+        shirts.setName("Shirts");
+        lenient().when(categoryRepository.findAll(any(Sort.class))).thenReturn(List.of(shirts));
+    }
+
+    @Test
+    void get_WhenCatalogNotReady_ShouldReturnNull() {
+        when(catalogIndexService.isReady()).thenReturn(false);
+
+        assertNull(filterOptionsCacheService.get(List.of(1L)));
+        verifyNoInteractions(categoryRepository);
+    }
+
+    @Test
+    void get_ShouldComputeFromSnapshotAndServeRepeatsFromCache() {
+        when(catalogIndexService.isReady()).thenReturn(true);
+        when(catalogIndexService.currentSnapshot()).thenReturn(snapshot);
+
+        ProductFilterOptionsResponse first = filterOptionsCacheService.get(List.of(1L));
+        ProductFilterOptionsResponse second = filterOptionsCacheService.get(List.of(1L));
+
+        assertSame(first, second);
+        assertEquals(List.of("Blue", "Red"), first.getAvailableColors());
+        assertEquals(List.of("L", "M"), first.getAvailableSizes());
+        assertEquals(new BigDecimal("90.00"), first.getMinPrice());
+        assertEquals(new BigDecimal("120.00"), first.getMaxPrice());
+        assertEquals(1, first.getCategories().size());
+        verify(categoryRepository, times(1)).findAll(any(Sort.class));
+
+        Map<String, Object> stats = filterOptionsCacheService.getStatistics();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void get_ShouldNormalizeCategorySelection() {
+        when(catalogIndexService.isReady()).thenReturn(true);
+        when(catalogIndexService.currentSnapshot()).thenReturn(snapshot);
+
+        ProductFilterOptionsResponse first = filterOptionsCacheService.get(Arrays.asList(2L, 1L, 2L));
+        ProductFilterOptionsResponse second = filterOptionsCacheService.get(List.of(1L, 2L));
+
+        assertSame(first, second);
+        assertEquals(List.of("Black", "Blue", "Red"), first.getAvailableColors());
+        assertEquals(new BigDecimal("310.00"), first.getMaxPrice());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> hitsBySelection = (Map<String, Long>) filterOptionsCacheService.getStatistics().get("hitsBySelection");
+        assertEquals(1L, hitsBySelection.get("[1, 2]"));
+    }
+
+    @Test
+    void rebuildIfCatalogChanged_ShouldRecomputeCachedSelections() {
+        when(catalogIndexService.isReady()).thenReturn(true);
+        when(catalogIndexService.currentSnapshot()).thenReturn(snapshot);
+        filterOptionsCacheService.get(null);
+
+        CatalogSnapshot changed = snapshot.withChanges(2, java.util.Set.of(2L), List.of());
+        when(catalogIndexService.currentSnapshot()).thenReturn(changed);
+        filterOptionsCacheService.rebuildIfCatalogChanged();
+
+        ProductFilterOptionsResponse result = filterOptionsCacheService.get(null);
+        assertEquals(List.of("Blue", "Red"), result.getAvailableColors());
+        assertEquals(2L, filterOptionsCacheService.getStatistics().get("catalogVersion"));
+    }
+}
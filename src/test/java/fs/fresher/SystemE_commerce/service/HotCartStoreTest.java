@@ -0,0 +1,303 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.AddCartItemRequest;
+import fs.fresher.SystemE_commerce.dto.response.CartResponse;
+import fs.fresher.SystemE_commerce.dto.response.CartSummaryResponse;
+import fs.fresher.SystemE_commerce.entity.Cart;
+import fs.fresher.SystemE_commerce.entity.CartItem;
+import fs.fresher.SystemE_commerce.entity.Product;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.repository.CartItemRepository;
+import fs.fresher.SystemE_commerce.repository.CartRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotCartStoreTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private HotCartWriter hotCartWriter;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private ProductVariantRepository productVariantRepository;
+
+    @Mock
+    private InventoryReservationService inventoryReservationService;
+
+    @Mock
+    private CartCleanupService cartCleanupService;
+
+    @Mock
+    private CartAccessTracker cartAccessTracker;
+
+    private HotCartStore hotCartStore;
+    private CartService cartService;
+    private ProductVariant variant;
+
+    @BeforeEach
+    void setUp() {
+        hotCartStore = new HotCartStore(cartRepository, hotCartWriter);
+        ReflectionTestUtils.setField(hotCartStore, "enabled", true);
+        ReflectionTestUtils.setField(hotCartStore, "cartTtlDays", 7);
+        ReflectionTestUtils.setField(hotCartStore, "maxEntries", 100);
+        ReflectionTestUtils.setField(hotCartStore, "idleSeconds", 300L);
+        ReflectionTestUtils.setField(hotCartStore, "flushBatchSize", 200);
+
+        cartService = new CartService(cartRepository, cartItemRepository, productVariantRepository,
+                inventoryReservationService, cartCleanupService, hotCartStore, cartAccessTracker);
+        ReflectionTestUtils.setField(cartService, "cartTtlDays", 7);
+
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Test Product");
+        variant = new ProductVariant();
+        variant.setId(11L);
+        variant.setProduct(product);
+        variant.setSku("SKU-11");
+        variant.setPrice(new BigDecimal("100.00"));
+        variant.setStockQuantity(20);
+        variant.setReservedQuantity(0);
+        // Every view prices the hot lines from the variant rows
+        lenient().when(productVariantRepository.findAllByIdWithProduct(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).contains(11L)
+                        ? List.of(variant) : List.of());
+    }
+
+    @Test
+    void addItemToCart_RepeatedClicks_ShouldCoalesceIntoOneWrite() {
+        // Given
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.empty());
+        when(productVariantRepository.findByIdWithProduct(11L)).thenReturn(Optional.of(variant));
+
+        // When - five clicks are answered from memory
+        CartResponse response = null;
+        for (int i = 0; i < 5; i++) {
+            response = cartService.addItemToCart("cart-1", addRequest(11L, 1), null);
+        }
+
+        // Then - nothing written yet, one coalesced write on flush
+        assertEquals(5, response.getTotalItems());
+        assertEquals(new BigDecimal("500.00"), response.getTotalAmount());
+        verifyNoInteractions(hotCartWriter, cartItemRepository);
+        verify(cartRepository, never()).save(any());
+
+        hotCartStore.flushDirtyCarts();
+        hotCartStore.flushDirtyCarts();
+
+        List<HotCartStore.CartState> written = captureWrites(1).get(0);
+        assertEquals(1, written.size());
+        assertEquals(Map.of(11L, 5), written.get(0).getQuantities());
+        verify(cartRepository, times(1)).findByCartIdWithItems("cart-1");
+    }
+
+    @Test
+    void getCart_ShouldServeRepeatViewsFromMemoryWithoutWrites() {
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.of(storedCart("cart-1", 2)));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2, cartService.getCart("cart-1").getTotalItems());
+        }
+
+        hotCartStore.flushDirtyCarts();
+        verify(cartRepository, times(1)).findByCartIdWithItems("cart-1");
+        verifyNoInteractions(hotCartWriter);
+    }
+
+    @Test
+    void getCart_AfterPriceAndStockChange_ShouldShowCurrentVariantValues() {
+        // Given - line added at 100.00 with 20 in stock
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.empty());
+        when(productVariantRepository.findByIdWithProduct(11L)).thenReturn(Optional.of(variant));
+        cartService.addItemToCart("cart-1", addRequest(11L, 2), null);
+
+        // When - the variant is repriced and mostly sold while the cart stays hot
+        variant.setPrice(new BigDecimal("80.00"));
+        variant.setReservedQuantity(19);
+        CartResponse response = cartService.getCart("cart-1");
+
+        // Then
+        CartResponse.CartItemResponse item = response.getItems().get(0);
+        assertEquals(new BigDecimal("80.00"), item.getPrice());
+        assertEquals(1, item.getAvailableStock());
+        assertEquals(new BigDecimal("160.00"), response.getTotalAmount());
+    }
+
+    @Test
+    void getCartSummary_ShouldAnswerFromHotCopyWithoutCartRead() {
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.empty());
+        when(productVariantRepository.findByIdWithProduct(11L)).thenReturn(Optional.of(variant));
+        cartService.addItemToCart("cart-1", addRequest(11L, 3), null);
+
+        CartSummaryResponse summary = cartService.getCartSummary("cart-1");
+
+        assertEquals(1, summary.getItemCount());
+        assertEquals(3, summary.getTotalQuantity());
+        assertEquals(new BigDecimal("300.00"), summary.getTotalAmount());
+        verify(cartRepository, never()).findByCartId(any());
+    }
+
+    @Test
+    void flush_ShouldWriteDirtyCartImmediatelyAndOnlyOnce() {
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.of(storedCart("cart-1", 2)));
+        cartService.removeItemFromCart("cart-1", 11L);
+
+        hotCartStore.flush("cart-1");
+        hotCartStore.flush("cart-1");
+        hotCartStore.flushDirtyCarts();
+
+        List<HotCartStore.CartState> written = captureWrites(1).get(0);
+        assertTrue(written.get(0).getQuantities().isEmpty());
+    }
+
+    @Test
+    void flushDirtyCarts_WhenWriteFails_ShouldRetryNextCycle() {
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.of(storedCart("cart-1", 2)));
+        cartService.clearCart("cart-1");
+        doThrow(new IllegalStateException("Lock wait timeout")).doNothing().when(hotCartWriter).write(anyList());
+
+        hotCartStore.flushDirtyCarts();
+        hotCartStore.flushDirtyCarts();
+        hotCartStore.flushDirtyCarts();
+
+        verify(hotCartWriter, times(2)).write(anyList());
+    }
+
+    @Test
+    void flushDirtyCarts_WhenOneCartFailsInBatch_ShouldWriteTheOthersAndRetryItAlone() {
+        when(cartRepository.findByCartIdWithItems("good")).thenReturn(Optional.of(storedCart("good", 1)));
+        when(cartRepository.findByCartIdWithItems("bad")).thenReturn(Optional.of(storedCart("bad", 1)));
+        cartService.clearCart("good");
+        cartService.clearCart("bad");
+        doAnswer(invocation -> {
+            List<HotCartStore.CartState> states = invocation.getArgument(0);
+            if (states.stream().anyMatch(state -> state.getCartId().equals("bad"))) {
+                throw new IllegalStateException("Data too long");
+            }
+            return null;
+        }).when(hotCartWriter).write(anyList());
+
+        hotCartStore.flushDirtyCarts();
+        hotCartStore.flushDirtyCarts();
+
+        // Batch of two, then each alone; next cycle only the failing cart, on its own
+        List<List<HotCartStore.CartState>> writes = captureWrites(4);
+        assertEquals(2, writes.get(0).size());
+        assertEquals(List.of(1, 1, 1), writes.subList(1, 4).stream().map(List::size).toList());
+        assertEquals("bad", writes.get(3).get(0).getCartId());
+    }
+
+    @Test
+    void flushDirtyCarts_ShouldEvictIdleCleanCartsButKeepDirtyOnes() {
+        when(cartRepository.findByCartIdWithItems("clean")).thenReturn(Optional.of(storedCart("clean", 1)));
+        when(cartRepository.findByCartIdWithItems("dirty")).thenReturn(Optional.of(storedCart("dirty", 1)));
+        cartService.getCart("clean");
+        cartService.clearCart("dirty");
+        doThrow(new IllegalStateException("Database down")).when(hotCartWriter).write(anyList());
+        ReflectionTestUtils.setField(hotCartStore, "idleSeconds", -1L);
+
+        hotCartStore.flushDirtyCarts();
+
+        assertEquals(1, hotCartStore.size());
+        cartService.getCart("clean");
+        verify(cartRepository, times(2)).findByCartIdWithItems("clean");
+    }
+
+    @Test
+    void cleanupExpiredCart_WithLiveHotCopy_ShouldFlushItInsteadOfDeletingTheRow() {
+        // Given - the row expired, but an add since the last flush extended the hot copy
+        Cart stored = storedCart("cart-1", 1);
+        stored.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.of(stored));
+        hotCartStore.withCart("cart-1", null, false, cart -> {
+            cart.extendExpiration(7);
+            return null;
+        });
+
+        // When
+        cartService.cleanupExpiredCart("cart-1");
+
+        // Then
+        List<HotCartStore.CartState> written = captureWrites(1).get(0);
+        assertTrue(written.get(0).getExpiresAt().isAfter(LocalDateTime.now()));
+        verify(cartRepository, never()).delete(any());
+        assertEquals(1, hotCartStore.size());
+    }
+
+    @Test
+    void cleanupExpiredCart_WithExpiredHotCopy_ShouldEvictItAndDeleteTheRow() {
+        Cart stored = storedCart("cart-1", 1);
+        stored.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(cartRepository.findByCartIdWithItems("cart-1")).thenReturn(Optional.of(stored));
+        when(cartRepository.findByCartId("cart-1")).thenReturn(Optional.of(stored));
+        hotCartStore.withCart("cart-1", null, false, cart -> null);
+
+        cartService.cleanupExpiredCart("cart-1");
+
+        verify(cartRepository).delete(stored);
+        verifyNoInteractions(hotCartWriter);
+        assertEquals(0, hotCartStore.size());
+    }
+
+    @Test
+    void removeItemFromCart_WithUnknownCart_ShouldNotCreateIt() {
+        when(cartRepository.findByCartIdWithItems("missing")).thenReturn(Optional.empty());
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> cartService.removeItemFromCart("missing", 11L));
+
+        assertEquals("Cart not found", exception.getMessage());
+        assertEquals(0, hotCartStore.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<HotCartStore.CartState>> captureWrites(int times) {
+        ArgumentCaptor<List<HotCartStore.CartState>> captor = ArgumentCaptor.forClass(List.class);
+        verify(hotCartWriter, times(times)).write(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private Cart storedCart(String cartId, int quantity) {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.setCartId(cartId);
+        cart.setExpiresAt(LocalDateTime.now().plusDays(7));
+        cart.setUpdatedAt(LocalDateTime.now());
+        CartItem item = new CartItem();
+        item.setCart(cart);
+        item.setProductVariant(variant);
+        item.setQuantity(quantity);
+        cart.setItems(new ArrayList<>(List.of(item)));
+        return cart;
+    }
+
+    private AddCartItemRequest addRequest(Long skuId, int quantity) {
+        AddCartItemRequest request = new AddCartItemRequest();
+        request.setSkuId(skuId);
+        request.setQuantity(quantity);
+        return request;
+    }
+}
@@ -0,0 +1,161 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.InventoryJournalEntry;
+import fs.fresher.SystemE_commerce.repository.InventoryJournalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerTest {
+
+    @Mock
+    private InventoryLedgerWriter inventoryLedgerWriter;
+
+    @Mock
+    private InventoryJournalRepository inventoryJournalRepository;
+
+    @InjectMocks
+    private InventoryLedger inventoryLedger;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(inventoryLedger, "enabled", true);
+        ReflectionTestUtils.setField(inventoryLedger, "reconcileBatchSize", 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InventoryJournalEntry> journaled() {
+        ArgumentCaptor<List<InventoryJournalEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryJournalRepository, atLeastOnce()).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private void stock(Long variantId, int stock, long available) {
+        when(inventoryLedgerWriter.loadStock(List.of(variantId)))
+                .thenReturn(List.of(new InventoryLedgerWriter.VariantStock(variantId, stock, available)));
+    }
+
+    @Test
+    void tryReserve_ShouldTakeFromCounterAndJournalOnce() {
+        // Given
+        stock(1L, 10, 5);
+
+        // When
+        assertTrue(inventoryLedger.tryReserve(Map.of(1L, 2)));
+        assertTrue(inventoryLedger.tryReserve(Map.of(1L, 3)));
+
+        // Then - loaded once, then served from memory
+        assertFalse(inventoryLedger.tryReserve(Map.of(1L, 1)));
+        assertEquals(0, inventoryLedger.getAvailable(1L));
+        verify(inventoryLedgerWriter, times(1)).loadStock(any());
+        verify(inventoryJournalRepository, times(2)).saveAll(any());
+
+        InventoryJournalEntry entry = journaled().get(0);
+        assertEquals(1L, entry.getVariantId());
+        assertEquals(3, entry.getReservedDelta());
+        assertEquals(0, entry.getStockDelta());
+    }
+
+    @Test
+    void tryReserve_WithOneVariantShort_ShouldTakeNothing() {
+        // Given
+        when(inventoryLedgerWriter.loadStock(List.of(1L, 2L))).thenReturn(List.of(
+                new InventoryLedgerWriter.VariantStock(1L, 10, 8),
+                new InventoryLedgerWriter.VariantStock(2L, 5, 1)));
+
+        // When
+        boolean result = inventoryLedger.tryReserve(Map.of(1L, 3, 2L, 2));
+
+        // Then
+        assertFalse(result);
+        assertEquals(8, inventoryLedger.getAvailable(1L));
+        assertEquals(1, inventoryLedger.getAvailable(2L));
+        verify(inventoryJournalRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void tryReserve_WithNonExistentVariant_ShouldThrowException() {
+        // Given
+        when(inventoryLedgerWriter.loadStock(List.of(999L))).thenReturn(Collections.emptyList());
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> inventoryLedger.tryReserve(Map.of(999L, 1)));
+
+        assertTrue(exception.getMessage().contains("Product variant not found: 999"));
+        verify(inventoryJournalRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void release_ShouldGiveBackToCounterAndJournal() {
+        // Given
+        stock(1L, 10, 4);
+
+        // When
+        inventoryLedger.release(Map.of(1L, 3));
+
+        // Then
+        assertEquals(7, inventoryLedger.getAvailable(1L));
+        InventoryJournalEntry entry = journaled().get(0);
+        assertEquals(-3, entry.getReservedDelta());
+        assertEquals(0, entry.getStockDelta());
+    }
+
+    @Test
+    void confirm_ShouldOnlyJournalTheSale() {
+        // When
+        inventoryLedger.confirm(Map.of(1L, 2));
+
+        // Then
+        InventoryJournalEntry entry = journaled().get(0);
+        assertEquals(-2, entry.getReservedDelta());
+        assertEquals(-2, entry.getStockDelta());
+        verify(inventoryLedgerWriter, never()).loadStock(any());
+    }
+
+    @Test
+    void reconcile_ShouldApplyJournalAndFoldInOutsideStockChanges() {
+        // Given - counter at stock 10; the journal holds a sale of 2, and an admin added 5 on top
+        stock(1L, 10, 6);
+        inventoryLedger.getAvailable(1L);
+        when(inventoryLedgerWriter.applyJournal(100))
+                .thenReturn(new InventoryLedgerWriter.ApplyResult(3, Map.of(1L, -2)));
+        when(inventoryLedgerWriter.currentStock(anyCollection())).thenReturn(Map.of(1L, 13));
+
+        // When
+        int applied = inventoryLedger.reconcile();
+
+        // Then - the sale does not move available stock, the restock does
+        assertEquals(3, applied);
+        assertEquals(11, inventoryLedger.getAvailable(1L));
+        verify(inventoryLedgerWriter, times(1)).applyJournal(100);
+    }
+
+    @Test
+    void reconcile_ShouldDrainFullBatches() {
+        // Given
+        when(inventoryLedgerWriter.applyJournal(100))
+                .thenReturn(new InventoryLedgerWriter.ApplyResult(100, Collections.emptyMap()))
+                .thenReturn(new InventoryLedgerWriter.ApplyResult(20, Collections.emptyMap()));
+        when(inventoryLedgerWriter.currentStock(anyCollection())).thenReturn(Collections.emptyMap());
+
+        // When
+        int applied = inventoryLedger.reconcile();
+
+        // Then
+        assertEquals(120, applied);
+        verify(inventoryLedgerWriter, times(2)).applyJournal(100);
+    }
+}
@@ -0,0 +1,214 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.Product;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hot-SKU reservation benchmark against the real MySQL database: many threads reserving one unit at a time
+ * of the same variant, through the guarded UPDATE path, the in-memory ledger, the group-commit combiner, split stock
+ * buckets and the previous SERIALIZABLE + FOR UPDATE path.
+ * Skipped by default; run with
+ * mvn test -Dtest=InventoryReservationBenchmarkTest -Dbenchmark=true [-Dbenchmark.threads=32 -Dbenchmark.ops=200
+ * -Dbenchmark.buckets=16]
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InventoryReservationBenchmarkTest {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final int OPS_PER_THREAD = Integer.getInteger("benchmark.ops", 100);
+    private static final int BUCKETS = Integer.getInteger("benchmark.buckets", 8);
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private ReservationCombiner reservationCombiner;
+
+    @Autowired
+    private StockBucketService stockBucketService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+    private ProductVariant variant;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setName("Benchmark Product");
+        product.setBasePrice(new BigDecimal("10.00"));
+        product = productRepository.save(product);
+
+        variant = new ProductVariant();
+        variant.setProduct(product);
+        variant.setSku("BENCH-" + UUID.randomUUID());
+        variant.setPrice(new BigDecimal("10.00"));
+        variant = productVariantRepository.save(variant);
+    }
+
+    @AfterEach
+    void tearDown() {
+        productVariantRepository.deleteById(variant.getId());
+        productRepository.deleteById(product.getId());
+    }
+
+    @Test
+    void hotSku_ReservationsPerSecondByPath() throws Exception {
+        // Plenty of stock: measures pure contention on the row
+        setStock(THREADS * OPS_PER_THREAD);
+        double legacy = run("SERIALIZABLE + FOR UPDATE", this::reserveWithLock);
+
+        setStock(THREADS * OPS_PER_THREAD);
+        double guarded = run("guarded UPDATE", () -> inventoryReservationService.reserveStock(variant.getId(), 1));
+
+        setStock(THREADS * OPS_PER_THREAD);
+        double ledger = run("in-memory ledger", () -> inventoryLedger.tryReserve(Map.of(variant.getId(), 1)),
+                inventoryLedger::reconcile);
+
+        setStock(THREADS * OPS_PER_THREAD);
+        double combined = run("group commit", () -> reservationCombiner.reserve(Map.of(variant.getId(), 1)));
+
+        setStock(THREADS * OPS_PER_THREAD);
+        double bucketed = runBucketed();
+
+        System.out.printf("Hot SKU, %d threads x %d reservations, relative to the locking path: guarded UPDATE %.1fx, " +
+                "ledger %.1fx, group commit %.1fx, %d buckets %.1fx%n", THREADS, OPS_PER_THREAD,
+                guarded / legacy, ledger / legacy, combined / legacy, BUCKETS, bucketed / legacy);
+    }
+
+    @Test
+    void lastUnits_GuardedUpdateNeverOversells() throws Exception {
+        int stock = THREADS * OPS_PER_THREAD / 4;
+        setStock(stock);
+
+        run("guarded UPDATE, scarce stock", () -> inventoryReservationService.reserveStock(variant.getId(), 1));
+
+        ProductVariant after = productVariantRepository.findById(variant.getId()).orElseThrow();
+        assertEquals(stock, after.getReservedQuantity());
+    }
+
+    /**
+     * Reservations through the service with the variant split into buckets; merged back before counting, which turns
+     * the parked units back into free stock and leaves only the reservations in reserved_quantity
+     */
+    private double runBucketed() throws Exception {
+        ReflectionTestUtils.setField(stockBucketService, "enabled", true);
+        try {
+            stockBucketService.split(variant.getId(), BUCKETS);
+            return run(BUCKETS + " stock buckets", () -> inventoryReservationService.reserveStock(variant.getId(), 1),
+                    () -> stockBucketService.merge(variant.getId()));
+        } finally {
+            ReflectionTestUtils.setField(stockBucketService, "enabled", false);
+        }
+    }
+
+    /**
+     * The reservation path this replaces: pessimistic lock, read, compute and versioned save under SERIALIZABLE
+     */
+    private boolean reserveWithLock() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        Boolean reserved = template.execute(status -> {
+            ProductVariant locked = productVariantRepository.findByIdWithLock(variant.getId()).orElseThrow();
+            if (locked.getStockQuantity() - locked.getReservedQuantity() < 1) {
+                return false;
+            }
+            locked.setReservedQuantity(locked.getReservedQuantity() + 1);
+            productVariantRepository.save(locked);
+            productVariantRepository.refreshProductAggregates(List.of(locked.getId()));
+            return true;
+        });
+        return Boolean.TRUE.equals(reserved);
+    }
+
+    /**
+     * Run the reservation from all threads at once; checks that reserved units match the successes exactly
+     */
+    private double run(String name, BooleanSupplier reservation) throws Exception {
+        return run(name, reservation, () -> { });
+    }
+
+    private double run(String name, BooleanSupplier reservation, Runnable settle) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    try {
+                        if (reservation.getAsBoolean()) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        executor.shutdown();
+
+        double perSecond = succeeded.get() / seconds;
+        System.out.printf("%-30s %6d reserved, %6d rejected/failed in %.2fs = %.0f reservations/sec%n",
+                name, succeeded.get(), failed.get(), seconds, perSecond);
+
+        settle.run();
+        ProductVariant after = productVariantRepository.findById(variant.getId()).orElseThrow();
+        assertEquals(succeeded.get(), after.getReservedQuantity());
+        return perSecond;
+    }
+
+    private void setStock(int stock) {
+        ProductVariant current = productVariantRepository.findById(variant.getId()).orElseThrow();
+        current.setStockQuantity(stock);
+        current.setReservedQuantity(0);
+        variant = productVariantRepository.save(current);
+    }
+}
@@ -3,19 +3,25 @@ package fs.fresher.SystemE_commerce.service;
 import fs.fresher.SystemE_commerce.dto.request.InventoryReserveRequest;
 import fs.fresher.SystemE_commerce.dto.response.InventoryReservationResponse;
 import fs.fresher.SystemE_commerce.entity.*;
+import fs.fresher.SystemE_commerce.exception.InventoryException;
 import fs.fresher.SystemE_commerce.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -36,6 +42,24 @@ class InventoryReservationServiceTest {
     @Mock
     private CartRepository cartRepository;
 
+    @Mock
+    private HotCartStore hotCartStore;
+
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private ReservationCombiner reservationCombiner;
+
+    @Mock
+    private StockBucketService stockBucketService;
+
+    @Mock
+    private ProductAggregateRefresher productAggregateRefresher;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
     @InjectMocks
     private InventoryReservationService inventoryReservationService;
 
@@ -49,10 +73,6 @@ class InventoryReservationServiceTest {
 
     @BeforeEach
     void setUp() {
-        // Set up configuration
-        ReflectionTestUtils.setField(inventoryReservationService, "maxRetryAttempts", 3);
-        ReflectionTestUtils.setField(inventoryReservationService, "retryDelayMs", 100);
-        
         setupTestData();
     }
 
@@ -109,25 +129,26 @@ class InventoryReservationServiceTest {
     @Test
     void reserveStock_WithSufficientStock_ShouldReturnTrue() {
         // Given
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(productVariantRepository.reserveIfAvailable(eq(1L), eq(3), any(LocalDateTime.class)))
+                .thenReturn(1);
 
         // When
         boolean result = inventoryReservationService.reserveStock(1L, 3);
 
         // Then
         assertTrue(result);
-        verify(productVariantRepository).findByIdWithLock(1L);
-        verify(productVariantRepository).save(mockVariant);
-        assertEquals(5, mockVariant.getReservedQuantity()); // 2 + 3
+        verify(productAggregateRefresher).markChanged(List.of(1L));
+        verify(productVariantRepository, never()).findById(any());
+        verify(productVariantRepository, never()).findByIdWithLock(any());
+        verify(productVariantRepository, never()).save(any());
     }
 
     @Test
     void reserveStock_WithInsufficientStock_ShouldReturnFalse() {
-        // Given - Available stock is 8 (10 - 2), requesting 10
-        when(productVariantRepository.findByIdWithLock(1L))
+        // Given - Available stock is 8 (10 - 2), requesting 10: the guarded update matches no row
+        when(productVariantRepository.reserveIfAvailable(eq(1L), eq(10), any(LocalDateTime.class)))
+                .thenReturn(0);
+        when(productVariantRepository.findById(1L))
                 .thenReturn(Optional.of(mockVariant));
 
         // When
@@ -135,15 +156,16 @@ class InventoryReservationServiceTest {
 
         // Then
         assertFalse(result);
-        verify(productVariantRepository).findByIdWithLock(1L);
         verify(productVariantRepository, never()).save(any());
-        assertEquals(2, mockVariant.getReservedQuantity()); // Unchanged
+        verify(productAggregateRefresher, never()).markChanged(any());
     }
 
     @Test
     void reserveStock_WithNonExistentVariant_ShouldThrowException() {
         // Given
-        when(productVariantRepository.findByIdWithLock(999L))
+        when(productVariantRepository.reserveIfAvailable(eq(999L), eq(3), any(LocalDateTime.class)))
+                .thenReturn(0);
+        when(productVariantRepository.findById(999L))
                 .thenReturn(Optional.empty());
 
         // When & Then
@@ -152,127 +174,351 @@ class InventoryReservationServiceTest {
         });
 
         assertTrue(exception.getMessage().contains("Product variant not found: 999"));
-        verify(productVariantRepository, never()).save(any());
+        verify(productAggregateRefresher, never()).markChanged(any());
+    }
+
+    private static Object[] lockedRow(long variantId, long available) {
+        return new Object[] {variantId, available};
     }
 
     @Test
-    void reserveStock_WithOptimisticLockingFailure_ShouldRetryAndSucceed() {
+    void reserveMultipleStock_WithSufficientStock_ShouldReturnTrue() {
         // Given
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenThrow(new OptimisticLockingFailureException("Lock failure"))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        Map<Long, Integer> reservationMap = new HashMap<>();
+        reservationMap.put(1L, 3);
+        
+        when(productVariantRepository.lockAvailableStock(reservationMap.keySet()))
+                .thenReturn(List.<Object[]>of(lockedRow(1L, 8)));
 
         // When
-        boolean result = inventoryReservationService.reserveStock(1L, 3);
+        boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
 
         // Then
         assertTrue(result);
-        verify(productVariantRepository, times(2)).findByIdWithLock(1L);
-        verify(productVariantRepository).save(mockVariant);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.RESERVE_LOCKED_SQL), anyList());
+        verify(productAggregateRefresher).markChanged(reservationMap.keySet());
+        verify(productVariantRepository, never()).findByIdWithLock(any());
     }
 
     @Test
-    void reserveMultipleStock_WithSufficientStock_ShouldReturnTrue() {
+    @SuppressWarnings("unchecked")
+    void reserveMultipleStock_ShouldLockOnceAndWriteOneBatchInVariantOrder() {
         // Given
         Map<Long, Integer> reservationMap = new HashMap<>();
-        reservationMap.put(1L, 3);
+        reservationMap.put(30L, 1);
+        reservationMap.put(10L, 2);
+        reservationMap.put(20L, 3);
         
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(productVariantRepository.lockAvailableStock(reservationMap.keySet()))
+                .thenReturn(List.of(lockedRow(10L, 5), lockedRow(20L, 5), lockedRow(30L, 5)));
 
         // When
         boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
 
         // Then
         assertTrue(result);
-        verify(productVariantRepository).findByIdWithLock(1L);
-        verify(productVariantRepository).save(mockVariant);
-        assertEquals(5, mockVariant.getReservedQuantity());
+        verify(productVariantRepository, times(1)).lockAvailableStock(any());
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.RESERVE_LOCKED_SQL), batch.capture());
+        assertEquals(List.of(10L, 20L, 30L), batch.getValue().stream().map(args -> args[2]).toList());
+        assertEquals(List.of(2, 3, 1), batch.getValue().stream().map(args -> args[0]).toList());
+        verify(productVariantRepository, never()).reserveIfAvailable(any(), any(), any());
     }
 
     @Test
     void reserveMultipleStock_WithInsufficientStockForOneItem_ShouldReturnFalse() {
         // Given
-        ProductVariant variant2 = new ProductVariant();
-        variant2.setId(2L);
-        variant2.setSku("TEST-SKU-002");
-        variant2.setStockQuantity(5);
-        variant2.setReservedQuantity(4); // Only 1 available
-
         Map<Long, Integer> reservationMap = new HashMap<>();
         reservationMap.put(1L, 3); // Available: 8, requesting 3 - OK
         reservationMap.put(2L, 2); // Available: 1, requesting 2 - FAIL
 
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.findByIdWithLock(2L))
-                .thenReturn(Optional.of(variant2));
+        when(productVariantRepository.lockAvailableStock(reservationMap.keySet()))
+                .thenReturn(List.of(lockedRow(1L, 8), lockedRow(2L, 1)));
+
+        // When
+        boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
+
+        // Then - decided before any write, so nothing needs undoing
+        assertFalse(result);
+        verifyNoInteractions(jdbcTemplate);
+        verify(productAggregateRefresher, never()).markChanged(any());
+        verify(productVariantRepository, never()).save(any());
+    }
+
+    @Test
+    void reserveMultipleStock_WithNonExistentVariant_ShouldThrow() {
+        // Given
+        Map<Long, Integer> reservationMap = new HashMap<>();
+        reservationMap.put(1L, 3);
+        reservationMap.put(999L, 1);
+
+        when(productVariantRepository.lockAvailableStock(reservationMap.keySet()))
+                .thenReturn(List.<Object[]>of(lockedRow(1L, 8)));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            inventoryReservationService.reserveMultipleStock(reservationMap);
+        });
+
+        assertTrue(exception.getMessage().contains("Product variant not found: 999"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void reserveMultipleStock_WithLedgerEnabled_ShouldReserveInLedgerOnly() {
+        // Given
+        Map<Long, Integer> reservationMap = Map.of(1L, 3, 2L, 1);
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.tryReserve(reservationMap)).thenReturn(true);
+
+        // When
+        boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
+
+        // Then
+        assertTrue(result);
+        verify(productVariantRepository, never()).reserveIfAvailable(any(), any(), any());
+        verify(productAggregateRefresher, never()).markChanged(any());
+    }
+
+    @Test
+    void reserveMultipleStock_WithCombinerEnabled_ShouldReserveThroughCombiner() {
+        // Given
+        Map<Long, Integer> reservationMap = Map.of(1L, 3, 2L, 1);
+        when(reservationCombiner.isEnabled()).thenReturn(true);
+        when(reservationCombiner.hold(reservationMap)).thenReturn(null);
+
+        // When
+        boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
+
+        // Then
+        assertFalse(result);
+        verify(productVariantRepository, never()).reserveIfAvailable(any(), any(), any());
+    }
+
+    @Test
+    void reserveMultipleStock_WithCombinerAndShortBucketedVariant_ShouldRouteItAroundAndGiveBack() {
+        // Given - variant 2 is split into buckets that are short
+        when(reservationCombiner.isEnabled()).thenReturn(true);
+        when(stockBucketService.isBucketed(1L)).thenReturn(false);
+        when(stockBucketService.isBucketed(2L)).thenReturn(true);
+        ReservationCombiner.Grant grant = mock(ReservationCombiner.Grant.class);
+        when(reservationCombiner.hold(Map.of(1L, 3))).thenReturn(grant);
+        when(stockBucketService.reserve(2L, 1)).thenReturn(false);
+
+        // When
+        boolean result = inventoryReservationService.reserveMultipleStock(Map.of(1L, 3, 2L, 1));
+
+        // Then - only the plain row went through the combiner, and its committed units are given back
+        assertFalse(result);
+        verify(reservationCombiner).hold(Map.of(1L, 3));
+        verify(grant).giveBack();
+    }
+
+    @Test
+    void reserveInventory_WithCombinerAndShortBucketedVariant_ShouldGiveBackTheRowUnitsOnce() throws Exception {
+        // Given - a real combiner in front of a variant row with 5 units already held by other buyers, and a
+        // bucketed variant that is short
+        Map<Long, Integer> reserved = new ConcurrentHashMap<>(Map.of(1L, 5));
+        List<Integer> giveBacks = new CopyOnWriteArrayList<>();
+        ReservationCombinerWriter writer = mock(ReservationCombinerWriter.class);
+        when(writer.applyBatch(eq(1L), anyList())).thenAnswer(invocation -> {
+            List<ReservationCombiner.Request> requests = invocation.getArgument(1);
+            List<Boolean> granted = new ArrayList<>();
+            for (ReservationCombiner.Request request : requests) {
+                if (request.getQuantity() < 0) {
+                    giveBacks.add(request.getQuantity());
+                }
+                boolean ok = request.getQuantity() < 0 || request.claim();
+                if (ok) {
+                    // Same floor as APPLY_SQL
+                    reserved.merge(1L, request.getQuantity(), (held, delta) -> Math.max(held + delta, 0));
+                }
+                granted.add(ok);
+            }
+            return granted;
+        });
+        ReservationCombiner combiner = new ReservationCombiner(writer);
+        ReflectionTestUtils.setField(combiner, "enabled", true);
+        ReflectionTestUtils.setField(combiner, "windowMs", 1L);
+        ReflectionTestUtils.setField(combiner, "maxBatchSize", 500);
+        ReflectionTestUtils.setField(combiner, "waitTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(combiner, "threads", 1);
+        ReflectionTestUtils.setField(combiner, "retryBackoffMs", 10L);
+        combiner.start();
+        InventoryReservationService service = new InventoryReservationService(productVariantRepository,
+                checkoutSessionRepository, stockReservationRepository, cartRepository, hotCartStore, inventoryLedger,
+                combiner, stockBucketService, productAggregateRefresher, jdbcTemplate);
+
+        ProductVariant bucketed = new ProductVariant();
+        bucketed.setId(2L);
+        bucketed.setSku("TEST-SKU-002");
+        CartItem bucketedItem = new CartItem();
+        bucketedItem.setProductVariant(bucketed);
+        bucketedItem.setQuantity(1);
+        mockCart.setItems(Arrays.asList(mockCartItem, bucketedItem));
+        when(cartRepository.findByCartId("test-cart-001")).thenReturn(Optional.of(mockCart));
+        when(stockBucketService.isBucketed(1L)).thenReturn(false);
+        when(stockBucketService.isBucketed(2L)).thenReturn(true);
+        when(stockBucketService.reserve(2L, 1)).thenReturn(false);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When - the reservation fails and its transaction rolls back
+            assertThrows(RuntimeException.class, () -> service.reserveInventory(reserveRequest));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then - the 3 units come off the row once, leaving the other buyers' 5 in place
+        long deadline = System.currentTimeMillis() + 2000;
+        while (giveBacks.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        combiner.shutdown();
+        assertEquals(List.of(-3), giveBacks);
+        assertEquals(5, reserved.get(1L));
+    }
+
+    @Test
+    void reserveStock_WithBucketedVariant_ShouldTakeFromBuckets() {
+        // Given
+        when(stockBucketService.isBucketed(1L)).thenReturn(true);
+        when(stockBucketService.reserve(1L, 2)).thenReturn(true);
+
+        // When
+        boolean result = inventoryReservationService.reserveStock(1L, 2);
+
+        // Then
+        assertTrue(result);
+        verify(productVariantRepository, never()).reserveIfAvailable(any(), any(), any());
+        verify(productAggregateRefresher, never()).markChanged(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserveMultipleStock_WithBucketedVariant_ShouldLockOnlyPlainRows() {
+        // Given
+        Map<Long, Integer> reservationMap = Map.of(1L, 3, 2L, 1);
+        when(stockBucketService.isBucketed(1L)).thenReturn(false);
+        when(stockBucketService.isBucketed(2L)).thenReturn(true);
+        when(productVariantRepository.lockAvailableStock(Set.of(1L))).thenReturn(List.<Object[]>of(lockedRow(1L, 8)));
+        when(stockBucketService.reserve(2L, 1)).thenReturn(true);
+
+        // When
+        boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
+
+        // Then
+        assertTrue(result);
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.RESERVE_LOCKED_SQL), batch.capture());
+        assertEquals(List.of(1L), batch.getValue().stream().map(args -> args[2]).toList());
+        verify(productAggregateRefresher).markChanged(Set.of(1L));
+    }
+
+    @Test
+    void reserveMultipleStock_WithOneBucketedVariantShort_ShouldGiveBackTheOthers() {
+        // Given
+        Map<Long, Integer> reservationMap = Map.of(1L, 3, 2L, 1);
+        when(stockBucketService.isBucketed(anyLong())).thenReturn(true);
+        when(stockBucketService.reserve(1L, 3)).thenReturn(true);
+        when(stockBucketService.reserve(2L, 1)).thenReturn(false);
 
         // When
         boolean result = inventoryReservationService.reserveMultipleStock(reservationMap);
 
         // Then
         assertFalse(result);
-        verify(productVariantRepository).findByIdWithLock(1L);
-        verify(productVariantRepository).findByIdWithLock(2L);
-        verify(productVariantRepository, never()).save(any()); // No saves due to failure
-        assertEquals(2, mockVariant.getReservedQuantity()); // Unchanged
-        assertEquals(4, variant2.getReservedQuantity()); // Unchanged
+        verify(stockBucketService).release(1L, 3);
+        verify(productVariantRepository, never()).lockAvailableStock(any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void releaseReservation_WithBucketedVariant_ShouldReleaseToBuckets() {
+        // Given
+        when(stockBucketService.isBucketed(1L)).thenReturn(true);
+
+        // When
+        inventoryReservationService.releaseReservation(1L, 2);
+
+        // Then
+        verify(stockBucketService).release(1L, 2);
+        verify(productVariantRepository, never()).releaseReserved(any(), any(), any());
+    }
+
+    @Test
+    void releaseReservation_WithLedgerEnabled_ShouldReleaseInLedgerOnly() {
+        // Given
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+
+        // When
+        inventoryReservationService.releaseReservation(1L, 2);
+
+        // Then
+        verify(inventoryLedger).release(Map.of(1L, 2));
+        verify(productVariantRepository, never()).releaseReserved(any(), any(), any());
     }
 
     @Test
     void releaseReservation_WithValidVariant_ShouldDecreaseReservedQuantity() {
         // Given
-        when(productVariantRepository.findById(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(productVariantRepository.releaseReserved(eq(1L), eq(1), any(LocalDateTime.class)))
+                .thenReturn(1);
 
         // When
         inventoryReservationService.releaseReservation(1L, 1);
 
         // Then
-        verify(productVariantRepository).findById(1L);
-        verify(productVariantRepository).save(mockVariant);
-        assertEquals(1, mockVariant.getReservedQuantity()); // 2 - 1
+        verify(productVariantRepository).releaseReserved(eq(1L), eq(1), any(LocalDateTime.class));
+        verify(productAggregateRefresher).markChanged(List.of(1L));
+        verify(productVariantRepository, never()).save(any());
     }
 
     @Test
-    void releaseReservation_WithQuantityGreaterThanReserved_ShouldSetToZero() {
+    void releaseReservation_WithNonExistentVariant_ShouldNotThrow() {
         // Given
-        when(productVariantRepository.findById(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(productVariantRepository.releaseReserved(eq(999L), eq(5), any(LocalDateTime.class)))
+                .thenReturn(0);
 
         // When
-        inventoryReservationService.releaseReservation(1L, 5); // More than reserved (2)
+        assertDoesNotThrow(() -> inventoryReservationService.releaseReservation(999L, 5));
 
         // Then
-        verify(productVariantRepository).save(mockVariant);
-        assertEquals(0, mockVariant.getReservedQuantity()); // Max(0, 2-5) = 0
+        verify(productAggregateRefresher, never()).markChanged(any());
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void confirmReservation_WithValidVariant_ShouldDecreaseStockAndReserved() {
         // Given
-        when(productVariantRepository.findById(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(jdbcTemplate.batchUpdate(eq(InventoryReservationService.CONFIRM_SQL), anyList()))
+                .thenReturn(new int[] {1});
 
         // When
         inventoryReservationService.confirmReservation(1L, 2);
 
-        // Then
-        verify(productVariantRepository).findById(1L);
-        verify(productVariantRepository).save(mockVariant);
-        assertEquals(8, mockVariant.getStockQuantity()); // 10 - 2
-        assertEquals(0, mockVariant.getReservedQuantity()); // Max(0, 2-2) = 0
+        // Then - stock and reserved both drop by 2 in one guarded statement
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.CONFIRM_SQL), batch.capture());
+        Object[] args = batch.getValue().get(0);
+        assertEquals(List.of(2, 2, 1L), List.of(args[0], args[1], args[3]));
+        verify(productAggregateRefresher).markChanged(any());
+        verify(productVariantRepository, never()).save(any());
+    }
+
+    @Test
+    void confirmReservation_WithMissingVariant_ShouldThrow() {
+        // Given
+        when(jdbcTemplate.batchUpdate(eq(InventoryReservationService.CONFIRM_SQL), anyList()))
+                .thenReturn(new int[] {0});
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> inventoryReservationService.confirmReservation(999L, 2));
+        verify(productAggregateRefresher, never()).markChanged(any());
     }
 
     @Test
@@ -307,15 +553,30 @@ class InventoryReservationServiceTest {
         assertEquals(8, stockInfo.availableStock);
     }
 
+    @Test
+    void getStockInfo_WithBucketedVariant_ShouldCountParkedUnitsAsAvailable() {
+        // Given - 10 in stock, 2 reserved by buyers and 6 parked in buckets
+        mockVariant.setReservedQuantity(8);
+        mockVariant.setBucketedStock(6);
+        when(productVariantRepository.findById(1L)).thenReturn(Optional.of(mockVariant));
+
+        // When
+        InventoryReservationService.StockInfo stockInfo = inventoryReservationService.getStockInfo(1L);
+
+        // Then
+        assertEquals(10, stockInfo.totalStock);
+        assertEquals(2, stockInfo.reservedStock);
+        assertEquals(8, stockInfo.availableStock);
+        assertEquals(8, inventoryReservationService.getAvailableStock(1L));
+    }
+
     @Test
     void reserveInventory_WithValidCart_ShouldCreateReservation() {
         // Given
         when(cartRepository.findByCartId("test-cart-001"))
                 .thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(productVariantRepository.lockAvailableStock(Set.of(1L)))
+                .thenReturn(List.<Object[]>of(lockedRow(1L, 8)));
         when(checkoutSessionRepository.save(any(CheckoutSession.class)))
                 .thenReturn(mockCheckoutSession);
         when(stockReservationRepository.save(any(StockReservation.class)))
@@ -333,7 +594,7 @@ class InventoryReservationServiceTest {
         assertEquals(3, result.getTotalItems());
 
         verify(cartRepository).findByCartId("test-cart-001");
-        verify(productVariantRepository).findByIdWithLock(1L);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.RESERVE_LOCKED_SQL), anyList());
         verify(checkoutSessionRepository).save(any(CheckoutSession.class));
         verify(stockReservationRepository).save(any(StockReservation.class));
     }
@@ -355,7 +616,7 @@ class InventoryReservationServiceTest {
         });
 
         assertTrue(exception.getMessage().contains("Cart is empty"));
-        verify(productVariantRepository, never()).findByIdWithLock(any());
+        verify(productVariantRepository, never()).lockAvailableStock(any());
     }
 
     @Test
@@ -381,12 +642,9 @@ class InventoryReservationServiceTest {
                 .thenReturn(Optional.of(mockCheckoutSession));
         when(stockReservationRepository.findByCheckoutSessionId(1L))
                 .thenReturn(Arrays.asList(mockStockReservation));
-        when(productVariantRepository.findById(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
-        when(checkoutSessionRepository.save(any(CheckoutSession.class)))
-                .thenReturn(mockCheckoutSession);
+        when(productVariantRepository.releaseReserved(eq(1L), eq(3), any(LocalDateTime.class)))
+                .thenReturn(1);
+        when(checkoutSessionRepository.markReleased(1L)).thenReturn(1);
 
         // When
         Map<String, Object> result = inventoryReservationService.releaseReservationByToken("checkout-token-123");
@@ -399,7 +657,8 @@ class InventoryReservationServiceTest {
 
         verify(checkoutSessionRepository).findByCheckoutToken("checkout-token-123");
         verify(stockReservationRepository).findByCheckoutSessionId(1L);
-        verify(productVariantRepository).findById(1L);
+        verify(productVariantRepository).releaseReserved(eq(1L), eq(3), any(LocalDateTime.class));
+        verify(checkoutSessionRepository, never()).save(any(CheckoutSession.class));
         assertTrue(mockCheckoutSession.getIsUsed());
     }
 
@@ -409,6 +668,8 @@ class InventoryReservationServiceTest {
         mockCheckoutSession.setIsUsed(true);
         when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
                 .thenReturn(Optional.of(mockCheckoutSession));
+        when(checkoutSessionRepository.markReleased(1L)).thenReturn(0);
+        when(checkoutSessionRepository.markReleased(1L)).thenReturn(0);
 
         // When
         Map<String, Object> result = inventoryReservationService.releaseReservationByToken("checkout-token-123");
@@ -423,16 +684,16 @@ class InventoryReservationServiceTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void confirmReservationByToken_WithValidToken_ShouldConfirmReservation() {
         // Given
         when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
                 .thenReturn(Optional.of(mockCheckoutSession));
-        when(stockReservationRepository.findByCheckoutSessionId(1L))
-                .thenReturn(Arrays.asList(mockStockReservation));
-        when(productVariantRepository.findById(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant);
+        when(checkoutSessionRepository.markConfirmed(eq(1L), any())).thenReturn(1);
+        when(stockReservationRepository.sumQuantitiesBySession(1L))
+                .thenReturn(List.<Object[]>of(new Object[] {1L, 3L}));
+        when(jdbcTemplate.batchUpdate(eq(InventoryReservationService.CONFIRM_SQL), anyList()))
+                .thenReturn(new int[] {1});
 
         // When
         Map<String, Object> result = inventoryReservationService.confirmReservationByToken("checkout-token-123");
@@ -441,11 +702,95 @@ class InventoryReservationServiceTest {
         assertNotNull(result);
         assertEquals("checkout-token-123", result.get("reservationToken"));
         assertEquals("CONFIRMED", result.get("status"));
+        assertEquals(1, result.get("confirmedVariants"));
+        assertNotNull(mockCheckoutSession.getConfirmedAt());
 
-        verify(checkoutSessionRepository).findByCheckoutToken("checkout-token-123");
-        verify(stockReservationRepository).findByCheckoutSessionId(1L);
-        verify(productVariantRepository).findById(1L);
-        verify(productVariantRepository).save(mockVariant);
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.CONFIRM_SQL), batch.capture());
+        assertEquals(List.of(3, 3, 1L), List.of(batch.getValue().get(0)[0], batch.getValue().get(0)[1],
+                batch.getValue().get(0)[3]));
+        verify(productVariantRepository, never()).save(any());
+    }
+
+    @Test
+    void confirmReservationByToken_WhenAlreadyConfirmed_ShouldBeNoOp() {
+        // Given
+        mockCheckoutSession.setConfirmedAt(LocalDateTime.now().minusSeconds(5));
+        when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
+                .thenReturn(Optional.of(mockCheckoutSession));
+
+        // When
+        Map<String, Object> result = inventoryReservationService.confirmReservationByToken("checkout-token-123");
+
+        // Then
+        assertEquals("ALREADY_CONFIRMED", result.get("status"));
+        verify(checkoutSessionRepository, never()).markConfirmed(any(), any());
+        verifyNoInteractions(stockReservationRepository, jdbcTemplate);
+    }
+
+    @Test
+    void confirmReservationByToken_WhenConcurrentConfirmWon_ShouldBeNoOp() {
+        // Given
+        when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
+                .thenReturn(Optional.of(mockCheckoutSession));
+        when(checkoutSessionRepository.markConfirmed(eq(1L), any())).thenReturn(0);
+        when(checkoutSessionRepository.countConfirmedForUpdate(1L)).thenReturn(1L);
+
+        // When
+        Map<String, Object> result = inventoryReservationService.confirmReservationByToken("checkout-token-123");
+
+        // Then
+        assertEquals("ALREADY_CONFIRMED", result.get("status"));
+        verifyNoInteractions(stockReservationRepository, jdbcTemplate);
+    }
+
+    @Test
+    void confirmReservationByToken_WhenReleased_ShouldThrow() {
+        // Given
+        mockCheckoutSession.setIsUsed(true);
+        when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
+                .thenReturn(Optional.of(mockCheckoutSession));
+        when(checkoutSessionRepository.markConfirmed(eq(1L), any())).thenReturn(0);
+        when(checkoutSessionRepository.countConfirmedForUpdate(1L)).thenReturn(0L);
+
+        // When & Then
+        assertThrows(InventoryException.class,
+                () -> inventoryReservationService.confirmReservationByToken("checkout-token-123"));
+        verifyNoInteractions(stockReservationRepository, jdbcTemplate);
+    }
+
+    @Test
+    void releaseReservationByToken_WhenConfirmed_ShouldNotReleaseSoldUnits() {
+        // Given
+        mockCheckoutSession.setConfirmedAt(LocalDateTime.now());
+        when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
+                .thenReturn(Optional.of(mockCheckoutSession));
+        when(checkoutSessionRepository.markReleased(1L)).thenReturn(0);
+
+        // When
+        Map<String, Object> result = inventoryReservationService.releaseReservationByToken("checkout-token-123");
+
+        // Then
+        assertEquals("ALREADY_PROCESSED", result.get("status"));
+        verify(stockReservationRepository, never()).findByCheckoutSessionId(any());
+    }
+
+    @Test
+    void releaseReservationByToken_WhenConfirmedAfterRead_ShouldLoseTheClaimAndLeaveTheSessionAlone() {
+        // Given: the session was still open when read, but a confirm committed before the claim
+        when(checkoutSessionRepository.findByCheckoutToken("checkout-token-123"))
+                .thenReturn(Optional.of(mockCheckoutSession));
+        when(checkoutSessionRepository.markReleased(1L)).thenReturn(0);
+
+        // When
+        Map<String, Object> result = inventoryReservationService.releaseReservationByToken("checkout-token-123");
+
+        // Then
+        assertEquals("ALREADY_PROCESSED", result.get("status"));
+        assertFalse(mockCheckoutSession.getIsUsed());
+        verify(stockReservationRepository, never()).findByCheckoutSessionId(any());
+        verify(productVariantRepository, never()).releaseReserved(any(), anyInt(), any());
+        verify(checkoutSessionRepository, never()).save(any(CheckoutSession.class));
     }
 
     @Test
@@ -486,46 +831,43 @@ class InventoryReservationServiceTest {
     @Test
     void releaseMultipleReservations_WithMultipleVariants_ShouldReleaseAll() {
         // Given
-        ProductVariant variant2 = new ProductVariant();
-        variant2.setId(2L);
-        variant2.setStockQuantity(15);
-        variant2.setReservedQuantity(5);
-
         Map<Long, Integer> reservationMap = new HashMap<>();
         reservationMap.put(1L, 2);
         reservationMap.put(2L, 3);
 
-        when(productVariantRepository.findById(1L))
-                .thenReturn(Optional.of(mockVariant));
-        when(productVariantRepository.findById(2L))
-                .thenReturn(Optional.of(variant2));
-        when(productVariantRepository.save(any(ProductVariant.class)))
-                .thenReturn(mockVariant, variant2);
+        when(productVariantRepository.releaseReserved(any(), any(), any(LocalDateTime.class)))
+                .thenReturn(1);
 
         // When
         inventoryReservationService.releaseMultipleReservations(reservationMap);
 
         // Then
-        verify(productVariantRepository).findById(1L);
-        verify(productVariantRepository).findById(2L);
-        verify(productVariantRepository, times(2)).save(any(ProductVariant.class));
-        assertEquals(0, mockVariant.getReservedQuantity()); // 2 - 2
-        assertEquals(2, variant2.getReservedQuantity()); // 5 - 3
+        verify(productVariantRepository).releaseReserved(eq(1L), eq(2), any(LocalDateTime.class));
+        verify(productVariantRepository).releaseReserved(eq(2L), eq(3), any(LocalDateTime.class));
+        verify(productVariantRepository, never()).save(any(ProductVariant.class));
     }
 
     @Test
-    void reserveStock_WithMaxRetryAttemptsExceeded_ShouldReturnFalse() {
+    @SuppressWarnings("unchecked")
+    void releaseAggregatedReservations_ShouldWriteOneBatchInVariantOrder() {
         // Given
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenThrow(new OptimisticLockingFailureException("Lock failure"));
+        Map<Long, Integer> quantities = new HashMap<>();
+        quantities.put(30L, 1);
+        quantities.put(10L, 4);
+        quantities.put(20L, 2);
+        when(stockBucketService.isBucketed(20L)).thenReturn(true);
 
         // When
-        boolean result = inventoryReservationService.reserveStock(1L, 3);
-
-        // Then
-        assertFalse(result);
-        verify(productVariantRepository, times(3)).findByIdWithLock(1L); // maxRetryAttempts = 3
-        verify(productVariantRepository, never()).save(any());
+        inventoryReservationService.releaseAggregatedReservations(quantities);
+
+        // Then - the bucketed variant goes back to its buckets, the rest in one batch
+        verify(stockBucketService).release(20L, 2);
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(InventoryReservationService.RELEASE_SQL), batch.capture());
+        assertEquals(List.of(10L, 30L), batch.getValue().stream().map(args -> args[2]).toList());
+        assertEquals(List.of(4, 1), batch.getValue().stream().map(args -> args[0]).toList());
+        verify(productAggregateRefresher).markChanged(Set.of(10L, 30L));
+        verify(productVariantRepository, never()).releaseReserved(any(), any(), any());
     }
 
     @Test
@@ -537,8 +879,8 @@ class InventoryReservationServiceTest {
 
         when(cartRepository.findByCartId("test-cart-001"))
                 .thenReturn(Optional.of(mockCart));
-        when(productVariantRepository.findByIdWithLock(1L))
-                .thenReturn(Optional.of(mockVariant));
+        when(productVariantRepository.lockAvailableStock(Set.of(1L)))
+                .thenReturn(List.<Object[]>of(lockedRow(1L, 1)));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
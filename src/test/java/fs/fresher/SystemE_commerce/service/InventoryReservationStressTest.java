@@ -0,0 +1,215 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.Product;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Overlapping multi-SKU carts reserved concurrently against the real MySQL database: every cart takes a few of the
+ * same handful of variants, listed in random order. The batch lock must never deadlock and must outrun per-row
+ * locking in cart order, which does. Skipped by default; run with
+ * mvn test -Dtest=InventoryReservationStressTest -Dbenchmark=true [-Dbenchmark.threads=32 -Dbenchmark.ops=100]
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InventoryReservationStressTest {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final int CARTS_PER_THREAD = Integer.getInteger("benchmark.ops", 50);
+    private static final int VARIANTS = 8;
+    private static final int ITEMS_PER_CART = 3;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+    private final List<Long> variantIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setName("Stress Product");
+        product.setBasePrice(new BigDecimal("10.00"));
+        product = productRepository.save(product);
+
+        for (int i = 0; i < VARIANTS; i++) {
+            ProductVariant variant = new ProductVariant();
+            variant.setProduct(product);
+            variant.setSku("STRESS-" + UUID.randomUUID());
+            variant.setPrice(new BigDecimal("10.00"));
+            variantIds.add(productVariantRepository.save(variant).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        productVariantRepository.deleteAllById(variantIds);
+        productRepository.deleteById(product.getId());
+    }
+
+    @Test
+    void overlappingCarts_BatchLockNeverDeadlocks() throws Exception {
+        List<List<Map<Long, Integer>>> carts = carts();
+
+        resetStock();
+        Result perRow = run("per-row locks in cart order", carts, this::reserveRowByRow);
+
+        resetStock();
+        Result batch = run("ordered batch lock", carts, inventoryReservationService::reserveMultipleStock);
+
+        assertEquals(0, batch.deadlocks, "the ordered batch lock deadlocked");
+        assertTrue(batch.perSecond > perRow.perSecond,
+                String.format("batch lock %.0f carts/sec is not above per-row %.0f", batch.perSecond, perRow.perSecond));
+    }
+
+    /**
+     * The locking this replaces: one FOR UPDATE round trip per variant, in whatever order the cart lists them
+     */
+    private boolean reserveRowByRow(Map<Long, Integer> cart) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        Boolean reserved = template.execute(status -> {
+            List<ProductVariant> locked = new ArrayList<>();
+            for (Long variantId : cart.keySet()) {
+                locked.add(productVariantRepository.findByIdWithLock(variantId).orElseThrow());
+            }
+            for (ProductVariant variant : locked) {
+                if (variant.getStockQuantity() - variant.getReservedQuantity() < cart.get(variant.getId())) {
+                    return false;
+                }
+            }
+            for (ProductVariant variant : locked) {
+                variant.setReservedQuantity(variant.getReservedQuantity() + cart.get(variant.getId()));
+                productVariantRepository.save(variant);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(reserved);
+    }
+
+    /**
+     * The same random carts for both runs: ITEMS_PER_CART distinct variants each, in shuffled order
+     */
+    private List<List<Map<Long, Integer>>> carts() {
+        Random random = new Random(42);
+        List<List<Map<Long, Integer>>> carts = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Map<Long, Integer>> threadCarts = new ArrayList<>();
+            for (int i = 0; i < CARTS_PER_THREAD; i++) {
+                List<Long> ids = new ArrayList<>(variantIds);
+                Collections.shuffle(ids, random);
+                Map<Long, Integer> cart = new LinkedHashMap<>();
+                ids.subList(0, ITEMS_PER_CART).forEach(id -> cart.put(id, 1));
+                threadCarts.add(cart);
+            }
+            carts.add(threadCarts);
+        }
+        return carts;
+    }
+
+    private Result run(String name, List<List<Map<Long, Integer>>> carts, Predicate<Map<Long, Integer>> reservation)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger deadlocks = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (List<Map<Long, Integer>> threadCarts : carts) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (Map<Long, Integer> cart : threadCarts) {
+                    try {
+                        if (reservation.test(cart)) {
+                            reserved.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        if (isDeadlock(e)) {
+                            deadlocks.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        executor.shutdown();
+
+        Result result = new Result(reserved.get() / seconds, deadlocks.get());
+        System.out.printf("%-30s %6d carts reserved, %4d deadlocks, %4d other failures in %.2fs = %.0f carts/sec%n",
+                name, reserved.get(), deadlocks.get(), failed.get(), seconds, result.perSecond);
+
+        int reservedUnits = productVariantRepository.findAllById(variantIds).stream()
+                .mapToInt(ProductVariant::getReservedQuantity).sum();
+        assertEquals(reserved.get() * ITEMS_PER_CART, reservedUnits);
+        return result;
+    }
+
+    private static boolean isDeadlock(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CannotAcquireLockException
+                    || (cause.getMessage() != null && cause.getMessage().contains("Deadlock"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resetStock() {
+        List<ProductVariant> variants = productVariantRepository.findAllById(variantIds);
+        for (ProductVariant variant : variants) {
+            variant.setStockQuantity(THREADS * CARTS_PER_THREAD);
+            variant.setReservedQuantity(0);
+        }
+        productVariantRepository.saveAll(variants);
+    }
+
+    private static final class Result {
+        private final double perSecond;
+        private final int deadlocks;
+
+        private Result(double perSecond, int deadlocks) {
+            this.perSecond = perSecond;
+            this.deadlocks = deadlocks;
+        }
+    }
+}
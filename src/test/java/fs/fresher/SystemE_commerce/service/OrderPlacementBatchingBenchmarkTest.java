@@ -0,0 +1,192 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.dto.request.PlaceOrderRequest;
+import fs.fresher.SystemE_commerce.dto.response.OrderResponse;
+import fs.fresher.SystemE_commerce.entity.Cart;
+import fs.fresher.SystemE_commerce.entity.CartItem;
+import fs.fresher.SystemE_commerce.entity.Product;
+import fs.fresher.SystemE_commerce.entity.ProductVariant;
+import fs.fresher.SystemE_commerce.enums.PaymentMethod;
+import fs.fresher.SystemE_commerce.repository.CartRepository;
+import fs.fresher.SystemE_commerce.repository.ProductRepository;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips of placing a 10-item order against the real MySQL database, with Hibernate statistics on:
+ * the order items and the stock updates must each go out as one prepared statement executed as a JDBC batch.
+ * Skipped by default; run with
+ * mvn test -Dtest=OrderPlacementBatchingBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "fs.fresher.SystemE_commerce.service.OrderPlacementBatchingBenchmarkTest$PreparedStatements",
+        "spring.jpa.properties.hibernate.session.events.auto="
+                + "fs.fresher.SystemE_commerce.service.OrderPlacementBatchingBenchmarkTest$Batches",
+        "cart.hot-store.enabled=false"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderPlacementBatchingBenchmarkTest {
+
+    private static final int ITEMS = 10;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private Product product;
+    private final List<ProductVariant> variants = new ArrayList<>();
+    private Cart cart;
+    private String orderNumber;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setName("Benchmark Product");
+        product.setBasePrice(new BigDecimal("10.00"));
+        product = productRepository.save(product);
+
+        for (int i = 0; i < ITEMS; i++) {
+            ProductVariant variant = new ProductVariant();
+            variant.setProduct(product);
+            variant.setSku("BENCH-" + UUID.randomUUID());
+            variant.setPrice(new BigDecimal("10.00"));
+            variant.setStockQuantity(100);
+            variants.add(productVariantRepository.save(variant));
+        }
+
+        cart = new Cart();
+        cart.setCartId(UUID.randomUUID().toString());
+        List<CartItem> items = new ArrayList<>();
+        for (ProductVariant variant : variants) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProductVariant(variant);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        cart.setItems(items);
+        cart.setItemCount(ITEMS);
+        cart.setTotalQuantity(ITEMS);
+        cart.setTotalAmount(new BigDecimal("100.00"));
+        cart = cartRepository.save(cart);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (orderNumber != null) {
+            jdbcTemplate.update("DELETE h FROM order_status_history h JOIN orders o ON o.id = h.order_id " +
+                    "WHERE o.order_number = ?", orderNumber);
+            jdbcTemplate.update("DELETE i FROM order_items i JOIN orders o ON o.id = i.order_id " +
+                    "WHERE o.order_number = ?", orderNumber);
+            jdbcTemplate.update("DELETE FROM orders WHERE order_number = ?", orderNumber);
+        }
+        jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = ?", cart.getId());
+        jdbcTemplate.update("DELETE FROM carts WHERE id = ?", cart.getId());
+        variants.forEach(variant -> productVariantRepository.deleteById(variant.getId()));
+        productRepository.deleteById(product.getId());
+    }
+
+    @Test
+    void placeOrder_WithTenItems_ShouldBatchItemInsertsAndStockUpdates() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        PreparedStatements.reset();
+        Batches.reset();
+
+        OrderResponse order = orderService.placeOrder(new PlaceOrderRequest("Benchmark Customer", "0900000000",
+                "benchmark@example.com", "1 Benchmark Street", null, PaymentMethod.COD, null, cart.getCartId()));
+        orderNumber = order.getOrderNumber();
+
+        System.out.printf("%d-item order: %d statements prepared, %d JDBC batches executed, %d entity inserts, "
+                        + "%d entity updates%n", ITEMS, statistics.getPrepareStatementCount(), Batches.executed.get(),
+                statistics.getEntityInsertCount(), statistics.getEntityUpdateCount());
+        PreparedStatements.counts.forEach((sql, count) -> System.out.printf("  %3d x %s%n", count.get(), sql));
+
+        // Order, its 10 items and the first status history row
+        assertEquals(ITEMS + 2, statistics.getEntityInsertCount());
+        // One statement per table, each executed as a batch rather than once per row
+        assertEquals(1, PreparedStatements.count("insert into order_items"));
+        assertEquals(1, PreparedStatements.count("update product_variants"));
+        assertTrue(Batches.executed.get() >= 2,
+                "Expected the item inserts and stock updates to be batched, got " + Batches.executed.get());
+    }
+
+    /** Counts prepared statements by SQL; Hibernate instantiates it once per session factory */
+    public static class PreparedStatements implements StatementInspector {
+
+        static final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        @Override
+        public String inspect(String sql) {
+            counts.computeIfAbsent(sql, key -> new AtomicInteger()).incrementAndGet();
+            return sql;
+        }
+
+        static int count(String prefix) {
+            return counts.entrySet().stream()
+                    .filter(entry -> entry.getKey().toLowerCase(Locale.ROOT).startsWith(prefix))
+                    .mapToInt(entry -> entry.getValue().get())
+                    .sum();
+        }
+
+        static void reset() {
+            counts.clear();
+        }
+    }
+
+    /** Counts executed JDBC batches across sessions */
+    public static class Batches implements SessionEventListener {
+
+        static final AtomicInteger executed = new AtomicInteger();
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            executed.incrementAndGet();
+        }
+
+        static void reset() {
+            executed.set(0);
+        }
+    }
+}
@@ -55,10 +55,16 @@ class OrderServiceTest {
     
     @Mock
     private InventoryReservationService inventoryReservationService;
+
+    @Mock
+    private ProductAggregateRefresher productAggregateRefresher;
     
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private HotCartStore hotCartStore;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -52,9 +52,15 @@ class OrderServiceUnitTest {
     @Mock
     private InventoryReservationService inventoryReservationService;
 
+    @Mock
+    private ProductAggregateRefresher productAggregateRefresher;
+
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private HotCartStore hotCartStore;
+
     @InjectMocks
     private OrderService orderService;
 
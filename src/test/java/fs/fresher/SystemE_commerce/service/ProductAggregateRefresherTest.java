@@ -0,0 +1,86 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductAggregateRefresherTest {
+
+    @Mock
+    private ProductVariantRepository productVariantRepository;
+
+    @InjectMocks
+    private ProductAggregateRefresher productAggregateRefresher;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(productAggregateRefresher, "batchSize", 2);
+    }
+
+    @Test
+    void refreshPending_ShouldCoalesceVariantsAndRefreshInIdOrderedChunks() {
+        // Given
+        productAggregateRefresher.markChanged(List.of(3L, 1L));
+        productAggregateRefresher.markChanged(List.of(1L, 2L));
+
+        // When
+        productAggregateRefresher.refreshPending();
+        productAggregateRefresher.refreshPending();
+
+        // Then
+        verify(productVariantRepository).refreshProductAggregates(List.of(1L, 2L));
+        verify(productVariantRepository).refreshProductAggregates(List.of(3L));
+        verifyNoMoreInteractions(productVariantRepository);
+        assertEquals(0, productAggregateRefresher.pendingCount());
+    }
+
+    @Test
+    void markChanged_InsideTransaction_ShouldWaitForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Given
+            productAggregateRefresher.markChanged(List.of(1L));
+            assertEquals(0, productAggregateRefresher.pendingCount());
+
+            // When
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Then
+            assertEquals(1, productAggregateRefresher.pendingCount());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void refreshPending_WhenRefreshFails_ShouldRetryOnNextPass() {
+        // Given
+        productAggregateRefresher.markChanged(List.of(1L));
+        when(productVariantRepository.refreshProductAggregates(any()))
+                .thenThrow(new RuntimeException("Lock wait timeout"))
+                .thenReturn(1);
+
+        // When
+        productAggregateRefresher.refreshPending();
+        assertEquals(1, productAggregateRefresher.pendingCount());
+        productAggregateRefresher.refreshPending();
+
+        // Then
+        verify(productVariantRepository, times(2)).refreshProductAggregates(List.of(1L));
+        assertEquals(0, productAggregateRefresher.pendingCount());
+    }
+}
@@ -0,0 +1,78 @@
+package fs.fresher.SystemE_commerce.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = ProductSearchIndex.build(List.of(
+                entry(1L, "Áo thun nam", "Cotton 100%"),
+                entry(2L, "Quần jean", "Phối cùng áo thun"),
+                entry(3L, "Đầm dự tiệc", "Vải lụa")
+        ));
+    }
+
+    @Test
+    void fold_ShouldStripVietnameseDiacritics() {
+        assertEquals("ao thun nam", ProductSearchIndex.fold("Áo  Thun, Nam!"));
+        assertEquals("dam du tiec", ProductSearchIndex.fold("Đầm dự tiệc"));
+        assertEquals("", ProductSearchIndex.fold(null));
+    }
+
+    @Test
+    void search_WithUnaccentedQuery_ShouldMatchAccentedText() {
+        Map<Long, Integer> result = index.search("dam du");
+
+        assertEquals(Set.of(3L), result.keySet());
+    }
+
+    @Test
+    void search_ShouldRankNameMatchesAboveDescriptionMatches() {
+        Map<Long, Integer> result = index.search("áo thun");
+
+        assertEquals(Set.of(1L, 2L), result.keySet());
+        assertTrue(result.get(1L) > result.get(2L));
+    }
+
+    @Test
+    void search_WithShortQuery_ShouldStillVerifySubstring() {
+        Map<Long, Integer> result = index.search("ua");
+
+        assertEquals(Set.of(2L, 3L), result.keySet());
+    }
+
+    @Test
+    void search_WithUnknownTrigram_ShouldReturnEmpty() {
+        assertTrue(index.search("xyzzy").isEmpty());
+        assertTrue(index.search("   ").isEmpty());
+    }
+
+    @Test
+    void withChanges_ShouldReindexOnlyChangedProducts() {
+        ProductSearchIndex updated = index.withChanges(Set.of(1L, 3L), List.of(entry(1L, "Áo sơ mi", null)));
+
+        assertEquals(2, updated.size());
+        assertEquals(Set.of(2L), updated.search("ao thun").keySet());
+        assertEquals(Set.of(1L), updated.search("so mi").keySet());
+        assertTrue(updated.search("dam").isEmpty());
+        // The original index is untouched
+        assertEquals(Set.of(1L, 2L), index.search("ao thun").keySet());
+    }
+
+    private CatalogSnapshot.Entry entry(Long id, String name, String description) {
+        return new CatalogSnapshot.Entry(id, name, description, new BigDecimal("100.00"), null,
+                null, null, LocalDateTime.now(), List.of());
+    }
+}
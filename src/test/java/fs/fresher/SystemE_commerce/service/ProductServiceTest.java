@@ -4,10 +4,12 @@ import fs.fresher.SystemE_commerce.dto.response.PagedResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductDetailResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductFilterOptionsResponse;
 import fs.fresher.SystemE_commerce.dto.response.ProductListResponse;
+import fs.fresher.SystemE_commerce.dto.response.ProductPageResponse;
 import fs.fresher.SystemE_commerce.entity.Category;
 import fs.fresher.SystemE_commerce.entity.Product;
 import fs.fresher.SystemE_commerce.entity.ProductVariant;
 import fs.fresher.SystemE_commerce.exception.ResourceNotFoundException;
+import fs.fresher.SystemE_commerce.exception.ValidationException;
 import fs.fresher.SystemE_commerce.repository.CategoryRepository;
 import fs.fresher.SystemE_commerce.repository.ProductRepository;
 import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
@@ -24,6 +26,7 @@ import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -44,9 +47,18 @@ class ProductServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private CatalogIndexService catalogIndexService;
+
+    @Mock
+    private FilterOptionsCacheService filterOptionsCacheService;
+
     @InjectMocks
     private ProductService productService;
 
+    // Listing query (+ its count query) and one variant summary query, independent of page size
+    private static final int LISTING_STATEMENT_BUDGET = 2;
+
     private Product mockProduct;
     private Category mockCategory;
     private ProductVariant mockVariant1;
@@ -100,6 +112,15 @@ class ProductServiceTest {
         mockVariants = Arrays.asList(mockVariant1, mockVariant2);
     }
 
+    private ProductVariantRepository.VariantSummary variantSummary(Long productId, long count, String min, String max) {
+        return new ProductVariantRepository.VariantSummary() {
+            public Long getProductId() { return productId; }
+            public Long getVariantCount() { return count; }
+            public BigDecimal getMinPrice() { return new BigDecimal(min); }
+            public BigDecimal getMaxPrice() { return new BigDecimal(max); }
+        };
+    }
+
     @Test
     void getProducts_WithValidParameters_ShouldReturnPagedResponse() {
         // Given
@@ -107,10 +128,10 @@ class ProductServiceTest {
         Page<Product> productPage = new PageImpl<>(products);
         
         when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+                any(), any(), any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenReturn(productPage);
-        when(productVariantRepository.findByProductIdAndIsActiveTrue(1L))
-                .thenReturn(mockVariants);
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(List.of(1L)))
+                .thenReturn(List.of(variantSummary(1L, 2, "90.00", "110.00")));
 
         // When
         PagedResponse<ProductListResponse> result = productService.getProducts(
@@ -133,8 +154,9 @@ class ProductServiceTest {
 
         verify(productRepository).findProductsWithFilters(
                 eq(Arrays.asList(1L)), eq(new BigDecimal("50.00")), eq(new BigDecimal("200.00")),
-                eq(Arrays.asList("Red")), eq(Arrays.asList("M")), eq("test"), any(Pageable.class));
-        verify(productVariantRepository).findByProductIdAndIsActiveTrue(1L);
+                eq(Arrays.asList("Red")), eq(Arrays.asList("M")), eq("test"), isNull(), any(Pageable.class));
+        verify(productVariantRepository).summarizeActiveVariantsByProductIds(List.of(1L));
+        verify(productVariantRepository, never()).findByProductIdAndIsActiveTrue(any());
     }
 
     @Test
@@ -143,11 +165,11 @@ class ProductServiceTest {
         List<Product> products = Arrays.asList(mockProduct);
         Page<Product> productPage = new PageImpl<>(products);
         
-        when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenReturn(productPage);
-        when(productVariantRepository.findByProductIdAndIsActiveTrue(1L))
-                .thenReturn(mockVariants);
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(List.of(1L)))
+                .thenReturn(List.of(variantSummary(1L, 2, "90.00", "110.00")));
 
         // When
         PagedResponse<ProductListResponse> result = productService.getProducts(
@@ -157,8 +179,8 @@ class ProductServiceTest {
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         
-        verify(productRepository).findProductsWithFilters(
-                eq(null), eq(null), eq(null), eq(null), eq(null), eq(null), any(Pageable.class));
+        verify(productRepository).findProductsWithProductLevelFilters(
+                eq(null), eq(null), eq(null), eq(null), eq(null), any(Pageable.class));
     }
 
     @Test
@@ -166,8 +188,8 @@ class ProductServiceTest {
         // Given
         Page<Product> emptyPage = new PageImpl<>(Arrays.asList());
         
-        when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenReturn(emptyPage);
 
         // When
@@ -182,11 +204,167 @@ class ProductServiceTest {
         assertTrue(result.isLast());
     }
 
+    @Test
+    void getProducts_WithFullPage_ShouldStayWithinStatementBudget() {
+        // Given - a 50-item page must not fan out into one variant query per product
+        List<Product> products = new ArrayList<>();
+        List<ProductVariantRepository.VariantSummary> summaries = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            Product product = new Product();
+            product.setId(id);
+            product.setName("Product " + id);
+            product.setBasePrice(new BigDecimal("100.00"));
+            products.add(product);
+            summaries.add(variantSummary(id, 3, "80.00", "120.00"));
+        }
+        
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(products));
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(anyCollection()))
+                .thenReturn(summaries);
+
+        // When
+        PagedResponse<ProductListResponse> result = productService.getProducts(
+                0, 50, null, null, null, null, null, null);
+
+        // Then
+        assertEquals(50, result.getContent().size());
+        assertTrue(result.getContent().stream().allMatch(p -> p.getTotalVariants() == 3));
+        
+        int statements = mockingDetails(productRepository).getInvocations().size()
+                + mockingDetails(productVariantRepository).getInvocations().size()
+                + mockingDetails(categoryRepository).getInvocations().size();
+        assertTrue(statements <= LISTING_STATEMENT_BUDGET,
+                "Product listing issued " + statements + " repository calls, budget is " + LISTING_STATEMENT_BUDGET);
+        verify(productVariantRepository, never()).findByProductIdAndIsActiveTrue(any());
+    }
+
+    @Test
+    void getProductsWithFacets_WhenCatalogNotReady_ShouldReturnPageWithoutFacets() {
+        // Given
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(mockProduct)));
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(anyCollection()))
+                .thenReturn(List.of());
+
+        // When
+        ProductPageResponse result = productService.getProductsWithFacets(
+                0, 10, null, null, null, null, null, null, false);
+
+        // Then
+        assertEquals(1, result.getContent().size());
+        assertNull(result.getFacets());
+        verify(catalogIndexService, never()).findProductsWithFacets(
+                anyInt(), anyInt(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getProductsByCursor_ShouldSeekWithoutCountingAndReturnNextCursor() {
+        // Given - one extra row signals a next page
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 10, 8, 30);
+        List<Product> products = new ArrayList<>();
+        for (long id = 5; id >= 3; id--) {
+            Product product = new Product();
+            product.setId(id);
+            product.setName("Product " + id);
+            product.setBasePrice(new BigDecimal("100.00"));
+            product.setCreatedAt(createdAt);
+            products.add(product);
+        }
+        String cursor = PageCursor.after(createdAt.plusDays(1), 9L).encode();
+        when(productRepository.findProductsWithFiltersAfter(
+                any(), any(), any(), any(), any(), any(), isNull(), eq(createdAt.plusDays(1)), eq(9L), any(Pageable.class)))
+                .thenReturn(products);
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(anyCollection()))
+                .thenReturn(List.of());
+
+        // When
+        PagedResponse<ProductListResponse> result = productService.getProductsByCursor(
+                cursor, 2, null, null, null, null, null, null, false, false);
+
+        // Then
+        assertEquals(List.of(5L, 4L), result.getContent().stream().map(ProductListResponse::getId).toList());
+        assertTrue(result.isHasNext());
+        assertFalse(result.isFirst());
+        assertEquals(-1, result.getTotalElements());
+        PageCursor next = PageCursor.decode(result.getNextCursor());
+        assertEquals(createdAt, next.getCreatedAt());
+        assertEquals(4L, next.getId());
+        verify(productRepository, never()).countProductsWithFilters(any(), any(), any(), any(), any(), any(), any());
+        verify(productRepository, never()).findProductsWithFilters(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getProductsByCursor_WithMalformedCursor_ShouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> productService.getProductsByCursor(
+                "not-a-cursor", 10, null, null, null, null, null, null, false, false));
+    }
+
+    @Test
+    void getProducts_WithDenormalizedAggregates_ShouldSkipVariantQueries() {
+        // Given
+        mockProduct.setActiveVariantCount(4);
+        mockProduct.setMinVariantPrice(new BigDecimal("80.00"));
+        mockProduct.setMaxVariantPrice(new BigDecimal("140.00"));
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(mockProduct)));
+
+        // When
+        PagedResponse<ProductListResponse> result = productService.getProducts(
+                0, 10, null, new BigDecimal("100.00"), null, null, null, null);
+
+        // Then
+        ProductListResponse response = result.getContent().get(0);
+        assertEquals(4, response.getTotalVariants());
+        assertEquals(new BigDecimal("80.00"), response.getMinPrice());
+        assertEquals(new BigDecimal("140.00"), response.getMaxPrice());
+        verifyNoInteractions(productVariantRepository);
+    }
+
+    @Test
+    void getProducts_InStockOnly_ShouldQueryDatabaseEvenWhenCatalogReady() {
+        // Given
+        lenient().when(catalogIndexService.isReady()).thenReturn(true);
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), eq(Boolean.TRUE), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        // When
+        PagedResponse<ProductListResponse> result = productService.getProducts(
+                0, 10, null, null, null, null, null, null, true);
+
+        // Then
+        assertTrue(result.getContent().isEmpty());
+        verify(catalogIndexService, never()).findProducts(
+                anyInt(), anyInt(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getProducts_WithCatalogIndexReady_ShouldServeFromMemory() {
+        // Given
+        PagedResponse<ProductListResponse> inMemoryPage = new PagedResponse<>(
+                List.of(), 0, 10, 0, 0, true, true, false, false);
+        when(catalogIndexService.isReady()).thenReturn(true);
+        when(catalogIndexService.findProducts(0, 10, null, null, null, List.of("Red"), null, null))
+                .thenReturn(inMemoryPage);
+
+        // When
+        PagedResponse<ProductListResponse> result = productService.getProducts(
+                0, 10, null, null, null, List.of("Red"), null, null);
+
+        // Then
+        assertSame(inMemoryPage, result);
+        verifyNoInteractions(productRepository, productVariantRepository);
+    }
+
     @Test
     void getProducts_WithRepositoryException_ShouldThrowRuntimeException() {
         // Given
-        when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenThrow(new RuntimeException("Database error"));
 
         // When & Then
@@ -240,6 +418,21 @@ class ProductServiceTest {
         verify(categoryRepository).findAll(any(Sort.class));
     }
 
+    @Test
+    void getFilterOptions_WithCachedOptions_ShouldNotQueryDatabase() {
+        // Given
+        ProductFilterOptionsResponse cached = new ProductFilterOptionsResponse(
+                List.of(), List.of("Red"), List.of("M"), new BigDecimal("10.00"), new BigDecimal("20.00"));
+        when(filterOptionsCacheService.get(List.of(1L))).thenReturn(cached);
+
+        // When
+        ProductFilterOptionsResponse result = productService.getFilterOptions(List.of(1L));
+
+        // Then
+        assertSame(cached, result);
+        verifyNoInteractions(productRepository, categoryRepository);
+    }
+
     @Test
     void getFilterOptions_WithNullPrices_ShouldReturnZeroAsDefault() {
         // Given
@@ -336,11 +529,11 @@ class ProductServiceTest {
         List<Product> products = Arrays.asList(mockProduct);
         Page<Product> productPage = new PageImpl<>(products);
         
-        when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenReturn(productPage);
-        when(productVariantRepository.findByProductIdAndIsActiveTrue(1L))
-                .thenReturn(mockVariants);
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(List.of(1L)))
+                .thenReturn(List.of(variantSummary(1L, 2, "90.00", "110.00")));
 
         // When
         PagedResponse<ProductListResponse> result = productService.getProducts(
@@ -360,11 +553,11 @@ class ProductServiceTest {
         List<Product> products = Arrays.asList(mockProduct);
         Page<Product> productPage = new PageImpl<>(products);
         
-        when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenReturn(productPage);
-        when(productVariantRepository.findByProductIdAndIsActiveTrue(1L))
-                .thenReturn(Arrays.asList()); // No variants
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(List.of(1L)))
+                .thenReturn(List.of()); // No variants
 
         // When
         PagedResponse<ProductListResponse> result = productService.getProducts(
@@ -432,11 +625,11 @@ class ProductServiceTest {
         List<Product> products = Arrays.asList(mockProduct);
         Page<Product> productPage = new PageImpl<>(products);
         
-        when(productRepository.findProductsWithFilters(
-                any(), any(), any(), any(), any(), any(), any(Pageable.class)))
+        when(productRepository.findProductsWithProductLevelFilters(
+                any(), any(), any(), any(), any(), any(Pageable.class)))
                 .thenReturn(productPage);
-        when(productVariantRepository.findByProductIdAndIsActiveTrue(1L))
-                .thenReturn(mockVariants);
+        when(productVariantRepository.summarizeActiveVariantsByProductIds(List.of(1L)))
+                .thenReturn(List.of(variantSummary(1L, 2, "90.00", "110.00")));
 
         // When
         PagedResponse<ProductListResponse> result = productService.getProducts(
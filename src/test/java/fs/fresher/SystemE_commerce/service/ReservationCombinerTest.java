@@ -0,0 +1,190 @@
+package fs.fresher.SystemE_commerce.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationCombinerTest {
+
+    @Mock
+    private ReservationCombinerWriter reservationCombinerWriter;
+
+    @InjectMocks
+    private ReservationCombiner reservationCombiner;
+
+    // Stock the mocked writer decides against, per variant
+    private final Map<Long, Integer> available = new ConcurrentHashMap<>();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservationCombiner, "enabled", true);
+        ReflectionTestUtils.setField(reservationCombiner, "windowMs", 50L);
+        ReflectionTestUtils.setField(reservationCombiner, "maxBatchSize", 500);
+        ReflectionTestUtils.setField(reservationCombiner, "waitTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(reservationCombiner, "threads", 2);
+        reservationCombiner.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationCombiner.shutdown();
+    }
+
+    private void decideAgainstStock() {
+        when(reservationCombinerWriter.applyBatch(anyLong(), anyList())).thenAnswer(invocation -> {
+            Long variantId = invocation.getArgument(0);
+            List<ReservationCombiner.Request> requests = invocation.getArgument(1);
+            batchSizes.add(requests.size());
+            List<Boolean> granted = new ArrayList<>();
+            for (ReservationCombiner.Request request : requests) {
+                int left = available.getOrDefault(variantId, 0);
+                boolean ok = request.getQuantity() <= left && (request.getQuantity() < 0 || request.claim());
+                if (ok) {
+                    available.put(variantId, left - request.getQuantity());
+                }
+                granted.add(ok);
+            }
+            return granted;
+        });
+    }
+
+    @Test
+    void reserve_ConcurrentRequestsForOneVariant_ShouldShareOneBatch() throws Exception {
+        // Given - 3 units, 5 buyers of one unit inside one window
+        available.put(1L, 3);
+        decideAgainstStock();
+        ExecutorService buyers = Executors.newFixedThreadPool(5);
+
+        // When
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(buyers.submit(() -> reservationCombiner.reserve(Map.of(1L, 1))));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            succeeded += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        buyers.shutdown();
+
+        // Then
+        assertEquals(3, succeeded);
+        assertEquals(0, available.get(1L));
+        assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() < 5);
+    }
+
+    @Test
+    void reserve_WithOneVariantShort_ShouldGiveBackTheOthers() throws Exception {
+        // Given
+        available.put(1L, 5);
+        available.put(2L, 0);
+        decideAgainstStock();
+
+        // When
+        boolean result = reservationCombiner.reserve(Map.of(1L, 2, 2L, 1));
+
+        // Then - the give-back for variant 1 is applied with its next batch
+        assertFalse(result);
+        verify(reservationCombinerWriter, timeout(2000).times(3)).applyBatch(anyLong(), anyList());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (available.get(1L) != 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, available.get(1L));
+    }
+
+    @Test
+    void reserve_WhenBatchFails_ShouldThrowTheCause() {
+        // Given
+        when(reservationCombinerWriter.applyBatch(eq(999L), anyList()))
+                .thenThrow(new RuntimeException("Product variant not found: 999"));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> reservationCombiner.reserve(Map.of(999L, 1)));
+        assertTrue(exception.getMessage().contains("Product variant not found: 999"));
+    }
+
+    @Test
+    void giveBack_WhenBatchFails_ShouldBeQueuedAgainUntilApplied() throws Exception {
+        // Given - the first batch fails, the retry succeeds
+        ReflectionTestUtils.setField(reservationCombiner, "retryBackoffMs", 20L);
+        available.put(1L, 0);
+        when(reservationCombinerWriter.applyBatch(eq(1L), anyList()))
+                .thenThrow(new RuntimeException("Lock wait timeout"))
+                .thenAnswer(invocation -> {
+                    List<ReservationCombiner.Request> requests = invocation.getArgument(1);
+                    requests.forEach(request -> available.merge(1L, -request.getQuantity(), Integer::sum));
+                    return Collections.nCopies(requests.size(), true);
+                });
+
+        // When
+        reservationCombiner.giveBack(Map.of(1L, 2));
+
+        // Then
+        verify(reservationCombinerWriter, timeout(2000).times(2)).applyBatch(eq(1L), anyList());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (available.get(1L) != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, available.get(1L));
+    }
+
+    @Test
+    void applyBatch_ShouldApplyGiveBacksFirstAndWriteTheNetChangeOnce() {
+        // Given - 1 unit left, a give-back of 2 and reservations of 2 and 2
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ProductAggregateRefresher productAggregateRefresher = mock(ProductAggregateRefresher.class);
+        ReservationCombinerWriter writer = new ReservationCombinerWriter(jdbcTemplate, productAggregateRefresher);
+        when(jdbcTemplate.query(eq(ReservationCombinerWriter.LOCK_SQL), any(ResultSetExtractor.class), eq(1L)))
+                .thenReturn(1);
+        ReservationCombiner.Request first = new ReservationCombiner.Request(2);
+        ReservationCombiner.Request giveBack = new ReservationCombiner.Request(-2);
+        ReservationCombiner.Request second = new ReservationCombiner.Request(2);
+
+        // When
+        List<Boolean> granted = writer.applyBatch(1L, List.of(first, giveBack, second));
+
+        // Then - 1 + 2 = 3 available: the first reservation fits, the second does not; net +2 - 2 = 0
+        assertEquals(List.of(true, true, false), granted);
+        verify(jdbcTemplate, never()).update(eq(ReservationCombinerWriter.APPLY_SQL), any(Object[].class));
+        verify(productAggregateRefresher, never()).markChanged(any());
+    }
+
+    @Test
+    void applyBatch_ShouldSkipAbandonedRequests() {
+        // Given
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ProductAggregateRefresher productAggregateRefresher = mock(ProductAggregateRefresher.class);
+        ReservationCombinerWriter writer = new ReservationCombinerWriter(jdbcTemplate, productAggregateRefresher);
+        when(jdbcTemplate.query(eq(ReservationCombinerWriter.LOCK_SQL), any(ResultSetExtractor.class), eq(1L)))
+                .thenReturn(10);
+        ReservationCombiner.Request abandoned = new ReservationCombiner.Request(3);
+        assertTrue(abandoned.abandon());
+        ReservationCombiner.Request live = new ReservationCombiner.Request(4);
+
+        // When
+        List<Boolean> granted = writer.applyBatch(1L, List.of(abandoned, live));
+
+        // Then
+        assertEquals(List.of(false, true), granted);
+        verify(jdbcTemplate).update(eq(ReservationCombinerWriter.APPLY_SQL), eq(4), any(), eq(1L));
+        verify(productAggregateRefresher).markChanged(List.of(1L));
+    }
+}
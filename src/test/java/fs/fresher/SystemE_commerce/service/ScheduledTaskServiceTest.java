@@ -8,12 +8,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.sql.ResultSet;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,12 +29,12 @@ class ScheduledTaskServiceTest {
     @Mock
     private CheckoutSessionRepository checkoutSessionRepository;
 
-    @Mock
-    private InventoryReservationService inventoryReservationService;
-    
     @Mock
     private CartCleanupService cartCleanupService;
 
+    @Mock
+    private ReservationReleaseWriter reservationReleaseWriter;
+
     @InjectMocks
     private ScheduledTaskService scheduledTaskService;
 
@@ -46,6 +48,7 @@ class ScheduledTaskServiceTest {
     void setUp() {
         // Set up configuration
         ReflectionTestUtils.setField(scheduledTaskService, "cleanupIntervalSeconds", 60);
+        ReflectionTestUtils.setField(scheduledTaskService, "releaseChunkSize", 2);
         ReflectionTestUtils.setField(scheduledTaskService, "oldSessionCleanupHours", 1);
         ReflectionTestUtils.setField(scheduledTaskService, "cartCleanupIntervalHours", 6);
         
@@ -92,80 +95,98 @@ class ScheduledTaskServiceTest {
     }
 
     @Test
-    void cleanupExpiredCheckoutSessions_WithExpiredSessions_ShouldProcessThem() {
+    void cleanupExpiredCheckoutSessions_ShouldReleaseChunkByChunkUntilDone() {
         // Given
-        when(checkoutSessionRepository.findExpiredSessions(any(LocalDateTime.class)))
-                .thenReturn(mockExpiredSessions);
-
-        Map<String, Object> releaseResult = new HashMap<>();
-        releaseResult.put("releasedVariants", 2);
-        releaseResult.put("status", "RELEASED");
-
-        when(inventoryReservationService.releaseReservationByToken("expired-token-1"))
-                .thenReturn(releaseResult);
-        when(inventoryReservationService.releaseReservationByToken("expired-token-2"))
-                .thenReturn(releaseResult);
+        when(reservationReleaseWriter.releaseChunk(any(LocalDateTime.class), eq(0L), eq(2)))
+                .thenReturn(new ReservationReleaseWriter.ChunkResult(12L, 2, 3, 5, false));
+        when(reservationReleaseWriter.releaseChunk(any(LocalDateTime.class), eq(12L), eq(2)))
+                .thenReturn(new ReservationReleaseWriter.ChunkResult(30L, 1, 1, 2, false));
+        when(reservationReleaseWriter.releaseChunk(any(LocalDateTime.class), eq(30L), eq(2)))
+                .thenReturn(new ReservationReleaseWriter.ChunkResult(30L, 0, 0, 0, true));
 
         // When
         scheduledTaskService.cleanupExpiredCheckoutSessions();
 
         // Then
-        verify(checkoutSessionRepository).findExpiredSessions(any(LocalDateTime.class));
-        verify(inventoryReservationService).releaseReservationByToken("expired-token-1");
-        verify(inventoryReservationService).releaseReservationByToken("expired-token-2");
-        // Should not process already used session
-        verify(inventoryReservationService, never()).releaseReservationByToken("processed-token-1");
+        verify(reservationReleaseWriter, times(3)).releaseChunk(any(LocalDateTime.class), anyLong(), eq(2));
+        verify(checkoutSessionRepository, never()).findExpiredSessions(any(LocalDateTime.class));
     }
 
     @Test
     void cleanupExpiredCheckoutSessions_WithNoExpiredSessions_ShouldDoNothing() {
         // Given
-        when(checkoutSessionRepository.findExpiredSessions(any(LocalDateTime.class)))
-                .thenReturn(new ArrayList<>());
+        when(reservationReleaseWriter.releaseChunk(any(LocalDateTime.class), eq(0L), eq(2)))
+                .thenReturn(new ReservationReleaseWriter.ChunkResult(0L, 0, 0, 0, true));
 
         // When
         scheduledTaskService.cleanupExpiredCheckoutSessions();
 
         // Then
-        verify(checkoutSessionRepository).findExpiredSessions(any(LocalDateTime.class));
-        verify(inventoryReservationService, never()).releaseReservationByToken(anyString());
+        verify(reservationReleaseWriter, times(1)).releaseChunk(any(LocalDateTime.class), anyLong(), anyInt());
     }
 
     @Test
-    void cleanupExpiredCheckoutSessions_WithReleaseException_ShouldContinueProcessing() {
+    void cleanupExpiredCheckoutSessions_WithChunkFailure_ShouldStopAndLeaveTheRestForTheNextRun() {
         // Given
-        when(checkoutSessionRepository.findExpiredSessions(any(LocalDateTime.class)))
-                .thenReturn(Arrays.asList(expiredSession1, expiredSession2));
+        when(reservationReleaseWriter.releaseChunk(any(LocalDateTime.class), eq(0L), eq(2)))
+                .thenReturn(new ReservationReleaseWriter.ChunkResult(12L, 2, 3, 5, false));
+        when(reservationReleaseWriter.releaseChunk(any(LocalDateTime.class), eq(12L), eq(2)))
+                .thenThrow(new RuntimeException("Database error"));
 
-        Map<String, Object> releaseResult = new HashMap<>();
-        releaseResult.put("releasedVariants", 2);
+        // When & Then - Should not throw exception
+        assertDoesNotThrow(() -> scheduledTaskService.cleanupExpiredCheckoutSessions());
 
-        when(inventoryReservationService.releaseReservationByToken("expired-token-1"))
-                .thenThrow(new RuntimeException("Release failed"));
-        when(inventoryReservationService.releaseReservationByToken("expired-token-2"))
-                .thenReturn(releaseResult);
+        verify(reservationReleaseWriter, times(2)).releaseChunk(any(LocalDateTime.class), anyLong(), anyInt());
+    }
+
+    @Test
+    void releaseChunk_ShouldSumPerVariantReleaseOnceAndMarkSessionsUsedInOneStatement() {
+        // Given - sessions 1 and 2 expired, holding 4 units of variant 7 and 1 of variant 3 between them
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        InventoryReservationService inventoryReservationService = mock(InventoryReservationService.class);
+        ReservationReleaseWriter writer = new ReservationReleaseWriter(jdbcTemplate, inventoryReservationService);
+        when(jdbcTemplate.queryForList(eq(ReservationReleaseWriter.SELECT_EXPIRED_SQL), eq(Long.class),
+                eq(0L), any(), eq(500))).thenReturn(List.of(1L, 2L));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet resultSet = mock(ResultSet.class);
+            when(resultSet.getLong(1)).thenReturn(7L, 3L);
+            when(resultSet.getInt(2)).thenReturn(4, 1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT product_variant_id, SUM(quantity)"),
+                any(RowCallbackHandler.class), eq(1L), eq(2L));
 
         // When
-        scheduledTaskService.cleanupExpiredCheckoutSessions();
+        ReservationReleaseWriter.ChunkResult chunk = writer.releaseChunk(LocalDateTime.now(), 0L, 500);
 
         // Then
-        verify(inventoryReservationService).releaseReservationByToken("expired-token-1");
-        verify(inventoryReservationService).releaseReservationByToken("expired-token-2");
-        // Should continue processing despite first failure
+        assertFalse(chunk.isCompleted());
+        assertEquals(2L, chunk.getLastSessionId());
+        assertEquals(2, chunk.getReleasedSessions());
+        assertEquals(5, chunk.getReleasedUnits());
+        verify(inventoryReservationService).releaseAggregatedReservations(Map.of(3L, 1, 7L, 4));
+        verify(jdbcTemplate).update("UPDATE checkout_sessions SET is_used = true WHERE id IN (?,?)", 1L, 2L);
     }
 
     @Test
-    void cleanupExpiredCheckoutSessions_WithRepositoryException_ShouldHandleGracefully() {
+    void releaseChunk_WithNoExpiredSessions_ShouldCompleteWithoutWriting() {
         // Given
-        when(checkoutSessionRepository.findExpiredSessions(any(LocalDateTime.class)))
-                .thenThrow(new RuntimeException("Database error"));
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        InventoryReservationService inventoryReservationService = mock(InventoryReservationService.class);
+        ReservationReleaseWriter writer = new ReservationReleaseWriter(jdbcTemplate, inventoryReservationService);
+        when(jdbcTemplate.queryForList(eq(ReservationReleaseWriter.SELECT_EXPIRED_SQL), eq(Long.class),
+                eq(40L), any(), eq(500))).thenReturn(List.of());
 
-        // When & Then - Should not throw exception
-        assertDoesNotThrow(() -> {
-            scheduledTaskService.cleanupExpiredCheckoutSessions();
-        });
+        // When
+        ReservationReleaseWriter.ChunkResult chunk = writer.releaseChunk(LocalDateTime.now(), 40L, 500);
 
-        verify(inventoryReservationService, never()).releaseReservationByToken(anyString());
+        // Then
+        assertTrue(chunk.isCompleted());
+        assertEquals(40L, chunk.getLastSessionId());
+        verifyNoInteractions(inventoryReservationService);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
     }
 
     @Test
@@ -305,50 +326,6 @@ class ScheduledTaskServiceTest {
         });
     }
 
-    @Test
-    void cleanupExpiredCheckoutSessions_WithMixedProcessedAndUnprocessedSessions_ShouldProcessCorrectly() {
-        // Given
-        List<CheckoutSession> mixedSessions = Arrays.asList(
-                expiredSession1,    // Not processed - should be released
-                processedSession,   // Already processed - should be skipped
-                expiredSession2     // Not processed - should be released
-        );
-
-        when(checkoutSessionRepository.findExpiredSessions(any(LocalDateTime.class)))
-                .thenReturn(mixedSessions);
-
-        Map<String, Object> releaseResult = new HashMap<>();
-        releaseResult.put("releasedVariants", 1);
-
-        when(inventoryReservationService.releaseReservationByToken("expired-token-1"))
-                .thenReturn(releaseResult);
-        when(inventoryReservationService.releaseReservationByToken("expired-token-2"))
-                .thenReturn(releaseResult);
-
-        // When
-        scheduledTaskService.cleanupExpiredCheckoutSessions();
-
-        // Then
-        verify(inventoryReservationService).releaseReservationByToken("expired-token-1");
-        verify(inventoryReservationService).releaseReservationByToken("expired-token-2");
-        verify(inventoryReservationService, never()).releaseReservationByToken("processed-token-1");
-    }
-
-    @Test
-    void cleanupExpiredCheckoutSessions_WithAllSessionsAlreadyProcessed_ShouldSkipAll() {
-        // Given
-        List<CheckoutSession> allProcessedSessions = Arrays.asList(processedSession);
-        when(checkoutSessionRepository.findExpiredSessions(any(LocalDateTime.class)))
-                .thenReturn(allProcessedSessions);
-
-        // When
-        scheduledTaskService.cleanupExpiredCheckoutSessions();
-
-        // Then
-        verify(checkoutSessionRepository).findExpiredSessions(any(LocalDateTime.class));
-        verify(inventoryReservationService, never()).releaseReservationByToken(anyString());
-    }
-
     @Test
     void logInventoryHealth_WithNoActiveSessions_ShouldLogZeroCount() {
         // Given
@@ -0,0 +1,196 @@
+package fs.fresher.SystemE_commerce.service;
+
+import fs.fresher.SystemE_commerce.entity.AdminUser;
+import fs.fresher.SystemE_commerce.exception.BusinessException;
+import fs.fresher.SystemE_commerce.exception.ErrorCode;
+import fs.fresher.SystemE_commerce.repository.ProductVariantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockBucketServiceTest {
+
+    @Mock
+    private StockBucketWriter stockBucketWriter;
+
+    @Mock
+    private ProductVariantRepository productVariantRepository;
+
+    @Mock
+    private AdminAuthService adminAuthService;
+
+    @Mock
+    private ProductAggregateRefresher productAggregateRefresher;
+
+    @InjectMocks
+    private StockBucketService stockBucketService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stockBucketService, "enabled", true);
+        ReflectionTestUtils.setField(stockBucketService, "defaultCount", 8);
+        ReflectionTestUtils.setField(stockBucketService, "maxCount", 64);
+    }
+
+    @Test
+    void reserve_WhenEveryBucketIsShort_ShouldTryEachOnceThenTakeAcrossBuckets() {
+        // Given
+        when(stockBucketWriter.split(1L, 4)).thenReturn(6);
+        stockBucketService.split(1L, 4);
+        when(stockBucketWriter.takeFromBucket(eq(1L), anyInt(), eq(3))).thenReturn(false);
+        when(stockBucketWriter.takeAcrossBuckets(1L, 3)).thenReturn(true);
+
+        // When
+        boolean result = stockBucketService.reserve(1L, 3);
+
+        // Then
+        assertTrue(result);
+        ArgumentCaptor<Integer> buckets = ArgumentCaptor.forClass(Integer.class);
+        verify(stockBucketWriter, times(4)).takeFromBucket(eq(1L), buckets.capture(), eq(3));
+        assertEquals(List.of(0, 1, 2, 3), buckets.getAllValues().stream().sorted().toList());
+        assertTrue(stockBucketService.isBucketed(1L));
+    }
+
+    @Test
+    void reserve_WhenABucketHoldsEnough_ShouldStopThere() {
+        // Given
+        when(stockBucketWriter.split(1L, 4)).thenReturn(40);
+        stockBucketService.split(1L, 4);
+        when(stockBucketWriter.takeFromBucket(eq(1L), anyInt(), eq(1))).thenReturn(true);
+
+        // When
+        boolean result = stockBucketService.reserve(1L, 1);
+
+        // Then
+        assertTrue(result);
+        verify(stockBucketWriter, times(1)).takeFromBucket(eq(1L), anyInt(), eq(1));
+        verify(stockBucketWriter, never()).takeAcrossBuckets(any(), anyInt());
+    }
+
+    @Test
+    void release_AfterMerge_ShouldReleaseOnTheVariantRow() {
+        // Given
+        when(stockBucketWriter.merge(1L)).thenReturn(5);
+        stockBucketService.merge(1L);
+        when(productVariantRepository.releaseReserved(eq(1L), eq(2), any())).thenReturn(1);
+
+        // When
+        stockBucketService.release(1L, 2);
+
+        // Then
+        verify(stockBucketWriter, never()).giveBack(any(), anyInt(), anyInt());
+        assertFalse(stockBucketService.isBucketed(1L));
+    }
+
+    @Test
+    void splitVariant_WithBucketCountOutOfRange_ShouldReject() {
+        // Given
+        when(adminAuthService.authenticateByApiKey("key")).thenReturn(Optional.of(new AdminUser()));
+
+        // When & Then
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> stockBucketService.splitVariant("key", 1L, 1));
+        assertEquals(ErrorCode.INVALID_REQUEST, exception.getErrorCode());
+        verifyNoInteractions(stockBucketWriter);
+    }
+
+    @Test
+    void rebalanceBuckets_ShouldDropVariantsMergedElsewhere() {
+        // Given
+        when(stockBucketWriter.split(1L, 2)).thenReturn(10);
+        stockBucketService.split(1L, 2);
+        when(stockBucketWriter.loadBucketCounts()).thenReturn(Map.of(2L, 4));
+
+        // When
+        stockBucketService.rebalanceBuckets();
+
+        // Then
+        assertFalse(stockBucketService.isBucketed(1L));
+        assertTrue(stockBucketService.isBucketed(2L));
+        verify(stockBucketWriter).rebalance(2L);
+        verify(stockBucketWriter, never()).rebalance(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writerRebalance_ShouldSpreadBucketsAndFreeStockEvenly() {
+        // Given - buckets hold 0 and 10, and a restock left 4 free units on the variant row
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        StockBucketWriter writer = new StockBucketWriter(jdbcTemplate, productVariantRepository, productAggregateRefresher);
+        when(jdbcTemplate.query(eq(StockBucketWriter.READ_BUCKETS_SQL), any(RowMapper.class), eq(1L)))
+                .thenReturn(List.of(new int[] {0, 0}, new int[] {1, 10}));
+        when(jdbcTemplate.query(eq(StockBucketWriter.READ_VARIANT_SQL), any(ResultSetExtractor.class), eq(1L)))
+                .thenReturn(4);
+        when(jdbcTemplate.query(eq(StockBucketWriter.LOCK_BUCKETS_SQL), any(RowMapper.class), eq(1L)))
+                .thenReturn(List.of(new int[] {0, 0}, new int[] {1, 10}));
+        when(jdbcTemplate.query(eq(StockBucketWriter.LOCK_VARIANT_SQL), any(ResultSetExtractor.class), eq(1L)))
+                .thenReturn(4);
+
+        // When
+        boolean rebalanced = writer.rebalance(1L);
+
+        // Then - 14 units, 7 per bucket, and the 4 free units are now parked
+        assertTrue(rebalanced);
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(StockBucketWriter.SET_BUCKET_SQL), updates.capture());
+        assertEquals(List.of(7, 7), updates.getValue().stream().map(args -> args[0]).toList());
+        verify(jdbcTemplate).update(eq(StockBucketWriter.PARK_SQL), eq(4), any(), eq(1L));
+        verify(productAggregateRefresher).markChanged(List.of(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writerRebalance_WhenBalanced_ShouldNeitherLockNorQueueARefresh() {
+        // Given - 5 and 4 parked, nothing free on the variant row
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        StockBucketWriter writer = new StockBucketWriter(jdbcTemplate, productVariantRepository, productAggregateRefresher);
+        when(jdbcTemplate.query(eq(StockBucketWriter.READ_VARIANT_SQL), any(ResultSetExtractor.class), eq(1L)))
+                .thenReturn(0);
+        when(jdbcTemplate.query(eq(StockBucketWriter.READ_BUCKETS_SQL), any(RowMapper.class), eq(1L)))
+                .thenReturn(List.of(new int[] {0, 5}, new int[] {1, 4}));
+
+        // When
+        boolean rebalanced = writer.rebalance(1L);
+
+        // Then
+        assertFalse(rebalanced);
+        verify(jdbcTemplate, never()).query(eq(StockBucketWriter.LOCK_BUCKETS_SQL), any(RowMapper.class), any());
+        verify(jdbcTemplate, never()).query(eq(StockBucketWriter.LOCK_VARIANT_SQL), any(ResultSetExtractor.class), any());
+        verifyNoInteractions(productAggregateRefresher);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writerTakeAcrossBuckets_WhenRowCannotCoverTheRest_ShouldWriteNothing() {
+        // Given - buckets hold 2 and 1, 5 requested, the variant row has no 2 free units left
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        StockBucketWriter writer = new StockBucketWriter(jdbcTemplate, productVariantRepository, productAggregateRefresher);
+        when(jdbcTemplate.query(eq(StockBucketWriter.LOCK_BUCKETS_SQL), any(RowMapper.class), eq(1L)))
+                .thenReturn(List.of(new int[] {0, 2}, new int[] {1, 1}));
+        when(productVariantRepository.reserveIfAvailable(eq(1L), eq(2), any())).thenReturn(0);
+
+        // When
+        boolean result = writer.takeAcrossBuckets(1L, 5);
+
+        // Then
+        assertFalse(result);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}